@@ -0,0 +1,75 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import bench.ColumnAccess;
+import bench.DescribeRows;
+
+/**
+ * Lets the benchmarks (which have to be in a named package) reach ColumnData, which is in the default package.
+ * This is only loaded through ColumnAccess.Loader.
+ */
+public class ColumnAccessImpl implements ColumnAccess
+{
+
+	@Override
+	public Object column(String type, boolean notNull) throws SQLException
+	{
+		ArrayList<ColumnData> cols = ColumnData.buildColumnData(DescribeRows.single("c", type, notNull));
+		return cols.get(0);
+	}
+
+	@Override
+	public String typeName(Object column)
+	{
+		return ((ColumnData) column).getType().name();
+	}
+
+	@Override
+	public boolean isValidValue(Object column, CharSequence value)
+	{
+		return ((ColumnData) column).isValidValue(value);
+	}
+
+	@Override
+	public Object buildColumnData(ResultSet describe) throws SQLException
+	{
+		return ColumnData.buildColumnData(describe);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public int checkCells(Object columns, CharSequence[] row)
+	{
+		List<ColumnData> cols = (List<ColumnData>) columns;
+		for (int i = 0; i < row.length; i++)
+		{
+			if (!cols.get(i).isValidValue(row[i]))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object rowValidator(Object columns)
+	{
+		return new RowValidator((List<ColumnData>) columns);
+	}
+
+	@Override
+	public long checkRow(Object validator, CharSequence[] row)
+	{
+		return ((RowValidator) validator).check(row);
+	}
+
+	@Override
+	public Object getTypeFromString(String str)
+	{
+		return ColumnData.getTypeFromString(str);
+	}
+
+}
@@ -0,0 +1,54 @@
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import bench.ImportAccess;
+
+/**
+ * Lets ImportThroughput (which is in a named package) reach FileImporter, which is in the default package.
+ * This is only loaded through Bridge.load.
+ */
+public class ImportAccessImpl implements ImportAccess
+{
+
+	@Override
+	public double[] importFile(String url, String table, File file, boolean loadData, int batchSize, int threads) throws Exception
+	{
+		ConnectionPool pool = new ConnectionPool(url);
+		try
+		{
+			List<ColumnData> cols;
+			Connection conn = pool.borrow();
+			try
+			{
+				Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("DESCRIBE " + table);
+				cols = ColumnData.buildColumnData(rs);
+				stmt.close();
+			}
+			finally
+			{
+				pool.release(conn);
+			}
+
+			FileImporter imp = new FileImporter(pool, table, cols, batchSize, threads);
+			imp.setFormatFromName(file);
+			imp.setLoadData(loadData);
+			imp.run(file);
+
+			if (imp.getRowsRejected() > 0)
+			{
+				throw new IllegalStateException(imp.getRowsRejected() + " rows were rejected: " + imp.getRejectReasons());
+			}
+
+			return new double[] { imp.getRowsInserted(), imp.getElapsedSeconds() };
+		}
+		finally
+		{
+			pool.close();
+		}
+	}
+
+}
@@ -0,0 +1,30 @@
+package bench;
+
+/**
+ * Loads the classes in the default package that let the benchmarks reach the program's classes.
+ * This is the only place reflection is used, and it's only done while setting up a benchmark, so none of it is measured.
+ */
+public final class Bridge
+{
+
+	private Bridge() { }
+
+	/**
+	 * Create an instance of a class in the default package.
+	 * @param type The interface (in this package) the class implements.
+	 * @param className The name of the class.
+	 * @return The new instance.
+	 */
+	public static <T> T load(Class<T> type, String className)
+	{
+		try
+		{
+			return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalStateException(className + " could not be loaded.", e);
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The parts of ColumnData the benchmarks measure.
+ * The program's classes are all in the default package, which can't be imported from a named package (and JMH won't run
+ * benchmarks that are in the default package), so ColumnAccessImpl implements this from inside the default package instead.
+ * Get it with Bridge.load.
+ */
+public interface ColumnAccess
+{
+
+	/**
+	 * Create a ColumnData object by passing a one row "DESCRIBE" result to ColumnData.buildColumnData.
+	 * @param type The type of the column, as "DESCRIBE" would show it (such as "int(11) unsigned").
+	 * @param notNull Whether the column is NOT NULL.
+	 * @return The ColumnData object.
+	 * @throws SQLException If the result couldn't be read.
+	 */
+	Object column(String type, boolean notNull) throws SQLException;
+
+	/**
+	 * Get the name of the ColumnDataType of a column created by column().
+	 */
+	String typeName(Object column);
+
+	/**
+	 * Call isValidValue on a column created by column().
+	 */
+	boolean isValidValue(Object column, CharSequence value);
+
+	/**
+	 * Call ColumnData.buildColumnData.
+	 * @return The list it returned.
+	 */
+	Object buildColumnData(ResultSet describe) throws SQLException;
+
+	/**
+	 * Check each value of a row with isValidValue on its column, stopping at the first bad one, the way 'BulkAdd' and 'Import' used to.
+	 * @param columns The list returned by buildColumnData.
+	 * @return The index of the first bad value, or -1 if they're all valid.
+	 */
+	int checkCells(Object columns, CharSequence[] row);
+
+	/**
+	 * Create a RowValidator for the columns.
+	 * @param columns The list returned by buildColumnData.
+	 */
+	Object rowValidator(Object columns);
+
+	/**
+	 * Call RowValidator.check on a validator created by rowValidator().
+	 * @return The bits of the columns whose values aren't valid.
+	 */
+	long checkRow(Object validator, CharSequence[] row);
+
+	/**
+	 * Call ColumnData.getTypeFromString.
+	 * @return The ColumnDataType it returned.
+	 */
+	Object getTypeFromString(String str);
+
+}
@@ -0,0 +1,26 @@
+package bench;
+
+import java.io.PrintStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The ways of showing a result on the console that RenderBenchmark compares. ConsoleAccessImpl implements this from inside the default package.
+ * Get it with Bridge.load.
+ */
+public interface ConsoleAccess
+{
+
+	/**
+	 * Show every row of a result the way 'Display' and Direct SQL mode used to: a list of the columns, then one println for each value.
+	 * @return The number of rows shown.
+	 */
+	long printCells(ResultSet rs, PrintStream out) throws SQLException;
+
+	/**
+	 * Show every row of a result with TableRenderer.
+	 * @return The number of rows shown.
+	 */
+	long render(ResultSet rs, PrintStream out) throws SQLException;
+
+}
@@ -0,0 +1,67 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.rowset.CachedRowSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ColumnData.buildColumnData over a "DESCRIBE" result with a mix of column types.
+ * The score is whole tables per second. Reading the CachedRowSet is part of it, much like reading a driver's ResultSet would be.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DescribeBenchmark
+{
+
+	@Param({ "4", "16", "64" })
+	public int columns;
+
+	// what "DESCRIBE" shows for the Type of a good spread of columns; the table uses them in turn
+	private static final String[] TYPES = {
+		"int(11)", "varchar(30)", "date", "decimal(8,2)",
+		"bigint(20) unsigned", "enum('a','b','c')", "datetime", "tinyint(1)",
+		"text", "set('x','y','z')", "double", "char(2)",
+		"time", "bit(4)", "smallint(5) unsigned zerofill", "varbinary(255)",
+	};
+
+	private ColumnAccess access;
+	private CachedRowSet describe;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		access = Bridge.load(ColumnAccess.class, "ColumnAccessImpl");
+
+		String[][] rows = new String[columns][];
+		for (int i = 0; i < columns; i++)
+		{
+			rows[i] = new String[] { "col" + i, TYPES[i % TYPES.length], (i % 3 == 0) ? "NO" : "YES", (i == 0) ? "PRI" : "" };
+		}
+
+		describe = DescribeRows.create(rows);
+	}
+
+	@Benchmark
+	public Object buildColumnData() throws Exception
+	{
+		describe.beforeFirst();
+		return access.buildColumnData(describe);
+	}
+
+}
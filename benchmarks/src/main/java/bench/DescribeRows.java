@@ -0,0 +1,47 @@
+package bench;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+import javax.sql.rowset.CachedRowSet;
+
+/**
+ * Builds ResultSets that look like the result of a "DESCRIBE" command, without needing a server.
+ */
+public final class DescribeRows
+{
+
+	private static final String[] COLUMNS = { "Field", "Type", "Null", "Key", "Default", "Extra" };
+
+	private DescribeRows() { }
+
+	/**
+	 * Create a ResultSet with one row per column.
+	 * @param rows The name, type, "YES"/"NO" and key of each column. The Default and Extra values are left NULL and empty.
+	 * @return The ResultSet, positioned before the first row. Call beforeFirst() on it to read it again.
+	 * @throws SQLException If the ResultSet couldn't be created.
+	 */
+	public static CachedRowSet create(String[][] rows) throws SQLException
+	{
+		int[] types = new int[COLUMNS.length];
+		Arrays.fill(types, Types.VARCHAR);
+
+		String[][] full = new String[rows.length][];
+		for (int r = 0; r < rows.length; r++)
+		{
+			full[r] = new String[] { rows[r][0], rows[r][1], rows[r][2], rows[r][3], null, "" };
+		}
+
+		return ResultRows.create(COLUMNS, types, full);
+	}
+
+	/**
+	 * Create a ResultSet for a single column.
+	 */
+	public static CachedRowSet single(String name, String type, boolean notNull) throws SQLException
+	{
+		return create(new String[][] { { name, type, notNull ? "NO" : "YES", "" } });
+	}
+
+}
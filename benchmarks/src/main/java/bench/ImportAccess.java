@@ -0,0 +1,25 @@
+package bench;
+
+import java.io.File;
+
+/**
+ * The parts of 'Import' that ImportThroughput measures, implemented by ImportAccessImpl from inside the default package
+ * (see ColumnAccess for why). Get it with Bridge.load.
+ */
+public interface ImportAccess
+{
+
+	/**
+	 * Import a file into a table with FileImporter, the same way 'Import' does, over a pool of its own.
+	 * @param url The connection string for the pool.
+	 * @param table The table to add the rows to. Its columns are looked up with "DESCRIBE".
+	 * @param file The file to import, in the format its extension says.
+	 * @param loadData True to send each batch as LOAD DATA LOCAL INFILE, false to send it as INSERTs.
+	 * @param batchSize The number of rows in each batch.
+	 * @param threads The number of connections to send batches over at once.
+	 * @return The number of rows added, then the number of seconds the import took.
+	 * @throws Exception If the import failed.
+	 */
+	double[] importFile(String url, String table, File file, boolean loadData, int batchSize, int threads) throws Exception;
+
+}
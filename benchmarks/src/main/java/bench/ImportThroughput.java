@@ -0,0 +1,165 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Compares the two ways 'Import' can send rows to the server: as batches of INSERTs, and as LOAD DATA LOCAL INFILE.
+ * This needs a real server, so it isn't a JMH benchmark (which would fail whenever the benchmarks are run without one);
+ * run it on its own from the benchmarks jar:
+ *
+ *     java -cp target/benchmarks.jar bench.ImportThroughput "jdbc:mysql://localhost:3306/test?user=me&password=secret" [rows] [rounds] [threads] [batch]
+ *
+ * It makes a table called import_throughput in that database (dropping one that's already there), writes a CSV file of made-up rows
+ * with the same columns, and imports the file into the emptied table with each way in turn, the same as 'Import' does it.
+ * The first round is thrown away, as the server and the JIT are still warming up. Every row is made from its number alone,
+ * so each run imports exactly the same file. The table is dropped at the end.
+ */
+public class ImportThroughput
+{
+
+	private static final String TABLE = "import_throughput";
+
+	// the options ServerComm connects with, so the INSERTs are sent the way the program sends them
+	private static final String OPTIONS = "useServerPrepStmts=true&useCursorFetch=true&rewriteBatchedStatements=true&allowLoadLocalInfile=true";
+
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 1)
+		{
+			System.out.println("Usage: ImportThroughput jdbc-url [rows (200000)] [rounds (5)] [threads (1)] [batch (1000)]");
+			System.exit(2);
+		}
+
+		String url = args[0] + (args[0].contains("?") ? "&" : "?") + OPTIONS;
+		int rows = (args.length > 1) ? Integer.parseInt(args[1]) : 200000;
+		int rounds = (args.length > 2) ? Math.max(1, Integer.parseInt(args[2])) : 5;
+		int threads = (args.length > 3) ? Integer.parseInt(args[3]) : 1;
+		int batch = (args.length > 4) ? Integer.parseInt(args[4]) : 1000;
+
+		Class.forName("com.mysql.jdbc.Driver");
+		ImportAccess access = Bridge.load(ImportAccess.class, "ImportAccessImpl");
+
+		File file = File.createTempFile("import-throughput", ".csv");
+		file.deleteOnExit();
+		writeRows(file, rows);
+
+		System.out.println(rows + " rows (" + (file.length() / 1024) + " KB of CSV), " + threads + " connections, batches of " + batch + ", "
+				+ rounds + " rounds after one to warm up");
+
+		double[] insert = new double[rounds];
+		double[] load = new double[rounds];
+		try
+		{
+			run("CREATE TABLE " + TABLE + " (id INT NOT NULL PRIMARY KEY, name VARCHAR(40) NOT NULL, qty INT NOT NULL, price DECIMAL(10,2) NOT NULL,"
+					+ " made DATETIME NOT NULL, kind ENUM('new','used','refurbished') NOT NULL, note VARCHAR(100) NULL)", url, true);
+
+			for (int r = -1; r < rounds; r++)
+			{
+				double i = importOnce(access, url, file, false, batch, threads, rows);
+				double l = importOnce(access, url, file, true, batch, threads, rows);
+
+				if (r >= 0)
+				{
+					insert[r] = i;
+					load[r] = l;
+					System.out.println(String.format("round %d: INSERT %,.0f rows/sec, LOAD DATA %,.0f rows/sec", r + 1, i, l));
+				}
+			}
+		}
+		finally
+		{
+			run("DROP TABLE IF EXISTS " + TABLE, url, false);
+			new File(file.getPath() + ".rejected").delete();
+			file.delete();
+		}
+
+		double mi = median(insert);
+		double ml = median(load);
+		System.out.println(String.format("median: INSERT %,.0f rows/sec, LOAD DATA %,.0f rows/sec (%.2fx)", mi, ml, ml / mi));
+	}
+
+	/**
+	 * Empty the table, then import the file into it.
+	 * @return The rows added per second.
+	 */
+	private static double importOnce(ImportAccess access, String url, File file, boolean loadData, int batch, int threads, int rows) throws Exception
+	{
+		run("TRUNCATE TABLE " + TABLE, url, false);
+
+		double[] result = access.importFile(url, TABLE, file, loadData, batch, threads);
+		if (result[0] != rows)
+		{
+			throw new IllegalStateException((long) result[0] + " of " + rows + " rows were added.");
+		}
+		return result[0] / result[1];
+	}
+
+	/**
+	 * Write the rows to import. Each one is made from its number, so the file is the same every time.
+	 * Every so often a name has a comma in it, so it's quoted.
+	 */
+	private static void writeRows(File file, int rows) throws IOException
+	{
+		String[] kinds = { "new", "used", "refurbished" };
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8")), 64 * 1024);
+		try
+		{
+			out.write("id,name,qty,price,made,kind,note\n");
+			for (int i = 1; i <= rows; i++)
+			{
+				long h = i * 2654435761L; // spreads the numbers out, so the values aren't all in order
+				out.write(Integer.toString(i));
+				out.write((i % 50 == 0) ? ",\"Item " + i + ", large\"," : ",Item " + i + ",");
+				out.write(Long.toString(h % 1000));
+				out.write("," + (h % 100000) / 100 + "." + String.format("%02d", h % 100) + ",");
+				out.write(String.format("20%02d%02d%02d%02d%02d%02d", 10 + h % 10, 1 + h % 12, 1 + h % 28, h % 24, h % 60, (h / 60) % 60)); // YYYYMMDDHHMMSS
+				out.write("," + kinds[(int) (h % 3)] + ",");
+				out.write("note " + (h % 997));
+				out.write('\n');
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	private static void run(String sql, String url, boolean dropFirst) throws SQLException
+	{
+		Connection conn = DriverManager.getConnection(url);
+		try
+		{
+			Statement stmt = conn.createStatement();
+			if (dropFirst)
+			{
+				stmt.execute("DROP TABLE IF EXISTS " + TABLE);
+			}
+			stmt.execute(sql);
+			stmt.close();
+		}
+		finally
+		{
+			conn.close();
+		}
+	}
+
+	private static double median(double[] values)
+	{
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int n = sorted.length;
+		return (n % 2 == 1) ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+	}
+
+}
@@ -0,0 +1,129 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Checking values of ENUM and SET columns with many members. The values are members from all through the list, so a lookup that goes
+ * through the members one by one has to go through half of them on average; listContains does just that, the way isValidValue used to.
+ * A SET can't have more than 64 members, so the SET column has at most that many.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemberLookupBenchmark
+{
+
+	static final int VALUES = 64;
+
+	@Param({ "4", "64", "300" })
+	public int members;
+
+	private ColumnAccess access;
+	private Object enumColumn;
+	private Object setColumn;
+	private List<String> list;
+	private String[] enumValues;
+	private String[] setValues;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		access = Bridge.load(ColumnAccess.class, "ColumnAccessImpl");
+
+		list = new ArrayList<String>();
+		StringBuilder enumType = new StringBuilder("enum(");
+		StringBuilder setType = new StringBuilder("set(");
+		int setMembers = Math.min(members, 64);
+
+		for (int m = 0; m < members; m++)
+		{
+			list.add("member_" + m);
+			enumType.append(m == 0 ? "'" : ",'").append("member_").append(m).append("'");
+			if (m < setMembers)
+			{
+				setType.append(m == 0 ? "'" : ",'").append("member_").append(m).append("'");
+			}
+		}
+
+		enumColumn = access.column(enumType.append(")").toString(), false);
+		setColumn = access.column(setType.append(")").toString(), false);
+
+		enumValues = new String[VALUES];
+		setValues = new String[VALUES];
+		for (int i = 0; i < VALUES; i++)
+		{
+			enumValues[i] = list.get((i * 37) % members);
+			setValues[i] = list.get((i * 37) % setMembers) + "," + list.get((i * 11 + 5) % setMembers) + "," + list.get((i * 7 + 3) % setMembers);
+		}
+
+		// make sure every value is valid, so each check goes all the way through
+		for (int i = 0; i < VALUES; i++)
+		{
+			if (!access.isValidValue(enumColumn, enumValues[i]) || !access.isValidValue(setColumn, setValues[i]))
+			{
+				throw new IllegalStateException("\"" + enumValues[i] + "\" or \"" + setValues[i] + "\" should be valid.");
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void listContains(Blackhole bh)
+	{
+		for (String v : enumValues)
+		{
+			bh.consume(list.contains(v));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void enumValue(Blackhole bh)
+	{
+		for (String v : enumValues)
+		{
+			bh.consume(access.isValidValue(enumColumn, v));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void setSplitContains(Blackhole bh)
+	{
+		for (String v : setValues)
+		{
+			bh.consume(list.containsAll(Arrays.asList(v.split(","))));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void setValue(Blackhole bh)
+	{
+		for (String v : setValues)
+		{
+			bh.consume(access.isValidValue(setColumn, v));
+		}
+	}
+
+}
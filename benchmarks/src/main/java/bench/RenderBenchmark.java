@@ -0,0 +1,114 @@
+package bench;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.rowset.CachedRowSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Showing a result on the console: TableRenderer against the one println per value that 'Display' and Direct SQL mode used to do.
+ * The output goes to the null device through a PrintStream set up like System.out (buffered, flushing on every line break),
+ * so the cost of each write reaching the operating system is counted, but not the cost of a terminal drawing it.
+ * The score is rows shown per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark
+{
+
+	static final int ROWS = 1000;
+
+	@Param({ "printCells", "render" })
+	public String printer;
+
+	@Param({ "4", "16" })
+	public int columns;
+
+	private static final int[] TYPES = { Types.INTEGER, Types.VARCHAR, Types.DATE, Types.DECIMAL };
+	private static final String[] WORDS = { "Johnson", "Smith", "a somewhat longer value than the others", "", "Lee" };
+
+	private ConsoleAccess access;
+	private CachedRowSet result;
+	private PrintStream out;
+	private boolean render;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		access = Bridge.load(ConsoleAccess.class, "ConsoleAccessImpl");
+		render = printer.equals("render");
+
+		String[] names = new String[columns];
+		int[] types = new int[columns];
+		for (int c = 0; c < columns; c++)
+		{
+			names[c] = "column" + c;
+			types[c] = TYPES[c % TYPES.length];
+		}
+
+		String[][] rows = new String[ROWS][columns];
+		for (int r = 0; r < ROWS; r++)
+		{
+			for (int c = 0; c < columns; c++)
+			{
+				switch (types[c])
+				{
+				case Types.INTEGER:
+					rows[r][c] = Integer.toString(r * 7 + c);
+					break;
+				case Types.VARCHAR:
+					rows[r][c] = WORDS[(r + c) % WORDS.length];
+					break;
+				case Types.DATE:
+					rows[r][c] = (r % 10 == 0) ? null : "2015-0" + (1 + r % 9) + "-1" + (r % 10);
+					break;
+				default:
+					rows[r][c] = (r % 100) + "." + (r % 10) + "0";
+					break;
+				}
+			}
+		}
+
+		result = ResultRows.create(names, types, rows);
+
+		File nul = new File(File.separatorChar == '\\' ? "NUL" : "/dev/null");
+		out = new PrintStream(new BufferedOutputStream(new FileOutputStream(nul), 8192), true);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		out.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public long show() throws Exception
+	{
+		result.beforeFirst();
+		return render ? access.render(result, out) : access.printCells(result, out);
+	}
+
+}
@@ -0,0 +1,63 @@
+package bench;
+
+import java.sql.SQLException;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+/**
+ * Builds ResultSets with made-up rows, without needing a server.
+ */
+public final class ResultRows
+{
+
+	private ResultRows() { }
+
+	/**
+	 * Create a ResultSet.
+	 * @param columns The name of each column.
+	 * @param types The java.sql.Types type of each column. The values are still set as strings.
+	 * @param rows The values of each row, in column order. A null value is NULL.
+	 * @return The ResultSet, positioned before the first row. Call beforeFirst() on it to read it again.
+	 * @throws SQLException If the ResultSet couldn't be created.
+	 */
+	public static CachedRowSet create(String[] columns, int[] types, String[][] rows) throws SQLException
+	{
+		RowSetMetaDataImpl meta = new RowSetMetaDataImpl();
+		meta.setColumnCount(columns.length);
+		for (int i = 0; i < columns.length; i++)
+		{
+			meta.setColumnName(i + 1, columns[i]);
+			meta.setColumnLabel(i + 1, columns[i]);
+			meta.setColumnType(i + 1, types[i]);
+		}
+
+		CachedRowSet rs = RowSetProvider.newFactory().createCachedRowSet();
+		rs.setMetaData(meta);
+
+		// the row set puts each inserted row before the ones already in it, so go through them backwards to keep them in order
+		for (int r = rows.length - 1; r >= 0; r--)
+		{
+			String[] row = rows[r];
+			rs.moveToInsertRow();
+			for (int i = 0; i < columns.length; i++)
+			{
+				if (row[i] == null)
+				{
+					rs.updateNull(i + 1);
+				}
+				else
+				{
+					rs.updateString(i + 1, row[i]);
+				}
+			}
+			rs.insertRow();
+			rs.moveToCurrentRow();
+		}
+
+		rs.beforeFirst();
+		return rs;
+	}
+
+}
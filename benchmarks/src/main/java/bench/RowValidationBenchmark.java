@@ -0,0 +1,126 @@
+package bench;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Checking whole rows of a table with columns of several types, the way 'BulkAdd' and 'Import' do:
+ * one isValidValue call per value through the list of columns, against one RowValidator.check call per row.
+ * Each invocation checks ROWS rows, so the score is rows checked per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowValidationBenchmark
+{
+
+	static final int ROWS = 1024;
+
+	// the share of rows with one bad value in them, in percent
+	@Param({ "0", "10" })
+	public int badPercent;
+
+	private static final String[][] TABLE = {
+		{ "id", "int(11)", "NO", "PRI" },
+		{ "name", "varchar(40)", "YES", "" },
+		{ "born", "date", "YES", "" },
+		{ "amount", "decimal(10,2)", "YES", "" },
+		{ "size", "enum('small','medium','large')", "YES", "" },
+		{ "seen", "datetime", "YES", "" },
+		{ "total", "bigint(20) unsigned", "YES", "" },
+		{ "ratio", "double", "YES", "" },
+	};
+
+	private ColumnAccess access;
+	private Object columns;
+	private Object validator;
+	private String[][] rows;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		access = Bridge.load(ColumnAccess.class, "ColumnAccessImpl");
+		columns = access.buildColumnData(DescribeRows.create(TABLE));
+		validator = access.rowValidator(columns);
+
+		Random r = new Random(42);
+		String[] sizes = { "small", "medium", "large" };
+		rows = new String[ROWS][];
+
+		for (int i = 0; i < ROWS; i++)
+		{
+			rows[i] = new String[] {
+				Integer.toString(i + 1),
+				"Name " + r.nextInt(100000),
+				(1950 + r.nextInt(60)) + "-0" + (1 + r.nextInt(9)) + "-1" + r.nextInt(9),
+				r.nextInt(100000) + "." + (10 + r.nextInt(90)),
+				sizes[r.nextInt(3)],
+				"201506301" + r.nextInt(10) + "3045",
+				Long.toString(Math.abs(r.nextLong())),
+				Double.toString(r.nextDouble()),
+			};
+
+			if (r.nextInt(100) < badPercent)
+			{
+				rows[i][r.nextInt(TABLE.length)] = "not valid for anything but text, as it's longer than forty characters";
+			}
+		}
+
+		// make sure both ways agree on every row, and that only the rows made bad on purpose are
+		int bad = 0;
+		for (String[] row : rows)
+		{
+			if (access.checkRow(validator, row) != 0)
+			{
+				bad++;
+			}
+			if ((access.checkCells(columns, row) < 0) != (access.checkRow(validator, row) == 0))
+			{
+				throw new IllegalStateException("The two ways of checking disagree on: " + Arrays.toString(row));
+			}
+		}
+		if (badPercent == 0 && bad != 0)
+		{
+			throw new IllegalStateException(bad + " of the rows meant to be valid aren't.");
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void perValue(Blackhole bh)
+	{
+		for (String[] row : rows)
+		{
+			bh.consume(access.checkCells(columns, row));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void rowValidator(Blackhole bh)
+	{
+		for (String[] row : rows)
+		{
+			bh.consume(access.checkRow(validator, row));
+		}
+	}
+
+}
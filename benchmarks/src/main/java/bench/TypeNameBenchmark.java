@@ -0,0 +1,68 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * ColumnData.getTypeFromString, over every type name it knows and one it doesn't.
+ * The score is names looked up per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TypeNameBenchmark
+{
+
+	static final int NAMES = 33;
+
+	private static final String[] KNOWN = {
+		"BIT", "BOOL", "BOOLEAN", "TINYINT", "SMALLINT", "MEDIUMINT", "INT", "INTEGER",
+		"BIGINT", "DOUBLE", "REAL", "FLOAT", "DECIMAL", "NUMERIC", "DATE", "YEAR",
+		"TIME", "DATETIME", "TIMESTAMP", "CHAR", "VARCHAR", "LONGVARCHAR", "TINYBLOB", "BLOB",
+		"MEDIUMBLOB", "LONGBLOB", "TINYTEXT", "TEXT", "MEDIUMTEXT", "LONGTEXT", "BINARY", "VARBINARY",
+		"GEOMETRY",
+	};
+
+	private ColumnAccess access;
+	private String[] names;
+
+	@Setup
+	public void setUp()
+	{
+		access = Bridge.load(ColumnAccess.class, "ColumnAccessImpl");
+
+		names = KNOWN.clone();
+
+		// the score is per name, so it's only right if NAMES is kept in step with the list
+		if (names.length != NAMES)
+		{
+			throw new IllegalStateException("NAMES is " + NAMES + ", but there are " + names.length + " names.");
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NAMES)
+	public void getTypeFromString(Blackhole bh)
+	{
+		for (String name : names)
+		{
+			bh.consume(access.getTypeFromString(name));
+		}
+	}
+
+}
@@ -0,0 +1,151 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * ColumnData.isValidValue, for a column of every ColumnDataType, with values that are valid and values that aren't.
+ * Each invocation checks VALUES values, so the score is values checked per second.
+ * Run with "-prof gc" to see how much each check allocates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark
+{
+
+	static final int VALUES = 4;
+
+	@Param({ "VarChar", "Text", "Blob", "Bit", "Binary", "Short", "Integer", "Double", "Long", "Float",
+			"Byte", "Decimal", "Date", "Time", "DateTime", "Enum", "Set" })
+	public String type;
+
+	@Param({ "valid", "invalid" })
+	public String values;
+
+	private ColumnAccess access;
+	private Object column;
+	private String[] samples;
+
+	// The column type "DESCRIBE" shows for each ColumnDataType, then VALUES valid values and VALUES invalid ones.
+	// The columns allow NULL, so an empty value is invalid for all of them (TEXT and BLOB have nothing else that's invalid).
+	private static final String[][] CASES = {
+		{ "VarChar", "varchar(20)",
+			"Bob", "hello world", "x", "12345678901234567890",
+			"", "this is longer than twenty", "a value that is much too long", "123456789012345678901" },
+		{ "Text", "text",
+			"some text", "x", "A longer value, like a paragraph of a comment someone left on a post.", "123",
+			"", "", "", "" },
+		{ "Blob", "blob",
+			"GIF89a", "x", "0123456789abcdef0123456789abcdef", "bytes",
+			"", "", "", "" },
+		{ "Bit", "bit(8)",
+			"1", "0", "10101010", "11",
+			"2", "101010101", "abc", "" },
+		{ "Binary", "binary(16)",
+			"abc", "0123456789abcdef", "x", "bytes",
+			"", "0123456789abcdefg", "seventeen chars!!", "much too long for sixteen" },
+		{ "Short", "smallint(6)",
+			"0", "-32768", "1234", "32767",
+			"32768", "12a", "-", "" },
+		{ "Integer", "int(11)",
+			"0", "-2147483648", "123456", "2147483647",
+			"2147483648", "1.5", "abc", "" },
+		{ "Double", "double",
+			"0", "-1.5e10", "3.14159", "12345.678",
+			"1.2.3", "e5", "abc", "" },
+		{ "Long", "bigint(20)",
+			"0", "-9223372036854775808", "1234567890123", "42",
+			"9223372036854775808", "12 34", "0x10", "" },
+		{ "Float", "float",
+			"1.5", "-0.25", "1e3", "100",
+			"1,5", "--1", "one", "" },
+		{ "Byte", "tinyint(4)",
+			"0", "-128", "127", "12",
+			"128", "-129", "a", "" },
+		{ "Decimal", "decimal(8,2)",
+			"12.34", "-5", "0.5", "99999.99",
+			"abc", "-", ".", "" },
+		{ "Date", "date",
+			"2015-06-30", "15-06-30", "20150630", "150630",
+			"2015-13-30", "2015/06/3", "June 30", "" },
+		{ "Time", "time",
+			"12:30:45", "123045", "2 12:30:45", "12:30",
+			"25:61:00", "12:3", "noon", "" },
+		{ "DateTime", "datetime",
+			"20150630123045", "15-06-30 12:30:45", "150630123045", "15-06-30T12:30:45",
+			"2015-06-30", "15-06-30 25:00:00", "not a date and time", "" },
+		{ "Enum", "enum('small','medium','large')",
+			"small", "medium", "large", "small",
+			"huge", "Small", "small,large", "" },
+		{ "Set", "set('x','y','z')",
+			"x", "x,y", "x,y,z", "z,",
+			"w", "x,w", "x y", "" },
+	};
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		access = Bridge.load(ColumnAccess.class, "ColumnAccessImpl");
+
+		String[] found = null;
+		for (String[] c : CASES)
+		{
+			if (c[0].equals(type))
+			{
+				found = c;
+			}
+		}
+
+		if (found == null)
+		{
+			throw new IllegalStateException("There are no sample values for " + type + ".");
+		}
+
+		column = access.column(found[1], false);
+		if (!access.typeName(column).equals(type))
+		{
+			throw new IllegalStateException(found[1] + " is " + access.typeName(column) + ", not " + type + ".");
+		}
+
+		boolean valid = values.equals("valid");
+		samples = new String[VALUES];
+		System.arraycopy(found, valid ? 2 : 2 + VALUES, samples, 0, VALUES);
+
+		// make sure the results being measured are the ones expected
+		for (String s : samples)
+		{
+			if (access.isValidValue(column, s) != valid)
+			{
+				throw new IllegalStateException("\"" + s + "\" should be " + values + " for " + found[1] + ".");
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void isValidValue(Blackhole bh)
+	{
+		for (String s : samples)
+		{
+			bh.consume(access.isValidValue(column, s));
+		}
+	}
+
+}
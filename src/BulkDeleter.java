@@ -0,0 +1,312 @@
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deletes rows from a table a chunk at a time, rather than with one DELETE that holds its locks (and fills the server's undo log)
+ * until every row is gone. Rows can be deleted by a list of values of one column, sent as "DELETE ... WHERE col IN (?, ?, ...)" a chunk
+ * of values at a time, or by a single value that matches many rows, sent as "DELETE ... WHERE col = ? LIMIT n" over and over until
+ * fewer than n rows are deleted. Each chunk is committed on its own (unless a transaction is open on the connection), and an optional
+ * pause between chunks gives anything else writing to the table a turn at the locks.
+ */
+public class BulkDeleter implements AutoCloseable
+{
+
+	private final Connection conn;
+	private final String table;
+	private final ColumnData col;
+	private final int chunkSize;
+	private final long pauseMillis;
+
+	private PreparedStatement full = null; // the statement for a whole chunk of values, prepared once and reused
+	private final List<Object> values = new ArrayList<Object>(); // values waiting to be sent
+
+	private long deleted = 0;
+	private long chunks = 0;
+	private long rejected = 0;
+	private long started = 0;
+	private long finished = 0;
+
+	private QueryMetrics metrics = null;
+	private PrintStream progress = null;
+	private long progressInterval = 0;
+	private long lastShown = 0; // when the progress was last shown
+
+	/**
+	 * Start deleting rows from a table.
+	 * @param conn The connection to send the deletes over. It is only used by this BulkDeleter until it is closed.
+	 * @param table The name of the table.
+	 * @param col The column whose values say which rows to delete. An index on it keeps each chunk quick.
+	 * @param chunkSize The most values in each IN list, or rows deleted by each slice.
+	 * @param pauseMillis How long to wait between chunks, in milliseconds. 0 to not wait.
+	 */
+	public BulkDeleter(Connection conn, String table, ColumnData col, int chunkSize, long pauseMillis)
+	{
+		if (chunkSize < 1)
+		{
+			throw new IllegalArgumentException("The chunk size must be at least 1.");
+		}
+
+		this.conn = conn;
+		this.table = table;
+		this.col = col;
+		this.chunkSize = chunkSize;
+		this.pauseMillis = pauseMillis;
+	}
+
+	/**
+	 * Record how long each chunk takes, and how many rows it deletes. Errors aren't recorded here, as whoever called shows them.
+	 * @param metrics Where to record them, or null to not record them.
+	 */
+	public void setMetrics(QueryMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Show the number of rows deleted so far every so often.
+	 * @param progress Where to show it, or null to not show it.
+	 * @param millis The least time between showing it, in milliseconds.
+	 */
+	public void setProgress(PrintStream progress, long millis)
+	{
+		this.progress = progress;
+		this.progressInterval = millis;
+	}
+
+	/**
+	 * Check a value and, if it's valid for the column, add it to the current chunk. The chunk is sent to the server once it's full.
+	 * @param value The value, as the user typed it.
+	 * @return True if the value was added, false if it isn't valid for the column.
+	 * @throws SQLException If the chunk was sent to the server and failed.
+	 */
+	public boolean addValue(String value) throws SQLException
+	{
+		if (started == 0)
+		{
+			start();
+		}
+
+		// the value is checked as it's read, rather than checked and then read again
+		Object param = col.read(value);
+		if (param == ColumnData.INVALID)
+		{
+			rejected++;
+			return false;
+		}
+
+		values.add(param);
+
+		if (values.size() >= chunkSize)
+		{
+			flush();
+		}
+		return true;
+	}
+
+	/**
+	 * Send the values in the current chunk to the server, even if the chunk isn't full.
+	 * @throws SQLException If the server couldn't delete the rows. The chunk is emptied either way.
+	 */
+	public void flush() throws SQLException
+	{
+		if (values.isEmpty())
+		{
+			return;
+		}
+
+		PreparedStatement stmt;
+		boolean partial = (values.size() < chunkSize);
+
+		if (partial)
+		{
+			stmt = conn.prepareStatement(inList(values.size())); // only the last chunk is short, so it isn't kept
+		}
+		else
+		{
+			if (full == null)
+			{
+				full = conn.prepareStatement(inList(chunkSize));
+			}
+			stmt = full;
+		}
+
+		try
+		{
+			for (int i = 0; i < values.size(); i++)
+			{
+				stmt.setObject(i + 1, values.get(i));
+			}
+
+			// values already deleted by a chunk before (or that were never there) just don't match anything
+			send(stmt);
+		}
+		finally
+		{
+			values.clear();
+
+			if (partial)
+			{
+				stmt.close();
+			}
+		}
+	}
+
+	/**
+	 * Send any values left, and stop the clock.
+	 * @throws SQLException If the rows couldn't be deleted.
+	 */
+	public void finish() throws SQLException
+	{
+		flush();
+		finished = System.nanoTime();
+	}
+
+	/**
+	 * Delete every row with a value in the column, a slice of chunkSize rows at a time, until there are none left.
+	 * @param value The value, as the user typed it.
+	 * @return True if the rows were deleted, false if the value isn't valid for the column, in which case nothing is.
+	 * @throws SQLException If a slice couldn't be deleted. The slices before it stay deleted.
+	 */
+	public boolean deleteMatching(String value) throws SQLException
+	{
+		start();
+
+		// no ORDER BY, so the server can delete whichever matching rows it finds first in the column's index
+		try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM " + table + " WHERE " + col.getName() + "=? LIMIT " + chunkSize))
+		{
+			if (!col.bind(stmt, 1, value))
+			{
+				rejected++;
+				finished = System.nanoTime();
+				return false;
+			}
+
+			int count;
+			do
+			{
+				count = send(stmt);
+			}
+			while (count == chunkSize); // a short slice means there was nothing left after it
+		}
+
+		finished = System.nanoTime();
+		return true;
+	}
+
+	/**
+	 * Close the statement used for whole chunks. Values that haven't been sent with finish are dropped.
+	 */
+	@Override
+	public void close()
+	{
+		if (full != null)
+		{
+			try { full.close(); } catch (SQLException e) { } // ignore
+		}
+	}
+
+	/**
+	 * Gets the statement a chunk with this many values is sent as.
+	 */
+	private String inList(int count)
+	{
+		StringBuilder sb = new StringBuilder("DELETE FROM ").append(table).append(" WHERE ").append(col.getName()).append(" IN (");
+		for (int i = 0; i < count; i++)
+		{
+			sb.append(i == 0 ? "?" : ", ?");
+		}
+		return sb.append(")").toString();
+	}
+
+	private void start()
+	{
+		started = System.nanoTime();
+		lastShown = started;
+	}
+
+	/**
+	 * Send one chunk, after pausing if one has been sent already.
+	 * @return The number of rows it deleted.
+	 */
+	private int send(PreparedStatement stmt) throws SQLException
+	{
+		if (chunks > 0 && pauseMillis > 0)
+		{
+			try
+			{
+				Thread.sleep(pauseMillis);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted while deleting rows", "70100", e);
+			}
+		}
+
+		long start = System.nanoTime();
+		int count = stmt.executeUpdate();
+		long now = System.nanoTime();
+
+		chunks++;
+		deleted += count;
+
+		if (metrics != null)
+		{
+			metrics.recordTime(QueryMetrics.Kind.DELETE, now - start);
+			metrics.recordRowsChanged(QueryMetrics.Kind.DELETE, count);
+		}
+
+		if (progress != null && now - lastShown >= progressInterval * 1000000L)
+		{
+			lastShown = now;
+			progress.println(deleted + " rows deleted in " + chunks + " chunks, " + String.format("%.0f", getRowsPerSecond()) + " rows/sec");
+		}
+
+		return count;
+	}
+
+	/**
+	 * Gets the number of rows deleted.
+	 */
+	public long getRowsDeleted() {
+		return deleted;
+	}
+
+	/**
+	 * Gets the number of chunks sent.
+	 */
+	public long getChunkCount() {
+		return chunks;
+	}
+
+	/**
+	 * Gets the number of values that weren't valid for the column, and were skipped.
+	 */
+	public long getValuesRejected() {
+		return rejected;
+	}
+
+	/**
+	 * Gets the number of seconds from the first value (or slice) to finishing, or to now if it hasn't finished.
+	 */
+	public double getElapsedSeconds() {
+		if (started == 0)
+		{
+			return 0;
+		}
+		return ((finished != 0 ? finished : System.nanoTime()) - started) / 1e9;
+	}
+
+	/**
+	 * Gets the number of rows deleted per second.
+	 */
+	public double getRowsPerSecond() {
+		double secs = getElapsedSeconds();
+		return (secs > 0) ? deleted / secs : 0;
+	}
+
+}
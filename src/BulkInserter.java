@@ -0,0 +1,292 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Adds many rows to a table by sending them to the server in batches, rather than one INSERT (and one round trip) per row.
+ * When the connection string has "rewriteBatchedStatements=true", each batch is sent as a single multi-row INSERT.
+ */
+public class BulkInserter implements AutoCloseable
+{
+
+	private final Connection conn;
+	private final List<ColumnData> cols;
+	private final int batchSize;
+	private final boolean transaction;
+	private final PreparedStatement stmt;
+	private final String sql;
+
+	private int pending = 0; // rows added to the batch but not yet sent
+	private long inserted = 0;
+	private long rejected = 0;
+	private long batches = 0;
+	private long started = 0;
+	private long finished = 0;
+
+	private QueryMetrics metrics = null; // where to record how long each batch takes, if anywhere
+
+	/**
+	 * Start adding rows to a table.
+	 * @param conn The connection to send the rows over. It is only used by this BulkInserter until it is closed.
+	 * @param table The name of the table to add rows to.
+	 * @param cols The columns of the table, as returned by ColumnData.buildColumnData. Each row has a value for every one of them, in this order.
+	 * @param batchSize The number of rows to send to the server at a time.
+	 * @param transaction If true, all rows are added in one transaction, which is only committed by finish().
+	 * @throws SQLException If the INSERT statement could not be prepared.
+	 */
+	public BulkInserter(Connection conn, String table, List<ColumnData> cols, int batchSize, boolean transaction) throws SQLException
+	{
+		if (batchSize < 1)
+		{
+			throw new IllegalArgumentException("The batch size must be at least 1.");
+		}
+
+		this.conn = conn;
+		this.cols = cols;
+		this.batchSize = batchSize;
+		this.transaction = transaction;
+
+		// INSERT INTO table (a, b, c) VALUES (?, ?, ?)
+		StringBuilder names = new StringBuilder();
+		StringBuilder marks = new StringBuilder();
+		for (ColumnData col : cols)
+		{
+			if (names.length() > 0)
+			{
+				names.append(", ");
+				marks.append(", ");
+			}
+			names.append(col.getName());
+			marks.append('?');
+		}
+
+		this.sql = "INSERT INTO " + table + " (" + names + ") VALUES (" + marks + ")";
+
+		if (transaction)
+		{
+			conn.setAutoCommit(false);
+		}
+
+		// with useServerPrepStmts, each rewritten batch would be prepared on the server again (it's a different multi-row INSERT every time),
+		// so the driver fills in the values itself for this one statement
+		if (conn.isWrapperFor(com.mysql.jdbc.Connection.class))
+		{
+			this.stmt = conn.unwrap(com.mysql.jdbc.Connection.class).clientPrepareStatement(sql);
+		}
+		else
+		{
+			this.stmt = conn.prepareStatement(sql);
+		}
+	}
+
+	/**
+	 * Check a row of values and, if they are all valid, add it to the current batch.
+	 * The batch is sent to the server once it is full.
+	 * @param values The string representation of the value for each column, in the same order as the columns.
+	 * @return -1 if the row was added. Otherwise, the zero-based index of the first column with an invalid value.
+	 * If the row doesn't have exactly one value for each column, the number of columns.
+	 * @throws SQLException If the batch was sent to the server and failed.
+	 */
+	public int addRow(String[] values) throws SQLException
+	{
+		if (started == 0)
+		{
+			started = System.nanoTime();
+		}
+
+		if (values.length != cols.size())
+		{
+			rejected++;
+			return cols.size();
+		}
+
+		// each value is checked as it's read for its parameter; the ones bound before a bad value are set again by the next row
+		for (int i = 0; i < values.length; i++)
+		{
+			if (!cols.get(i).bind(stmt, i + 1, values[i]))
+			{
+				rejected++;
+				return i;
+			}
+		}
+
+		addBatch();
+		return -1;
+	}
+
+	/**
+	 * Add a row of values that have already been checked and read with RowValidator.read to the current batch.
+	 * The batch is sent to the server once it is full.
+	 * @param params The object read gave for each column's value, in the same order as the columns. None of them can be ColumnData.INVALID.
+	 * @throws SQLException If the batch was sent to the server and failed.
+	 */
+	public void addParameters(Object[] params) throws SQLException
+	{
+		if (started == 0)
+		{
+			started = System.nanoTime();
+		}
+
+		for (int i = 0; i < params.length; i++)
+		{
+			ColumnData.bindParameter(stmt, i + 1, params[i]);
+		}
+
+		addBatch();
+	}
+
+	/**
+	 * Add the row whose parameters have been set to the current batch, and send the batch once it's full.
+	 */
+	private void addBatch() throws SQLException
+	{
+		stmt.addBatch();
+		pending++;
+
+		if (pending >= batchSize)
+		{
+			flush();
+		}
+	}
+
+	/**
+	 * Record how long each batch takes, and how many rows it adds. Errors aren't recorded here, as whoever called flush shows them.
+	 * @param metrics Where to record them, or null to not record them.
+	 */
+	public void setMetrics(QueryMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Send the rows in the current batch to the server, even if the batch isn't full.
+	 * @throws SQLException If the server could not add the rows. The batch is emptied either way.
+	 */
+	public void flush() throws SQLException
+	{
+		if (pending == 0)
+		{
+			return;
+		}
+
+		int[] counts;
+		long start = System.nanoTime();
+		try
+		{
+			counts = stmt.executeBatch();
+		}
+		catch (SQLException e)
+		{
+			// none of the rows in a failed batch are sent again with the next one
+			stmt.clearBatch();
+			pending = 0;
+			throw e;
+		}
+		batches++;
+
+		long before = inserted;
+		for (int count : counts)
+		{
+			// a rewritten batch reports SUCCESS_NO_INFO (-2) for each row rather than a count
+			inserted += (count == PreparedStatement.SUCCESS_NO_INFO) ? 1 : Math.max(count, 0);
+		}
+
+		if (metrics != null)
+		{
+			metrics.recordTime(QueryMetrics.Kind.BATCH, System.nanoTime() - start);
+			metrics.recordRowsChanged(QueryMetrics.Kind.BATCH, inserted - before);
+		}
+
+		pending = 0;
+	}
+
+	/**
+	 * Send any remaining rows, and commit them if this was started with a transaction.
+	 * @throws SQLException If the rows could not be added or committed.
+	 */
+	public void finish() throws SQLException
+	{
+		flush();
+
+		if (transaction)
+		{
+			conn.commit();
+		}
+
+		finished = System.nanoTime();
+	}
+
+	/**
+	 * Close the statement. If this was started with a transaction that hasn't been committed by finish(), it is rolled back,
+	 * so either all rows are added or none of them are.
+	 */
+	@Override
+	public void close()
+	{
+		try { stmt.close(); } catch (SQLException e) { } // ignore
+
+		if (transaction)
+		{
+			try
+			{
+				if (finished == 0)
+				{
+					conn.rollback();
+					inserted = 0;
+				}
+				conn.setAutoCommit(true);
+			}
+			catch (SQLException e) { } // ignore, the connection will be checked before it's used again
+		}
+	}
+
+	/**
+	 * Get the INSERT statement the rows are sent with.
+	 */
+	public String getStatement() {
+		return sql;
+	}
+
+	/**
+	 * Get the number of rows the server has added so far.
+	 */
+	public long getRowsInserted() {
+		return inserted;
+	}
+
+	/**
+	 * Get the number of rows that were not added because they had an invalid value.
+	 */
+	public long getRowsRejected() {
+		return rejected;
+	}
+
+	/**
+	 * Get the number of batches sent to the server so far.
+	 */
+	public long getBatchCount() {
+		return batches;
+	}
+
+	/**
+	 * Get the number of seconds between the first row being added and finish() (or now, if it hasn't been called).
+	 */
+	public double getElapsedSeconds() {
+		if (started == 0)
+		{
+			return 0;
+		}
+		long end = (finished == 0) ? System.nanoTime() : finished;
+		return (end - started) / 1000000000.0;
+	}
+
+	/**
+	 * Get the number of rows added per second.
+	 */
+	public double getRowsPerSecond() {
+		double secs = getElapsedSeconds();
+		return secs == 0 ? 0 : inserted / secs;
+	}
+
+}
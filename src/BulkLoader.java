@@ -0,0 +1,315 @@
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Adds many rows to a table with "LOAD DATA LOCAL INFILE", the server's own bulk loader, which reads rows much faster than it runs INSERTs.
+ * The rows are written into memory in the loader's tab separated format, in the order of the table's columns, and handed to the driver as
+ * the "file" to send, so nothing is written to disk. Each batch is sent as one LOAD DATA statement.
+ * Each value is written as the number, date or time that a batch of INSERTs would bind for it (see ColumnData.read), rather than as
+ * it was typed, as the loader doesn't read some of what isValidValue lets through ("0x1p3", "1.5f", "1,000") the way Java does.
+ * A number that can't be read at all (such as "NaN", or "12abc" in a DECIMAL column) turns the row down, rather than being stored as 0.
+ * The server treats LOCAL loads as if they had IGNORE: a row with a duplicate key, or a value it has to cut short or fill in to fit, gives a warning
+ * rather than an error, and the rest of the rows are still added. So each batch is loaded in a transaction of its own, and if the server gives
+ * any warning, or adds fewer rows than were sent, the batch is rolled back and turned down as a whole, the same as a batch of INSERTs would be.
+ * (A table that can't roll back, such as a MyISAM one, keeps the rows that were added before the one that was left out.)
+ */
+public class BulkLoader implements AutoCloseable
+{
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final Connection conn;
+	private final com.mysql.jdbc.Connection driver;
+	private final boolean allowedBefore;
+	private final boolean autoCommitBefore;
+	private final List<ColumnData> cols;
+	private final Statement stmt;
+	private final String sql;
+
+	private final StringBuilder text = new StringBuilder(64 * 1024); // the rows waiting to be sent
+
+	private int pending = 0; // rows written to the buffer but not yet sent
+	private long inserted = 0;
+	private long batches = 0;
+
+	private QueryMetrics metrics = null; // where to record how long each batch takes, if anywhere
+
+	/**
+	 * Start adding rows to a table.
+	 * @param conn The connection to send the rows over. It has to be one from MySQL's own driver, as LOAD DATA LOCAL is turned on for it
+	 * only while this BulkLoader is open, and it is taken out of auto-commit mode until then. It is only used by this BulkLoader until it is closed.
+	 * @param table The name of the table to add rows to.
+	 * @param cols The columns of the table, as returned by ColumnData.buildColumnData. Each row has a value for every one of them, in this order.
+	 * @throws SQLException If the connection isn't from MySQL's driver, or the statement couldn't be created.
+	 */
+	public BulkLoader(Connection conn, String table, List<ColumnData> cols) throws SQLException
+	{
+		if (!conn.isWrapperFor(com.mysql.jdbc.Connection.class))
+		{
+			throw new SQLException("LOAD DATA LOCAL INFILE needs a connection from MySQL's driver.");
+		}
+
+		this.cols = cols;
+
+		// LOAD DATA ... (a, @v2, c) SET b = CAST(@v2 AS UNSIGNED)
+		// BIT values go through a variable, as the loader would otherwise store the digits' characters rather than the number
+		StringBuilder names = new StringBuilder();
+		StringBuilder bits = new StringBuilder();
+		for (int c = 0; c < cols.size(); c++)
+		{
+			ColumnData col = cols.get(c);
+			if (names.length() > 0)
+			{
+				names.append(", ");
+			}
+
+			if (col.getType() == ColumnDataType.Bit)
+			{
+				names.append("@v").append(c + 1);
+				bits.append(bits.length() == 0 ? " SET " : ", ").append(col.getName()).append(" = CAST(@v").append(c + 1).append(" AS UNSIGNED)");
+			}
+			else
+			{
+				names.append(col.getName());
+			}
+		}
+
+		// the file name is only a label, as the driver sends the stream it's given instead of opening a file
+		this.sql = "LOAD DATA LOCAL INFILE 'import.tsv' INTO TABLE " + table + " CHARACTER SET utf8mb4"
+				+ " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (" + names + ")" + bits;
+
+		this.conn = conn;
+		this.driver = conn.unwrap(com.mysql.jdbc.Connection.class);
+		this.allowedBefore = driver.getAllowLoadLocalInfile();
+		this.autoCommitBefore = conn.getAutoCommit();
+
+		this.stmt = conn.createStatement();
+		conn.setAutoCommit(false);
+		driver.setAllowLoadLocalInfile(true);
+	}
+
+	/**
+	 * Record how long each batch takes, and how many rows it adds. Errors aren't recorded here, as whoever called flush shows them.
+	 * @param metrics Where to record them, or null to not record them.
+	 */
+	public void setMetrics(QueryMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Add a row of values that have already been checked and read with RowValidator.read to the current batch.
+	 * Nothing is sent until flush is called.
+	 * @param values The string representation of the value for each column, in the same order as the columns.
+	 * @param params The object read gave for each of the values. None of them can be ColumnData.INVALID.
+	 * @throws IllegalArgumentException If a value can't be written as the number its column holds. The row isn't added.
+	 * @throws SQLException Never; it's here so this can be used the same way as BulkInserter.addParameters.
+	 */
+	public void addParameters(String[] values, Object[] params) throws SQLException
+	{
+		int mark = text.length();
+		try
+		{
+			for (int c = 0; c < values.length; c++)
+			{
+				if (c > 0)
+				{
+					text.append('\t');
+				}
+				writeValue(text, cols.get(c), values[c], params[c]);
+			}
+		}
+		catch (IllegalArgumentException e)
+		{
+			text.setLength(mark); // take back the part of the row that was written
+			throw e;
+		}
+		text.append('\n');
+
+		pending++;
+	}
+
+	/**
+	 * Send the rows in the current batch to the server, and commit them.
+	 * @throws SQLException If the server could not load the rows, or would have had to change or leave out some of them.
+	 * None of the rows are added then. The batch is emptied either way.
+	 */
+	public void flush() throws SQLException
+	{
+		if (pending == 0)
+		{
+			return;
+		}
+
+		int sent = pending;
+		int count;
+		long start = System.nanoTime();
+		try
+		{
+			byte[] data = text.toString().getBytes(UTF8);
+			stmt.unwrap(com.mysql.jdbc.Statement.class).setLocalInfileInputStream(new ByteArrayInputStream(data));
+			count = stmt.executeUpdate(sql);
+		}
+		finally
+		{
+			text.setLength(0);
+			pending = 0;
+		}
+		batches++;
+
+		// an INSERT would have failed on any of these, so the batch is turned down just as it would have been
+		String warning = firstWarning();
+		if (warning != null || count != sent)
+		{
+			conn.rollback();
+
+			String why = (warning != null) ? warning : "only " + count + " of the " + sent + " rows would have been added.";
+			throw new SQLException("The server would have had to change or leave out some of the rows, so none were added: " + why, "HY000");
+		}
+		conn.commit();
+
+		inserted += count;
+
+		if (metrics != null)
+		{
+			metrics.recordTime(QueryMetrics.Kind.BATCH, System.nanoTime() - start);
+			metrics.recordRowsChanged(QueryMetrics.Kind.BATCH, count);
+		}
+	}
+
+	/**
+	 * Get the first warning the server gave for the last statement. Notes (such as for a decimal rounded to fit) are left out,
+	 * as an INSERT gets those too and still adds the row; the driver's getWarnings can't tell them apart from warnings.
+	 * @return The message of the warning, or null if there wasn't one.
+	 */
+	private String firstWarning() throws SQLException
+	{
+		ResultSet rs = stmt.executeQuery("SHOW WARNINGS"); // Level, Code, Message
+		try
+		{
+			while (rs.next())
+			{
+				if (!"Note".equalsIgnoreCase(rs.getString(1)))
+				{
+					return rs.getString(3);
+				}
+			}
+			return null;
+		}
+		finally
+		{
+			rs.close();
+		}
+	}
+
+	/**
+	 * Close the statement, and put the connection back the way it was: LOAD DATA LOCAL off if it was off before, and back in auto-commit mode.
+	 * Rows that haven't been sent are dropped.
+	 */
+	@Override
+	public void close()
+	{
+		try { stmt.close(); } catch (SQLException e) { } // ignore
+		driver.setAllowLoadLocalInfile(allowedBefore);
+		try { conn.setAutoCommit(autoCommitBefore); } catch (SQLException e) { } // a broken connection is found out by whoever uses it next
+	}
+
+	/**
+	 * Write one value the way the loader reads it: NULL as \N, and backslashes, tabs and line breaks escaped with a backslash.
+	 * Numbers, dates and times are written the way Java writes the object ColumnData.read reads them into, so the server reads the same value
+	 * a batch of INSERTs would send. A date or time read can't turn into one (such as all zeroes) is written as it was typed, as INSERTs send it.
+	 * @param param The object read gave for the value.
+	 * @throws IllegalArgumentException If the value is for a column of numbers, but read couldn't read it as one.
+	 */
+	static void writeValue(StringBuilder text, ColumnData col, String value, Object param)
+	{
+		if (param == null)
+		{
+			text.append("\\N");
+			return;
+		}
+
+		switch (col.getType())
+		{
+		case Bit:
+		case Byte:
+		case Short:
+		case Integer:
+		case Long:
+		case Float:
+		case Double:
+		case Decimal:
+			if (param instanceof String)
+			{
+				throw new IllegalArgumentException("The value '" + value + "' can't be read as a number for column " + col.getName() + ".");
+			}
+			if (param instanceof Double && (Double) param == 0)
+			{
+				param = 0.0; // the server stores -0.0 as 0 when it's bound, but keeps the sign when it reads "-0.0"
+			}
+			// Double.toString can write an exponent ("1.0E10"), which the loader reads; a BigDecimal is written without one
+			text.append((param instanceof BigDecimal) ? ((BigDecimal) param).toPlainString() : param.toString());
+			return;
+		case Date:
+		case Time:
+			if (!(param instanceof String))
+			{
+				value = param.toString(); // yyyy-mm-dd and hh:mm:ss
+			}
+			break;
+		case DateTime:
+			if (param instanceof Timestamp)
+			{
+				value = param.toString(); // yyyy-mm-dd hh:mm:ss.0, with no fraction to keep
+				value = value.substring(0, value.length() - 2);
+			}
+			break;
+		default:
+			// strings as they are, and ENUM and SET values by their names, which isValidValue has already matched exactly
+			break;
+		}
+
+		for (int i = 0; i < value.length(); i++)
+		{
+			char ch = value.charAt(i);
+			switch (ch)
+			{
+			case '\\': text.append("\\\\"); break;
+			case '\t': text.append("\\t"); break;
+			case '\n': text.append("\\n"); break;
+			case '\r': text.append("\\r"); break;
+			case '\0': text.append("\\0"); break;
+			default: text.append(ch); break;
+			}
+		}
+	}
+
+	/**
+	 * Get the LOAD DATA statement the rows are sent with.
+	 */
+	public String getStatement() {
+		return sql;
+	}
+
+	/**
+	 * Get the number of rows the server has added so far.
+	 */
+	public long getRowsInserted() {
+		return inserted;
+	}
+
+	/**
+	 * Get the number of batches sent to the server so far.
+	 */
+	public long getBatchCount() {
+		return batches;
+	}
+
+}
@@ -1,886 +1,936 @@
-import java.text.DecimalFormat;
-import java.text.ParseException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.math.BigInteger;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-
-
-public class ColumnData
-{
-
-	private String name;
-	private String datatype;
-	private ColumnDataType type;
-	private int index;
-	private int vallength;
-	private boolean prikey = false;
-	private boolean nullable = true;
-	private boolean unsigned = false;
-	private List<String> enumvalues = new ArrayList<String>();
-	
-	public ColumnData(String name, String datatype, ColumnDataType type, int index, int vallength, boolean nullable, boolean unsigned, boolean prikey)
-	{
-		this.name = name;
-		this.datatype = datatype;
-		this.type = type;
-		this.index = index;
-		this.vallength = vallength;
-		this.nullable = nullable;
-		this.unsigned = unsigned;
-		this.prikey = prikey;
-	}
-	
-	@SuppressWarnings("unused")
-	private void setUpEnumValues(ArrayList<String> values)
-	{
-		enumvalues = values;
-	}
-	
-	private void setUpEnumValues(String valuedata)
-	{
-		// put the list of values for the ENUM or SET into a List for accessing later
-		valuedata = valuedata.replace("'", "");
-		String[] vals = valuedata.split(",");
-		enumvalues = Arrays.asList(vals);
-	}
-	
-	/**
-	 * Get the name of the column.
-	 */
-	public String getName() {
-		return name;
-	}
-	
-	/**
-	 * Gets the string detailing the data type of this column.
-	 */
-	public String getDataType() {
-		return datatype;
-	}
-	
-	/**
-	 * Get the data type of the column, as a ColumnDataType option. Unsupported data types will be returned as VarChar.
-	 */
-	public ColumnDataType getType() {
-		return type;
-	}
-	
-	/**
-	 * Get the one-based index of the column within its table.
-	 */
-	public int getIndex() {
-		return index;
-	}
-	
-	/**
-	 * Get the max length (in characters) an entry can be within this column. If 0, no max length was defined.
-	 */
-	public int getValLength() {
-		return vallength;
-	}
-	
-	/**
-	 * Get whether a null value is allowed in the column. If false, null values are not permitted.
-	 */
-	public boolean getNullable() {
-		return nullable;
-	}
-	
-	/**
-	 * Get whether the data for this column is unsigned or not. This only applies for columns with numeric data; otherwise, returns false.
-	 */
-	public boolean isUnsigned() {
-		return unsigned;
-	}
-	
-	/**
-	 * Get whether this column is the primary key for this table.
-	 */
-	public boolean isPrimaryKey() {
-		return prikey;
-	}
-	
-	/**
-	 * If this is an ENUM or SET type, will return an ArrayList containing the list of valid values for this column.
-	 * Otherwise, will only return an empty ArrayList.
-	 */
-	public List<String> getEnumValues()
-	{
-		return enumvalues;
-	}
-	
-	/**
-	 * Checks to see if this string representation of a value is valid for this column's data type.
-	 * @param value The value to check/
-	 * @return True if this is a valid value. False if it cannot be used.
-	 */
-	public boolean isValidValue(String value)
-	{
-		// check the length first
-		// (vallength == 0 means there is no length)
-		if (this.vallength > 0)
-		{
-			if (value.length() > this.vallength)
-			{
-				return false; // the input string is longer than what the column allows
-			}
-		}
-		
-		// check if null
-		if (value.isEmpty())
-		{
-			if (nullable == false)
-			{
-				return false; // the input string is null, and the column is set as NOT NULL
-			}
-		}
-		
-		switch (type)
-		{
-		case Binary:
-			// a binary string
-			// any string will do, will just need to be converted to a byte array
-			return true;
-		case Bit:
-			// a bit is a binary string of 0s and 1s. 
-			// if the string contains more than ones and zeros, it is not valid
-			for (char ch : value.toCharArray())
-			{
-				if (!(ch == '0' || ch == '1'))
-				{
-					return false;
-				}
-			}
-			return true;
-		case Blob:
-			// a large string
-			// any string will do
-			return true;
-		case Byte:
-			if (unsigned)
-			{
-				return checkNumeric(value, NumericType.SHORT, true);
-			}
-			else
-			{
-				return checkNumeric(value, NumericType.BYTE, false);
-			}
-		case Date:
-			// dates can be written in four different ways
-			// YYYY-MM-DD, YY-MM-DD, YYYYMMDD, and YYMMDD.
-			// The string lengths are 10, 8, 8, and 6 respectively.
-			if (!(value.length() == 10 || value.length() == 8 || value.length() == 6))
-			{
-				return false;
-				// very quickly determined to be an invalid date string  because there's
-				// no format that this string could fit into based on the string's length alone 
-			}
-			
-			// For this first step, let's assume it is a valid date string.
-			// It will either have the punctuation or not.
-			boolean haspunc = false;
-			
-			try { Integer.parseInt(value); }
-			catch (NumberFormatException e) { haspunc = true; } // cannot be parsed as an integer
-			
-			// moved these to separate functions because I'll need them in another place too
-			if (haspunc == false)
-			{ // If it has no punctuation
-				
-				if (value.length() == 6)
-				{
-					// YYMMDD
-					return checkDate(value, 0, 2, 2, 4, 4);
-					
-				}
-				else
-				{
-					// YYYYMMDD
-					return checkDate(value, 0, 4, 4, 6, 6);
-				}
-			} else {
-				// punctuation or other non-numeral characters are in here
-				// first, let's see if the string could be YY-MM-DD, or YYYY-MM-DD
-				// afterwards, we'll check to see if it is a valid date
-				
-				if (value.length() == 8)
-				{
-					// YY-MM-DD
-					return checkDate(value, 0, 2, 3, 5, 6);
-				}
-				else
-				{
-					// YYYY-MM-DD
-					return checkDate(value, 0, 4, 5, 7, 8);
-				}
-			}
-			
-			// I realized after the fact that formats such as YYYY-M-D are acceptable if the Month and Day are under 10
-			// this code does not check for that. Month and Day must both always be 2 digits
-			// I'm going to keep it this way for the time being though
-			
-		case DateTime:
-			// this can be written in two distinct ways, with the 1st having 3 variations, and the 2nd having 1:
-			// With punctuation (punctuated) - YYYY-MM-DD HH:MM:SS
-			// Without punctuation (numeral) - YYYYMMDDHHMMSS
-			
-			// For the punctuated format, the letter "T" can be used in place of a space
-			// For both formats, the year value can be 2 digits (YY).
-			
-			// The punctuated format can have a length of 19 or 17.
-			// The numeral format can have a length of 14 or 12.
-			
-			if (value.length() == 19) {
-				// YYYY-MM-DD HH:MM:SS
-				
-				// First, check the date portion
-				if (!(checkDate(value.substring(0, 10), 0, 2, 3, 5, 6)))
-				{ return false; }
-				
-				// Secondly, check the character between the date and the time
-				// This character must be a space or the letter T
-				if (!(value.charAt(10) == ' ' || value.charAt(10) == 'T'))
-				{ return false; }
-				
-				// Finally, check the time portion
-				if (!(checkTime(value.substring(11), true, false, false)))
-				{ return false; }
-				
-			} else if (value.length() == 17) {
-				// YY-MM-DD HH:MM:SS
-				
-				// First, check the date portion
-				if (!(checkDate(value.substring(0, 8), 0, 2, 3, 5, 6)))
-				{ return false; }
-				
-				// Secondly, check the character between the date and the time
-				// This character must be a space or the letter T
-				if (!(value.charAt(8) == ' ' || value.charAt(8) == 'T'))
-				{ return false; }
-				
-				// Finally, check the time portion
-				if (!(checkTime(value.substring(9), true, false, false)))
-				{ return false; }
-				
-			} else if (value.length() == 14) {
-				// YYYYMMDDHHMMSS
-				
-				// First, check the date portion
-				if (!(checkDate(value.substring(0, 8), 0, 4, 4, 6, 6)))
-				{ return false; }
-				
-				// Finally, check the time portion
-				if (!(checkTime(value.substring(8), false, false, false)))
-				{ return false; }
-				
-			} else if (value.length() == 12) {
-				// YYMMDDHHMMSS
-				
-				// First, check the date portion
-				if (!(checkDate(value.substring(0, 6), 0, 2, 2, 4, 4)))
-				{ return false; }
-				
-				// Finally, check the time portion
-				if (!(checkTime(value.substring(6), false, false, false)))
-				{ return false; }
-				
-			} else {
-				// does not match any of the possible lengths
-				// this is a quick sign that the string isn't valid
-				return false;
-			}
-			
-			return true; // if it gets to this point, I think it checks out
-		case Decimal:
-			
-			DecimalFormat df = new DecimalFormat();
-			df.setParseBigDecimal(true);
-			
-			try { df.parse(value); }
-			catch (ParseException e) { return false; } // cannot be parsed as this value
-			
-			return true; // if it reached this point, that means it's valid
-		case Double:
-			return checkNumeric(value, NumericType.DOUBLE, false);
-		case Enum:
-			// check to see if this is a valid enum value
-			return enumvalues.contains(value);
-		case Float:
-			return checkNumeric(value, NumericType.FLOAT, false);
-		case Integer:
-			if (unsigned)
-			{
-				return checkNumeric(value, NumericType.LONG, true);
-			}
-			else
-			{
-				return checkNumeric(value, NumericType.INT, false);
-			}
-		case Long:
-			if (unsigned)
-			{ // An unsigned long can be a BigInteger, so I will compare the value against that here
-				BigInteger bi = new BigInteger("0");
-				try { bi = new BigInteger(value); }
-				catch (NumberFormatException e) { return false; }
-				
-				if (bi.compareTo(BigInteger.ZERO) == -1) { return false; } // it is less than zero
-				else { return true; }
-			}
-			else { return checkNumeric(value, NumericType.LONG, false); }
-		case Set:
-			// similar to an ENUM type, except a SET value can have multiple elements set per item
-			String[] setvals = value.split(","); // each SET element is separated by a comma
-			
-			// now to check if each element is in the SET's values
-			for (String str : setvals)
-			{
-				if (enumvalues.contains(str) == false)
-				{
-					return false; // one of these items was not actually in the SET's values
-				}
-			}
-			
-			return true; // if it got to this point, I think the string checks out
-		case Short:
-			if (unsigned)
-			{
-				return checkNumeric(value, NumericType.INT, true);
-			}
-			else
-			{
-				return checkNumeric(value, NumericType.SHORT, false);
-			}
-		case Text:
-			// a string is a string
-			return true;
-		case Time:
-			// TIME can be written in a variety of ways:
-			// D HH:MM:SS format (with variations HH:MM:SS, D HH:MM, HH:MM, D HH)
-			// HHMMSS format (with variations MMSS, SS)
-			// More variations exist (D HH:MM:SS.LLLLLL, HH:MM:SS.LLLLLL, and HHMMSS.LLLLLL),
-			// but those allow microsecond precision, and that is discarded when stored in TIME columns. Thus, we will not check that here.
-			
-			// First, let's check to see if it's HHMMSS format, by seeing if the entire string is a number
-			
-			try {
-				int time = Integer.parseInt(value);
-				
-				// if the code did not cause an exception, it will end up here
-				// thus, we can assume there's no punctuation and it's in the HHMMSS format
-				// let's parse it
-				if (value.length() == 2)
-				{ // SS
-					if (time > 60) { return false; }
-				}
-				else if (value.length() == 6)
-				{ // HHMMSS
-					return checkTime(value, false, false, true);
-				}
-				
-				// MMSS only applies if the data being entered is not being entered as a string
-				// it is assumed that the data being entered will be formatted as a string
-//				else if (value.length() == 4)
-//				{ // MMSS
-//					return checkTime(value, false, true);
-//				}
-
-			} catch (NumberFormatException e) { } // has punctuation or something, we'll check this in the next block 
-
-			String tims;
-			boolean hasday = false;
-			// first, check to see if the D value is assigned
-			// by checking to see if there's a space in index 1 or 2
-			if (value.charAt(1) == ' ' || value.charAt(2) == ' ') {
-				// assume there's the D value
-				
-				// before anything else, let's see if it's the D HH format
-				try
-				{ // D HH
-					int day = Integer.parseInt(value.substring(0, value.indexOf(' ')));
-					int hour = Integer.parseInt(value.substring(value.indexOf(' ') + 1));
-					
-					if (day > 34 || day < 0) { return false; }
-					else if (hour > 24 || hour < 0) { return false; }
-					else { return true; } // seems to be D HH and seems to check out
-				}
-				catch (NumberFormatException e)
-				{ // okay, not D HH format, let's move on
-					tims = value.substring(value.indexOf(' ') + 1);
-					hasday = true;
-				}
-			} else { // assume there's no D value
-				tims = value;
-				hasday = false;
-			}
-			
-			if (hasday == true) { // check day value
-				try {
-					int day = Integer.parseInt(value.substring(0, value.indexOf(' ')));
-					
-					if (day > 34 || day < 0) { return false; }
-				} catch (NumberFormatException e)
-				{
-					return false;
-					// the day value isn't valid (has a not-numeric character)
-					// that alone is enough to make this invalid
-				}
-			}
-			
-			if (tims.length() == 8) { // HH:MM:SS
-				return checkTime(tims, true, false, true); }
-			else if (tims.length() == 5) { // HH:MM
-				return checkTime(tims, true, true, true); }
-			else { return false; } // something about this string just isn't right, it's not a valid time format
-			
-		case VarChar:
-			// a string is a string
-			return true;
-		default:
-			return false; // I don't think this line will ever be reached
-			
-		}
-	}
-	
-	/**
-	 * Gets if the data type of this column is a number type (INT, DOUBLE, etc.)
-	 */
-	public boolean isNumberType()
-	{
-		switch (type)
-		{
-		case Byte:
-		case Decimal:
-		case Double:
-		case Float:
-		case Integer:
-		case Long:
-		case Short:
-			return true;
-		case Bit:
-		case Binary:
-		case Blob:
-		case Date:
-		case DateTime:
-		case Enum:
-		case Text:
-		case Time:
-		case VarChar:
-			return false;
-		default:
-			return false;
-		
-		}
-	}
-	
-	/**
-	 * Create an ArrayList with a ColumnData object for each column in the table
-	 * @param data The ResultSet data this function reads. This must be the ResultSet from a "DESCRIBE" command.
-	 * @return An ArrayList with a ColumnData object for each column.
-	 * @throws SQLException If there is an issue reading the ResultSet data, this exception will be raised.
-	 */
-	public static ArrayList<ColumnData> buildColumnData(ResultSet data) throws SQLException
-	{
-		ArrayList<ColumnData> cols = new ArrayList<ColumnData>();
-		
-		try
-		{
-			int rn = 1;
-			
-			while (data.next())
-			{
-				// Determine if nullable
-				boolean nn = false;
-				if (data.getString(3).equals("NO"))
-				{
-					nn = true; // this column is not nullable (null values not allowed)
-				}
-				
-				// Determine if primary key
-				boolean pk = false;
-				if (data.getString(4).equals("PRI"))
-				{
-					pk = true; // this column is primary key
-				}
-				
-				// Parse/determine type
-				String typedata = data.getString(2).toUpperCase(); // Data about the type is stored in the 2nd column
-				
-				boolean us = false;
-				if (typedata.endsWith("UNSIGNED") || typedata.endsWith("UNSIGNED ZEROFILL"))
-				{
-					us = true; // Is unsigned
-				}
-				
-				int length = 0;
-				boolean isenum = false;
-				ColumnDataType type;
-				// If there is an opening parenthesis, this means there might be a length parameter
-				if (!(typedata.startsWith("ENUM") || typedata.startsWith("SET")))
-				{
-					
-					if (typedata.contains("("))
-					{
-						String lth = typedata.substring(typedata.indexOf("(") + 1, typedata.indexOf(")"));
-						
-						if (!(typedata.startsWith("TIME") || typedata.startsWith("DATE") || typedata.startsWith("DATETIME")))
-						{
-							
-							if (lth.contains(",")) // some data types allow commas within the parentheses to define decimal points
-							{
-								lth = lth.substring(0, lth.indexOf(","));
-							}
-							length = Integer.parseInt(lth); // there really isn't a conceivable way that this will not be a number
-							
-						}
-						else
-						{
-							length = 0;
-							// for the TIME, DATE, and DATETIME types, the value inside the parentheses
-							// are not to define length, and thus will not be counted
-						}
-						
-						// data type will be defined immediately before the opening parenthesis
-						String dt = typedata.substring(0, typedata.indexOf('('));
-						
-						type = getTypeFromString(dt);
-					}
-					else
-					{
-						// no length parameter defined, so it is left as 0.
-						
-						// unless it's a BIT value. the max BIT length is 64
-						if (typedata.startsWith("BIT"))
-						{
-							length = 64;
-						}
-						// or unless it's a YEAR value. the max YEAR length is 4
-						if (typedata.startsWith("YEAR"))
-						{
-							length = 4;
-						}
-						
-						if (typedata.contains(" ")) // meaning UNSIGNED, ZEROFILL, or other special data was written on the end
-						{
-							String dt = typedata.substring(0, typedata.indexOf(" "));
-							
-							type = getTypeFromString(dt);
-						}
-						else
-						{
-							// only contains data type and that's it. no further parsing necessary
-							type = getTypeFromString(typedata);
-						}
-					}
-				}
-				else
-				{
-					// is an ENUM or SET type
-					length = 0;
-					isenum = true;
-					
-					if (typedata.startsWith("ENUM"))
-					{
-						type = ColumnDataType.Enum;
-					}
-					else
-					{
-						type = ColumnDataType.Set;
-					}
-				}
-				
-				if (isenum)
-				{
-					// in order to make the 'typedata' string look pretty
-					// while keeping the casing of the original enum values
-					String lth = data.getString(2).substring(typedata.indexOf("(") + 1, typedata.indexOf(")"));
-					typedata = typedata.substring(0, typedata.indexOf("(")) + "(" + lth + ")";
-				}
-				
-				ColumnData col = new ColumnData(data.getString(1), typedata, type, rn, length, nn, us, pk);
-				
-				if (isenum) // set up enumerator/set values
-				{
-					String lth = data.getString(2).substring(typedata.indexOf("(") + 1, typedata.indexOf(")"));
-					col.setUpEnumValues(lth);
-				}
-				
-				// Add to column list
-				cols.add(col);
-				
-				rn++;
-			}
-		}
-		catch (SQLException e)
-		{
-			throw e;
-		}
-		
-		return cols;
-	}
-	
-	private static ColumnDataType getTypeFromString(String str)
-	{
-		// used source: http://docs.oracle.com/cd/E17952_01/connector-j-en/connector-j-reference-type-conversions.html
-		// used source: http://dev.mysql.com/doc/refman/5.6/en/create-table.html
-		
-		switch (str)
-		{
-		case "BIT":
-			return ColumnDataType.Bit;
-		case "BOOL":
-		case "BOOLEAN": // MySQL does not have a defined BOOLEAN type. BOOL and BOOLEAN are synonyms of TINYINT(1).
-		case "TINYINT":
-			return ColumnDataType.Byte;
-		case "SMALLINT":
-			return ColumnDataType.Short;
-		case "MEDIUMINT":
-		case "INT":
-		case "INTEGER":
-			return ColumnDataType.Integer;
-		case "BIGINT":
-			return ColumnDataType.Long;
-		case "DOUBLE":
-			return ColumnDataType.Double;
-		case "REAL":
-		case "FLOAT":
-			return ColumnDataType.Float;
-		case "DECIMAL":
-		case "NUMERIC": // the two data types are synonymous, from what it seems
-			return ColumnDataType.Decimal;
-		case "DATE":
-		case "YEAR": // configured by default to return a DATE, of the specified year, on Jan 1st at midnight
-			return ColumnDataType.Date;
-		case "TIME":
-			return ColumnDataType.Time;
-		case "DATETIME":
-		case "TIMESTAMP": // Timestamp differs from DateTime in that the data is stored in UTC time
-			return ColumnDataType.DateTime;
-		case "CHAR":
-		case "VARCHAR":
-		case "LONGVARCHAR": // lumping LONGVARCHAR with CHAR and VARCHAR isn't the best, no, but it's enough for this program's purposes
-			return ColumnDataType.VarChar;
-		case "TINYBLOB":
-		case "BLOB":
-		case "MEDIUMBLOB":
-		case "LONGBLOB": // blobs are used for storing data, such as images, etc. rather than just plain text
-			return ColumnDataType.Blob;
-		case "TINYTEXT":
-		case "TEXT":
-		case "MEDIUMTEXT":
-		case "LONGTEXT": // text is stored separately from the table itself; the table just references the text resource
-			return ColumnDataType.Text;
-		case "BINARY":
-		case "VARBINARY":
-			return ColumnDataType.Binary;
-		default:
-			return ColumnDataType.VarChar;
-		}
-		
-		//return ColumnDataType.VarChar;
-	}
-
-		
-	
-	private boolean checkDate(String value, int y1, int y2, int m1, int m2, int d)
-	{
-		try
-		{
-			/*int year = */ Integer.parseInt(value.substring(y1, y2));
-			int month = Integer.parseInt(value.substring(m1, m2));
-			int day = Integer.parseInt(value.substring(d));
-			
-			if (month > 12)
-			{
-				return false; // only 12 months
-			}
-			
-			if (month == 1 || month == 3 || month == 5 || month == 7 || month == 8 || month == 10 || month == 12)
-			{
-				if (day > 31)
-				{
-					return false; // these 7 months have 31 days
-				}
-			}
-			else if (month == 2)
-			{
-				if (day > 29)
-				{
-					return false; // February only has 28
-					// to save time, we do not check to see if February is a leap year on the specified year
-				}
-			}
-			else
-			{
-				if (day > 30)
-				{
-					return false; // the remaining months have 30 days
-				}
-			}
-		}
-		catch (NumberFormatException e)
-		{
-			// if we're here
-			// that means one of the numbers above really isn't a number
-			// so... it's not a valid date string
-			return false;
-		}
-		
-		return true;
-	}
-	
-	/**
-	 * Check a string representation of a time value to see if it is valid.
-	 * @param value The value to check.
-	 * @param punctuation Check if there is punctuation or not. For example, if checking for "HH:MM:SS", input "true".
-	 * If checking for "HHMMSS", input false.
-	 * @param twovalues Check for two values or three. For example, if checking for "HH:MM", input "true".
-	 * If checking for "HH:MM:SS", input "false".
-	 * @param allowlargerthan24hrs Allow the max hour value to be 99 or 24. If "true", the max value will be 99.
-	 * @return "true" if the string is valid. "false" if the string is invalid in some way.
-	 */
-	private boolean checkTime(String value, boolean punctuation, boolean twovalues, boolean allowlargerthan24hrs)
-	{	
-		int hour = 0;
-		int min = 0;
-		int sec = 0;
-		
-		if (punctuation == true)
-		{
-			// HH:MM:SS or HH:MM
-			try
-			{
-				
-				if (twovalues == false)
-				{
-					// HH:MM:SS
-					hour = Integer.parseInt(value.substring(0, 2));
-					min = Integer.parseInt(value.substring(3, 5));
-					sec = Integer.parseInt(value.substring(6));
-				}
-				else
-				{
-					// HH:MM
-					hour = Integer.parseInt(value.substring(0, 2));
-					min = Integer.parseInt(value.substring(3));
-				}
-				
-			}
-			catch (NumberFormatException e)
-			{
-				// if we're here, that means one of the numbers above really isn't a number
-				// so... it's not a valid time string
-				return false;
-			}
-		}
-		else
-		{
-			// HHMMSS or MMSS
-			try
-			{		
-				if (twovalues == false)
-				{
-					// HHMMSS
-					hour = Integer.parseInt(value.substring(0, 2));
-					min = Integer.parseInt(value.substring(2, 4));
-					sec = Integer.parseInt(value.substring(4));
-				}
-				else
-				{
-					// MMSS
-					min = Integer.parseInt(value.substring(0, 2));
-					sec = Integer.parseInt(value.substring(2));
-				}
-			}
-			catch (NumberFormatException e)
-			{
-				// if we're here, that means one of the numbers above really isn't a number
-				// so... it's not a valid time string
-				return false;
-			}
-		}
-		
-		// parse time values
-		if (allowlargerthan24hrs)
-		{
-			if (hour > 99 || hour < -9)
-			{
-				return false;
-			}
-		}
-		else
-		{
-			if (hour > 24 || hour < 0)
-			{
-				return false;
-			}
-		}
-
-		if (min > 59 || min < 0)
-		{
-			return false;
-		}
-		
-		if (sec > 59 || min < 0)
-		{
-			return false;
-		}
-		
-		return true; // seems fine to me
-		
-	}
-	
-	private enum NumericType { BYTE, SHORT, INT, LONG, FLOAT, DOUBLE }
-	
-	private boolean checkNumeric(String value, NumericType type, boolean checknegatives)
-	{
-		Number n;
-		
-		try
-		{
-			switch (type)
-			{
-			case BYTE:
-				n = Byte.parseByte(value);
-				break;
-			case DOUBLE:
-				n = Double.parseDouble(value);
-				break;
-			case FLOAT:
-				n = Float.parseFloat(value);
-				break;
-			case INT:
-				n = Integer.parseInt(value);
-				break;
-			case LONG:
-				n = Long.parseLong(value);
-				break;
-			case SHORT:
-				n = Short.parseShort(value);
-				break;
-			default:
-				n = 0;
-				return false;
-			}
-			
-		}
-		catch (NumberFormatException e)
-		{
-			return false; // cannot be parsed as this value
-		}
-		
-		// check if unsigned
-		if (checknegatives)
-		{
-			if (n.longValue() < 0)
-			{
-				return false;
-			}
-		}
-		
-		return true;  // if it reached this point, that means it's valid
-	}
-	
-}
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+
+public class ColumnData
+{
+
+	private String name;
+	private String datatype;
+	private ColumnDataType type;
+	private int index;
+	private int vallength;
+	private boolean prikey = false;
+	private boolean nullable = true;
+	private boolean unsigned = false;
+	private List<String> enumvalues = new ArrayList<String>();
+	private EnumLookup enumlookup = new EnumLookup(enumvalues);
+	private ValueValidator validator;
+	
+	public ColumnData(String name, String datatype, ColumnDataType type, int index, int vallength, boolean nullable, boolean unsigned, boolean prikey)
+	{
+		this.name = name;
+		this.datatype = datatype;
+		this.type = type;
+		this.index = index;
+		this.vallength = vallength;
+		this.nullable = nullable;
+		this.unsigned = unsigned;
+		this.prikey = prikey;
+		this.validator = ValueValidator.forColumn(this);
+	}
+	
+	@SuppressWarnings("unused")
+	private void setUpEnumValues(ArrayList<String> values)
+	{
+		enumvalues = values;
+		enumlookup = new EnumLookup(values);
+		validator = ValueValidator.forColumn(this); // the ENUM or SET validator needs the new values
+	}
+	
+	private void setUpEnumValues(String valuedata)
+	{
+		// put the list of values for the ENUM or SET into a List for accessing later
+		valuedata = valuedata.replace("'", "");
+		String[] vals = valuedata.split(",");
+		enumvalues = Collections.unmodifiableList(Arrays.asList(vals));
+		enumlookup = new EnumLookup(enumvalues);
+		validator = ValueValidator.forColumn(this); // the ENUM or SET validator needs the new values
+	}
+	
+	/**
+	 * Get the name of the column.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Gets the string detailing the data type of this column.
+	 */
+	public String getDataType() {
+		return datatype;
+	}
+	
+	/**
+	 * Get the data type of the column, as a ColumnDataType option. Unsupported data types will be returned as VarChar.
+	 */
+	public ColumnDataType getType() {
+		return type;
+	}
+	
+	/**
+	 * Get the one-based index of the column within its table.
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	/**
+	 * Get the max length (in characters) an entry can be within this column. If 0, no max length was defined.
+	 */
+	public int getValLength() {
+		return vallength;
+	}
+	
+	/**
+	 * Get whether a null value is allowed in the column. If false, null values are not permitted.
+	 */
+	public boolean getNullable() {
+		return nullable;
+	}
+	
+	/**
+	 * Get whether the data for this column is unsigned or not. This only applies for columns with numeric data; otherwise, returns false.
+	 */
+	public boolean isUnsigned() {
+		return unsigned;
+	}
+	
+	/**
+	 * Get whether this column is the primary key for this table.
+	 */
+	public boolean isPrimaryKey() {
+		return prikey;
+	}
+	
+	/**
+	 * If this is an ENUM or SET type, will return an ArrayList containing the list of valid values for this column.
+	 * Otherwise, will only return an empty ArrayList.
+	 */
+	public List<String> getEnumValues()
+	{
+		return enumvalues;
+	}
+	
+	/**
+	 * If this is an ENUM or SET type, will return the table that finds which of its values a string is.
+	 * Otherwise, will return one that has no values.
+	 */
+	public EnumLookup getEnumLookup()
+	{
+		return enumlookup;
+	}
+	
+	/**
+	 * Get the number MySQL stores a SET value as, with bit i set for each of the values that's the i'th one in getEnumValues.
+	 * @param value The value, with its elements separated by commas.
+	 * @return The bits for the elements in the value. 0 for an empty set.
+	 * @throws IllegalArgumentException If this isn't a SET column, or one of the elements isn't one of its values.
+	 */
+	public long getSetMask(CharSequence value)
+	{
+		if (type != ColumnDataType.Set)
+		{
+			throw new IllegalArgumentException("The column " + name + " isn't a SET.");
+		}
+		
+		if (!validator.isValid(value))
+		{
+			throw new IllegalArgumentException("'" + value + "' isn't a valid value for " + name + ".");
+		}
+		return ((ValueValidator.SetValue) validator).mask(value, value.length());
+	}
+	
+	/**
+	 * Checks to see if this string representation of a value is valid for this column's data type.
+	 * @param value The value to check.
+	 * @return True if this is a valid value. False if it cannot be used.
+	 */
+	public boolean isValidValue(CharSequence value)
+	{
+		// the rules for this column's type were all worked out when the validator was made
+		return validator.isValid(value);
+	}
+	
+	/**
+	 * Get the validator used by isValidValue, which checks values for this column without allocating anything.
+	 */
+	public ValueValidator getValidator()
+	{
+		return validator;
+	}
+	
+	/**
+	 * Gets if the data type of this column is a number type (INT, DOUBLE, etc.)
+	 */
+	public boolean isNumberType()
+	{
+		switch (type)
+		{
+		case Byte:
+		case Decimal:
+		case Double:
+		case Float:
+		case Integer:
+		case Long:
+		case Short:
+			return true;
+		case Bit:
+		case Binary:
+		case Blob:
+		case Date:
+		case DateTime:
+		case Enum:
+		case Text:
+		case Time:
+		case VarChar:
+			return false;
+		default:
+			return false;
+		
+		}
+	}
+	
+	/**
+	 * Stands for a value that isn't valid for the column, when read gives it back.
+	 */
+	public static final Object INVALID = new Object();
+	
+	/**
+	 * Check a string representation of a value in this column and read it into the object to bind to a PreparedStatement parameter,
+	 * both in the same pass over the value, so nothing is read twice.
+	 * The value is read into the type the column holds (a Long for whole numbers and BIT values, a Double, a BigDecimal, a java.sql.Date, Time or Timestamp,
+	 * or the number of an ENUM or SET value), so the server is sent the value itself rather than text it has to read all over again.
+	 * Anything valid that can't be read that way (such as a date of all zeroes, or a TIME longer than a day) is sent as the text it was typed as.
+	 * A value is valid exactly when isValidValue says it is.
+	 * @param value The value to read.
+	 * @return The object to pass to PreparedStatement.setObject, null if the value should be stored as NULL, or INVALID if it isn't valid for the column.
+	 */
+	public Object read(String value)
+	{
+		int len = value.length();
+		if (!validator.allowsLength(len))
+		{
+			return INVALID;
+		}
+		
+		if (len == 0)
+		{
+			switch (type)
+			{
+			case Binary:
+			case Blob:
+			case Enum:
+			case Set:
+			case Text:
+			case VarChar:
+				// an empty string is still a string (an ENUM or SET only takes one if it's a member, which check finds out)
+				return validator.check(value, 0) ? value : INVALID;
+			default:
+				// there's no such thing as an empty number or date, so it's NULL
+				return validator.check(value, 0) ? null : INVALID;
+			}
+		}
+		
+		switch (type)
+		{
+		case Bit:
+		{
+			// BIT values are entered in binary ("101"), but need to be sent as the number they represent.
+			// They're sent as a Long rather than as the bytes of the value: the server stores bytes in a BIT column the same way, but it
+			// compares a BIT column with bytes as if they were a number written out, so x'05' is 0, and 'Delete' would remove the wrong rows
+			long bits = 0;
+			for (int i = 0; i < len; i++)
+			{
+				char ch = value.charAt(i);
+				if (ch != '0' && ch != '1')
+				{
+					return INVALID;
+				}
+				bits = (bits << 1) | (ch - '0'); // only the last 64 bits are kept, as BigInteger.longValue did
+			}
+			return bits;
+		}
+		case Byte:
+		case Short:
+		case Integer:
+		case Long:
+		{
+			long n;
+			try { n = Long.parseLong(value); }
+			catch (NumberFormatException e)
+			{
+				// only an unsigned BIGINT can be too big for a long and still be valid
+				return (type == ColumnDataType.Long && unsigned) ? readUnsignedBig(value) : INVALID;
+			}
+			return validator.allows(n) ? (Object) n : INVALID;
+		}
+		case Float:
+		case Double:
+		{
+			double d;
+			try { d = Double.parseDouble(value); }
+			catch (NumberFormatException e) { return INVALID; } // the validator takes exactly the strings Double.parseDouble does
+			
+			// the server doesn't store NaN or infinity, so let it complain about those
+			return (!Double.isNaN(d) && !Double.isInfinite(d)) ? (Object) d : value;
+		}
+		case Decimal:
+			// the check reads the number the way the default locale writes it, but only up to its first digit, so this is the one full read;
+			// DecimalFormat let through some values (like "12abc" or "1,000") that aren't a plain number, which the server reads in its own way
+			if (!validator.check(value, len))
+			{
+				return INVALID;
+			}
+			try { return new BigDecimal(value); }
+			catch (NumberFormatException e) { return value; }
+		case Date:
+		{
+			// any real date readDate finds is a valid one, so the check is only needed for the ones it can't read
+			Calendar c = readDate(value);
+			if (c != null)
+			{
+				return new java.sql.Date(c.getTimeInMillis());
+			}
+			return validator.check(value, len) ? value : INVALID;
+		}
+		case DateTime:
+		{
+			// the check reads the date in a 19 character value at the YY-MM-DD positions, so it can turn down one readDateTime reads
+			if (!validator.check(value, len))
+			{
+				return INVALID;
+			}
+			Calendar c = readDateTime(value);
+			return (c != null) ? new Timestamp(c.getTimeInMillis()) : value;
+		}
+		case Time:
+		{
+			// any time of day readTime finds is a valid one, so the check is only needed for the ones it can't read
+			Calendar c = readTime(value);
+			if (c != null)
+			{
+				return new Time(c.getTimeInMillis());
+			}
+			return validator.check(value, len) ? value : INVALID;
+		}
+		case Enum:
+		{
+			// the server numbers an ENUM's values from 1
+			int ordinal = enumlookup.ordinal(value);
+			return (ordinal >= 0) ? (Object) (ordinal + 1) : INVALID;
+		}
+		case Set:
+		{
+			// SET values are sent as the bits of their elements, so the server doesn't have to split them up and look them up again
+			long bits = ((ValueValidator.SetValue) validator).mask(value, len);
+			if (bits >= 0)
+			{
+				return bits;
+			}
+			// the 64th member makes the number negative, which the server won't take, so leave that one as it is
+			return validator.check(value, len) ? value : INVALID;
+		}
+		case Binary:
+		case Blob:
+		case Text:
+		case VarChar:
+			// strings and bytes are sent as they are
+			return value;
+		default:
+			return validator.check(value, len) ? value : INVALID;
+		}
+	}
+	
+	/**
+	 * Read an unsigned BIGINT too big for a long, which the validator takes if it's digits with no minus sign (other than on 0).
+	 */
+	private static Object readUnsignedBig(String value)
+	{
+		try
+		{
+			BigInteger n = new BigInteger(value);
+			return (n.signum() >= 0) ? new BigDecimal(n) : INVALID;
+		}
+		catch (NumberFormatException e)
+		{
+			return INVALID;
+		}
+	}
+	
+	/**
+	 * Get the object to bind to a PreparedStatement parameter for a string representation of a value in this column (see read).
+	 * @param value The value to convert.
+	 * @return The object to pass to PreparedStatement.setObject. null if the value should be stored as NULL.
+	 * @throws IllegalArgumentException If the value isn't valid for the column.
+	 */
+	public Object toParameter(String value)
+	{
+		Object param = read(value);
+		if (param == INVALID)
+		{
+			throw new IllegalArgumentException("'" + value + "' isn't a valid value for " + name + ".");
+		}
+		return param;
+	}
+	
+	/**
+	 * Check a string representation of a value in this column and set a PreparedStatement parameter to it, read into the type the
+	 * column holds (see read). Whole numbers and floating-point numbers are set with setLong and setDouble, so nothing is made for them
+	 * along the way.
+	 * @param stmt The statement.
+	 * @param index The index of the parameter, starting at 1.
+	 * @param value The value to set it to.
+	 * @return True if the parameter was set. False if the value isn't valid for the column, in which case it's left as it was.
+	 * @throws SQLException If the parameter couldn't be set.
+	 */
+	public boolean bind(PreparedStatement stmt, int index, String value) throws SQLException
+	{
+		int len = value.length();
+		if (len > 0 && validator.allowsLength(len))
+		{
+			switch (type)
+			{
+			case Byte:
+			case Short:
+			case Integer:
+			case Long:
+				try
+				{
+					long n = Long.parseLong(value);
+					if (!validator.allows(n))
+					{
+						return false;
+					}
+					stmt.setLong(index, n);
+					return true;
+				}
+				catch (NumberFormatException e)
+				{
+					if (!(type == ColumnDataType.Long && unsigned))
+					{
+						return false;
+					}
+				}
+				break; // leave an unsigned BIGINT too big for a long to read
+			case Float:
+			case Double:
+				try
+				{
+					double d = Double.parseDouble(value);
+					if (Double.isNaN(d) || Double.isInfinite(d))
+					{
+						stmt.setString(index, value); // the server doesn't store NaN or infinity, so let it complain about those
+					}
+					else
+					{
+						stmt.setDouble(index, d);
+					}
+					return true;
+				}
+				catch (NumberFormatException e)
+				{
+					return false;
+				}
+			default:
+				break;
+			}
+		}
+		
+		Object param = read(value);
+		if (param == INVALID)
+		{
+			return false;
+		}
+		bindParameter(stmt, index, param);
+		return true;
+	}
+	
+	/**
+	 * Set a PreparedStatement parameter to an object read gave back for a value.
+	 * @param stmt The statement.
+	 * @param index The index of the parameter, starting at 1.
+	 * @param param The object, or null for NULL. It can't be INVALID.
+	 * @throws SQLException If the parameter couldn't be set.
+	 */
+	public static void bindParameter(PreparedStatement stmt, int index, Object param) throws SQLException
+	{
+		if (param == null)
+		{
+			stmt.setNull(index, Types.NULL);
+		}
+		else
+		{
+			stmt.setObject(index, param);
+		}
+	}
+	
+	/**
+	 * Read a DATE value the way the server does, in any of the ways isValidValue allows it to be written
+	 * (YYYY-MM-DD, YY-MM-DD, YYYYMMDD or YYMMDD, with any punctuation between the parts).
+	 * @return The date, at midnight in this computer's time zone, or null if it isn't a real date (such as 0000-00-00, or the 30th of February).
+	 */
+	private static Calendar readDate(CharSequence value)
+	{
+		int len = value.length();
+		boolean digits = ValueValidator.parseInt(value, 0, len) != ValueValidator.NOT_AN_INT;
+		int[] f = new int[6];
+		boolean ok;
+		
+		switch (len)
+		{
+		case 10:
+			ok = separated(value, 4, 7) && dateParts(f, value, 0, 4, 5, 7, 8, 10); // YYYY-MM-DD
+			break;
+		case 8:
+			ok = digits ? dateParts(f, value, 0, 4, 4, 6, 6, 8) // YYYYMMDD
+					: separated(value, 2, 5) && dateParts(f, value, 0, 2, 3, 5, 6, 8); // YY-MM-DD
+			break;
+		case 6:
+			ok = dateParts(f, value, 0, 2, 2, 4, 4, 6); // YYMMDD
+			break;
+		default:
+			return null;
+		}
+		
+		return ok ? calendar(f) : null;
+	}
+	
+	/**
+	 * Read a DATETIME value the way the server does, in any of the ways isValidValue allows it to be written
+	 * (YYYY-MM-DD HH:MM:SS, YY-MM-DD HH:MM:SS, YYYYMMDDHHMMSS or YYMMDDHHMMSS, with any punctuation between the parts).
+	 * @return The date and time in this computer's time zone, or null if it isn't a real one, including a time that's skipped over
+	 * when the clocks go forward here.
+	 */
+	private static Calendar readDateTime(CharSequence value)
+	{
+		int[] f = new int[6];
+		boolean ok;
+		
+		switch (value.length())
+		{
+		case 19:
+			// YYYY-MM-DD HH:MM:SS
+			ok = separated(value, 4, 7) && separated(value, 13, 16) && dateParts(f, value, 0, 4, 5, 7, 8, 10) && timeParts(f, value, 11, 3, true);
+			break;
+		case 17:
+			// YY-MM-DD HH:MM:SS
+			ok = separated(value, 2, 5) && separated(value, 11, 14) && dateParts(f, value, 0, 2, 3, 5, 6, 8) && timeParts(f, value, 9, 3, true);
+			break;
+		case 14:
+			// YYYYMMDDHHMMSS
+			ok = dateParts(f, value, 0, 4, 4, 6, 6, 8) && timeParts(f, value, 8, 2, true);
+			break;
+		case 12:
+			// YYMMDDHHMMSS
+			ok = dateParts(f, value, 0, 2, 2, 4, 4, 6) && timeParts(f, value, 6, 2, true);
+			break;
+		default:
+			return null;
+		}
+		
+		return ok ? calendar(f) : null;
+	}
+	
+	/**
+	 * Read a TIME value that's a time of day (HH:MM:SS, HH:MM or HHMMSS). A TIME can also be a length of time, which can be negative,
+	 * longer than a day, or have a number of days in front of it ("D HH", "D HH:MM" and so on); java.sql.Time can't hold those,
+	 * so anything that isn't written exactly one of these three ways is left for the server to read.
+	 * @return The time on the 1st of January 1970 in this computer's time zone, or null if it isn't a time of day written one of those ways.
+	 */
+	private static Calendar readTime(CharSequence value)
+	{
+		int[] f = { 1970, 1, 1, 0, 0, 0 };
+		boolean ok;
+		
+		switch (value.length())
+		{
+		case 8:
+			ok = value.charAt(2) == ':' && value.charAt(5) == ':' && timeParts(f, value, 0, 3, true); // HH:MM:SS
+			break;
+		case 6:
+			ok = timeParts(f, value, 0, 2, true); // HHMMSS (only digits, which timeParts checks)
+			break;
+		case 5:
+			ok = value.charAt(2) == ':' && timeParts(f, value, 0, 3, false); // HH:MM
+			break;
+		default:
+			return null;
+		}
+		
+		return ok ? calendar(f) : null;
+	}
+	
+	/**
+	 * Gets if the characters at a and b aren't digits, so they're the punctuation between the parts of a date or time.
+	 */
+	private static boolean separated(CharSequence value, int a, int b)
+	{
+		return !Character.isDigit(value.charAt(a)) && !Character.isDigit(value.charAt(b));
+	}
+	
+	/**
+	 * Read the year, month and day at the given parts of the value into the first three fields.
+	 * A two digit year is read the way the server reads it: 70 to 99 are 1970 to 1999, and 00 to 69 are 2000 to 2069.
+	 * @return True if the parts are numbers that could be a date. Whether the day is in the month is left to calendar.
+	 */
+	private static boolean dateParts(int[] f, CharSequence value, int y1, int y2, int m1, int m2, int d1, int d2)
+	{
+		long year = readNumber(value, y1, y2);
+		long month = readNumber(value, m1, m2);
+		long day = readNumber(value, d1, d2);
+		
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31)
+		{
+			return false;
+		}
+		
+		if (y2 - y1 == 2)
+		{
+			year += (year < 70) ? 2000 : 1900;
+		}
+		else if (year == 0)
+		{
+			return false; // there was no year 0
+		}
+		
+		f[0] = (int) year;
+		f[1] = (int) month;
+		f[2] = (int) day;
+		return true;
+	}
+	
+	/**
+	 * Read the hours, minutes and (if there are any) seconds starting at an index of the value into the last three fields.
+	 * @param step The number of characters from the start of one part to the next: 3 if they're separated by punctuation, 2 if not.
+	 * @param seconds True if there are seconds.
+	 * @return True if the parts are numbers that make a time of day.
+	 */
+	private static boolean timeParts(int[] f, CharSequence value, int start, int step, boolean seconds)
+	{
+		long hour = readNumber(value, start, start + 2);
+		long minute = readNumber(value, start + step, start + step + 2);
+		long second = seconds ? readNumber(value, start + step * 2, start + step * 2 + 2) : 0;
+		
+		if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59)
+		{
+			return false;
+		}
+		
+		f[3] = (int) hour;
+		f[4] = (int) minute;
+		f[5] = (int) second;
+		return true;
+	}
+	
+	/**
+	 * Make a calendar in this computer's time zone from a year, month (from 1), day, hour, minute and second.
+	 * The calendar is lenient, so nothing is thrown, and then checked field by field: a date that doesn't exist (the 30th of February)
+	 * or a time the clocks skip over when they go forward would have been moved to another time, which would be stored instead.
+	 * @return The calendar, or null if it doesn't show exactly those fields.
+	 */
+	private static Calendar calendar(int[] f)
+	{
+		Calendar c = new GregorianCalendar(f[0], f[1] - 1, f[2], f[3], f[4], f[5]);
+		c.set(Calendar.MILLISECOND, 0);
+		c.getTimeInMillis(); // works out the time, and moves the fields to match it
+		
+		if (c.get(Calendar.YEAR) != f[0] || c.get(Calendar.MONTH) != f[1] - 1 || c.get(Calendar.DAY_OF_MONTH) != f[2]
+				|| c.get(Calendar.HOUR_OF_DAY) != f[3] || c.get(Calendar.MINUTE) != f[4] || c.get(Calendar.SECOND) != f[5])
+		{
+			return null; // leave it for the server to read as it is
+		}
+		return c;
+	}
+	
+	/**
+	 * Read the digits from start to end as a number.
+	 * @return The number, or -1 if they aren't all digits.
+	 */
+	private static long readNumber(CharSequence value, int start, int end)
+	{
+		long n = 0;
+		for (int i = start; i < end; i++)
+		{
+			char ch = value.charAt(i);
+			if (ch < '0' || ch > '9')
+			{
+				return -1;
+			}
+			n = n * 10 + (ch - '0');
+		}
+		return n;
+	}
+	
+	/**
+	 * Create an ArrayList with a ColumnData object for each column in the table
+	 * @param data The ResultSet data this function reads. This must be the ResultSet from a "DESCRIBE" command.
+	 * @return An ArrayList with a ColumnData object for each column.
+	 * @throws SQLException If there is an issue reading the ResultSet data, this exception will be raised.
+	 */
+	public static ArrayList<ColumnData> buildColumnData(ResultSet data) throws SQLException
+	{
+		ArrayList<ColumnData> cols = new ArrayList<ColumnData>();
+		
+		try
+		{
+			int rn = 1;
+			
+			while (data.next())
+			{
+				// Add to column list
+				cols.add(buildColumn(data, rn));
+				
+				rn++;
+			}
+		}
+		catch (SQLException e)
+		{
+			throw e;
+		}
+		
+		return cols;
+	}
+	
+	/**
+	 * Create a list of ColumnData objects for every table at once.
+	 * @param data The ResultSet data this function reads. Its first four columns must match those of a "DESCRIBE" command
+	 * (name, type, nullable, key), and the fifth must be the name of the table. The rows for each table must be together and in column order,
+	 * such as from the query in SchemaCache.PREFETCH_QUERY.
+	 * @return A map from each table name to an ArrayList with a ColumnData object for each of its columns.
+	 * @throws SQLException If there is an issue reading the ResultSet data, this exception will be raised.
+	 */
+	public static Map<String, ArrayList<ColumnData>> buildSchemaData(ResultSet data) throws SQLException
+	{
+		Map<String, ArrayList<ColumnData>> tables = new HashMap<String, ArrayList<ColumnData>>();
+		
+		String table = null;
+		ArrayList<ColumnData> cols = null;
+		int rn = 1;
+		
+		while (data.next())
+		{
+			String tbl = data.getString(5);
+			
+			if (!tbl.equals(table))
+			{
+				// moved on to the next table, so start counting columns from 1 again
+				table = tbl;
+				cols = new ArrayList<ColumnData>();
+				tables.put(table, cols);
+				rn = 1;
+			}
+			
+			cols.add(buildColumn(data, rn));
+			rn++;
+		}
+		
+		return tables;
+	}
+	
+	/**
+	 * Create a ColumnData object from the current row of a "DESCRIBE" command's ResultSet.
+	 */
+	private static ColumnData buildColumn(ResultSet data, int rn) throws SQLException
+	{
+		// Determine if nullable
+		boolean nn = false;
+		if (data.getString(3).equals("NO"))
+		{
+			nn = true; // this column is not nullable (null values not allowed)
+		}
+		
+		// Determine if primary key
+		boolean pk = false;
+		if (data.getString(4).equals("PRI"))
+		{
+			pk = true; // this column is primary key
+		}
+		
+		// Parse/determine type
+		String typedata = data.getString(2).toUpperCase(); // Data about the type is stored in the 2nd column
+		
+		boolean us = false;
+		if (typedata.endsWith("UNSIGNED") || typedata.endsWith("UNSIGNED ZEROFILL"))
+		{
+			us = true; // Is unsigned
+		}
+		
+		int length = 0;
+		boolean isenum = false;
+		ColumnDataType type;
+		// If there is an opening parenthesis, this means there might be a length parameter
+		if (!(typedata.startsWith("ENUM") || typedata.startsWith("SET")))
+		{
+			
+			if (typedata.contains("("))
+			{
+				String lth = typedata.substring(typedata.indexOf("(") + 1, typedata.indexOf(")"));
+				
+				if (!(typedata.startsWith("TIME") || typedata.startsWith("DATE") || typedata.startsWith("DATETIME")))
+				{
+					
+					if (lth.contains(",")) // some data types allow commas within the parentheses to define decimal points
+					{
+						lth = lth.substring(0, lth.indexOf(","));
+					}
+					length = Integer.parseInt(lth); // there really isn't a conceivable way that this will not be a number
+					
+				}
+				else
+				{
+					length = 0;
+					// for the TIME, DATE, and DATETIME types, the value inside the parentheses
+					// are not to define length, and thus will not be counted
+				}
+				
+				// data type will be defined immediately before the opening parenthesis
+				String dt = typedata.substring(0, typedata.indexOf('('));
+				
+				type = getTypeFromString(dt);
+			}
+			else
+			{
+				// no length parameter defined, so it is left as 0.
+				
+				// unless it's a BIT value. the max BIT length is 64
+				if (typedata.startsWith("BIT"))
+				{
+					length = 64;
+				}
+				// or unless it's a YEAR value. the max YEAR length is 4
+				if (typedata.startsWith("YEAR"))
+				{
+					length = 4;
+				}
+				
+				if (typedata.contains(" ")) // meaning UNSIGNED, ZEROFILL, or other special data was written on the end
+				{
+					String dt = typedata.substring(0, typedata.indexOf(" "));
+					
+					type = getTypeFromString(dt);
+				}
+				else
+				{
+					// only contains data type and that's it. no further parsing necessary
+					type = getTypeFromString(typedata);
+				}
+			}
+		}
+		else
+		{
+			// is an ENUM or SET type
+			length = 0;
+			isenum = true;
+			
+			if (typedata.startsWith("ENUM"))
+			{
+				type = ColumnDataType.Enum;
+			}
+			else
+			{
+				type = ColumnDataType.Set;
+			}
+		}
+		
+		if (isenum)
+		{
+			// in order to make the 'typedata' string look pretty
+			// while keeping the casing of the original enum values
+			String lth = data.getString(2).substring(typedata.indexOf("(") + 1, typedata.indexOf(")"));
+			typedata = typedata.substring(0, typedata.indexOf("(")) + "(" + lth + ")";
+		}
+		
+		ColumnData col = new ColumnData(data.getString(1), typedata, type, rn, length, nn, us, pk);
+		
+		if (isenum) // set up enumerator/set values
+		{
+			String lth = data.getString(2).substring(typedata.indexOf("(") + 1, typedata.indexOf(")"));
+			col.setUpEnumValues(lth);
+		}
+		
+		return col;
+	}
+	
+	/**
+	 * Get the ColumnDataType for the name of a MySQL data type, without any length or other parameters.
+	 * @param str The name of the data type, in all caps (such as "VARCHAR").
+	 * @return The matching ColumnDataType. Unsupported data types will be returned as VarChar.
+	 */
+	static ColumnDataType getTypeFromString(String str)
+	{
+		// used source: http://docs.oracle.com/cd/E17952_01/connector-j-en/connector-j-reference-type-conversions.html
+		// used source: http://dev.mysql.com/doc/refman/5.6/en/create-table.html
+		
+		switch (str)
+		{
+		case "BIT":
+			return ColumnDataType.Bit;
+		case "BOOL":
+		case "BOOLEAN": // MySQL does not have a defined BOOLEAN type. BOOL and BOOLEAN are synonyms of TINYINT(1).
+		case "TINYINT":
+			return ColumnDataType.Byte;
+		case "SMALLINT":
+			return ColumnDataType.Short;
+		case "MEDIUMINT":
+		case "INT":
+		case "INTEGER":
+			return ColumnDataType.Integer;
+		case "BIGINT":
+			return ColumnDataType.Long;
+		case "DOUBLE":
+			return ColumnDataType.Double;
+		case "REAL":
+		case "FLOAT":
+			return ColumnDataType.Float;
+		case "DECIMAL":
+		case "NUMERIC": // the two data types are synonymous, from what it seems
+			return ColumnDataType.Decimal;
+		case "DATE":
+		case "YEAR": // configured by default to return a DATE, of the specified year, on Jan 1st at midnight
+			return ColumnDataType.Date;
+		case "TIME":
+			return ColumnDataType.Time;
+		case "DATETIME":
+		case "TIMESTAMP": // Timestamp differs from DateTime in that the data is stored in UTC time
+			return ColumnDataType.DateTime;
+		case "CHAR":
+		case "VARCHAR":
+		case "LONGVARCHAR": // lumping LONGVARCHAR with CHAR and VARCHAR isn't the best, no, but it's enough for this program's purposes
+			return ColumnDataType.VarChar;
+		case "TINYBLOB":
+		case "BLOB":
+		case "MEDIUMBLOB":
+		case "LONGBLOB": // blobs are used for storing data, such as images, etc. rather than just plain text
+			return ColumnDataType.Blob;
+		case "TINYTEXT":
+		case "TEXT":
+		case "MEDIUMTEXT":
+		case "LONGTEXT": // text is stored separately from the table itself; the table just references the text resource
+			return ColumnDataType.Text;
+		case "BINARY":
+		case "VARBINARY":
+			return ColumnDataType.Binary;
+		default:
+			return ColumnDataType.VarChar;
+		}
+		
+		//return ColumnDataType.VarChar;
+	}
+	
+}
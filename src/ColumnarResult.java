@@ -0,0 +1,789 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+
+/**
+ * Holds the rows of a result outside of the Java heap, column by column, so a big result can be kept (to be shown again, sorted, or saved)
+ * without a String object for every value, and without the garbage collector having to look through it.
+ * Each column is kept in the form its ColumnDataType suits best: whole numbers as ints or longs, FLOAT and DOUBLE as floats and doubles,
+ * and everything else (text, DECIMAL, dates and times) as UTF-8 bytes packed one after another. BLOB and BINARY values are kept as their bytes.
+ * The values are held in direct ByteBuffers of up to a few hundred KB (a MB for the packed bytes), so a result isn't limited to what fits in one buffer.
+ * Rows are added with addRow, and can be read at any time from then on, from any number of threads as long as no more are being added.
+ * The memory is given back once the ColumnarResult is no longer used and the garbage collector has noticed, so it isn't freed straight away.
+ */
+public class ColumnarResult
+{
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * How the values of a column are kept.
+	 */
+	public enum Storage
+	{
+		INT, LONG, FLOAT, DOUBLE,
+		TEXT, // UTF-8 bytes
+		BYTES; // the bytes of a BLOB or BINARY value, as they are
+
+		/**
+		 * Gets the number of bytes a value takes up in a column's slots. Text and bytes take 12: where they are, and how long they are.
+		 */
+		int width()
+		{
+			switch (this)
+			{
+			case INT:
+			case FLOAT:
+				return 4;
+			case LONG:
+			case DOUBLE:
+				return 8;
+			default:
+				return 12;
+			}
+		}
+	}
+
+	// each buffer of slots holds the values of this many rows; the first one starts smaller and grows, so a result of a few rows stays small
+	private static final int CHUNK_SHIFT = 14;
+	private static final int CHUNK_SLOTS = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SLOTS - 1;
+	private static final int FIRST_SLOTS = 64;
+
+	// the same for the packed bytes; a value bigger than a whole buffer gets a buffer of its own
+	private static final int ARENA_CHUNK = 1024 * 1024;
+	private static final int FIRST_ARENA = 4096;
+
+	private final String[] labels;
+	private final int[] sqlTypes;
+	private final ColumnDataType[] types;
+	private final Storage[] storage;
+	private final Slots[] values;
+	private final Slots[] nulls; // a long for every 64 rows of each column, with a bit set for each row that is NULL
+	private final Arena arena = new Arena(); // shared by every TEXT and BYTES column
+
+	private volatile int rows = 0;
+
+	/**
+	 * Values of the same width, one after another in direct buffers.
+	 */
+	private static final class Slots
+	{
+		final int width;
+		final ArrayList<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+		long bytes = 0;
+
+		Slots(int width)
+		{
+			this.width = width;
+		}
+
+		ByteBuffer chunk(int slot)
+		{
+			return chunks.get(slot >>> CHUNK_SHIFT);
+		}
+
+		int offset(int slot)
+		{
+			return (slot & CHUNK_MASK) * width;
+		}
+
+		/**
+		 * Make sure there's room for a slot. Slots are filled in order, so this only ever has to grow the last buffer or add another.
+		 */
+		void ensure(int slot)
+		{
+			int c = slot >>> CHUNK_SHIFT;
+
+			if (c == chunks.size())
+			{
+				// only the first buffer starts small; once there's a second, the first one is as big as it gets
+				chunks.add(allocate(c == 0 ? FIRST_SLOTS * width : CHUNK_SLOTS * width));
+				bytes += chunks.get(c).capacity();
+				return;
+			}
+
+			ByteBuffer b = chunks.get(c);
+			int need = offset(slot) + width;
+			if (need > b.capacity())
+			{
+				int cap = b.capacity();
+				while (cap < need)
+				{
+					cap *= 2;
+				}
+				ByteBuffer bigger = copyInto(b, Math.min(cap, CHUNK_SLOTS * width));
+				bytes += bigger.capacity() - b.capacity();
+				chunks.set(c, bigger);
+			}
+		}
+	}
+
+	/**
+	 * Bytes of any length, packed one after another in direct buffers. A value never spans two buffers,
+	 * so it's found by the number of its buffer (in the top 32 bits of its address) and where it starts in it.
+	 */
+	private static final class Arena
+	{
+		final ArrayList<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+		int used = 0; // bytes used in the last buffer
+		long bytes = 0;
+
+		long add(byte[] val)
+		{
+			int len = val.length;
+			int last = chunks.size() - 1;
+
+			if (last < 0 || used + len > chunks.get(last).capacity())
+			{
+				ByteBuffer b = (last < 0) ? null : chunks.get(last);
+
+				if (b != null && b.capacity() < ARENA_CHUNK && used + len <= ARENA_CHUNK)
+				{
+					// the first buffer grows until it's full size
+					int cap = b.capacity();
+					while (cap < used + len)
+					{
+						cap *= 2;
+					}
+					ByteBuffer bigger = copyInto(b, Math.min(cap, ARENA_CHUNK));
+					bytes += bigger.capacity() - b.capacity();
+					chunks.set(last, bigger);
+				}
+				else
+				{
+					chunks.add(allocate(Math.max(len, last < 0 ? FIRST_ARENA : ARENA_CHUNK)));
+					bytes += chunks.get(++last).capacity();
+					used = 0;
+				}
+			}
+
+			// only this uses the buffer's own position; everything that reads it goes by index, or through a view of its own
+			ByteBuffer b = chunks.get(last);
+			b.position(used);
+			b.put(val);
+
+			long address = ((long) last << 32) | used;
+			used += len;
+			return address;
+		}
+	}
+
+	/**
+	 * A place in a ColumnarResult, moved from row to row. Its getBytes gives a view of the bytes where they are kept, rather than a copy.
+	 * Each thread reading the result needs its own cursor.
+	 */
+	public class Cursor
+	{
+		private int row = -1;
+
+		// a view of each arena buffer for each column, made when first needed, and the buffer it was made from
+		private final ByteBuffer[][] views = new ByteBuffer[labels.length][];
+		private final ByteBuffer[][] viewOf = new ByteBuffer[labels.length][];
+
+		private Cursor() { }
+
+		/**
+		 * Move to the next row.
+		 * @return False if there are no more rows.
+		 */
+		public boolean next()
+		{
+			if (row + 1 >= rows)
+			{
+				return false;
+			}
+			row++;
+			return true;
+		}
+
+		/**
+		 * Move to a row.
+		 * @param row The row, counting from 0.
+		 */
+		public void moveTo(int row)
+		{
+			checkRow(row);
+			this.row = row;
+		}
+
+		/**
+		 * Get the row the cursor is on, counting from 0.
+		 */
+		public int getRow() {
+			return row;
+		}
+
+		/**
+		 * Gets if a value in the current row is NULL.
+		 * @param col The column, counting from 0.
+		 */
+		public boolean isNull(int col)
+		{
+			return ColumnarResult.this.isNull(row, col);
+		}
+
+		/**
+		 * Get a value in the current row as a long. See ColumnarResult.getLong.
+		 */
+		public long getLong(int col)
+		{
+			return ColumnarResult.this.getLong(row, col);
+		}
+
+		/**
+		 * Get a value in the current row as a double. See ColumnarResult.getDouble.
+		 */
+		public double getDouble(int col)
+		{
+			return ColumnarResult.this.getDouble(row, col);
+		}
+
+		/**
+		 * Get a value in the current row as text. See ColumnarResult.getText.
+		 */
+		public String getText(int col)
+		{
+			return ColumnarResult.this.getText(row, col);
+		}
+
+		/**
+		 * Get the bytes of a TEXT or BYTES value in the current row, without copying them.
+		 * @param col The column, counting from 0.
+		 * @return A read-only buffer whose position and limit are the start and end of the value (UTF-8 for text). null if the value is NULL.
+		 * The same buffer is given back the next time this is called for the same column, with its position and limit moved.
+		 */
+		public ByteBuffer getBytes(int col)
+		{
+			int len = getLength(row, col);
+			if (len == -1)
+			{
+				return null;
+			}
+
+			long address = arenaAddress(row, col);
+			int chunk = (int) (address >>> 32);
+			if (views[col] == null || views[col].length < arena.chunks.size())
+			{
+				views[col] = new ByteBuffer[arena.chunks.size()];
+				viewOf[col] = new ByteBuffer[arena.chunks.size()];
+			}
+
+			// the first buffer is swapped for a bigger one while it's growing, so the view has to be of the one there now
+			ByteBuffer from = arena.chunks.get(chunk);
+			if (viewOf[col][chunk] != from)
+			{
+				views[col][chunk] = from.asReadOnlyBuffer();
+				viewOf[col][chunk] = from;
+			}
+
+			ByteBuffer view = views[col][chunk];
+			int start = (int) address;
+			view.clear();
+			view.position(start);
+			view.limit(start + len);
+			return view;
+		}
+	}
+
+	/**
+	 * Copies rows into a ColumnarResult while they're being read for something else (such as being shown), as long as it stays under a size.
+	 * Once it gets bigger, it gives up and lets go of the rows, so a result too big to keep costs nothing more than reading it.
+	 */
+	public static class Collector
+	{
+		private final long limit;
+		private ColumnarResult rows = null;
+		private boolean tooBig = false;
+
+		/**
+		 * Create a collector.
+		 * @param limit The most bytes the rows can take up.
+		 */
+		public Collector(long limit)
+		{
+			this.limit = limit;
+		}
+
+		/**
+		 * Get ready for the rows. This must be called before they're added.
+		 * @param md The columns of the result.
+		 * @throws SQLException If the columns couldn't be read.
+		 */
+		public void start(ResultSetMetaData md) throws SQLException
+		{
+			rows = new ColumnarResult(md);
+			tooBig = false;
+		}
+
+		/**
+		 * Add the row the ResultSet is on, unless the rows have already got too big.
+		 * @param rs The result, already moved onto the row with next().
+		 * @throws SQLException If the values couldn't be read.
+		 */
+		public void addRow(ResultSet rs) throws SQLException
+		{
+			if (tooBig)
+			{
+				return;
+			}
+
+			if (rows.getRowCount() == Integer.MAX_VALUE || rows.getSize() > limit)
+			{
+				tooBig = true;
+				rows = null;
+				return;
+			}
+
+			try
+			{
+				rows.addRow(rs);
+			}
+			catch (OutOfMemoryError e)
+			{
+				// there's less memory outside the heap than the limit allowed for (see -XX:MaxDirectMemorySize), so the rows aren't kept
+				tooBig = true;
+				rows = null;
+			}
+		}
+
+		/**
+		 * Get the rows that were added.
+		 * @return The rows, or null if they got too big to keep.
+		 */
+		public ColumnarResult getRows() {
+			return rows;
+		}
+	}
+
+	/**
+	 * Create an empty result with the columns of a query.
+	 * @param md The columns, as given by the query's ResultSet.
+	 * @throws SQLException If the columns couldn't be read.
+	 */
+	public ColumnarResult(ResultSetMetaData md) throws SQLException
+	{
+		int cols = md.getColumnCount();
+		labels = new String[cols];
+		sqlTypes = new int[cols];
+		types = new ColumnDataType[cols];
+		storage = new Storage[cols];
+		values = new Slots[cols];
+		nulls = new Slots[cols];
+
+		for (int i = 0; i < cols; i++)
+		{
+			labels[i] = md.getColumnLabel(i + 1);
+			sqlTypes[i] = md.getColumnType(i + 1);
+
+			// MySQL gives names such as "INT UNSIGNED"; other drivers may not give a name at all
+			String name = md.getColumnTypeName(i + 1);
+			if (name == null || name.isEmpty())
+			{
+				types[i] = typeOf(sqlTypes[i]);
+				storage[i] = storageOf(types[i], !md.isSigned(i + 1));
+			}
+			else
+			{
+				name = name.toUpperCase();
+				types[i] = ColumnData.getTypeFromString(name.split(" ")[0]);
+				storage[i] = storageOf(types[i], name.contains("UNSIGNED"));
+			}
+
+			values[i] = new Slots(storage[i].width());
+			nulls[i] = new Slots(8);
+		}
+	}
+
+	/**
+	 * Read every row (that hasn't already been read) of a ResultSet into a new ColumnarResult.
+	 * @param rs The result. It isn't closed.
+	 * @return The rows.
+	 * @throws SQLException If the rows couldn't be read.
+	 */
+	public static ColumnarResult read(ResultSet rs) throws SQLException
+	{
+		ColumnarResult cr = new ColumnarResult(rs.getMetaData());
+		while (rs.next())
+		{
+			cr.addRow(rs);
+		}
+		return cr;
+	}
+
+	/**
+	 * Add the row the ResultSet is on.
+	 * @param rs The result, already moved onto the row with next(). Its columns must be the ones this ColumnarResult was created with.
+	 * @throws SQLException If the values couldn't be read.
+	 */
+	public void addRow(ResultSet rs) throws SQLException
+	{
+		int row = rows;
+		if (row == Integer.MAX_VALUE)
+		{
+			throw new IllegalStateException("A ColumnarResult can't hold more than " + Integer.MAX_VALUE + " rows.");
+		}
+
+		for (int i = 0; i < labels.length; i++)
+		{
+			Slots s = values[i];
+			s.ensure(row);
+			ByteBuffer b = s.chunk(row);
+			int at = s.offset(row);
+			boolean isNull;
+
+			switch (storage[i])
+			{
+			case INT:
+				b.putInt(at, rs.getInt(i + 1));
+				isNull = rs.wasNull();
+				break;
+			case LONG:
+				b.putLong(at, rs.getLong(i + 1));
+				isNull = rs.wasNull();
+				break;
+			case FLOAT:
+				b.putFloat(at, rs.getFloat(i + 1));
+				isNull = rs.wasNull();
+				break;
+			case DOUBLE:
+				b.putDouble(at, rs.getDouble(i + 1));
+				isNull = rs.wasNull();
+				break;
+			default:
+				byte[] val;
+				if (storage[i] == Storage.TEXT)
+				{
+					String str = rs.getString(i + 1);
+					val = (str == null) ? null : str.getBytes(UTF8);
+				}
+				else
+				{
+					val = rs.getBytes(i + 1);
+				}
+
+				isNull = (val == null);
+				b.putLong(at, isNull ? 0 : arena.add(val));
+				b.putInt(at + 8, isNull ? -1 : val.length);
+				break;
+			}
+
+			// a new buffer is all zeroes, so only a NULL has to be written
+			Slots n = nulls[i];
+			n.ensure(row >> 6);
+			if (isNull)
+			{
+				ByteBuffer nb = n.chunk(row >> 6);
+				int nat = n.offset(row >> 6);
+				nb.putLong(nat, nb.getLong(nat) | (1L << row));
+			}
+		}
+
+		rows = row + 1;
+	}
+
+	/**
+	 * Get a cursor to read the rows with, before the first row.
+	 */
+	public Cursor cursor()
+	{
+		return new Cursor();
+	}
+
+	/**
+	 * Get the number of columns.
+	 */
+	public int getColumnCount() {
+		return labels.length;
+	}
+
+	/**
+	 * Get the number of rows.
+	 */
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Get the name of each column.
+	 */
+	public String[] getLabels() {
+		return labels.clone();
+	}
+
+	/**
+	 * Get the type of each column, from java.sql.Types.
+	 */
+	public int[] getTypes() {
+		return sqlTypes.clone();
+	}
+
+	/**
+	 * Get the type of a column, as the rest of the program names them.
+	 * @param col The column, counting from 0.
+	 */
+	public ColumnDataType getColumnType(int col) {
+		return types[col];
+	}
+
+	/**
+	 * Get how the values of a column are kept.
+	 * @param col The column, counting from 0.
+	 */
+	public Storage getStorage(int col) {
+		return storage[col];
+	}
+
+	/**
+	 * Get the number of bytes of memory (outside of the heap) the rows take up, including room set aside for more rows.
+	 */
+	public long getSize() {
+		long total = arena.bytes;
+		for (int i = 0; i < labels.length; i++)
+		{
+			total += values[i].bytes + nulls[i].bytes;
+		}
+		return total;
+	}
+
+	/**
+	 * Gets if a value is NULL.
+	 * @param row The row, counting from 0.
+	 * @param col The column, counting from 0.
+	 */
+	public boolean isNull(int row, int col)
+	{
+		checkRow(row);
+		Slots n = nulls[col];
+		return (n.chunk(row >> 6).getLong(n.offset(row >> 6)) & (1L << row)) != 0;
+	}
+
+	/**
+	 * Get a value as a long. A FLOAT or DOUBLE value has any fraction cut off.
+	 * @param row The row, counting from 0.
+	 * @param col The column, counting from 0.
+	 * @return The value, or 0 if it's NULL.
+	 * @throws IllegalStateException If the column is kept as text or bytes.
+	 */
+	public long getLong(int row, int col)
+	{
+		checkRow(row);
+		Slots s = values[col];
+		ByteBuffer b = s.chunk(row);
+		int at = s.offset(row);
+
+		switch (storage[col])
+		{
+		case INT:
+			return b.getInt(at);
+		case LONG:
+			return b.getLong(at);
+		case FLOAT:
+			return (long) b.getFloat(at);
+		case DOUBLE:
+			return (long) b.getDouble(at);
+		default:
+			throw new IllegalStateException("Column " + labels[col] + " is kept as " + storage[col] + ", not as a number.");
+		}
+	}
+
+	/**
+	 * Get a value as a double.
+	 * @param row The row, counting from 0.
+	 * @param col The column, counting from 0.
+	 * @return The value, or 0 if it's NULL.
+	 * @throws IllegalStateException If the column is kept as text or bytes.
+	 */
+	public double getDouble(int row, int col)
+	{
+		checkRow(row);
+		Slots s = values[col];
+		ByteBuffer b = s.chunk(row);
+		int at = s.offset(row);
+
+		switch (storage[col])
+		{
+		case INT:
+			return b.getInt(at);
+		case LONG:
+			return b.getLong(at);
+		case FLOAT:
+			return b.getFloat(at);
+		case DOUBLE:
+			return b.getDouble(at);
+		default:
+			throw new IllegalStateException("Column " + labels[col] + " is kept as " + storage[col] + ", not as a number.");
+		}
+	}
+
+	/**
+	 * Get a value as the text TableRenderer shows for it: the same as ResultSet.getString, except that BIT values are in binary.
+	 * @param row The row, counting from 0.
+	 * @param col The column, counting from 0.
+	 * @return The text, or null if the value is NULL.
+	 */
+	public String getText(int row, int col)
+	{
+		if (isNull(row, col))
+		{
+			return null;
+		}
+
+		switch (storage[col])
+		{
+		case INT:
+		case LONG:
+			long val = getLong(row, col);
+			return (sqlTypes[col] == Types.BIT) ? Long.toBinaryString(val) : Long.toString(val);
+		case FLOAT:
+			return Float.toString((float) getDouble(row, col)); // the same as the driver gives for a FLOAT
+		case DOUBLE:
+			return Double.toString(getDouble(row, col));
+		default:
+			int len = getLength(row, col);
+			long address = arenaAddress(row, col);
+			byte[] bytes = new byte[len];
+			ByteBuffer b = arena.chunks.get((int) (address >>> 32)).duplicate();
+			b.position((int) address);
+			b.get(bytes);
+			return new String(bytes, UTF8);
+		}
+	}
+
+	/**
+	 * Get the values of one row as text, the way TableRenderer shows them.
+	 * @param row The row, counting from 0.
+	 * @param into An array with room for a value from each column, which is filled in. NULL values are set to null.
+	 */
+	public void getRow(int row, String[] into)
+	{
+		for (int i = 0; i < labels.length; i++)
+		{
+			into[i] = getText(row, i);
+		}
+	}
+
+	/**
+	 * Get the length of a TEXT or BYTES value, or -1 if it's NULL.
+	 */
+	private int getLength(int row, int col)
+	{
+		checkRow(row);
+		if (storage[col] != Storage.TEXT && storage[col] != Storage.BYTES)
+		{
+			throw new IllegalStateException("Column " + labels[col] + " is kept as " + storage[col] + ", not as bytes.");
+		}
+
+		Slots s = values[col];
+		return s.chunk(row).getInt(s.offset(row) + 8);
+	}
+
+	private long arenaAddress(int row, int col)
+	{
+		Slots s = values[col];
+		return s.chunk(row).getLong(s.offset(row));
+	}
+
+	private void checkRow(int row)
+	{
+		if (row < 0 || row >= rows)
+		{
+			throw new IndexOutOfBoundsException("Row " + row + " isn't there; there are " + rows + " rows.");
+		}
+	}
+
+	/**
+	 * Work out how to keep a column's values.
+	 */
+	private static Storage storageOf(ColumnDataType type, boolean unsigned)
+	{
+		switch (type)
+		{
+		case Byte:
+		case Short:
+			return Storage.INT; // even unsigned, they fit
+		case Integer:
+			return unsigned ? Storage.LONG : Storage.INT;
+		case Bit:
+			return Storage.LONG;
+		case Long:
+			return unsigned ? Storage.TEXT : Storage.LONG; // an unsigned BIGINT can be too big for a long
+		case Float:
+			return Storage.FLOAT;
+		case Double:
+			return Storage.DOUBLE;
+		case Blob:
+		case Binary:
+			return Storage.BYTES;
+		default:
+			return Storage.TEXT; // DECIMAL is kept as text so no digits are lost, and dates and times are shown the same way they came
+		}
+	}
+
+	/**
+	 * Get the ColumnDataType for a java.sql.Types type, for when the driver doesn't give the name of the type.
+	 */
+	private static ColumnDataType typeOf(int sqlType)
+	{
+		switch (sqlType)
+		{
+		case Types.BIT:
+		case Types.BOOLEAN:
+			return ColumnDataType.Bit;
+		case Types.TINYINT:
+			return ColumnDataType.Byte;
+		case Types.SMALLINT:
+			return ColumnDataType.Short;
+		case Types.INTEGER:
+			return ColumnDataType.Integer;
+		case Types.BIGINT:
+			return ColumnDataType.Long;
+		case Types.REAL:
+			return ColumnDataType.Float;
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return ColumnDataType.Double;
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+			return ColumnDataType.Decimal;
+		case Types.DATE:
+			return ColumnDataType.Date;
+		case Types.TIME:
+			return ColumnDataType.Time;
+		case Types.TIMESTAMP:
+			return ColumnDataType.DateTime;
+		case Types.BINARY:
+		case Types.VARBINARY:
+			return ColumnDataType.Binary;
+		case Types.LONGVARBINARY:
+		case Types.BLOB:
+			return ColumnDataType.Blob;
+		default:
+			return ColumnDataType.VarChar;
+		}
+	}
+
+	private static ByteBuffer allocate(int bytes)
+	{
+		return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Make a bigger buffer with the same bytes at the start.
+	 */
+	private static ByteBuffer copyInto(ByteBuffer from, int capacity)
+	{
+		ByteBuffer to = allocate(capacity);
+		ByteBuffer src = from.duplicate();
+		src.clear();
+		to.put(src);
+		to.clear();
+		return to;
+	}
+
+}
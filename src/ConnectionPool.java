@@ -0,0 +1,573 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of connections to the MySQL server.
+ * Connections are borrowed for a single call and given back afterwards, so more than one call can be sent at once,
+ * and a connection that has been dropped by the server is simply thrown away and replaced.
+ */
+public class ConnectionPool
+{
+
+	private final String url;
+	private final int minSize;
+	private final int maxSize;
+
+	private volatile long idleTimeout = 10 * 60 * 1000; // in milliseconds
+	private volatile long acquireTimeout = 30 * 1000; // in milliseconds
+	private volatile int validationTimeout = 5; // in seconds, as that's what Connection.isValid takes
+	private volatile int statementCacheSize = 64;
+
+	// a connection given back less than this long ago is trusted without pinging the server again
+	private static final long VALIDATION_BYPASS = 500;
+
+	// the idle connections, most recently used at the front
+	// borrowing and returning only ever touches the front, the evictor works from the back
+	private final ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<IdleConnection>();
+
+	// one permit for each connection that may be borrowed at the same time
+	private final Semaphore permits;
+
+	private final AtomicInteger total = new AtomicInteger();
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	private final AtomicLong borrows = new AtomicLong();
+	private final AtomicLong waitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final LatencyHistogram acquireTimes = new LatencyHistogram();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong created = new AtomicLong();
+	private final AtomicLong destroyed = new AtomicLong();
+
+	// the prepared statement cache of each open connection
+	private final ConcurrentHashMap<Connection, StatementCache> statementCaches = new ConcurrentHashMap<Connection, StatementCache>();
+
+	// counters from the statement caches of connections that have since been closed
+	private final AtomicLong retiredHits = new AtomicLong();
+	private final AtomicLong retiredMisses = new AtomicLong();
+	private final AtomicLong retiredEvictions = new AtomicLong();
+
+	// the database each connection starts in, so one changed with USE can be put back before it's borrowed again
+	private volatile String catalog = null;
+
+	private final ScheduledExecutorService evictor;
+	private volatile boolean closed = false;
+
+	private static class IdleConnection
+	{
+		final Connection conn;
+		final long since;
+
+		IdleConnection(Connection conn, long since)
+		{
+			this.conn = conn;
+			this.since = since;
+		}
+	}
+
+	/**
+	 * Create a pool that keeps between 1 and 8 connections open.
+	 * @param url The connection string used to locate and connect to the database. Strings must start with "jdbc:mysql://".
+	 * @throws SQLException If the first connection cannot be opened.
+	 */
+	public ConnectionPool(String url) throws SQLException
+	{
+		this(url, 1, 8);
+	}
+
+	/**
+	 * Create a pool and open its minimum number of connections straight away.
+	 * @param url The connection string used to locate and connect to the database. Strings must start with "jdbc:mysql://".
+	 * @param minSize The number of connections to keep open even when nothing is using them.
+	 * @param maxSize The most connections that can be open at once.
+	 * @throws SQLException If the minimum number of connections cannot be opened.
+	 */
+	public ConnectionPool(String url, int minSize, int maxSize) throws SQLException
+	{
+		if (minSize < 0 || maxSize < 1 || minSize > maxSize)
+		{
+			throw new IllegalArgumentException("Pool sizes must satisfy 0 <= min <= max and max >= 1.");
+		}
+
+		this.url = url;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.permits = new Semaphore(maxSize);
+
+		for (int i = 0; i < minSize; i++)
+		{
+			offerIdle(create());
+		}
+
+		evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "ConnectionPool-evictor");
+				t.setDaemon(true); // don't keep the program open just for this
+				return t;
+			}
+		});
+
+		evictor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run()
+			{
+				evictIdle();
+			}
+		}, 30, 30, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Borrow a connection from the pool, opening a new one if none are idle.
+	 * Every borrowed connection must be given back with release() or invalidate().
+	 * @return A connection that was valid at the time it was borrowed.
+	 * @throws SQLException If no connection became available before the acquire timeout, or a new connection couldn't be opened.
+	 */
+	public Connection borrow() throws SQLException
+	{
+		if (closed)
+		{
+			throw new SQLException("The connection pool has been closed.", "08003");
+		}
+
+		long start = System.nanoTime();
+
+		try
+		{
+			if (!permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS))
+			{
+				timeouts.incrementAndGet();
+				throw new SQLException("Timed out after " + acquireTimeout + " ms waiting for a connection from the pool.", "08001");
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection from the pool.", "08001", e);
+		}
+
+		try
+		{
+			IdleConnection ic;
+			while ((ic = idle.pollFirst()) != null)
+			{
+				idleCount.decrementAndGet();
+
+				if (isUsable(ic))
+				{
+					return borrowed(ic.conn, start);
+				}
+
+				destroy(ic.conn); // dropped by the server, or otherwise broken
+			}
+
+			// nothing idle, so open a new one
+			return borrowed(create(), start);
+		}
+		catch (SQLException e)
+		{
+			permits.release();
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Give a borrowed connection back to the pool so it can be used again.
+	 * @param conn The connection that was borrowed.
+	 */
+	public void release(Connection conn)
+	{
+		if (conn == null)
+		{
+			return;
+		}
+
+		active.decrementAndGet();
+
+		try
+		{
+			if (closed || conn.isClosed() || total.get() > maxSize)
+			{
+				destroy(conn);
+			}
+			else
+			{
+				// don't let an unfinished transaction leak into the next borrower
+				if (!conn.getAutoCommit())
+				{
+					conn.rollback();
+					conn.setAutoCommit(true);
+				}
+
+				// nor a different database (the driver keeps track of it, so checking doesn't ask the server)
+				if (catalog != null && !catalog.equals(conn.getCatalog()))
+				{
+					conn.setCatalog(catalog);
+				}
+
+				offerIdle(conn);
+			}
+		}
+		catch (SQLException e)
+		{
+			destroy(conn);
+		}
+		finally
+		{
+			permits.release();
+		}
+	}
+
+	/**
+	 * Give a borrowed connection back to the pool, but close it instead of reusing it.
+	 * Use this when the connection has failed (for example, the server dropped it).
+	 * @param conn The connection that was borrowed.
+	 */
+	public void invalidate(Connection conn)
+	{
+		if (conn == null)
+		{
+			return;
+		}
+
+		active.decrementAndGet();
+		destroy(conn);
+		permits.release();
+	}
+
+	/**
+	 * Get the prepared statement cache belonging to a borrowed connection.
+	 * @param conn The connection that was borrowed.
+	 * @return The connection's statement cache. It's only safe to use while the connection is borrowed.
+	 */
+	public StatementCache getStatementCache(Connection conn)
+	{
+		StatementCache cache = statementCaches.get(conn);
+
+		if (cache == null)
+		{
+			// only the thread borrowing the connection gets here, so there's no race to create it
+			cache = new StatementCache(conn, statementCacheSize);
+			statementCaches.put(conn, cache);
+		}
+
+		return cache;
+	}
+
+	/**
+	 * Close every idle connection and stop handing out new ones.
+	 * Connections that are still borrowed will be closed when they are given back.
+	 */
+	public void close()
+	{
+		closed = true;
+		evictor.shutdownNow();
+
+		IdleConnection ic;
+		while ((ic = idle.pollFirst()) != null)
+		{
+			idleCount.decrementAndGet();
+			destroy(ic.conn);
+		}
+	}
+
+	/**
+	 * Set how long a connection can sit idle before it is closed, as long as the pool stays at or above its minimum size.
+	 * @param millis The idle time, in milliseconds.
+	 */
+	public void setIdleTimeout(long millis)
+	{
+		idleTimeout = millis;
+	}
+
+	/**
+	 * Set how long borrow() waits for a connection when all of them are in use.
+	 * @param millis The wait time, in milliseconds.
+	 */
+	public void setAcquireTimeout(long millis)
+	{
+		acquireTimeout = millis;
+	}
+
+	/**
+	 * Set how long to wait for the server to answer when checking that an idle connection is still alive.
+	 * @param seconds The wait time, in seconds.
+	 */
+	public void setValidationTimeout(int seconds)
+	{
+		validationTimeout = seconds;
+	}
+
+	/**
+	 * Set the most prepared statements kept for each connection. Only applies to connections opened after this is set.
+	 * @param size The number of statements.
+	 */
+	public void setStatementCacheSize(int size)
+	{
+		statementCacheSize = size;
+	}
+
+	/**
+	 * Get the smallest number of connections the pool keeps open.
+	 */
+	public int getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * Get the largest number of connections the pool will open.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Get the number of connections currently borrowed.
+	 */
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	/**
+	 * Get the number of connections currently open and waiting to be borrowed.
+	 */
+	public int getIdleCount() {
+		return idleCount.get();
+	}
+
+	/**
+	 * Get the number of connections currently open, borrowed or not.
+	 */
+	public int getTotalCount() {
+		return total.get();
+	}
+
+	/**
+	 * Get the number of times a connection has been borrowed.
+	 */
+	public long getBorrowCount() {
+		return borrows.get();
+	}
+
+	/**
+	 * Get the number of times borrow() gave up because no connection became available in time.
+	 */
+	public long getTimeoutCount() {
+		return timeouts.get();
+	}
+
+	/**
+	 * Get the number of connections the pool has opened since it was created.
+	 */
+	public long getCreatedCount() {
+		return created.get();
+	}
+
+	/**
+	 * Get the number of connections the pool has closed since it was created.
+	 */
+	public long getDestroyedCount() {
+		return destroyed.get();
+	}
+
+	/**
+	 * Get the average time borrow() took to hand out a connection, in milliseconds.
+	 */
+	public double getAverageWaitMillis() {
+		long n = borrows.get();
+		return n == 0 ? 0 : waitNanos.get() / (n * 1000000.0);
+	}
+
+	/**
+	 * Get the longest time borrow() took to hand out a connection, in milliseconds.
+	 */
+	public double getMaxWaitMillis() {
+		return maxWaitNanos.get() / 1000000.0;
+	}
+
+	/**
+	 * Get how long each call to borrow() took to hand out a connection.
+	 */
+	public LatencyHistogram getAcquireTimes() {
+		return acquireTimes;
+	}
+
+	/**
+	 * Get the number of times a prepared statement was reused from a connection's statement cache.
+	 */
+	public long getStatementHits() {
+		long n = retiredHits.get();
+		for (StatementCache cache : statementCaches.values())
+		{
+			n += cache.getHits();
+		}
+		return n;
+	}
+
+	/**
+	 * Get the number of times a statement had to be prepared because it wasn't in the connection's statement cache.
+	 */
+	public long getStatementMisses() {
+		long n = retiredMisses.get();
+		for (StatementCache cache : statementCaches.values())
+		{
+			n += cache.getMisses();
+		}
+		return n;
+	}
+
+	/**
+	 * Get the number of prepared statements closed to make room in a connection's statement cache.
+	 */
+	public long getStatementEvictions() {
+		long n = retiredEvictions.get();
+		for (StatementCache cache : statementCaches.values())
+		{
+			n += cache.getEvictions();
+		}
+		return n;
+	}
+
+	private Connection borrowed(Connection conn, long start)
+	{
+		long waited = System.nanoTime() - start;
+
+		active.incrementAndGet();
+		borrows.incrementAndGet();
+		waitNanos.addAndGet(waited);
+		acquireTimes.record(waited);
+
+		long max = maxWaitNanos.get();
+		while (waited > max && !maxWaitNanos.compareAndSet(max, waited))
+		{
+			max = maxWaitNanos.get();
+		}
+
+		return conn;
+	}
+
+	private boolean isUsable(IdleConnection ic)
+	{
+		try
+		{
+			if (ic.conn.isClosed())
+			{
+				return false;
+			}
+
+			// skip the round trip for a connection that was in use a moment ago
+			if (System.currentTimeMillis() - ic.since < VALIDATION_BYPASS)
+			{
+				return true;
+			}
+
+			return ic.conn.isValid(validationTimeout);
+		}
+		catch (SQLException e)
+		{
+			return false;
+		}
+	}
+
+	private Connection create() throws SQLException
+	{
+		Connection conn = DriverManager.getConnection(url);
+
+		// a connection string can let LOAD DATA LOCAL be used, but then the server could ask for any file on this computer at any time,
+		// so it's kept off until a BulkLoader turns it on for the rows it sends
+		if (conn.isWrapperFor(com.mysql.jdbc.Connection.class))
+		{
+			conn.unwrap(com.mysql.jdbc.Connection.class).setAllowLoadLocalInfile(false);
+		}
+
+		if (catalog == null)
+		{
+			catalog = conn.getCatalog();
+		}
+
+		total.incrementAndGet();
+		created.incrementAndGet();
+		return conn;
+	}
+
+	private void destroy(Connection conn)
+	{
+		total.decrementAndGet();
+		destroyed.incrementAndGet();
+
+		StatementCache cache = statementCaches.remove(conn);
+		if (cache != null)
+		{
+			retiredHits.addAndGet(cache.getHits());
+			retiredMisses.addAndGet(cache.getMisses());
+			retiredEvictions.addAndGet(cache.getEvictions());
+			cache.close();
+		}
+
+		try { conn.close(); } catch (SQLException e) { } // ignore, we're getting rid of it anyway
+	}
+
+	private void offerIdle(Connection conn)
+	{
+		idle.offerFirst(new IdleConnection(conn, System.currentTimeMillis()));
+		idleCount.incrementAndGet();
+	}
+
+	/**
+	 * Close connections that have been idle for too long, then top the pool back up to its minimum size.
+	 * This runs every 30 seconds by itself; it isn't private so the tests can run it when they need to.
+	 */
+	void evictIdle()
+	{
+		long now = System.currentTimeMillis();
+
+		Iterator<IdleConnection> it = idle.descendingIterator(); // oldest first
+		while (it.hasNext() && total.get() > minSize)
+		{
+			IdleConnection ic = it.next();
+
+			if (now - ic.since < idleTimeout)
+			{
+				break; // everything after this one was used more recently
+			}
+
+			// another thread may have borrowed it in the meantime, so only close it if we're the one that removed it
+			if (idle.removeFirstOccurrence(ic))
+			{
+				idleCount.decrementAndGet();
+				destroy(ic.conn);
+			}
+		}
+
+		while (!closed && total.get() < minSize)
+		{
+			try
+			{
+				offerIdle(create());
+			}
+			catch (SQLException e)
+			{
+				break; // the server may be down, we'll try again next time
+			}
+		}
+	}
+
+}
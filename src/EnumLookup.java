@@ -0,0 +1,112 @@
+import java.util.List;
+
+/**
+ * Finds which member of an ENUM or SET a value is, without going through every member to find it.
+ * The members are put in an open-addressed hash table once, when the column is set up, so looking a value up hashes its characters and
+ * compares it with (almost always) just the one member in its slot, however many members the column has. Part of a string can be
+ * looked up in place, so the elements of a SET value don't need to be split out into strings of their own.
+ * Members are matched exactly, including their case, the same as isValidValue has always done.
+ */
+public class EnumLookup
+{
+
+	private final String[] members;
+	private final int[] slots; // the index of the member in each slot, plus one, so 0 is an empty slot
+	private final int[] hashes; // the hash of the member in each slot, so most members that aren't a match are skipped without comparing them
+	private final int mask;
+
+	/**
+	 * Build the table for the members of an ENUM or SET.
+	 * @param members The members, in the order the column lists them. If a member is listed twice, the first one is found.
+	 */
+	public EnumLookup(List<String> members)
+	{
+		this.members = members.toArray(new String[members.size()]);
+
+		// at least twice as many slots as members, so a value hardly ever has to look past its own slot
+		int size = 2;
+		while (size < this.members.length * 2)
+		{
+			size <<= 1;
+		}
+		slots = new int[size];
+		hashes = new int[size];
+		mask = size - 1;
+
+		for (int m = 0; m < this.members.length; m++)
+		{
+			String member = this.members[m];
+			int h = hash(member, 0, member.length());
+
+			for (int s = h & mask; ; s = (s + 1) & mask)
+			{
+				if (slots[s] == 0)
+				{
+					slots[s] = m + 1;
+					hashes[s] = h;
+					break;
+				}
+				if (hashes[s] == h && this.members[slots[s] - 1].equals(member))
+				{
+					break; // listed already
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of members.
+	 */
+	public int size() {
+		return members.length;
+	}
+
+	/**
+	 * Find which member a value is.
+	 * @param value The value.
+	 * @return The index of the member in the column's list (0 for the first), or -1 if the value isn't one of them.
+	 */
+	public int ordinal(CharSequence value)
+	{
+		return ordinal(value, 0, value.length());
+	}
+
+	/**
+	 * Find which member part of a value is, such as one element of a SET value.
+	 * @param value The value.
+	 * @param start The index of the first character of the part.
+	 * @param end The index after the last character of the part.
+	 * @return The index of the member in the column's list (0 for the first), or -1 if the part isn't one of them.
+	 */
+	public int ordinal(CharSequence value, int start, int end)
+	{
+		int h = hash(value, start, end);
+
+		for (int s = h & mask; slots[s] != 0; s = (s + 1) & mask)
+		{
+			if (hashes[s] == h)
+			{
+				String member = members[slots[s] - 1];
+				if (member.length() == end - start && ValueValidator.regionMatches(value, start, member))
+				{
+					return slots[s] - 1;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The same hash as String.hashCode, of part of a value, with the high bits mixed into the low ones the table's slot is picked by.
+	 */
+	private static int hash(CharSequence value, int start, int end)
+	{
+		int h = 0;
+		for (int i = start; i < end; i++)
+		{
+			h = 31 * h + value.charAt(i);
+		}
+		return h ^ (h >>> 16);
+	}
+
+}
@@ -0,0 +1,945 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adds the rows of a comma or tab separated file to a table.
+ * The file is read through memory-mapped windows by one thread, and the rows are checked against the table's columns, and read into what's
+ * sent for them, in parallel on a fork-join pool. Several writer threads, each with its own connection from the pool, then send the valid rows to the server in batches,
+ * either as batches of INSERTs or (with setLoadData) as LOAD DATA LOCAL INFILE statements.
+ * The queue between them is bounded, so the file is only read as fast as the server can take the rows.
+ * Rows that can't be added are written, exactly as they were in the file, to a file next to it ending in ".rejected".
+ */
+public class FileImporter
+{
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// how much of the file is mapped at a time
+	private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+	// the most bytes of rows held in one chunk, so rows with very long values don't make for huge chunks
+	private static final int CHUNK_BYTES = 8 * 1024 * 1024;
+
+	// chunks are split between fork-join tasks until each has no more than this many rows
+	private static final int ROWS_PER_TASK = 256;
+
+	// only this many reasons for rejected rows are kept to show the user; the rest are only in the rejected file
+	private static final int MAX_REASONS = 10;
+
+	private final ConnectionPool pool;
+	private final String table;
+	private final List<ColumnData> cols;
+	private final RowValidator validator;
+	private final int batchSize;
+	private final int threads;
+
+	private char delimiter = ',';
+	private boolean quoted = true;
+	private boolean loadData = false;
+	private QueryMetrics metrics = null;
+
+	private final AtomicLong read = new AtomicLong();
+	private final AtomicLong inserted = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private final List<String> reasons = Collections.synchronizedList(new ArrayList<String>());
+
+	private File rejectedFile = null;
+	private OutputStream rejectedOut = null;
+
+	// the first thing to go wrong that stops the whole import
+	private volatile Exception failure = null;
+
+	private long started = 0;
+	private long finished = 0;
+
+	/**
+	 * Rows read from the file, waiting to be checked and added.
+	 * The bytes of every row are kept together in one array, as the reader found them.
+	 */
+	private static class Chunk
+	{
+		final byte[] data;
+		final int[] starts;
+		final int[] ends;
+		final int count;
+		final long[] rows; // the row number of each row in the file, starting at 1
+
+		// filled in by the Validation task; a row that can't be added has a null value array and a reason
+		final String[][] values;
+		final Object[][] params; // each row's values, read into what's bound for them (see ColumnData.read)
+		final String[] problems;
+		Validation task;
+
+		Chunk(byte[] data, int[] starts, int[] ends, long[] rows, int count)
+		{
+			this.data = data;
+			this.starts = starts;
+			this.ends = ends;
+			this.rows = rows;
+			this.count = count;
+			this.values = new String[count][];
+			this.params = new Object[count][];
+			this.problems = new String[count];
+		}
+	}
+
+	// put on the queue once for each writer to tell it there are no more chunks
+	private static final Chunk END = new Chunk(new byte[0], new int[0], new int[0], new long[0], 0);
+
+	/**
+	 * Set up an import into a table.
+	 * @param pool The pool the writers borrow their connections from.
+	 * @param table The name of the table to add rows to.
+	 * @param cols The columns of the table, as returned by ColumnData.buildColumnData. Each row in the file has a value for every one of them, in this order.
+	 * @param batchSize The number of rows each writer sends to the server at a time.
+	 * @param threads The number of writers, each with its own connection. It can't be more than the pool's maximum size.
+	 */
+	public FileImporter(ConnectionPool pool, String table, List<ColumnData> cols, int batchSize, int threads)
+	{
+		if (batchSize < 1)
+		{
+			throw new IllegalArgumentException("The batch size must be at least 1.");
+		}
+
+		this.pool = pool;
+		this.table = table;
+		this.cols = cols;
+		this.validator = new RowValidator(cols);
+		this.batchSize = batchSize;
+		this.threads = Math.max(1, Math.min(threads, pool.getMaxSize()));
+	}
+
+	/**
+	 * Record how long each batch takes, how many rows it adds, and the batches the server turns down.
+	 * @param metrics Where to record them, or null to not record them.
+	 */
+	public void setMetrics(QueryMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Set how the values in each row are separated.
+	 * @param delimiter The character between values, such as ',' or '\t'.
+	 * @param quoted If true, values can be put in double quotes (with "" for a quote inside of one), so they can hold the delimiter or line breaks.
+	 */
+	public void setFormat(char delimiter, boolean quoted)
+	{
+		this.delimiter = delimiter;
+		this.quoted = quoted;
+	}
+
+	/**
+	 * Set how the rows are sent to the server.
+	 * @param loadData If true, each batch is sent as a LOAD DATA LOCAL INFILE statement, which the server reads much faster than INSERTs.
+	 * A batch the server would have to change or leave out rows of (such as for a duplicate key) is turned down as a whole, the same as INSERTs.
+	 * If false, each batch is sent as INSERTs.
+	 */
+	public void setLoadData(boolean loadData)
+	{
+		this.loadData = loadData;
+	}
+
+	/**
+	 * Set how the values are separated based on the file's extension: tabs for ".tsv" and ".tab" files, and commas with quotes for anything else.
+	 * @param file The file to be imported.
+	 */
+	public void setFormatFromName(File file)
+	{
+		String name = file.getName().toLowerCase();
+
+		if (name.endsWith(".tsv") || name.endsWith(".tab"))
+		{
+			setFormat('\t', false);
+		}
+		else
+		{
+			setFormat(',', true);
+		}
+	}
+
+	/**
+	 * Add every row of a file to the table. This returns once all of the rows have been sent to the server, or the import has failed.
+	 * The rows that were added before a failure stay in the table.
+	 * If the first row of the file is the names of the columns, it is skipped.
+	 * @param file The file to read, in UTF-8.
+	 * @throws IOException If the file couldn't be read, or the rejected rows couldn't be written.
+	 * @throws SQLException If a connection couldn't be borrowed or the server stopped responding.
+	 */
+	public void run(File file) throws IOException, SQLException
+	{
+		started = System.nanoTime();
+		rejectedFile = new File(file.getPath() + ".rejected");
+
+		BlockingQueue<Chunk> queue = new ArrayBlockingQueue<Chunk>(threads * 2);
+		ForkJoinPool validators = new ForkJoinPool();
+		Thread[] writers = new Thread[threads];
+
+		for (int i = 0; i < threads; i++)
+		{
+			writers[i] = new Thread(new Writer(queue), "import-writer-" + (i + 1));
+			writers[i].start();
+		}
+
+		try
+		{
+			readFile(file, queue, validators);
+		}
+		catch (IOException e)
+		{
+			fail(e);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			fail(e);
+		}
+		finally
+		{
+			for (int i = 0; i < threads; i++)
+			{
+				putQuietly(queue, END);
+			}
+
+			for (Thread writer : writers)
+			{
+				joinQuietly(writer);
+			}
+
+			validators.shutdown();
+
+			if (rejectedOut != null)
+			{
+				try { rejectedOut.close(); } catch (IOException e) { fail(e); }
+			}
+
+			finished = System.nanoTime();
+		}
+
+		if (failure instanceof IOException)
+		{
+			throw (IOException) failure;
+		}
+		else if (failure instanceof SQLException)
+		{
+			throw (SQLException) failure;
+		}
+		else if (failure instanceof InterruptedException)
+		{
+			throw new IOException("The import was interrupted.", failure);
+		}
+		else if (failure != null)
+		{
+			throw new IOException("The import failed: " + failure, failure);
+		}
+	}
+
+	/**
+	 * Read through the file, putting its rows into chunks for the writers.
+	 */
+	private void readFile(File file, BlockingQueue<Chunk> queue, ForkJoinPool validators) throws IOException, InterruptedException
+	{
+		try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			long size = ch.size();
+			long pos = 0;
+			int window = WINDOW_SIZE;
+			ChunkBuilder builder = new ChunkBuilder();
+
+			while (pos < size && failure == null)
+			{
+				int len = (int) Math.min(window, size - pos);
+				MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+				boolean last = (pos + len == size);
+
+				int start = 0;
+				if (pos == 0 && len >= 3 && buf.get(0) == (byte) 0xEF && buf.get(1) == (byte) 0xBB && buf.get(2) == (byte) 0xBF)
+				{
+					start = 3; // skip the UTF-8 byte order mark
+				}
+
+				// a row ends at a line break, unless the line break is inside a quoted value
+				// quotes are followed the same way splitRow reads them: one only starts a quoted value at the start of the value,
+				// and inside one, a doubled quote ("") is part of the value rather than the end of it
+				boolean inQuote = false;
+				boolean valueStart = true;
+				for (int i = start; i < len; i++)
+				{
+					byte b = buf.get(i);
+
+					if (inQuote)
+					{
+						if (b == '"')
+						{
+							if (i + 1 < len && buf.get(i + 1) == '"')
+							{
+								i++; // a doubled quote
+							}
+							else
+							{
+								inQuote = false;
+							}
+						}
+						continue;
+					}
+
+					if (b == '"' && quoted && valueStart)
+					{
+						inQuote = true;
+						valueStart = false;
+					}
+					else if (b == delimiter)
+					{
+						valueStart = true;
+					}
+					else if (b == '\n')
+					{
+						valueStart = true;
+
+						if (builder.add(buf, start, i))
+						{
+							send(builder.take(), queue, validators);
+						}
+						start = i + 1;
+
+						if (failure != null)
+						{
+							return;
+						}
+					}
+					else
+					{
+						valueStart = false;
+					}
+				}
+
+				if (last)
+				{
+					builder.add(buf, start, len); // the last row doesn't need a line break after it
+					pos = size;
+				}
+				else if (start == 0)
+				{
+					window = (int) Math.min((long) window * 2, Integer.MAX_VALUE); // one row is longer than the window, so map more at once
+				}
+				else
+				{
+					pos += start; // map the next window from the start of the row that was cut off
+				}
+			}
+
+			if (builder.count > 0 && failure == null)
+			{
+				send(builder.take(), queue, validators);
+			}
+		}
+	}
+
+	/**
+	 * Start checking the rows of a chunk, and hand it to the writers. This waits if the writers are too far behind.
+	 */
+	private void send(Chunk chunk, BlockingQueue<Chunk> queue, ForkJoinPool validators) throws InterruptedException
+	{
+		chunk.task = new Validation(chunk, 0, chunk.count);
+		validators.execute(chunk.task);
+		queue.put(chunk);
+	}
+
+	/**
+	 * Gathers rows into a chunk as they are read.
+	 */
+	private class ChunkBuilder
+	{
+		byte[] data = new byte[64 * 1024];
+		int length = 0;
+		int[] starts = new int[batchSize];
+		int[] ends = new int[batchSize];
+		long[] rows = new long[batchSize];
+		int count = 0;
+		long nextRow = 1;
+
+		/**
+		 * Add the row between start and end of the buffer. Empty rows are left out, but still counted.
+		 * @return True if the chunk is full.
+		 */
+		boolean add(MappedByteBuffer buf, int start, int end)
+		{
+			long row = nextRow++;
+
+			if (end > start && buf.get(end - 1) == '\r')
+			{
+				end--; // a Windows line break
+			}
+
+			if (end == start)
+			{
+				return false;
+			}
+
+			int len = end - start;
+			if (length + len > data.length)
+			{
+				data = Arrays.copyOf(data, Math.max(data.length * 2, length + len));
+			}
+
+			buf.position(start); // only the reader moves the position, everything else uses absolute gets
+			buf.get(data, length, len);
+
+			starts[count] = length;
+			ends[count] = length + len;
+			rows[count] = row;
+			length += len;
+			count++;
+
+			return count == batchSize || length >= CHUNK_BYTES;
+		}
+
+		Chunk take()
+		{
+			Chunk chunk = new Chunk(data, starts, ends, rows, count);
+
+			data = new byte[Math.max(64 * 1024, length)];
+			length = 0;
+			starts = new int[batchSize];
+			ends = new int[batchSize];
+			rows = new long[batchSize];
+			count = 0;
+
+			return chunk;
+		}
+	}
+
+	/**
+	 * Turns each row of part of a chunk into values and checks them against the columns, splitting the work between tasks on the fork-join pool.
+	 */
+	private class Validation extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Chunk chunk;
+		private final int from;
+		private final int to;
+
+		Validation(Chunk chunk, int from, int to)
+		{
+			this.chunk = chunk;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from > ROWS_PER_TASK)
+			{
+				int mid = (from + to) >>> 1;
+				invokeAll(new Validation(chunk, from, mid), new Validation(chunk, mid, to));
+				return;
+			}
+
+			for (int i = from; i < to; i++)
+			{
+				check(chunk, i);
+			}
+		}
+	}
+
+	/**
+	 * Check one row of a chunk, filling in either its values or the reason it can't be added.
+	 */
+	private void check(Chunk chunk, int i)
+	{
+		String line = new String(chunk.data, chunk.starts[i], chunk.ends[i] - chunk.starts[i], UTF8);
+		String[] vals = splitRow(line, delimiter, quoted);
+
+		if (vals == null)
+		{
+			chunk.problems[i] = "A quoted value is never closed.";
+			return;
+		}
+
+		if (chunk.rows[i] == 1 && isHeader(vals))
+		{
+			return; // not a row at all, so it's neither added nor rejected
+		}
+
+		if (vals.length != cols.size())
+		{
+			chunk.problems[i] = "This row has " + vals.length + " values, but the table has " + cols.size() + " columns.";
+			return;
+		}
+
+		// each value is read once, here, into what the writer binds or writes for it
+		Object[] params = new Object[vals.length];
+		long bad = validator.read(vals, params);
+		if (bad != 0)
+		{
+			int c = validator.firstInvalid(bad, vals);
+			chunk.problems[i] = "The value '" + vals[c] + "' is in an invalid format for column " + cols.get(c).getName() + ".";
+			return;
+		}
+
+		chunk.values[i] = vals;
+		chunk.params[i] = params;
+	}
+
+	/**
+	 * Gets if these values are the names of the table's columns, in order.
+	 */
+	private boolean isHeader(String[] vals)
+	{
+		if (vals.length != cols.size())
+		{
+			return false;
+		}
+
+		for (int c = 0; c < vals.length; c++)
+		{
+			if (!vals[c].trim().equalsIgnoreCase(cols.get(c).getName()))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Split a row into its values.
+	 * @param line The row, without its line break.
+	 * @param delimiter The character between values.
+	 * @param quoted If true, a value starting with a double quote goes on until the next double quote that isn't doubled ("").
+	 * @return The values, or null if a quoted value is never closed.
+	 */
+	static String[] splitRow(String line, char delimiter, boolean quoted)
+	{
+		ArrayList<String> vals = new ArrayList<String>();
+		StringBuilder sb = new StringBuilder();
+		int len = line.length();
+		int i = 0;
+
+		while (true)
+		{
+			sb.setLength(0);
+
+			if (quoted && i < len && line.charAt(i) == '"')
+			{
+				i++;
+				boolean closed = false;
+
+				while (i < len)
+				{
+					char ch = line.charAt(i++);
+					if (ch == '"')
+					{
+						if (i < len && line.charAt(i) == '"')
+						{
+							sb.append('"');
+							i++;
+						}
+						else
+						{
+							closed = true;
+							break;
+						}
+					}
+					else
+					{
+						sb.append(ch);
+					}
+				}
+
+				if (!closed)
+				{
+					return null;
+				}
+			}
+
+			// the rest of the value, up to the delimiter (anything after a closing quote is kept as it is)
+			while (i < len && line.charAt(i) != delimiter)
+			{
+				sb.append(line.charAt(i++));
+			}
+
+			vals.add(sb.toString());
+
+			if (i >= len)
+			{
+				break;
+			}
+
+			i++; // step over the delimiter
+		}
+
+		return vals.toArray(new String[vals.size()]);
+	}
+
+	/**
+	 * Takes chunks off of the queue and sends their rows to the server with its own connection.
+	 */
+	private class Writer implements Runnable
+	{
+		private final BlockingQueue<Chunk> queue;
+
+		Writer(BlockingQueue<Chunk> queue)
+		{
+			this.queue = queue;
+		}
+
+		@Override
+		public void run()
+		{
+			Connection conn = null;
+			BulkInserter bulk = null;
+			BulkLoader loader = null;
+			boolean broken = false;
+
+			try
+			{
+				conn = pool.borrow();
+				if (loadData)
+				{
+					loader = new BulkLoader(conn, table, cols);
+					loader.setMetrics(metrics);
+				}
+				else
+				{
+					bulk = new BulkInserter(conn, table, cols, batchSize, false);
+					bulk.setMetrics(metrics);
+				}
+
+				while (true)
+				{
+					Chunk chunk = queue.take();
+
+					if (chunk == END)
+					{
+						break;
+					}
+
+					if (failure != null)
+					{
+						continue; // keep taking chunks so the reader isn't left waiting, but don't add them
+					}
+
+					chunk.task.join();
+					write(chunk, bulk, loader);
+				}
+			}
+			catch (SQLException e)
+			{
+				broken = isConnectionError(e);
+				fail(e);
+				drain();
+			}
+			catch (IOException e)
+			{
+				fail(e);
+				drain();
+			}
+			catch (InterruptedException e)
+			{
+				fail(e);
+			}
+			catch (RuntimeException e)
+			{
+				// anything else going wrong still has to stop the import, or the reader would be left waiting on a full queue
+				fail(e);
+				drain();
+			}
+			finally
+			{
+				if (bulk != null)
+				{
+					inserted.addAndGet(bulk.getRowsInserted());
+					batches.addAndGet(bulk.getBatchCount());
+					bulk.close();
+				}
+
+				if (loader != null)
+				{
+					inserted.addAndGet(loader.getRowsInserted());
+					batches.addAndGet(loader.getBatchCount());
+					loader.close();
+				}
+
+				if (broken)
+				{
+					pool.invalidate(conn);
+				}
+				else
+				{
+					pool.release(conn);
+				}
+			}
+		}
+
+		/**
+		 * Add the valid rows of a chunk, and write out the ones that can't be added.
+		 * If the server turns down the batch (such as for a duplicate key), all of its rows are rejected, and the import carries on.
+		 * Only one of bulk and loader is used, whichever isn't null.
+		 */
+		private void write(Chunk chunk, BulkInserter bulk, BulkLoader loader) throws SQLException, IOException
+		{
+			for (int i = 0; i < chunk.count; i++)
+			{
+				if (chunk.values[i] != null)
+				{
+					read.incrementAndGet();
+				}
+				else if (chunk.problems[i] != null)
+				{
+					read.incrementAndGet();
+					reject(chunk, i, chunk.problems[i]);
+				}
+			}
+
+			try
+			{
+				// a chunk never has more rows than a batch, so this sends at most one
+				for (int i = 0; i < chunk.count; i++)
+				{
+					if (chunk.values[i] != null)
+					{
+						if (loader == null)
+						{
+							bulk.addParameters(chunk.params[i]);
+							continue;
+						}
+
+						try
+						{
+							loader.addParameters(chunk.values[i], chunk.params[i]);
+						}
+						catch (IllegalArgumentException e)
+						{
+							// a number the loader can't be sent as one, which it would otherwise store as 0
+							reject(chunk, i, e.getMessage());
+							chunk.values[i] = null;
+						}
+					}
+				}
+
+				if (loader != null)
+				{
+					loader.flush();
+				}
+				else
+				{
+					bulk.flush();
+				}
+			}
+			catch (SQLException e)
+			{
+				if (isConnectionError(e))
+				{
+					throw e;
+				}
+
+				if (metrics != null)
+				{
+					metrics.recordError(QueryMetrics.Kind.BATCH, e);
+				}
+
+				for (int i = 0; i < chunk.count; i++)
+				{
+					if (chunk.values[i] != null)
+					{
+						reject(chunk, i, "The server turned down this row's batch: " + e.getMessage());
+					}
+				}
+			}
+		}
+
+		private void drain()
+		{
+			Chunk chunk;
+			do
+			{
+				try
+				{
+					chunk = queue.take();
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+			}
+			while (chunk != END);
+		}
+	}
+
+	/**
+	 * Write a row to the rejected file, exactly as it was in the file.
+	 */
+	private void reject(Chunk chunk, int i, String reason) throws IOException
+	{
+		rejected.incrementAndGet();
+
+		if (reasons.size() < MAX_REASONS)
+		{
+			reasons.add("Row " + chunk.rows[i] + ": " + reason);
+		}
+
+		synchronized (this)
+		{
+			if (rejectedOut == null)
+			{
+				rejectedOut = new BufferedOutputStream(new FileOutputStream(rejectedFile), 64 * 1024);
+			}
+
+			rejectedOut.write(chunk.data, chunk.starts[i], chunk.ends[i] - chunk.starts[i]);
+			rejectedOut.write('\n');
+		}
+	}
+
+	private void fail(Exception e)
+	{
+		synchronized (this)
+		{
+			if (failure == null)
+			{
+				failure = e;
+			}
+		}
+	}
+
+	private static boolean isConnectionError(SQLException e)
+	{
+		return e.getSQLState() != null && e.getSQLState().startsWith("08");
+	}
+
+	private static void putQuietly(BlockingQueue<Chunk> queue, Chunk chunk)
+	{
+		boolean interrupted = false;
+		while (true)
+		{
+			try
+			{
+				queue.put(chunk);
+				break;
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void joinQuietly(Thread thread)
+	{
+		boolean interrupted = false;
+		while (true)
+		{
+			try
+			{
+				thread.join();
+				break;
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Get the number of rows read from the file, not counting empty lines or a row of column names.
+	 */
+	public long getRowsRead() {
+		return read.get();
+	}
+
+	/**
+	 * Get the number of rows the server has added.
+	 */
+	public long getRowsInserted() {
+		return inserted.get();
+	}
+
+	/**
+	 * Get the number of rows written to the rejected file.
+	 */
+	public long getRowsRejected() {
+		return rejected.get();
+	}
+
+	/**
+	 * Get the number of batches sent to the server.
+	 */
+	public long getBatchCount() {
+		return batches.get();
+	}
+
+	/**
+	 * Get the number of writers (and connections) used.
+	 */
+	public int getThreadCount() {
+		return threads;
+	}
+
+	/**
+	 * Get the file the rejected rows were written to. It is only created if a row was rejected.
+	 */
+	public File getRejectedFile() {
+		return rejectedFile;
+	}
+
+	/**
+	 * Get the reasons the first few rejected rows couldn't be added, starting with their row number in the file.
+	 */
+	public List<String> getRejectReasons() {
+		synchronized (reasons)
+		{
+			return new ArrayList<String>(reasons);
+		}
+	}
+
+	/**
+	 * Get the number of seconds the import took (or has taken so far).
+	 */
+	public double getElapsedSeconds() {
+		if (started == 0)
+		{
+			return 0;
+		}
+		long end = (finished == 0) ? System.nanoTime() : finished;
+		return (end - started) / 1000000000.0;
+	}
+
+	/**
+	 * Get the number of rows added per second.
+	 */
+	public double getRowsPerSecond() {
+		double secs = getElapsedSeconds();
+		return secs == 0 ? 0 : inserted.get() / secs;
+	}
+
+}
@@ -0,0 +1,281 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pages through a table in the order of its primary key, for 'Display'.
+ * Each page is found from the last key of the page before it ("WHERE key &gt; ? ORDER BY key LIMIT n"), which the server looks up in the
+ * key's index, so page 1000 takes no longer to get than page 1. (With "LIMIT n OFFSET m" the server would have to read past all m rows first.)
+ * The key each page starts after is remembered for every page seen, and the rows of the last few pages are kept, so going back is instant.
+ */
+public class KeysetPager
+{
+
+	// pages whose rows are kept, so going back to one of them doesn't ask the server again
+	private static final int KEPT_PAGES = 16;
+
+	private final ConnectionPool pool;
+	private final String table;
+	private final String key;
+	private final int pageSize;
+
+	private QueryMetrics metrics = null;
+
+	// for each page seen so far, the last key of the page before it (null for the first page)
+	private final List<Object> after = new ArrayList<Object>();
+
+	// the rows of the most recently seen pages, by page number
+	private final Map<Integer, Page> kept = new LinkedHashMap<Integer, Page>(KEPT_PAGES, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest)
+		{
+			return size() > KEPT_PAGES;
+		}
+	};
+
+	private int current = -1;
+	private Page page = null;
+
+	/**
+	 * The rows of one page, and what's needed to find the page after it.
+	 */
+	private static class Page
+	{
+		final ColumnarResult rows;
+		final Object last; // the key of the last row, or null if there are no rows
+		final boolean more; // whether there's at least one row after this page
+
+		Page(ColumnarResult rows, Object last, boolean more)
+		{
+			this.rows = rows;
+			this.last = last;
+			this.more = more;
+		}
+	}
+
+	/**
+	 * Set up paging through a table. Nothing is read until first is called.
+	 * @param pool The pool to borrow a connection from for each page.
+	 * @param table The name of the table.
+	 * @param key The name of the table's primary key column. Use getPageKey to find it.
+	 * @param pageSize The number of rows on each page.
+	 */
+	public KeysetPager(ConnectionPool pool, String table, String key, int pageSize)
+	{
+		if (pageSize < 1)
+		{
+			throw new IllegalArgumentException("The page size must be at least 1.");
+		}
+
+		this.pool = pool;
+		this.table = table;
+		this.key = key;
+		this.pageSize = pageSize;
+
+		after.add(null); // the first page starts at the beginning
+	}
+
+	/**
+	 * Record how long each page takes to get, and how many rows it has.
+	 * @param metrics Where to record them, or null to not record them.
+	 */
+	public void setMetrics(QueryMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Find the column a table can be paged through by: its primary key, if it's a single column.
+	 * @param cols The columns of the table.
+	 * @return The column, or null if the table has no primary key, or one made of more than one column.
+	 */
+	public static ColumnData getPageKey(List<ColumnData> cols)
+	{
+		ColumnData found = null;
+
+		for (ColumnData col : cols)
+		{
+			if (col.isPrimaryKey())
+			{
+				if (found != null)
+				{
+					return null;
+				}
+				found = col;
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Go to the first page.
+	 * @return Its rows. There are none if the table is empty.
+	 * @throws SQLException If the page couldn't be read.
+	 */
+	public ColumnarResult first() throws SQLException
+	{
+		return goTo(0);
+	}
+
+	/**
+	 * Go to the page after the current one. Check hasNext first.
+	 * @return Its rows.
+	 * @throws SQLException If the page couldn't be read.
+	 */
+	public ColumnarResult next() throws SQLException
+	{
+		if (!hasNext())
+		{
+			throw new IllegalStateException("There are no more pages.");
+		}
+
+		if (after.size() == current + 1)
+		{
+			after.add(page.last);
+		}
+		return goTo(current + 1);
+	}
+
+	/**
+	 * Go to the page before the current one. Check hasPrevious first.
+	 * @return Its rows.
+	 * @throws SQLException If the page couldn't be read.
+	 */
+	public ColumnarResult previous() throws SQLException
+	{
+		if (!hasPrevious())
+		{
+			throw new IllegalStateException("This is the first page.");
+		}
+
+		return goTo(current - 1);
+	}
+
+	/**
+	 * Gets if there's a page after the current one.
+	 */
+	public boolean hasNext() {
+		return page != null && page.more;
+	}
+
+	/**
+	 * Gets if there's a page before the current one.
+	 */
+	public boolean hasPrevious() {
+		return current > 0;
+	}
+
+	/**
+	 * Gets the number of the current page, counting from 0.
+	 */
+	public int getPageNumber() {
+		return current;
+	}
+
+	/**
+	 * Gets the number of rows on each page.
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	private ColumnarResult goTo(int number) throws SQLException
+	{
+		Page p = kept.get(number);
+
+		if (p == null)
+		{
+			p = read(after.get(number));
+			kept.put(number, p);
+		}
+
+		current = number;
+		page = p;
+		return p.rows;
+	}
+
+	/**
+	 * Read the page starting after a key.
+	 * @param start The last key of the page before, or null for the first page.
+	 */
+	private Page read(Object start) throws SQLException
+	{
+		// one more row than fits on the page is asked for, so we know whether there's another page without asking again
+		String sql = "SELECT * FROM " + table + (start == null ? "" : " WHERE `" + key + "` > ?") + " ORDER BY `" + key + "` LIMIT ?";
+
+		Connection conn = pool.borrow();
+		boolean broken = false;
+
+		try
+		{
+			PreparedStatement ps = pool.getStatementCache(conn).prepare(sql);
+			int index = 1;
+			if (start != null)
+			{
+				ps.setObject(index++, start);
+			}
+			ps.setInt(index, pageSize + 1);
+			ps.setFetchSize(0); // the statement is reused, so this has to be set every time
+
+			long begin = System.nanoTime();
+			try (ResultSet rs = ps.executeQuery())
+			{
+				if (metrics != null)
+				{
+					metrics.recordTime(QueryMetrics.Kind.SELECT, System.nanoTime() - begin);
+				}
+
+				ColumnarResult rows = new ColumnarResult(rs.getMetaData());
+				Object last = null;
+				boolean more = false;
+
+				while (rs.next())
+				{
+					if (rows.getRowCount() == pageSize)
+					{
+						more = true;
+						break;
+					}
+
+					rows.addRow(rs);
+					last = rs.getObject(key); // as the driver gives it, so it can be sent back the same way
+				}
+
+				if (metrics != null)
+				{
+					metrics.recordRowsReturned(QueryMetrics.Kind.SELECT, rows.getRowCount());
+				}
+				return new Page(rows, last, more);
+			}
+		}
+		catch (SQLException e)
+		{
+			broken = e.getSQLState() != null && e.getSQLState().startsWith("08");
+			if (metrics != null)
+			{
+				metrics.recordError(QueryMetrics.Kind.SELECT, e);
+			}
+			throw e;
+		}
+		finally
+		{
+			if (broken)
+			{
+				pool.invalidate(conn);
+			}
+			else
+			{
+				pool.release(conn);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how long something took, in buckets that get wider as the times get longer, the same way HdrHistogram does.
+ * Times under 32 microseconds each get a bucket of their own; after that, every power of two is split into 32 buckets,
+ * so a percentile read back is never more than about 3% over the real time. It takes the same small amount of memory
+ * however many times are recorded, and any number of threads can record into it at once without locking.
+ */
+public class LatencyHistogram
+{
+
+	// each power of two is split into 2^SUB_BITS buckets
+	private static final int SUB_BITS = 5;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+
+	// the longest time that can be told apart from the ones below it, about 2^40 microseconds (12 days); anything longer goes in the last bucket
+	private static final int MAX_EXPONENT = 40;
+
+	private static final int BUCKETS = SUB_COUNT + (MAX_EXPONENT - SUB_BITS + 1) * SUB_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalMicros = new AtomicLong();
+	private final AtomicLong maxMicros = new AtomicLong();
+
+	/**
+	 * Add one time.
+	 * @param nanos The time, in nanoseconds (such as the difference between two System.nanoTime() calls).
+	 */
+	public void record(long nanos)
+	{
+		long micros = Math.max(0, nanos / 1000);
+
+		counts.incrementAndGet(bucketOf(micros));
+		count.incrementAndGet();
+		totalMicros.addAndGet(micros);
+
+		long max = maxMicros.get();
+		while (micros > max && !maxMicros.compareAndSet(max, micros))
+		{
+			max = maxMicros.get();
+		}
+	}
+
+	/**
+	 * Get the number of times recorded.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Get the average time, in milliseconds.
+	 */
+	public double getMeanMillis() {
+		long n = count.get();
+		return n == 0 ? 0 : totalMicros.get() / (n * 1000.0);
+	}
+
+	/**
+	 * Get the longest time, in milliseconds.
+	 */
+	public double getMaxMillis() {
+		return maxMicros.get() / 1000.0;
+	}
+
+	/**
+	 * Get the time that the given share of the recorded times were no longer than.
+	 * @param percentile The share, from 0 to 100 (such as 99 for the 99th percentile).
+	 * @return The time in milliseconds, rounded up to the top of its bucket. 0 if nothing has been recorded.
+	 */
+	public double getPercentileMillis(double percentile)
+	{
+		long n = count.get();
+		if (n == 0)
+		{
+			return 0;
+		}
+
+		// the rank of the time we're after, counting from 1
+		long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+		long seen = 0;
+
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += counts.get(i);
+			if (seen >= rank)
+			{
+				// the top of the bucket can't be more than the longest time actually seen
+				return Math.min(highestInBucket(i), maxMicros.get()) / 1000.0;
+			}
+		}
+
+		// more times were counted than had been put in buckets when we looked, so it's the longest one
+		return getMaxMillis();
+	}
+
+	private static int bucketOf(long micros)
+	{
+		if (micros < SUB_COUNT)
+		{
+			return (int) micros;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(micros); // at least SUB_BITS
+		if (exponent > MAX_EXPONENT)
+		{
+			return BUCKETS - 1;
+		}
+
+		// the bits just under the highest one pick the bucket within its power of two
+		int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+		return SUB_COUNT + (exponent - SUB_BITS) * SUB_COUNT + sub;
+	}
+
+	private static long highestInBucket(int bucket)
+	{
+		if (bucket < SUB_COUNT)
+		{
+			return bucket;
+		}
+
+		int exponent = (bucket - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+		int sub = (bucket - SUB_COUNT) % SUB_COUNT;
+		long width = 1L << (exponent - SUB_BITS);
+		long lowest = (1L << exponent) + sub * width;
+		return lowest + width - 1;
+	}
+
+}
@@ -1,54 +1,144 @@
-import java.util.Scanner;
-
-public class Main {
-
-	public static void main(String[] args) {
-		
-		String db  = "";
-		String user  = "";
-		String pass  = "";
-		
-		if (args.length == 3)
-		{
-			// database name, username, and password passed as arguments
-			
-			db = args[0];
-			user = args[1]; 
-			pass = args[2];
-			
-			// it's inconsistent to make 'user' and 'pass' the second and third arguments here
-			// when they're the first and second in the previous block, I know,
-			// but I decided to do it because 1. it follows the order of the parameters for 
-			// the function. 2. The database name is the most important argument, and I like
-			// putting the arguments in order of importance.
-		}
-		else
-		{
-			System.out.println("When running this program, make sure you specify a database, username, and password.");
-			System.out.println("For example, 'MySqlConnSample.jar myDatabase Username Pass123'.");
-			
-			@SuppressWarnings("resource")
-			Scanner sc = new Scanner(System.in);
-			System.out.println("The program will exit when you press 'Enter'.");
-			sc.nextLine();
-			return;
-		}
-		
-        try {
-            // The newInstance() call is a work around for some
-            // broken Java implementations
-
-            Class.forName("com.mysql.jdbc.Driver").newInstance();
-        } catch (Exception ex) { ex.printStackTrace(); }
-        
-        ServerComm sc = new ServerComm();
-        
-        // Important note that the MySQL database must be accessible at "localhost:3306".
-        
-        sc.connect(db, user, pass);
-        sc.interact();
-        
-	}
-
-
+import java.io.File;
+import java.io.IOException;
+import java.util.Scanner;
+
+public class Main {
+
+	public static void main(String[] args) {
+		
+		String db  = "";
+		String user  = "";
+		String pass  = "";
+		
+		// for running a script instead of asking the user for commands
+		String script = null;
+		int parallel = 1;
+		
+		if (args.length >= 3)
+		{
+			// database name, username, and password passed as arguments
+			
+			db = args[0];
+			user = args[1]; 
+			pass = args[2];
+			
+			// it's inconsistent to make 'user' and 'pass' the second and third arguments here
+			// when they're the first and second in the previous block, I know,
+			// but I decided to do it because 1. it follows the order of the parameters for 
+			// the function. 2. The database name is the most important argument, and I like
+			// putting the arguments in order of importance.
+			
+			for (int i = 3; i < args.length; i++)
+			{
+				if (args[i].equals("--script") && i + 1 < args.length)
+				{
+					script = args[++i];
+				}
+				else if (args[i].equals("--parallel") && i + 1 < args.length)
+				{
+					try
+					{
+						parallel = Integer.parseInt(args[++i]);
+					}
+					catch (NumberFormatException e)
+					{
+						parallel = 0;
+					}
+					
+					if (parallel < 1)
+					{
+						System.out.println("The number after '--parallel' must be a whole number of at least 1.");
+						System.exit(2);
+					}
+				}
+				else
+				{
+					System.out.println("Could not interpret the argument '" + args[i] + "'.");
+					System.out.println("For example, 'MySqlConnSample.jar myDatabase Username Pass123 --script nightly.sql --parallel 4'.");
+					System.exit(2);
+				}
+			}
+		}
+		else
+		{
+			System.out.println("When running this program, make sure you specify a database, username, and password.");
+			System.out.println("For example, 'MySqlConnSample.jar myDatabase Username Pass123'.");
+			
+			@SuppressWarnings("resource")
+			Scanner sc = new Scanner(System.in);
+			System.out.println("The program will exit when you press 'Enter'.");
+			sc.nextLine();
+			return;
+		}
+		
+        try {
+            // The newInstance() call is a work around for some
+            // broken Java implementations
+
+            Class.forName("com.mysql.jdbc.Driver").newInstance();
+        } catch (Exception ex) { ex.printStackTrace(); }
+        
+        ServerComm sc = new ServerComm();
+        
+        // Important note that the MySQL database must be accessible at "localhost:3306".
+        
+        sc.connect(db, user, pass);
+        
+        if (script != null)
+        {
+        	System.exit(runScript(sc, new File(script), parallel));
+        }
+        
+        sc.interact();
+        sc.disconnect();
+        
+	}
+	
+	/**
+	 * Run a script of SQL statements, and show how long it took.
+	 * @param sc The connection to the server.
+	 * @param script The file of statements.
+	 * @param parallel The number of connections to send batches of statements over at the same time.
+	 * @return The exit code: 0 if every statement was run, 1 if the script stopped at an error, or 2 if it couldn't be started.
+	 */
+	private static int runScript(ServerComm sc, File script, int parallel)
+	{
+		if (sc.getPool() == null)
+		{
+			// the reason should've been shown when connecting
+			return 2;
+		}
+		
+		if (!script.isFile())
+		{
+			System.out.println("The file '" + script.getPath() + "' could not be found.");
+			sc.disconnect();
+			return 2;
+		}
+		
+		ScriptRunner runner = new ScriptRunner(sc.getPool(), sc.getMetrics(), 1000, parallel, System.out); // batches the same size as the BatchSize option starts at
+		runner.setSlowQueryLog(sc.getSlowQueryLog());
+		boolean ok;
+		
+		try
+		{
+			ok = runner.run(script);
+		}
+		catch (IOException e)
+		{
+			System.out.println("The script could not be read: " + e.getMessage());
+			ok = false;
+		}
+		finally
+		{
+			sc.disconnect();
+		}
+		
+		System.out.println(runner.getStatementCount() + " statements in " + runner.getBatchCount() + " batches over " + runner.getThreadCount() + " connections, "
+				+ runner.getRowsChanged() + " rows changed, " + runner.getErrorCount() + " errors");
+		System.out.println(String.format("%.3f", runner.getElapsedSeconds()) + " seconds, " + String.format("%.0f", runner.getStatementsPerSecond()) + " statements/sec");
+		
+		return ok ? 0 : 1;
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,271 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of how long the statements sent to the server take, how many rows they return or change, and how often they fail,
+ * split up by the kind of statement. Any number of threads can record into it at once.
+ * Shown by the 'Stats' command, and added to a file when the program quits.
+ */
+public class QueryMetrics
+{
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * The kinds of statement the numbers are split up by.
+	 */
+	public enum Kind
+	{
+		SELECT, INSERT, UPDATE, DELETE, DDL, DESCRIBE,
+		BATCH, // a batch of rows sent by 'BulkAdd' or 'Import', or of statements sent by a script
+		COMMIT, // the end of a transaction, by 'Commit', group commit, or a COMMIT in a script
+		OTHER;
+
+		/**
+		 * Work out what kind of statement this is from its first word.
+		 * @param sql The statement.
+		 * @return The kind. OTHER if it isn't one of the others.
+		 */
+		public static Kind of(String sql)
+		{
+			int start = 0;
+			while (start < sql.length() && !Character.isLetter(sql.charAt(start)))
+			{
+				start++; // such as spaces, or a '(' in front of a SELECT
+			}
+
+			int end = start;
+			while (end < sql.length() && Character.isLetter(sql.charAt(end)))
+			{
+				end++;
+			}
+
+			switch (sql.substring(start, end).toUpperCase())
+			{
+			case "SELECT":
+			case "WITH":
+				return SELECT;
+			case "INSERT":
+			case "REPLACE":
+			case "LOAD":
+				return INSERT;
+			case "UPDATE":
+				return UPDATE;
+			case "DELETE":
+			case "TRUNCATE":
+				return DELETE;
+			case "CREATE":
+			case "ALTER":
+			case "DROP":
+			case "RENAME":
+				return DDL;
+			case "DESCRIBE":
+			case "DESC":
+			case "SHOW":
+			case "EXPLAIN":
+				return DESCRIBE;
+			case "COMMIT":
+				return COMMIT;
+			default:
+				return OTHER;
+			}
+		}
+	}
+
+	/**
+	 * The numbers kept for one kind of statement.
+	 */
+	private static class KindStats
+	{
+		final LatencyHistogram times = new LatencyHistogram();
+		final AtomicLong errors = new AtomicLong();
+		final AtomicLong rowsReturned = new AtomicLong();
+		final AtomicLong rowsChanged = new AtomicLong();
+
+		boolean isEmpty()
+		{
+			return times.getCount() == 0 && errors.get() == 0 && rowsReturned.get() == 0 && rowsChanged.get() == 0;
+		}
+	}
+
+	private final KindStats[] kinds = new KindStats[Kind.values().length];
+
+	// error counts by SQL State, sorted so they're always shown in the same order
+	private final ConcurrentSkipListMap<String, AtomicLong> errorStates = new ConcurrentSkipListMap<String, AtomicLong>();
+
+	private final long started = System.currentTimeMillis();
+
+	/**
+	 * Create an empty set of numbers.
+	 */
+	public QueryMetrics()
+	{
+		for (int i = 0; i < kinds.length; i++)
+		{
+			kinds[i] = new KindStats();
+		}
+	}
+
+	/**
+	 * Record how long a statement took to run. For a query, this is the time until the first rows came back.
+	 * @param kind The kind of statement.
+	 * @param nanos How long it took, in nanoseconds.
+	 */
+	public void recordTime(Kind kind, long nanos)
+	{
+		kinds[kind.ordinal()].times.record(nanos);
+	}
+
+	/**
+	 * Record rows read from a query's results.
+	 */
+	public void recordRowsReturned(Kind kind, long rows)
+	{
+		kinds[kind.ordinal()].rowsReturned.addAndGet(rows);
+	}
+
+	/**
+	 * Record rows added, changed or removed by a statement.
+	 */
+	public void recordRowsChanged(Kind kind, long rows)
+	{
+		if (rows > 0)
+		{
+			kinds[kind.ordinal()].rowsChanged.addAndGet(rows);
+		}
+	}
+
+	/**
+	 * Record a statement that failed.
+	 * @param kind The kind of statement.
+	 * @param e The error the server (or driver) gave.
+	 */
+	public void recordError(Kind kind, SQLException e)
+	{
+		kinds[kind.ordinal()].errors.incrementAndGet();
+
+		String state = (e.getSQLState() == null) ? "(none)" : e.getSQLState();
+		AtomicLong n = errorStates.get(state);
+		if (n == null)
+		{
+			AtomicLong fresh = new AtomicLong();
+			n = errorStates.putIfAbsent(state, fresh);
+			if (n == null)
+			{
+				n = fresh;
+			}
+		}
+		n.incrementAndGet();
+	}
+
+	/**
+	 * Gets if nothing has been recorded yet.
+	 */
+	public boolean isEmpty()
+	{
+		for (KindStats ks : kinds)
+		{
+			if (!ks.isEmpty())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Show every number as a table.
+	 * @param out Where to show them.
+	 * @param pool The connection pool, to show how long connections took to borrow. Can be null.
+	 */
+	public void print(PrintStream out, ConnectionPool pool)
+	{
+		PrintWriter pw = new PrintWriter(out);
+		print(pw, pool);
+		pw.flush();
+	}
+
+	/**
+	 * Add every number to the end of a file, under the date and time.
+	 * @param file The file, which is created if it isn't there.
+	 * @param pool The connection pool, to show how long connections took to borrow. Can be null.
+	 * @throws IOException If the file could not be written.
+	 */
+	public void appendTo(File file, ConnectionPool pool) throws IOException
+	{
+		Writer w = new OutputStreamWriter(new FileOutputStream(file, true), UTF8);
+		PrintWriter pw = new PrintWriter(w);
+		try
+		{
+			pw.println("=== " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + " ===");
+			print(pw, pool);
+			pw.println();
+		}
+		finally
+		{
+			pw.close();
+		}
+
+		if (pw.checkError())
+		{
+			throw new IOException("Could not write to " + file.getPath());
+		}
+	}
+
+	private void print(PrintWriter out, ConnectionPool pool)
+	{
+		String row = "%-9s %8s %7s %9s %9s %9s %9s %9s %9s %11s %11s%n";
+
+		out.format("Statements since %s (times in ms):%n", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(started)));
+		out.format(row, "Kind", "Count", "Errors", "Mean", "p50", "p90", "p99", "p99.9", "Max", "Rows read", "Rows changed");
+
+		for (Kind kind : Kind.values())
+		{
+			KindStats ks = kinds[kind.ordinal()];
+			LatencyHistogram h = ks.times;
+
+			if (ks.isEmpty())
+			{
+				continue;
+			}
+
+			out.format(row, kind, h.getCount(), ks.errors.get(), millis(h.getMeanMillis()),
+					millis(h.getPercentileMillis(50)), millis(h.getPercentileMillis(90)), millis(h.getPercentileMillis(99)),
+					millis(h.getPercentileMillis(99.9)), millis(h.getMaxMillis()), ks.rowsReturned.get(), ks.rowsChanged.get());
+		}
+
+		if (pool != null)
+		{
+			LatencyHistogram h = pool.getAcquireTimes();
+			out.format("%nConnections borrowed: %d, wait p50 %s ms, p99 %s ms, max %s ms%n", h.getCount(),
+					millis(h.getPercentileMillis(50)), millis(h.getPercentileMillis(99)), millis(h.getMaxMillis()));
+		}
+
+		if (!errorStates.isEmpty())
+		{
+			out.format("%nErrors by SQL State:%n");
+			for (Map.Entry<String, AtomicLong> e : errorStates.entrySet())
+			{
+				out.format("  %s: %d%n", e.getKey(), e.getValue().get());
+			}
+		}
+	}
+
+	private static String millis(double ms)
+	{
+		return String.format("%.3f", ms);
+	}
+
+}
@@ -0,0 +1,592 @@
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the statements typed in Direct SQL mode, each on its own thread and its own connection from the pool,
+ * so a statement can be left running in the background while others are typed, and stopped partway through with cancel.
+ * While a transaction is open, they all go over its connection instead, one at a time.
+ * As the next statement can go over another connection, statements that change the connection itself (USE, SET, LOCK TABLES,
+ * temporary tables and so on) aren't sent, since they'd only apply to whichever connection they happened to get, and then to whatever borrowed it next.
+ * Each statement's rows are shown with a TableRenderer as they're read from the server, rather than after the whole result has arrived.
+ */
+public class QueryRunner
+{
+
+	private final ConnectionPool pool;
+	private final SchemaCache schemas;
+	private final QueryMetrics metrics;
+	private final SlowQueryLog slowLog;
+	private final ResultCache cache;
+	private final ResultWorkspace workspace;
+	private final PrintStream out;
+
+	private volatile Transaction transaction = null;
+
+	// a thread is started for each statement that's running, and kept around for a minute in case another comes along
+	private final ExecutorService executor;
+
+	// the statements that haven't finished yet, by number
+	private final ConcurrentSkipListMap<Integer, Query> running = new ConcurrentSkipListMap<Integer, Query>();
+	private final AtomicInteger nextId = new AtomicInteger(1);
+
+	/**
+	 * A statement that has been sent to the server (or is about to be).
+	 */
+	public class Query implements Callable<Long>
+	{
+		private final int id;
+		private final String sql;
+		private final int fetchSize;
+		private final int timeout;
+		private final boolean background;
+		private final QueryMetrics.Kind kind;
+		private final long started = System.nanoTime();
+
+		private volatile PreparedStatement stmt = null; // set once the statement has been prepared, so cancel has something to cancel
+		private volatile boolean cancelled = false;
+		private volatile long rows = 0;
+
+		private Query(int id, String sql, int fetchSize, int timeout, boolean background)
+		{
+			this.id = id;
+			this.sql = sql;
+			this.fetchSize = fetchSize;
+			this.timeout = timeout;
+			this.background = background;
+			this.kind = QueryMetrics.Kind.of(sql);
+		}
+
+		/**
+		 * Send the statement and show what comes back. Errors are shown to the user here, rather than passed on.
+		 * @return The number of rows shown, or updated.
+		 */
+		@Override
+		public Long call()
+		{
+			try
+			{
+				return run();
+			}
+			finally
+			{
+				running.remove(id);
+			}
+		}
+
+		private long run()
+		{
+			if (changesSession(sql))
+			{
+				if (background)
+				{
+					out.println("[" + id + "] not sent:");
+				}
+				out.println("Commands that change the connection itself (such as USE, SET, LOCK TABLES and temporary tables) can't be used here,"
+						+ " as each command can go over a different connection. Write the database into the command instead, such as db.table.");
+				return 0;
+			}
+
+			// the rows seen inside a transaction can include changes that haven't been committed, so they aren't cached, or looked for in the cache
+			Transaction tx = transaction;
+			boolean inTransaction = (tx != null && tx.isOpen());
+
+			ColumnarResult cached = inTransaction ? null : cache.get(sql);
+			if (cached != null)
+			{
+				showCachedRows(cached);
+				if (!cancelled)
+				{
+					workspace.setResult(sql, cached, null);
+				}
+				report(rows + " rows (from the result cache)");
+				return rows;
+			}
+
+			// if the server dropped the connection we were given, try once more with a fresh one,
+			// but only if it dropped before the statement was sent, as we can't know if an update was applied
+			for (int attempt = 0; attempt < 2; attempt++)
+			{
+				Connection conn = null;
+				boolean sent = false;
+				boolean own = false; // whether conn is the transaction's
+				try
+				{
+					conn = inTransaction ? tx.use() : null;
+					own = (conn != null);
+					if (!own)
+					{
+						conn = pool.borrow();
+					}
+
+					PreparedStatement ps = pool.getStatementCache(conn).prepare(sql);
+					// the statement is reused, so these have to be set every time
+					ps.setFetchSize(fetchSize);
+					ps.setQueryTimeout(timeout);
+					stmt = ps;
+
+					if (cancelled)
+					{
+						throw new SQLException("Cancelled before it was sent", "70100");
+					}
+
+					sent = true;
+					String summary;
+					ResultCache.Ticket ticket = own ? null : cache.startResult(sql); // before it's sent, so a change made while it's being read is noticed
+					long start = System.nanoTime();
+					boolean hasRows;
+					try
+					{
+						hasRows = ps.execute();
+					}
+					finally
+					{
+						if (kind != QueryMetrics.Kind.SELECT && kind != QueryMetrics.Kind.DESCRIBE)
+						{
+							cache.invalidateFor(sql); // it may have changed a table, even if it failed
+						}
+					}
+					long took = System.nanoTime() - start;
+					metrics.recordTime(kind, took);
+
+					if (hasRows)
+					{
+						showRows(ps.getResultSet(), ticket);
+						summary = rows + " rows";
+					}
+					else
+					{
+						rows = ps.getUpdateCount();
+						summary = rows + " rows updated";
+						metrics.recordRowsChanged(kind, rows);
+
+						if (sql.trim().toUpperCase().startsWith("ALTER"))
+						{
+							// the table's columns may have changed, so they'll need to be looked up again
+							String altered = getAlteredTable(sql);
+
+							if (altered == null)
+							{
+								schemas.invalidateAll();
+							}
+							else
+							{
+								schemas.invalidate(altered);
+							}
+						}
+					}
+
+					// a query is logged once its rows have been read, so the log can say how many there were
+					slowLog.log(sql, null, took, rows);
+
+					stmt = null;
+					if (own)
+					{
+						tx.done(hasRows ? null : sql);
+					}
+					else
+					{
+						pool.release(conn);
+					}
+					report(summary);
+					return rows;
+				}
+				catch (SQLException e)
+				{
+					stmt = null;
+
+					if (!own && conn != null && isConnectionError(e))
+					{
+						pool.invalidate(conn);
+
+						if (attempt == 0 && !sent && !cancelled)
+						{
+							continue;
+						}
+					}
+					else if (!own)
+					{
+						pool.release(conn);
+					}
+
+					metrics.recordError(kind, e);
+
+					if (cancelled)
+					{
+						report("cancelled after " + rows + " rows");
+					}
+					else
+					{
+						if (background)
+						{
+							out.println("[" + id + "] failed:");
+						}
+						ServerComm.printError(e, sql);
+					}
+
+					if (own)
+					{
+						// a statement in a transaction isn't sent again, as the changes before it went with the connection
+						tx.failed(e);
+					}
+					return rows;
+				}
+			}
+
+			return rows;
+		}
+
+		private void showRows(ResultSet rs, ResultCache.Ticket ticket) throws SQLException
+		{
+			try
+			{
+				TableRenderer tr = new TableRenderer(out);
+				tr.start(rs.getMetaData());
+
+				// the rows are gathered for the result cache, and for 'Sort', 'Filter' and 'GroupBy' to work on afterwards
+				ColumnarResult.Collector keep = null;
+				long keepBytes = Math.max(ticket != null ? cache.getMaxResultBytes() : 0, workspace.getMaxBytes());
+				if (keepBytes > 0)
+				{
+					keep = new ColumnarResult.Collector(keepBytes);
+					keep.start(rs.getMetaData());
+				}
+
+				// cancel may come in between two fetches from the server, when there's nothing to interrupt, so the flag is checked too
+				while (!cancelled && rs.next())
+				{
+					tr.addRow(rs);
+					rows++;
+
+					if (keep != null)
+					{
+						keep.addRow(rs);
+					}
+				}
+
+				tr.finish();
+
+				if (cancelled)
+				{
+					throw new SQLException("Cancelled while reading rows", "70100");
+				}
+
+				ColumnarResult kept = (keep != null) ? keep.getRows() : null;
+				if (kept != null && ticket != null)
+				{
+					cache.put(ticket, kept);
+				}
+				workspace.setResult(sql, kept, null);
+			}
+			finally
+			{
+				metrics.recordRowsReturned(kind, rows);
+				rs.close();
+			}
+		}
+
+		private void showCachedRows(ColumnarResult cached)
+		{
+			TableRenderer tr = new TableRenderer(out);
+			tr.start(cached.getLabels(), cached.getTypes());
+
+			String[] vals = new String[cached.getColumnCount()];
+			while (!cancelled && rows < cached.getRowCount())
+			{
+				cached.getRow((int) rows, vals);
+				tr.addRow(vals);
+				rows++;
+			}
+
+			tr.finish();
+		}
+
+		private void report(String what)
+		{
+			if (background)
+			{
+				out.println("[" + id + "] " + what + " (" + String.format("%.1f", getElapsedSeconds()) + " s)");
+			}
+			else
+			{
+				out.println(what);
+			}
+		}
+
+		/**
+		 * Stop the statement. If the server is still working on it, it's told to stop; if rows are being read, no more are read.
+		 */
+		public void cancel()
+		{
+			cancelled = true;
+
+			PreparedStatement ps = stmt;
+			if (ps != null)
+			{
+				try
+				{
+					ps.cancel(); // the driver opens a second connection to send KILL QUERY
+				}
+				catch (SQLException e) { } // ignore, the flag still stops it once the server sends something back
+			}
+		}
+
+		/**
+		 * Gets the number that cancel uses to pick out this statement.
+		 */
+		public int getId() {
+			return id;
+		}
+
+		/**
+		 * Gets the statement, as it was typed.
+		 */
+		public String getSql() {
+			return sql;
+		}
+
+		/**
+		 * Gets the number of rows read so far.
+		 */
+		public long getRows() {
+			return rows;
+		}
+
+		/**
+		 * Gets the time since the statement was started, in seconds.
+		 */
+		public double getElapsedSeconds() {
+			return (System.nanoTime() - started) / 1e9;
+		}
+	}
+
+	/**
+	 * Create a runner.
+	 * @param pool The pool each statement borrows its connection from.
+	 * @param schemas The schema cache, so a table changed with "ALTER TABLE" can be looked up again.
+	 * @param metrics Where to record how long each statement takes, and whether it failed.
+	 * @param slowLog Where to log statements that took too long.
+	 * @param cache Where to look for the rows of a SELECT before sending it, and to keep them afterwards. Statements that change a table throw out the rows kept from it.
+	 * @param workspace Where to keep the rows of the last SELECT, for 'Sort', 'Filter' and 'GroupBy' to work on.
+	 * @param out Where to show results and errors, such as System.out.
+	 */
+	public QueryRunner(ConnectionPool pool, SchemaCache schemas, QueryMetrics metrics, SlowQueryLog slowLog, ResultCache cache, ResultWorkspace workspace, PrintStream out)
+	{
+		this.pool = pool;
+		this.schemas = schemas;
+		this.metrics = metrics;
+		this.slowLog = slowLog;
+		this.cache = cache;
+		this.workspace = workspace;
+		this.out = out;
+
+		executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "QueryRunner-" + count.incrementAndGet());
+				t.setDaemon(true); // don't keep the program open just for these
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Send every statement over a transaction's connection while it's open, rather than borrowing one from the pool.
+	 * @param transaction The transaction, or null to always borrow a connection.
+	 */
+	public void setTransaction(Transaction transaction)
+	{
+		this.transaction = transaction;
+	}
+
+	/**
+	 * Start running a statement.
+	 * @param sql The statement.
+	 * @param fetchSize The number of rows to get from the server at a time. 0 to get all of them at once.
+	 * @param timeout The most seconds the server can spend on the statement before it's stopped. 0 for no limit.
+	 * @param background True if the statement is being left to run while the user carries on. Its number is shown along with its results.
+	 * @return The future for the statement, which gives the number of rows shown or updated once it's done.
+	 */
+	public Future<Long> submit(String sql, int fetchSize, int timeout, boolean background)
+	{
+		Query q = new Query(nextId.getAndIncrement(), sql, fetchSize, timeout, background);
+		running.put(q.getId(), q);
+
+		if (background)
+		{
+			out.println("[" + q.getId() + "] started");
+		}
+
+		return executor.submit(q);
+	}
+
+	/**
+	 * Get the statements that haven't finished yet, in the order they were started.
+	 */
+	public List<Query> getRunning()
+	{
+		return new ArrayList<Query>(running.values());
+	}
+
+	/**
+	 * Cancel one statement.
+	 * @param id The number of the statement.
+	 * @return False if there's no statement with this number still running.
+	 */
+	public boolean cancel(int id)
+	{
+		Query q = running.get(id);
+
+		if (q == null)
+		{
+			return false;
+		}
+
+		q.cancel();
+		return true;
+	}
+
+	/**
+	 * Cancel every statement that's still running.
+	 * @return The number of statements cancelled.
+	 */
+	public int cancelAll()
+	{
+		int n = 0;
+		for (Query q : running.values())
+		{
+			q.cancel();
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Cancel every statement that's still running, and stop the threads.
+	 */
+	public void shutdown()
+	{
+		cancelAll();
+		executor.shutdown();
+	}
+
+	/**
+	 * Get the name of the table changed by an "ALTER TABLE" statement.
+	 * @param command The statement.
+	 * @return The name of the table, or null if it couldn't be worked out.
+	 */
+	private static String getAlteredTable(String command)
+	{
+		// ALTER [ONLINE] [IGNORE] TABLE name ...
+		String[] words = command.trim().split("\\s+");
+
+		for (int i = 0; i < words.length - 1; i++)
+		{
+			if (words[i].equalsIgnoreCase("TABLE"))
+			{
+				String name = words[i + 1].replace("`", "");
+
+				// leave off the database name, as the cache only has the current database's tables
+				return name.substring(name.lastIndexOf('.') + 1);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Gets if a statement might change something that only belongs to the connection it's sent over: the database in use,
+	 * a setting or variable, a lock, a temporary table, a prepared statement, or a transaction the program doesn't know about.
+	 * Reading a variable ("SELECT @@sql_mode") is fine.
+	 */
+	static boolean changesSession(String sql)
+	{
+		String lower = sql.substring(codeStart(sql)).trim().toLowerCase();
+		String first = lower.split("[^a-z_]", 2)[0];
+
+		if (first.equals("use") || first.equals("set") || first.equals("lock") || first.equals("unlock") || first.equals("prepare")
+				|| first.equals("execute") || first.equals("deallocate") || first.equals("handler") || first.equals("xa")
+				|| first.equals("begin") || first.equals("start"))
+		{
+			return true;
+		}
+
+		if ((first.equals("create") || first.equals("drop")) && lower.matches("(create|drop)\\s+temporary\\b[\\s\\S]*"))
+		{
+			return true;
+		}
+
+		// SELECT ... INTO @v, or SELECT @v := ...
+		return (first.equals("select") || first.equals("do")) && (lower.contains(":=") || lower.matches("[\\s\\S]*\\binto\\s+@[\\s\\S]*"));
+	}
+
+	/**
+	 * Gets the index of the first character of a statement that isn't a space or in a comment, skipping the same comments
+	 * ScriptRunner.ScriptReader does ("-- " and "#" to the end of the line, and block comments). The server runs what's inside an
+	 * executable comment ("/*!40101 SET NAMES utf8" and so on), so only its opening is skipped.
+	 */
+	static int codeStart(String sql)
+	{
+		int n = sql.length();
+		int i = 0;
+
+		while (i < n)
+		{
+			char c = sql.charAt(i);
+
+			if (Character.isWhitespace(c))
+			{
+				i++;
+			}
+			else if (c == '#' || (sql.startsWith("--", i) && (i + 2 == n || Character.isWhitespace(sql.charAt(i + 2)))))
+			{
+				// "--" only starts a comment if a space comes after it
+				int eol = sql.indexOf('\n', i);
+				i = (eol < 0) ? n : eol + 1;
+			}
+			else if (sql.startsWith("/*!", i) || sql.startsWith("/*M!", i))
+			{
+				// skip the opening and the server version it's for, and carry on with what's inside
+				i += (sql.charAt(i + 2) == 'M') ? 4 : 3;
+				while (i < n && Character.isDigit(sql.charAt(i)))
+				{
+					i++;
+				}
+			}
+			else if (sql.startsWith("/*", i))
+			{
+				int end = sql.indexOf("*/", i + 2);
+				i = (end < 0) ? n : end + 2;
+			}
+			else
+			{
+				break;
+			}
+		}
+
+		return i;
+	}
+
+	/**
+	 * Gets if this error means the connection to the server itself has failed (SQL State class 08).
+	 */
+	private static boolean isConnectionError(SQLException e)
+	{
+		return e.getSQLState() != null && e.getSQLState().startsWith("08");
+	}
+
+}
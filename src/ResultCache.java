@@ -0,0 +1,554 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the rows of recent queries, so running the same SELECT again (such as 'Display' on a table that hasn't changed)
+ * shows them straight away instead of reading them from the server again.
+ * Queries are matched by their text, with extra spaces and a ';' at the end left out. The cache holds up to a set number of bytes;
+ * once it's full, the results that were used longest ago are thrown out first. A result is also thrown out once it's older than the TTL,
+ * or as soon as a statement sent by this program changes one of the tables it was read from. Changes made by other programs
+ * aren't seen until the TTL runs out.
+ * The rows are kept in a ColumnarResult each, outside of the Java heap, so a big cache doesn't give the garbage collector more to do.
+ */
+public class ResultCache
+{
+
+	// roughly what each result costs on top of its rows, for the map entry, the arrays and the column names
+	private static final long ENTRY_OVERHEAD = 256;
+
+	// functions that give a different answer each time they're called (or depend on more than the tables read), so a query using them isn't kept
+	private static final Set<String> VOLATILE_FUNCTIONS = new HashSet<String>(Arrays.asList("RAND", "NOW", "SYSDATE", "CURDATE", "CURTIME",
+			"UNIX_TIMESTAMP", "UUID", "UUID_SHORT", "SLEEP", "CONNECTION_ID", "LAST_INSERT_ID", "FOUND_ROWS", "ROW_COUNT", "USER",
+			"SESSION_USER", "SYSTEM_USER", "DATABASE", "SCHEMA", "GET_LOCK", "RELEASE_LOCK", "IS_FREE_LOCK", "BENCHMARK", "NEXTVAL"));
+
+	// words that do the same without brackets after them, or that make the SELECT do more than read (such as "FOR UPDATE" or "INTO OUTFILE")
+	private static final Set<String> VOLATILE_WORDS = new HashSet<String>(Arrays.asList("CURRENT_DATE", "CURRENT_TIME", "CURRENT_TIMESTAMP",
+			"CURRENT_USER", "LOCALTIME", "LOCALTIMESTAMP", "UTC_DATE", "UTC_TIME", "UTC_TIMESTAMP", "INTO", "SQL_NO_CACHE", "UPDATE", "SHARE"));
+
+	// words that can come between a keyword and the table name, such as in "DROP TABLE IF EXISTS"
+	private static final Set<String> BEFORE_TABLE_WORDS = new HashSet<String>(Arrays.asList("IF", "NOT", "EXISTS", "LOW_PRIORITY", "IGNORE"));
+
+	// words that come after a table name in a list of tables, so they aren't taken as the name it's given in the query
+	private static final Set<String> AFTER_TABLE_WORDS = new HashSet<String>(Arrays.asList("WHERE", "JOIN", "INNER", "LEFT", "RIGHT",
+			"CROSS", "NATURAL", "STRAIGHT_JOIN", "OUTER", "ON", "USING", "GROUP", "ORDER", "LIMIT", "HAVING", "SET", "UNION", "FOR", "LOCK",
+			"WINDOW", "PARTITION", "VALUES", "VALUE", "SELECT", "USE", "IGNORE", "FORCE", "TO", "INTO", "FROM"));
+
+	private final LinkedHashMap<String, Entry> results = new LinkedHashMap<String, Entry>(16, 0.75f, true); // in the order they were last used
+	private long bytes = 0;
+
+	private volatile long maxBytes; // 0 to keep nothing
+	private volatile long ttl; // in milliseconds, 0 for no limit
+
+	// goes up every time anything is thrown out because a table changed, so a query that was running at the time isn't kept
+	private final AtomicLong generation = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * The rows of one query, as they were when it was run, and what's needed to know when to throw them out.
+	 */
+	private static class Entry
+	{
+		final ColumnarResult rows;
+		final Set<String> tables;
+		final long loaded = System.currentTimeMillis();
+		final long size;
+
+		Entry(ColumnarResult rows, Set<String> tables)
+		{
+			this.rows = rows;
+			this.tables = tables;
+			this.size = ENTRY_OVERHEAD + rows.getSize();
+		}
+	}
+
+	/**
+	 * Taken before a query is sent, and handed back with its rows to put them into the cache.
+	 * It remembers whether a table changed in between, in which case the rows may be out of date and aren't kept.
+	 */
+	public class Ticket
+	{
+		private final String key;
+		private final Set<String> tables;
+		private final long startGeneration;
+
+		private Ticket(String key, Set<String> tables)
+		{
+			this.key = key;
+			this.tables = tables;
+			this.startGeneration = generation.get();
+		}
+	}
+
+	/**
+	 * Create a cache.
+	 * @param maxBytes The most memory the results can take up, in bytes. 0 to not keep any.
+	 * @param ttl How long a result is kept before the query has to be run again, in milliseconds. 0 for no limit.
+	 */
+	public ResultCache(long maxBytes, long ttl)
+	{
+		this.maxBytes = maxBytes;
+		this.ttl = ttl;
+	}
+
+	/**
+	 * Get the rows of a query, if they're in the cache and haven't expired.
+	 * @param sql The query.
+	 * @return The rows, or null if the query has to be sent to the server. Always null if the query can't be kept.
+	 */
+	public ColumnarResult get(String sql)
+	{
+		if (maxBytes == 0 || !isCacheable(sql))
+		{
+			return null;
+		}
+
+		String key = normalize(sql);
+		synchronized (this)
+		{
+			Entry e = results.get(key);
+
+			if (e != null && ttl > 0 && System.currentTimeMillis() - e.loaded >= ttl)
+			{
+				remove(key);
+				e = null;
+			}
+
+			if (e == null)
+			{
+				misses.incrementAndGet();
+				return null;
+			}
+
+			hits.incrementAndGet();
+			return e.rows;
+		}
+	}
+
+	/**
+	 * Get ready to keep the rows of a query that's about to be sent. Call this before the query is sent,
+	 * so that if one of its tables changes before its rows have been read, they aren't kept.
+	 * Gather the rows with a ColumnarResult.Collector no bigger than getMaxResultBytes, then hand them to put.
+	 * @param sql The query.
+	 * @return The ticket to hand to put, or null if the query can't be kept.
+	 */
+	public Ticket startResult(String sql)
+	{
+		if (maxBytes == 0 || !isCacheable(sql))
+		{
+			return null;
+		}
+
+		return new Ticket(normalize(sql), tablesUsed(sql));
+	}
+
+	/**
+	 * Put the rows of a query into the cache. Only do this once every row has been read; if the query was stopped partway through, just leave it.
+	 * Nothing is kept if the rows are too big, or if one of the tables changed since the ticket was taken.
+	 * @param ticket The ticket taken before the query was sent.
+	 * @param rows The rows. They mustn't be added to afterwards.
+	 */
+	public synchronized void put(Ticket ticket, ColumnarResult rows)
+	{
+		Entry e = new Entry(rows, ticket.tables);
+		if (generation.get() != ticket.startGeneration || e.size > getMaxResultBytes())
+		{
+			return;
+		}
+
+		remove(ticket.key);
+		results.put(ticket.key, e);
+		bytes += e.size;
+		trim();
+	}
+
+	/**
+	 * Get the most bytes the rows of one query can take up and still be kept: a quarter of the cache, so one big result can't push out all the others.
+	 */
+	public long getMaxResultBytes() {
+		return Math.max(0, maxBytes / 4 - ENTRY_OVERHEAD);
+	}
+
+	/**
+	 * Throw out the results read from any table that a statement could have changed.
+	 * If the tables can't be worked out from the statement (such as for "CALL"), everything is thrown out.
+	 * @param sql A statement that was just sent, other than a SELECT.
+	 */
+	public void invalidateFor(String sql)
+	{
+		Set<String> changed = tablesUsed(sql);
+
+		if (changed.isEmpty())
+		{
+			invalidateAll();
+			return;
+		}
+
+		for (String table : changed)
+		{
+			invalidate(table);
+		}
+	}
+
+	/**
+	 * Throw out the results read from a table.
+	 * @param table The name of the table.
+	 */
+	public synchronized void invalidate(String table)
+	{
+		String name = tableName(table);
+		generation.incrementAndGet();
+
+		Iterator<Entry> it = results.values().iterator();
+		while (it.hasNext())
+		{
+			Entry e = it.next();
+			if (e.tables.contains(name))
+			{
+				bytes -= e.size;
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Throw out every result.
+	 */
+	public synchronized void invalidateAll()
+	{
+		generation.incrementAndGet();
+		results.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Set the most memory the results can take up. Results used longest ago are thrown out until they fit.
+	 * @param maxBytes The size in bytes. 0 to not keep any.
+	 */
+	public synchronized void setMaxBytes(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+		trim();
+	}
+
+	/**
+	 * Get the most memory the results can take up, in bytes. 0 if none are kept.
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Set how long a result is kept before the query has to be run again.
+	 * @param millis The time, in milliseconds. 0 for no limit.
+	 */
+	public void setTtl(long millis)
+	{
+		ttl = millis;
+	}
+
+	/**
+	 * Get how long a result is kept before the query has to be run again, in milliseconds. 0 if there's no limit.
+	 */
+	public long getTtl() {
+		return ttl;
+	}
+
+	/**
+	 * Get the number of results in the cache.
+	 */
+	public synchronized int getCount() {
+		return results.size();
+	}
+
+	/**
+	 * Get about how many bytes of memory the results in the cache take up.
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Get the number of times a query's rows were found in the cache.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Get the number of times a query that could be kept had to be sent to the server.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Get the share of queries that were found in the cache, from 0 to 1. 0 if there haven't been any.
+	 */
+	public double getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	/**
+	 * Get the number of results thrown out to make room for others.
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	private void remove(String key)
+	{
+		Entry old = results.remove(key);
+		if (old != null)
+		{
+			bytes -= old.size;
+		}
+	}
+
+	/**
+	 * Throw out the results used longest ago until the rest fit.
+	 */
+	private void trim()
+	{
+		Iterator<Entry> it = results.values().iterator();
+		while (bytes > maxBytes && it.hasNext())
+		{
+			bytes -= it.next().size;
+			it.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Gets if a query's rows can be kept. It has to be a SELECT that reads from at least one table,
+	 * and doesn't use anything that could give different rows without a table changing (such as NOW() or a variable).
+	 * @param sql The query.
+	 */
+	public static boolean isCacheable(String sql)
+	{
+		if (QueryMetrics.Kind.of(sql) != QueryMetrics.Kind.SELECT)
+		{
+			return false;
+		}
+
+		List<String> tokens = tokenize(sql);
+		for (int i = 0; i < tokens.size(); i++)
+		{
+			String word = tokens.get(i).toUpperCase();
+			boolean call = i + 1 < tokens.size() && tokens.get(i + 1).equals("(");
+
+			if (word.startsWith("@") || VOLATILE_WORDS.contains(word) || (call && VOLATILE_FUNCTIONS.contains(word)))
+			{
+				return false;
+			}
+		}
+
+		return !tablesUsed(tokens).isEmpty();
+	}
+
+	/**
+	 * Put a statement into the form it's kept under: spaces, tabs and line breaks (outside of quotes) are cut down to one space,
+	 * and a ';' at the end is left out.
+	 */
+	static String normalize(String sql)
+	{
+		StringBuilder sb = new StringBuilder(sql.length());
+		char quote = 0;
+		boolean space = false;
+
+		for (int i = 0; i < sql.length(); i++)
+		{
+			char c = sql.charAt(i);
+
+			if (quote == 0 && Character.isWhitespace(c))
+			{
+				space = true;
+				continue;
+			}
+
+			if (space && sb.length() > 0)
+			{
+				sb.append(' ');
+			}
+			space = false;
+			sb.append(c);
+
+			if (quote == 0 && (c == '\'' || c == '"' || c == '`'))
+			{
+				quote = c;
+			}
+			else if (c == quote)
+			{
+				quote = 0;
+			}
+			else if (quote != 0 && c == '\\' && i + 1 < sql.length())
+			{
+				sb.append(sql.charAt(++i));
+			}
+		}
+
+		int len = sb.length();
+		while (len > 0 && sb.charAt(len - 1) == ';')
+		{
+			len--;
+		}
+		sb.setLength(len);
+
+		return sb.toString();
+	}
+
+	/**
+	 * Get the names of the tables a statement reads from or writes to: those after FROM, JOIN, UPDATE, INTO and TABLE (or TRUNCATE).
+	 * @return The names in lower case, without the database name or backticks. Empty if none could be found.
+	 */
+	static Set<String> tablesUsed(String sql)
+	{
+		return tablesUsed(tokenize(sql));
+	}
+
+	private static Set<String> tablesUsed(List<String> tokens)
+	{
+		Set<String> found = new HashSet<String>();
+
+		for (int i = 0; i < tokens.size() - 1; i++)
+		{
+			String word = tokens.get(i).toUpperCase();
+			boolean isList = word.equals("FROM") || word.equals("UPDATE") || word.equals("TABLE");
+
+			if (!(isList || word.equals("JOIN") || word.equals("INTO") || word.equals("TRUNCATE")))
+			{
+				continue;
+			}
+
+			int j = i + 1;
+			if (tokens.get(j).equalsIgnoreCase("TABLE"))
+			{
+				continue; // such as "INTO TABLE" or "TRUNCATE TABLE", the name comes after TABLE
+			}
+
+			while (j < tokens.size() && BEFORE_TABLE_WORDS.contains(tokens.get(j).toUpperCase()))
+			{
+				j++;
+			}
+
+			while (j < tokens.size() && isName(tokens.get(j)))
+			{
+				found.add(tableName(tokens.get(j)));
+
+				if (!isList)
+				{
+					break;
+				}
+
+				// skip the name the table is given in the query, if any, and carry on if there's a ',' after it
+				// (or a "TO", for "RENAME TABLE a TO b, c TO d")
+				j++;
+				while (j < tokens.size() && isName(tokens.get(j)) && !AFTER_TABLE_WORDS.contains(tokens.get(j).toUpperCase()))
+				{
+					j++;
+				}
+
+				if (j < tokens.size() && (tokens.get(j).equals(",") || tokens.get(j).equalsIgnoreCase("TO")))
+				{
+					j++;
+				}
+				else
+				{
+					break;
+				}
+			}
+		}
+
+		found.remove("dual");
+		return Collections.unmodifiableSet(found);
+	}
+
+	/**
+	 * Split a statement into words, with each ',', '(' and ')' on its own. Quoted text is left out, but names in backticks are kept.
+	 */
+	private static List<String> tokenize(String sql)
+	{
+		List<String> tokens = new ArrayList<String>();
+		StringBuilder word = new StringBuilder();
+
+		for (int i = 0; i < sql.length(); i++)
+		{
+			char c = sql.charAt(i);
+
+			if (c == '\'' || c == '"')
+			{
+				// skip to the closing quote, as nothing in between can be a name
+				for (i++; i < sql.length() && sql.charAt(i) != c; i++)
+				{
+					if (sql.charAt(i) == '\\')
+					{
+						i++;
+					}
+				}
+				endWord(word, tokens);
+			}
+			else if (c == '`')
+			{
+				int close = sql.indexOf('`', i + 1);
+				if (close < 0)
+				{
+					close = sql.length() - 1;
+				}
+				word.append(sql, i, close + 1);
+				i = close;
+			}
+			else if (Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.' || c == '@')
+			{
+				word.append(c);
+			}
+			else
+			{
+				endWord(word, tokens);
+
+				if (c == ',' || c == '(' || c == ')')
+				{
+					tokens.add(String.valueOf(c));
+				}
+			}
+		}
+
+		endWord(word, tokens);
+		return tokens;
+	}
+
+	private static void endWord(StringBuilder word, List<String> tokens)
+	{
+		if (word.length() > 0)
+		{
+			tokens.add(word.toString());
+			word.setLength(0);
+		}
+	}
+
+	private static boolean isName(String token)
+	{
+		char c = token.charAt(0);
+		return Character.isLetter(c) || c == '_' || c == '$' || c == '`';
+	}
+
+	/**
+	 * Get the name of a table the way it's kept: in lower case, without the database name or backticks.
+	 */
+	private static String tableName(String name)
+	{
+		name = name.replace("`", "");
+		return name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+	}
+
+}
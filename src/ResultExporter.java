@@ -0,0 +1,825 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the rows of a ResultSet to a file, one row at a time, so a result of any size can be saved without holding it in memory.
+ * The rows are encoded straight into a buffer that is written to the file's channel whenever it fills up.
+ * <p>
+ * There are three formats:
+ * <ul>
+ * <li>CSV: a line with the column names, then one line per row. Values with a comma, double quote or line break are put in double quotes.
+ * NULL is written as nothing at all, the same as an empty string. BIT values are written in binary (such as 101), like the 'Add' command takes them.</li>
+ * <li>JSON Lines: one JSON object per row, with the column names as keys. Numbers are written as JSON numbers, and NULL as null.</li>
+ * <li>Binary: the bytes "MSCX", a version byte (1), the number of columns, then the name (as UTF-8) and java.sql.Types type (4 bytes, big-endian) of each column.
+ * After that, each value of each row is its length plus one, followed by its bytes; a length of 0 means NULL. All numbers other than the types are
+ * unsigned variable-length integers (7 bits per byte, lowest first, high bit set if another byte follows). BINARY, VARBINARY and BLOB values are their
+ * raw bytes, and everything else is the same text the CSV format would have, as UTF-8.</li>
+ * </ul>
+ * Any format can be compressed with gzip as it is written.
+ */
+public class ResultExporter
+{
+
+	public enum Format { CSV, JSON, Binary }
+
+	// how each column's values are written
+	private static final int TEXT = 0;
+	private static final int NUMBER = 1;
+	private static final int BIT = 2;
+	private static final int BYTES = 3;
+
+	private static final byte[] MAGIC = { 'M', 'S', 'C', 'X', 1 };
+	private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	// rows between checks of whether it's time to show the progress again
+	private static final int PROGRESS_CHECK = 4096;
+
+	private final File file;
+	private final Format format;
+	private final boolean gzip;
+
+	private final byte[] buf = new byte[256 * 1024];
+	private final ByteBuffer wrapped = ByteBuffer.wrap(buf);
+	private int pos = 0;
+	private FileChannel ch;
+	private WritableByteChannel out;
+
+	private PrintStream progress = null;
+	private long progressInterval = 2000; // in milliseconds
+
+	private long rows = 0;
+	private long bytes = 0;
+	private long started = 0;
+	private long finished = 0;
+	private long lastShown = 0; // when the progress was last shown
+
+	/**
+	 * Set up an export to a file. Nothing is written until export is called.
+	 * @param file The file to write. If it already exists, it is replaced.
+	 * @param format The format to write the rows in.
+	 * @param gzip If true, the file is compressed with gzip.
+	 */
+	public ResultExporter(File file, Format format, boolean gzip)
+	{
+		this.file = file;
+		this.format = format;
+		this.gzip = gzip;
+	}
+
+	/**
+	 * Work out the format from the end of a file's name: ".jsonl" or ".json" for JSON Lines, ".bin" for binary, and CSV for anything else.
+	 * A ".gz" at the very end is ignored (see isGzipName).
+	 */
+	public static Format formatFromName(File file)
+	{
+		String name = file.getName().toLowerCase();
+
+		if (name.endsWith(".gz"))
+		{
+			name = name.substring(0, name.length() - 3);
+		}
+
+		if (name.endsWith(".jsonl") || name.endsWith(".json"))
+		{
+			return Format.JSON;
+		}
+		else if (name.endsWith(".bin"))
+		{
+			return Format.Binary;
+		}
+		else
+		{
+			return Format.CSV;
+		}
+	}
+
+	/**
+	 * Gets if a file's name ends in ".gz", meaning it should be compressed.
+	 */
+	public static boolean isGzipName(File file)
+	{
+		return file.getName().toLowerCase().endsWith(".gz");
+	}
+
+	/**
+	 * Show how many rows have been written every so often while exporting.
+	 * @param progress Where to show it, or null to not show it.
+	 * @param millis How often to show it, in milliseconds.
+	 */
+	public void setProgress(PrintStream progress, long millis)
+	{
+		this.progress = progress;
+		this.progressInterval = millis;
+	}
+
+	/**
+	 * Write every remaining row of a ResultSet to the file. The file is closed afterwards, even if there's an error,
+	 * and keeps the rows written before it.
+	 * @param rs The rows to write. Use a fetch size so the driver only holds a few rows at a time.
+	 * @return The number of rows written.
+	 * @throws SQLException If the rows couldn't be read.
+	 * @throws IOException If the file couldn't be written.
+	 */
+	public long export(ResultSet rs) throws SQLException, IOException
+	{
+		open();
+
+		try
+		{
+			ResultSetMetaData md = rs.getMetaData();
+			int cols = md.getColumnCount();
+			String[] names = new String[cols];
+			int[] sqlTypes = new int[cols];
+
+			for (int i = 0; i < cols; i++)
+			{
+				names[i] = md.getColumnLabel(i + 1);
+				sqlTypes[i] = md.getColumnType(i + 1);
+			}
+
+			int[] kinds = kindsOf(sqlTypes);
+			byte[][] keys = writeHeader(names, sqlTypes);
+
+			while (rs.next())
+			{
+				switch (format)
+				{
+				case CSV:
+					writeCsvRow(rs, kinds);
+					break;
+				case JSON:
+					writeJsonRow(rs, kinds, keys);
+					break;
+				case Binary:
+					writeBinaryRow(rs, kinds);
+					break;
+				}
+
+				rowWritten();
+			}
+		}
+		finally
+		{
+			close();
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Write the rows of a table read by a TableScanner to the file, range by range as the scanner hands them back.
+	 * The file is closed afterwards, even if there's an error, and keeps the rows written before it. The scanner isn't closed.
+	 * @param scan The scan, already started, with at least one range.
+	 * @return The number of rows written.
+	 * @throws SQLException If a range couldn't be read.
+	 * @throws IOException If the file couldn't be written.
+	 */
+	public long export(TableScanner scan) throws SQLException, IOException
+	{
+		open();
+
+		try
+		{
+			ColumnarResult range = scan.next();
+			if (range == null)
+			{
+				return rows;
+			}
+
+			int[] kinds = kindsOf(range.getTypes());
+			byte[][] keys = writeHeader(range.getLabels(), range.getTypes());
+
+			for (; range != null; range = scan.next())
+			{
+				ColumnarResult.Cursor c = range.cursor();
+				while (c.next())
+				{
+					switch (format)
+					{
+					case CSV:
+						writeCsvRow(c, kinds);
+						break;
+					case JSON:
+						writeJsonRow(c, kinds, keys);
+						break;
+					case Binary:
+						writeBinaryRow(c, kinds);
+						break;
+					}
+
+					rowWritten();
+				}
+			}
+		}
+		finally
+		{
+			close();
+		}
+
+		return rows;
+	}
+
+	private void open() throws IOException
+	{
+		started = System.nanoTime();
+		lastShown = started;
+
+		ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		out = gzip ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(ch), 64 * 1024)) : ch;
+	}
+
+	private void close() throws IOException
+	{
+		try
+		{
+			drain(); // the rows written before an error are kept
+			out.close(); // finishes the gzip stream as well
+		}
+		finally
+		{
+			ch.close();
+			finished = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Write what comes before the rows: the column names for CSV, or the magic bytes and columns for binary.
+	 * @return For JSON, the "name": part of each value, which is the same on every row. null for the other formats.
+	 */
+	private byte[][] writeHeader(String[] names, int[] sqlTypes) throws IOException
+	{
+		int cols = names.length;
+		byte[][] keys = null;
+
+		switch (format)
+		{
+		case CSV:
+			for (int i = 0; i < cols; i++)
+			{
+				if (i > 0)
+				{
+					put(',');
+				}
+				putCsv(names[i]);
+			}
+			put('\n');
+			break;
+		case JSON:
+			keys = new byte[cols][];
+			for (int i = 0; i < cols; i++)
+			{
+				StringBuilder sb = new StringBuilder();
+				sb.append(i == 0 ? '{' : ',');
+				appendJson(sb, names[i]);
+				sb.append(':');
+				keys[i] = sb.toString().getBytes("UTF-8");
+			}
+			break;
+		case Binary:
+			put(MAGIC, 0, MAGIC.length);
+			putVarint(cols);
+			for (int i = 0; i < cols; i++)
+			{
+				byte[] name = names[i].getBytes("UTF-8");
+				putVarint(name.length);
+				put(name, 0, name.length);
+				putInt(sqlTypes[i]);
+			}
+			break;
+		}
+
+		return keys;
+	}
+
+	/**
+	 * Count a row, and show the progress if it's time to.
+	 */
+	private void rowWritten()
+	{
+		rows++;
+
+		if (progress != null && rows % PROGRESS_CHECK == 0)
+		{
+			long now = System.nanoTime();
+			if (now - lastShown >= progressInterval * 1000000L)
+			{
+				lastShown = now;
+				progress.println(rows + " rows written, " + String.format("%.0f", getRowsPerSecond()) + " rows/sec");
+			}
+		}
+	}
+
+	private static int[] kindsOf(int[] sqlTypes)
+	{
+		int[] kinds = new int[sqlTypes.length];
+		for (int i = 0; i < kinds.length; i++)
+		{
+			kinds[i] = kindOf(sqlTypes[i]);
+		}
+		return kinds;
+	}
+
+	private static int kindOf(int sqlType)
+	{
+		switch (sqlType)
+		{
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return NUMBER;
+		case Types.BIT:
+		case Types.BOOLEAN:
+			return BIT;
+		case Types.BINARY:
+		case Types.VARBINARY:
+		case Types.LONGVARBINARY:
+		case Types.BLOB:
+			return BYTES;
+		default:
+			return TEXT;
+		}
+	}
+
+	/**
+	 * Get a value as the text the CSV format uses, or null if it's NULL.
+	 */
+	private static String getText(ResultSet rs, int col, int kind) throws SQLException
+	{
+		if (kind == BIT)
+		{
+			long bits = rs.getLong(col);
+			return rs.wasNull() ? null : Long.toBinaryString(bits);
+		}
+
+		return rs.getString(col);
+	}
+
+	private void writeCsvRow(ResultSet rs, int[] kinds) throws SQLException, IOException
+	{
+		for (int i = 0; i < kinds.length; i++)
+		{
+			if (i > 0)
+			{
+				put(',');
+			}
+
+			String val = getText(rs, i + 1, kinds[i]);
+			if (val != null)
+			{
+				putCsv(val);
+			}
+		}
+		put('\n');
+	}
+
+	private void writeJsonRow(ResultSet rs, int[] kinds, byte[][] keys) throws SQLException, IOException
+	{
+		for (int i = 0; i < kinds.length; i++)
+		{
+			put(keys[i], 0, keys[i].length);
+
+			if (kinds[i] == BIT)
+			{
+				// a number in JSON, rather than the binary text CSV has
+				long bits = rs.getLong(i + 1);
+				if (rs.wasNull())
+				{
+					put(NULL, 0, NULL.length);
+				}
+				else
+				{
+					putAscii(Long.toString(bits));
+				}
+				continue;
+			}
+
+			String val = rs.getString(i + 1);
+			if (val == null)
+			{
+				put(NULL, 0, NULL.length);
+			}
+			else if (kinds[i] == NUMBER)
+			{
+				putAscii(val);
+			}
+			else
+			{
+				putJson(val);
+			}
+		}
+
+		if (kinds.length == 0)
+		{
+			put('{');
+		}
+		put('}');
+		put('\n');
+	}
+
+	private void writeBinaryRow(ResultSet rs, int[] kinds) throws SQLException, IOException
+	{
+		for (int i = 0; i < kinds.length; i++)
+		{
+			if (kinds[i] == BYTES)
+			{
+				byte[] val = rs.getBytes(i + 1);
+				if (val == null)
+				{
+					putVarint(0);
+				}
+				else
+				{
+					putVarint(val.length + 1L);
+					put(val, 0, val.length);
+				}
+			}
+			else
+			{
+				String val = getText(rs, i + 1, kinds[i]);
+				if (val == null)
+				{
+					putVarint(0);
+				}
+				else
+				{
+					putVarint(utf8Length(val) + 1L);
+					putUtf8(val, 0, val.length());
+				}
+			}
+		}
+	}
+
+	private void writeCsvRow(ColumnarResult.Cursor c, int[] kinds) throws IOException
+	{
+		for (int i = 0; i < kinds.length; i++)
+		{
+			if (i > 0)
+			{
+				put(',');
+			}
+
+			String val = c.getText(i); // BIT values are already in binary
+			if (val != null)
+			{
+				putCsv(val);
+			}
+		}
+		put('\n');
+	}
+
+	private void writeJsonRow(ColumnarResult.Cursor c, int[] kinds, byte[][] keys) throws IOException
+	{
+		for (int i = 0; i < kinds.length; i++)
+		{
+			put(keys[i], 0, keys[i].length);
+
+			if (c.isNull(i))
+			{
+				put(NULL, 0, NULL.length);
+			}
+			else if (kinds[i] == BIT)
+			{
+				putAscii(Long.toString(c.getLong(i)));
+			}
+			else if (kinds[i] == NUMBER)
+			{
+				putAscii(c.getText(i));
+			}
+			else
+			{
+				putJson(c.getText(i));
+			}
+		}
+
+		if (kinds.length == 0)
+		{
+			put('{');
+		}
+		put('}');
+		put('\n');
+	}
+
+	private void writeBinaryRow(ColumnarResult.Cursor c, int[] kinds) throws IOException
+	{
+		for (int i = 0; i < kinds.length; i++)
+		{
+			if (c.isNull(i))
+			{
+				putVarint(0);
+			}
+			else if (kinds[i] == BYTES)
+			{
+				// straight from where the result keeps them, without copying them into an array first
+				ByteBuffer val = c.getBytes(i);
+				putVarint(val.remaining() + 1L);
+				while (val.hasRemaining())
+				{
+					if (pos == buf.length)
+					{
+						drain();
+					}
+					int n = Math.min(val.remaining(), buf.length - pos);
+					val.get(buf, pos, n);
+					pos += n;
+				}
+			}
+			else
+			{
+				String val = c.getText(i);
+				putVarint(utf8Length(val) + 1L);
+				putUtf8(val, 0, val.length());
+			}
+		}
+	}
+
+	// -------------------------------------------------------------------------------------------------------------
+	// Putting bytes into the buffer
+
+	private void put(int b) throws IOException
+	{
+		if (pos == buf.length)
+		{
+			drain();
+		}
+		buf[pos++] = (byte) b;
+	}
+
+	private void put(byte[] src, int off, int len) throws IOException
+	{
+		while (len > 0)
+		{
+			if (pos == buf.length)
+			{
+				drain();
+			}
+			int n = Math.min(len, buf.length - pos);
+			System.arraycopy(src, off, buf, pos, n);
+			pos += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	private void putInt(int v) throws IOException
+	{
+		put(v >>> 24);
+		put(v >>> 16);
+		put(v >>> 8);
+		put(v);
+	}
+
+	private void putVarint(long v) throws IOException
+	{
+		while ((v & ~0x7FL) != 0)
+		{
+			put((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		put((int) v);
+	}
+
+	/**
+	 * Put a string that is known to only have ASCII characters in it, such as a number.
+	 */
+	private void putAscii(String s) throws IOException
+	{
+		for (int i = 0; i < s.length(); i++)
+		{
+			put(s.charAt(i));
+		}
+	}
+
+	/**
+	 * Put part of a string as UTF-8, without making a byte array for it first.
+	 */
+	private void putUtf8(String s, int from, int to) throws IOException
+	{
+		for (int i = from; i < to; i++)
+		{
+			char c = s.charAt(i);
+
+			if (c < 0x80)
+			{
+				put(c);
+			}
+			else if (c < 0x800)
+			{
+				put(0xC0 | (c >> 6));
+				put(0x80 | (c & 0x3F));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(s.charAt(i + 1)))
+			{
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				put(0xF0 | (cp >> 18));
+				put(0x80 | ((cp >> 12) & 0x3F));
+				put(0x80 | ((cp >> 6) & 0x3F));
+				put(0x80 | (cp & 0x3F));
+			}
+			else if (Character.isSurrogate(c))
+			{
+				put('?'); // half of a pair can't be written as UTF-8
+			}
+			else
+			{
+				put(0xE0 | (c >> 12));
+				put(0x80 | ((c >> 6) & 0x3F));
+				put(0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	/**
+	 * Get how many bytes putUtf8 writes for a string.
+	 */
+	private static int utf8Length(String s)
+	{
+		int len = 0;
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+
+			if (c < 0x80)
+			{
+				len += 1;
+			}
+			else if (c < 0x800)
+			{
+				len += 2;
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1)))
+			{
+				len += 4;
+				i++;
+			}
+			else if (Character.isSurrogate(c))
+			{
+				len += 1;
+			}
+			else
+			{
+				len += 3;
+			}
+		}
+		return len;
+	}
+
+	/**
+	 * Put a value for the CSV format, in double quotes if it needs them.
+	 */
+	private void putCsv(String s) throws IOException
+	{
+		boolean quote = false;
+		for (int i = 0; i < s.length() && !quote; i++)
+		{
+			char c = s.charAt(i);
+			quote = (c == ',' || c == '"' || c == '\n' || c == '\r');
+		}
+
+		if (!quote)
+		{
+			putUtf8(s, 0, s.length());
+			return;
+		}
+
+		put('"');
+		int start = 0;
+		for (int i = 0; i < s.length(); i++)
+		{
+			if (s.charAt(i) == '"')
+			{
+				putUtf8(s, start, i + 1);
+				put('"'); // a double quote inside a quoted value is written twice
+				start = i + 1;
+			}
+		}
+		putUtf8(s, start, s.length());
+		put('"');
+	}
+
+	/**
+	 * Put a string for the JSON format, in double quotes and with the characters JSON doesn't allow escaped.
+	 */
+	private void putJson(String s) throws IOException
+	{
+		put('"');
+		int start = 0;
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\' || c < 0x20)
+			{
+				putUtf8(s, start, i);
+				start = i + 1;
+
+				put('\\');
+				switch (c)
+				{
+				case '"': put('"'); break;
+				case '\\': put('\\'); break;
+				case '\n': put('n'); break;
+				case '\r': put('r'); break;
+				case '\t': put('t'); break;
+				default:
+					put('u');
+					put('0');
+					put('0');
+					put(HEX[c >> 4]);
+					put(HEX[c & 0xF]);
+					break;
+				}
+			}
+		}
+		putUtf8(s, start, s.length());
+		put('"');
+	}
+
+	private static void appendJson(StringBuilder sb, String s)
+	{
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\')
+			{
+				sb.append('\\').append(c);
+			}
+			else if (c < 0x20)
+			{
+				sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+			}
+			else
+			{
+				sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+
+	/**
+	 * Write everything in the buffer to the file.
+	 */
+	private void drain() throws IOException
+	{
+		wrapped.clear();
+		wrapped.limit(pos);
+		while (wrapped.hasRemaining())
+		{
+			out.write(wrapped);
+		}
+		bytes += pos;
+		pos = 0;
+	}
+
+	/**
+	 * Get the number of rows written so far.
+	 */
+	public long getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Get the number of bytes written so far, before compression.
+	 */
+	public long getByteCount() {
+		return bytes + pos;
+	}
+
+	/**
+	 * Get the number of seconds the export took (or has taken so far).
+	 */
+	public double getElapsedSeconds() {
+		if (started == 0)
+		{
+			return 0;
+		}
+		long end = (finished == 0) ? System.nanoTime() : finished;
+		return (end - started) / 1000000000.0;
+	}
+
+	/**
+	 * Get the number of rows written per second.
+	 */
+	public double getRowsPerSecond() {
+		double secs = getElapsedSeconds();
+		return secs == 0 ? 0 : rows / secs;
+	}
+
+}
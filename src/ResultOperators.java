@@ -0,0 +1,1140 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+
+/**
+ * Sorts, filters and groups the rows of a ColumnarResult on this computer, rather than asking the server to run the query again.
+ * The rows worked on are given as an array of row numbers (a "view"), so a result can be sorted and filtered without moving any of its rows.
+ * The work is split up between threads with fork/join. Before sorting or grouping, the values of each column used are pulled out into
+ * an array of longs, doubles or the like, so comparing two rows doesn't go back to the ColumnarResult (or make any objects) each time.
+ */
+public class ResultOperators
+{
+
+	// ranges with fewer rows than this are done on one thread
+	private static final int SPLIT = 4096;
+
+	// ranges with fewer rows than this are sorted by insertion, rather than split up again
+	private static final int INSERTION_SORT = 32;
+
+	private static final ForkJoinPool POOL = new ForkJoinPool(); // one thread for each processor; its threads don't keep the program open
+
+	private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+	private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+
+	private ResultOperators() { }
+
+	/**
+	 * Decides whether a row should be kept by filter.
+	 */
+	public interface RowTest
+	{
+		boolean test(int row);
+	}
+
+	/**
+	 * The values of one column, pulled out of a ColumnarResult so rows can be compared by them quickly.
+	 * How they're compared depends on the column's type, the way MySQL does in ORDER BY: numbers by value, ENUM by the order of its values,
+	 * SET by which of its values are in it, TIME by length, and text without caring about upper or lower case. NULL comes before everything else.
+	 */
+	public static class Key
+	{
+		private static final int LONG = 0, DOUBLE = 1, DECIMAL = 2, TEXT = 3;
+
+		private final ColumnarResult rows;
+		private final int col;
+		private final ColumnDataType type;
+		private final List<String> members; // the values of an ENUM or SET column, if they're known
+		private final int kind;
+
+		private final boolean[] nulls;
+		private long[] longs;
+		private double[] doubles;
+		private BigDecimal[] decimals;
+		private String[] texts;
+
+		/**
+		 * Pull out the values of a column, for the rows in a view.
+		 * @param rows The result.
+		 * @param col The column, counting from 0.
+		 * @param column The column's details from its table, if it came straight from one, such as for 'Display'. Can be null.
+		 * The type is taken from here if it's given, as only the table knows a column is an ENUM or SET rather than text.
+		 * @param view The rows to pull out. Only these can be compared.
+		 */
+		public Key(ColumnarResult rows, int col, ColumnData column, int[] view)
+		{
+			this.rows = rows;
+			this.col = col;
+			this.type = (column != null) ? column.getType() : rows.getColumnType(col);
+			this.members = (column != null) ? column.getEnumValues() : new ArrayList<String>();
+			this.kind = kindOf(rows, col, type, members);
+
+			int n = rows.getRowCount();
+			nulls = new boolean[n];
+			switch (kind)
+			{
+			case LONG:
+				longs = new long[n];
+				break;
+			case DOUBLE:
+				doubles = new double[n];
+				break;
+			case DECIMAL:
+				decimals = new BigDecimal[n];
+				break;
+			default:
+				texts = new String[n];
+				break;
+			}
+
+			POOL.invoke(new LoadTask(this, view, 0, view.length));
+		}
+
+		private void load(int row)
+		{
+			if (rows.isNull(row, col))
+			{
+				nulls[row] = true;
+				return;
+			}
+
+			switch (kind)
+			{
+			case LONG:
+				if (type == ColumnDataType.Enum && !members.isEmpty())
+				{
+					longs[row] = enumIndex(members, rows.getText(row, col));
+				}
+				else if (type == ColumnDataType.Set && !members.isEmpty())
+				{
+					longs[row] = setBits(members, rows.getText(row, col));
+				}
+				else if (type == ColumnDataType.Time)
+				{
+					longs[row] = timeMicros(rows.getText(row, col));
+				}
+				else
+				{
+					longs[row] = rows.getLong(row, col);
+				}
+				break;
+			case DOUBLE:
+				doubles[row] = rows.getDouble(row, col);
+				break;
+			case DECIMAL:
+				decimals[row] = new BigDecimal(rows.getText(row, col));
+				break;
+			default:
+				texts[row] = rows.getText(row, col);
+				break;
+			}
+		}
+
+		/**
+		 * Compare two rows by this column. Both must be in the view the key was made for.
+		 * @return Less than 0 if row a comes first, more than 0 if row b does, and 0 if they're the same.
+		 */
+		public int compare(int a, int b)
+		{
+			if (nulls[a] || nulls[b])
+			{
+				return (nulls[a] == nulls[b]) ? 0 : (nulls[a] ? -1 : 1);
+			}
+
+			switch (kind)
+			{
+			case LONG:
+				return Long.compare(longs[a], longs[b]);
+			case DOUBLE:
+				return Double.compare(doubles[a], doubles[b]);
+			case DECIMAL:
+				return decimals[a].compareTo(decimals[b]);
+			default:
+				return texts[a].compareToIgnoreCase(texts[b]);
+			}
+		}
+
+		/**
+		 * Get an object that's equal for any two rows compare says are the same, for grouping. null for NULL.
+		 */
+		Object groupValue(int row)
+		{
+			if (nulls[row])
+			{
+				return null;
+			}
+
+			switch (kind)
+			{
+			case LONG:
+				return longs[row];
+			case DOUBLE:
+				return doubles[row];
+			case DECIMAL:
+				return decimals[row].stripTrailingZeros();
+			default:
+				return texts[row].toLowerCase();
+			}
+		}
+
+		private static int kindOf(ColumnarResult rows, int col, ColumnDataType type, List<String> members)
+		{
+			if (type == ColumnDataType.Time || ((type == ColumnDataType.Enum || type == ColumnDataType.Set) && !members.isEmpty()))
+			{
+				return LONG;
+			}
+
+			switch (rows.getStorage(col))
+			{
+			case INT:
+			case LONG:
+				return LONG;
+			case FLOAT:
+			case DOUBLE:
+				return DOUBLE;
+			default:
+				// DECIMAL, and BIGINT UNSIGNED, are kept as text but still compared as numbers
+				return (type == ColumnDataType.Decimal || type == ColumnDataType.Long) ? DECIMAL : TEXT;
+			}
+		}
+	}
+
+	/**
+	 * Sort the rows in a view. Rows that are the same in every key are left in the order they were in, so sorting by one column and then another
+	 * gives the rows in order of the second, and then of the first.
+	 * @param view The rows to sort. It isn't changed.
+	 * @param keys The columns to sort by, most important first. Each must have been made for this view.
+	 * @param descending For each key, true to sort from largest to smallest (with NULL last), rather than the other way around.
+	 * @return The rows of the view, in order.
+	 */
+	public static int[] sort(int[] view, Key[] keys, boolean[] descending)
+	{
+		int[] sorted = view.clone();
+		POOL.invoke(new SortTask(sorted, new int[sorted.length], 0, sorted.length, keys, descending));
+		return sorted;
+	}
+
+	/**
+	 * Keep the rows in a view that pass a test.
+	 * @param view The rows to look at. It isn't changed.
+	 * @param test The test each row has to pass. It's called from several threads at once.
+	 * @return The rows that passed, in the same order.
+	 */
+	public static int[] filter(int[] view, RowTest test)
+	{
+		return POOL.invoke(new FilterTask(view, 0, view.length, test));
+	}
+
+	/**
+	 * Make the test for a condition on one column, such as "amount > 10" or "name like 'b%'".
+	 * Values are compared the way MySQL does in a WHERE clause: numbers by value, TIME by length, BIT values typed in binary,
+	 * and everything else (including ENUM and SET) as text, without caring about upper or lower case. A NULL value only passes "is null".
+	 * @param rows The result.
+	 * @param col The column, counting from 0.
+	 * @param column The column's details from its table, if it came straight from one. Can be null.
+	 * @param op The comparison: =, !=, &lt;&gt;, &lt;, &lt;=, &gt;, &gt;=, like, not like, is null or is not null.
+	 * @param value The value to compare with, with or without quotes. Not used for "is null" and "is not null". In "like", '%' is any text and '_' any one character.
+	 * @return The test.
+	 * @throws IllegalArgumentException If the comparison isn't one of these, or the value can't be compared with this column.
+	 */
+	public static RowTest condition(final ColumnarResult rows, final int col, ColumnData column, String op, String value)
+	{
+		op = op.toLowerCase().replaceAll("\\s+", " ");
+
+		if (op.equals("is null") || op.equals("is not null"))
+		{
+			final boolean wanted = op.equals("is null");
+			return new RowTest() {
+				@Override
+				public boolean test(int row)
+				{
+					return rows.isNull(row, col) == wanted;
+				}
+			};
+		}
+
+		value = unquote(value);
+
+		if (op.equals("like") || op.equals("not like"))
+		{
+			final Pattern pattern = likePattern(value);
+			final boolean wanted = op.equals("like");
+			return new RowTest() {
+				@Override
+				public boolean test(int row)
+				{
+					return !rows.isNull(row, col) && pattern.matcher(rows.getText(row, col)).matches() == wanted;
+				}
+			};
+		}
+
+		final int cmp = comparison(op);
+		ColumnDataType type = (column != null) ? column.getType() : rows.getColumnType(col);
+		ColumnarResult.Storage storage = rows.getStorage(col);
+
+		if (type == ColumnDataType.Bit)
+		{
+			final long bits;
+			try
+			{
+				bits = Long.parseLong(value, 2);
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IllegalArgumentException("'" + value + "' isn't a BIT value; type it in binary, such as 101.");
+			}
+
+			return new RowTest() {
+				@Override
+				public boolean test(int row)
+				{
+					return !rows.isNull(row, col) && matches(cmp, Long.compare(rows.getLong(row, col), bits));
+				}
+			};
+		}
+
+		if (type == ColumnDataType.Time)
+		{
+			final long micros = timeMicros(value);
+			return new RowTest() {
+				@Override
+				public boolean test(int row)
+				{
+					return !rows.isNull(row, col) && matches(cmp, Long.compare(timeMicros(rows.getText(row, col)), micros));
+				}
+			};
+		}
+
+		if (storage == ColumnarResult.Storage.INT || storage == ColumnarResult.Storage.LONG)
+		{
+			// compared as whole numbers, as a double can't tell apart the longs past 2^53
+			BigDecimal number = parseDecimal(value);
+			BigDecimal floor = number.setScale(0, RoundingMode.FLOOR);
+			final boolean exact = (floor.compareTo(number) == 0);
+			final int outside = (floor.compareTo(LONG_MAX) > 0) ? -1 : (floor.compareTo(LONG_MIN) < 0) ? 1 : 0; // every value is below, or above, it
+			final long whole = (outside == 0) ? floor.longValue() : 0;
+			return new RowTest() {
+				@Override
+				public boolean test(int row)
+				{
+					if (rows.isNull(row, col))
+					{
+						return false;
+					}
+
+					long v = rows.getLong(row, col);
+					int c;
+					if (outside != 0)
+					{
+						c = outside;
+					}
+					else if (exact)
+					{
+						c = Long.compare(v, whole);
+					}
+					else
+					{
+						c = (v <= whole) ? -1 : 1; // the number is between whole and whole + 1
+					}
+					return matches(cmp, c);
+				}
+			};
+		}
+
+		if (storage != ColumnarResult.Storage.TEXT && storage != ColumnarResult.Storage.BYTES)
+		{
+			final double number = parseNumber(value);
+			return new RowTest() {
+				@Override
+				public boolean test(int row)
+				{
+					return !rows.isNull(row, col) && matches(cmp, Double.compare(rows.getDouble(row, col), number));
+				}
+			};
+		}
+
+		if (type == ColumnDataType.Decimal || type == ColumnDataType.Long)
+		{
+			final BigDecimal number = parseDecimal(value);
+			return new RowTest() {
+				@Override
+				public boolean test(int row)
+				{
+					return !rows.isNull(row, col) && matches(cmp, new BigDecimal(rows.getText(row, col)).compareTo(number));
+				}
+			};
+		}
+
+		final String text = value;
+		return new RowTest() {
+			@Override
+			public boolean test(int row)
+			{
+				return !rows.isNull(row, col) && matches(cmp, rows.getText(row, col).compareToIgnoreCase(text));
+			}
+		};
+	}
+
+	/**
+	 * One of the values worked out for each group by groupBy: COUNT, SUM, AVG, MIN or MAX of a column.
+	 */
+	public static class Aggregate
+	{
+		private final String function;
+		private final int col;
+		private final boolean decimal; // worked out with BigDecimal, rather than with doubles
+		private final boolean integer; // whole numbers, worked out with longs (and BigDecimal if a sum gets too big for one)
+		private final String label;
+
+		/**
+		 * Create an aggregate.
+		 * @param function COUNT (the values that aren't NULL), SUM, AVG, MIN or MAX, in any case.
+		 * @param rows The result.
+		 * @param col The column, counting from 0.
+		 * @throws IllegalArgumentException If the function isn't one of these, or it needs numbers and the column doesn't have them.
+		 */
+		public Aggregate(String function, ColumnarResult rows, int col)
+		{
+			this.function = function.toUpperCase();
+			this.col = col;
+			this.label = this.function + "(" + rows.getLabels()[col] + ")";
+
+			ColumnarResult.Storage storage = rows.getStorage(col);
+			ColumnDataType type = rows.getColumnType(col);
+			boolean isText = (storage == ColumnarResult.Storage.TEXT || storage == ColumnarResult.Storage.BYTES);
+			decimal = isText && (type == ColumnDataType.Decimal || type == ColumnDataType.Long);
+			integer = (storage == ColumnarResult.Storage.INT || storage == ColumnarResult.Storage.LONG);
+
+			if (!this.function.matches("COUNT|SUM|AVG|MIN|MAX"))
+			{
+				throw new IllegalArgumentException("'" + function + "' isn't one of COUNT, SUM, AVG, MIN or MAX.");
+			}
+
+			if (!this.function.equals("COUNT") && isText && !decimal)
+			{
+				throw new IllegalArgumentException(this.function + " needs a column of numbers, and " + rows.getLabels()[col] + " isn't one.");
+			}
+		}
+	}
+
+	/**
+	 * The rows of each group, added up.
+	 */
+	private static class Group
+	{
+		final int first; // the first row of the group, which stands for all of them
+		long count = 0;
+		final long[] counts; // for each aggregate, the values that aren't NULL
+		final double[] sums, mins, maxes;
+		final long[] longSums, longMins, longMaxes;
+		final BigDecimal[] bigSums, bigMins, bigMaxes;
+
+		Group(int first, int aggs)
+		{
+			this.first = first;
+			counts = new long[aggs];
+			sums = new double[aggs];
+			mins = new double[aggs];
+			maxes = new double[aggs];
+			longSums = new long[aggs];
+			longMins = new long[aggs];
+			longMaxes = new long[aggs];
+			bigSums = new BigDecimal[aggs];
+			bigMins = new BigDecimal[aggs];
+			bigMaxes = new BigDecimal[aggs];
+		}
+
+		void add(ColumnarResult rows, int row, Aggregate[] aggs)
+		{
+			count++;
+			for (int i = 0; i < aggs.length; i++)
+			{
+				Aggregate a = aggs[i];
+				if (rows.isNull(row, a.col))
+				{
+					continue;
+				}
+
+				if (a.function.equals("COUNT"))
+				{
+					counts[i]++;
+				}
+				else if (a.decimal)
+				{
+					BigDecimal v = new BigDecimal(rows.getText(row, a.col));
+					addBig(i, v, v, v, 1);
+				}
+				else if (a.integer)
+				{
+					long v = rows.getLong(row, a.col);
+					addLong(i, v, v, v, 1);
+				}
+				else
+				{
+					double v = rows.getDouble(row, a.col);
+					addDouble(i, v, v, v, 1);
+				}
+			}
+		}
+
+		void merge(Group other, Aggregate[] aggs)
+		{
+			count += other.count;
+			for (int i = 0; i < counts.length; i++)
+			{
+				if (other.counts[i] == 0)
+				{
+					continue;
+				}
+
+				if (other.bigSums[i] != null)
+				{
+					toBig(i);
+					addBig(i, other.bigSums[i], other.bigMins[i], other.bigMaxes[i], other.counts[i]);
+				}
+				else if (aggs[i].integer)
+				{
+					addLong(i, other.longSums[i], other.longMins[i], other.longMaxes[i], other.counts[i]);
+				}
+				else
+				{
+					addDouble(i, other.sums[i], other.mins[i], other.maxes[i], other.counts[i]);
+				}
+			}
+		}
+
+		private void addDouble(int i, double sum, double min, double max, long n)
+		{
+			mins[i] = (counts[i] == 0) ? min : Math.min(mins[i], min);
+			maxes[i] = (counts[i] == 0) ? max : Math.max(maxes[i], max);
+			sums[i] += sum;
+			counts[i] += n;
+		}
+
+		private void addLong(int i, long sum, long min, long max, long n)
+		{
+			if (bigSums[i] == null)
+			{
+				long total = longSums[i] + sum;
+				if (((longSums[i] ^ total) & (sum ^ total)) >= 0) // it didn't overflow
+				{
+					longMins[i] = (counts[i] == 0) ? min : Math.min(longMins[i], min);
+					longMaxes[i] = (counts[i] == 0) ? max : Math.max(longMaxes[i], max);
+					longSums[i] = total;
+					counts[i] += n;
+					return;
+				}
+
+				toBig(i); // the sum is too big for a long, so carry on with BigDecimal
+			}
+
+			addBig(i, BigDecimal.valueOf(sum), BigDecimal.valueOf(min), BigDecimal.valueOf(max), n);
+		}
+
+		/**
+		 * Move an aggregate worked out with longs over to BigDecimal.
+		 */
+		private void toBig(int i)
+		{
+			if (bigSums[i] == null && counts[i] > 0)
+			{
+				bigSums[i] = BigDecimal.valueOf(longSums[i]);
+				bigMins[i] = BigDecimal.valueOf(longMins[i]);
+				bigMaxes[i] = BigDecimal.valueOf(longMaxes[i]);
+			}
+		}
+
+		private void addBig(int i, BigDecimal sum, BigDecimal min, BigDecimal max, long n)
+		{
+			bigMins[i] = (counts[i] == 0) ? min : bigMins[i].min(min);
+			bigMaxes[i] = (counts[i] == 0) ? max : bigMaxes[i].max(max);
+			bigSums[i] = (counts[i] == 0) ? sum : bigSums[i].add(sum);
+			counts[i] += n;
+		}
+
+		String result(Aggregate a, int i)
+		{
+			if (a.function.equals("COUNT"))
+			{
+				return Long.toString(counts[i]);
+			}
+
+			if (counts[i] == 0)
+			{
+				return null; // like MySQL, the SUM (and the rest) of nothing but NULLs is NULL
+			}
+
+			if (a.decimal || bigSums[i] != null)
+			{
+				switch (a.function)
+				{
+				case "SUM":
+					return bigSums[i].toPlainString();
+				case "AVG":
+					return bigSums[i].divide(BigDecimal.valueOf(counts[i]), a.integer ? MathContext.DECIMAL128 : MathContext.DECIMAL64).toPlainString();
+				case "MIN":
+					return bigMins[i].toPlainString();
+				default:
+					return bigMaxes[i].toPlainString();
+				}
+			}
+
+			if (a.integer)
+			{
+				switch (a.function)
+				{
+				case "SUM":
+					return Long.toString(longSums[i]);
+				case "AVG":
+					return BigDecimal.valueOf(longSums[i]).divide(BigDecimal.valueOf(counts[i]), MathContext.DECIMAL128).toPlainString(); // enough digits for any long
+				case "MIN":
+					return Long.toString(longMins[i]);
+				default:
+					return Long.toString(longMaxes[i]);
+				}
+			}
+
+			double v;
+			switch (a.function)
+			{
+			case "SUM":
+				v = sums[i];
+				break;
+			case "AVG":
+				return Double.toString(sums[i] / counts[i]);
+			case "MIN":
+				v = mins[i];
+				break;
+			default:
+				v = maxes[i];
+				break;
+			}
+
+			return Double.toString(v);
+		}
+	}
+
+	/**
+	 * The table made by groupBy: one row for each group.
+	 */
+	public static class Grouped
+	{
+		private final String[] labels;
+		private final int[] types;
+		private final List<String[]> rows;
+
+		private Grouped(String[] labels, int[] types, List<String[]> rows)
+		{
+			this.labels = labels;
+			this.types = types;
+			this.rows = rows;
+		}
+
+		/**
+		 * Get the name of each column: the column grouped by, COUNT(*), then one for each aggregate.
+		 */
+		public String[] getLabels() {
+			return labels;
+		}
+
+		/**
+		 * Get the type of each column, from java.sql.Types.
+		 */
+		public int[] getTypes() {
+			return types;
+		}
+
+		/**
+		 * Get the values of each row, as TableRenderer shows them.
+		 */
+		public List<String[]> getRows() {
+			return rows;
+		}
+	}
+
+	/**
+	 * Put the rows of a view into groups that have the same value in a column, and work out the number of rows and any aggregates for each.
+	 * @param rows The result.
+	 * @param view The rows to group.
+	 * @param key The column to group by. It must have been made for this view.
+	 * @param aggs The values to work out for each group, besides the number of rows.
+	 * @return A row for each group, in the order of the column grouped by.
+	 */
+	public static Grouped groupBy(ColumnarResult rows, int[] view, final Key key, Aggregate[] aggs)
+	{
+		Map<Object, Group> groups = POOL.invoke(new GroupTask(rows, view, 0, view.length, key, aggs));
+
+		List<Group> ordered = new ArrayList<Group>(groups.values());
+		int[] firsts = new int[ordered.size()];
+		Map<Integer, Group> byFirst = new HashMap<Integer, Group>();
+		for (int i = 0; i < firsts.length; i++)
+		{
+			firsts[i] = ordered.get(i).first;
+			byFirst.put(firsts[i], ordered.get(i));
+		}
+		firsts = sort(firsts, new Key[] { key }, new boolean[] { false });
+
+		String[] labels = new String[aggs.length + 2];
+		int[] types = new int[aggs.length + 2];
+		labels[0] = rows.getLabels()[key.col];
+		types[0] = rows.getTypes()[key.col];
+		labels[1] = "COUNT(*)";
+		types[1] = Types.BIGINT;
+		for (int i = 0; i < aggs.length; i++)
+		{
+			labels[i + 2] = aggs[i].label;
+			types[i + 2] = Types.DOUBLE; // lined up on the right, like any number
+		}
+
+		List<String[]> out = new ArrayList<String[]>(firsts.length);
+		for (int first : firsts)
+		{
+			Group g = byFirst.get(first);
+			String[] vals = new String[labels.length];
+			vals[0] = rows.getText(first, key.col);
+			vals[1] = Long.toString(g.count);
+			for (int i = 0; i < aggs.length; i++)
+			{
+				vals[i + 2] = g.result(aggs[i], i);
+			}
+			out.add(vals);
+		}
+
+		return new Grouped(labels, types, out);
+	}
+
+	private static class LoadTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Key key;
+		private final int[] view;
+		private final int lo, hi;
+
+		LoadTask(Key key, int[] view, int lo, int hi)
+		{
+			this.key = key;
+			this.view = view;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (hi - lo <= SPLIT)
+			{
+				for (int i = lo; i < hi; i++)
+				{
+					key.load(view[i]);
+				}
+				return;
+			}
+
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new LoadTask(key, view, lo, mid), new LoadTask(key, view, mid, hi));
+		}
+	}
+
+	/**
+	 * A merge sort: each half is sorted (at the same time, if it's big enough), then the two halves are merged.
+	 */
+	private static class SortTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int[] a, tmp;
+		private final int lo, hi;
+		private final Key[] keys;
+		private final boolean[] descending;
+
+		SortTask(int[] a, int[] tmp, int lo, int hi, Key[] keys, boolean[] descending)
+		{
+			this.a = a;
+			this.tmp = tmp;
+			this.lo = lo;
+			this.hi = hi;
+			this.keys = keys;
+			this.descending = descending;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (hi - lo <= SPLIT)
+			{
+				sortRange(lo, hi);
+				return;
+			}
+
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new SortTask(a, tmp, lo, mid, keys, descending), new SortTask(a, tmp, mid, hi, keys, descending));
+			merge(lo, mid, hi);
+		}
+
+		private void sortRange(int from, int to)
+		{
+			if (to - from <= INSERTION_SORT)
+			{
+				for (int i = from + 1; i < to; i++)
+				{
+					int row = a[i];
+					int j = i - 1;
+					while (j >= from && compare(a[j], row) > 0)
+					{
+						a[j + 1] = a[j];
+						j--;
+					}
+					a[j + 1] = row;
+				}
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			sortRange(from, mid);
+			sortRange(mid, to);
+			merge(from, mid, to);
+		}
+
+		private void merge(int from, int mid, int to)
+		{
+			if (compare(a[mid - 1], a[mid]) <= 0)
+			{
+				return; // already in order
+			}
+
+			System.arraycopy(a, from, tmp, from, to - from);
+			int i = from, j = mid, k = from;
+			while (i < mid && j < to)
+			{
+				// taking from the left on a tie keeps rows that are the same in the order they were in
+				a[k++] = (compare(tmp[i], tmp[j]) <= 0) ? tmp[i++] : tmp[j++];
+			}
+			while (i < mid)
+			{
+				a[k++] = tmp[i++];
+			}
+			while (j < to)
+			{
+				a[k++] = tmp[j++];
+			}
+		}
+
+		private int compare(int x, int y)
+		{
+			for (int i = 0; i < keys.length; i++)
+			{
+				int c = keys[i].compare(x, y);
+				if (c != 0)
+				{
+					return descending[i] ? -c : c;
+				}
+			}
+			return 0;
+		}
+	}
+
+	private static class FilterTask extends RecursiveTask<int[]>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int[] view;
+		private final int lo, hi;
+		private final RowTest test;
+
+		FilterTask(int[] view, int lo, int hi, RowTest test)
+		{
+			this.view = view;
+			this.lo = lo;
+			this.hi = hi;
+			this.test = test;
+		}
+
+		@Override
+		protected int[] compute()
+		{
+			if (hi - lo <= SPLIT)
+			{
+				int[] kept = new int[hi - lo];
+				int n = 0;
+				for (int i = lo; i < hi; i++)
+				{
+					if (test.test(view[i]))
+					{
+						kept[n++] = view[i];
+					}
+				}
+				int[] out = new int[n];
+				System.arraycopy(kept, 0, out, 0, n);
+				return out;
+			}
+
+			int mid = (lo + hi) >>> 1;
+			FilterTask right = new FilterTask(view, mid, hi, test);
+			right.fork();
+			int[] l = new FilterTask(view, lo, mid, test).compute();
+			int[] r = right.join();
+
+			int[] out = new int[l.length + r.length];
+			System.arraycopy(l, 0, out, 0, l.length);
+			System.arraycopy(r, 0, out, l.length, r.length);
+			return out;
+		}
+	}
+
+	private static class GroupTask extends RecursiveTask<Map<Object, Group>>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final ColumnarResult rows;
+		private final int[] view;
+		private final int lo, hi;
+		private final Key key;
+		private final Aggregate[] aggs;
+
+		GroupTask(ColumnarResult rows, int[] view, int lo, int hi, Key key, Aggregate[] aggs)
+		{
+			this.rows = rows;
+			this.view = view;
+			this.lo = lo;
+			this.hi = hi;
+			this.key = key;
+			this.aggs = aggs;
+		}
+
+		@Override
+		protected Map<Object, Group> compute()
+		{
+			if (hi - lo <= SPLIT)
+			{
+				Map<Object, Group> groups = new HashMap<Object, Group>();
+				for (int i = lo; i < hi; i++)
+				{
+					int row = view[i];
+					Object value = key.groupValue(row);
+					Group g = groups.get(value);
+					if (g == null)
+					{
+						g = new Group(row, aggs.length);
+						groups.put(value, g);
+					}
+					g.add(rows, row, aggs);
+				}
+				return groups;
+			}
+
+			int mid = (lo + hi) >>> 1;
+			GroupTask right = new GroupTask(rows, view, mid, hi, key, aggs);
+			right.fork();
+			Map<Object, Group> l = new GroupTask(rows, view, lo, mid, key, aggs).compute();
+			Map<Object, Group> r = right.join();
+
+			// the groups on the left were seen first, so they keep their first row
+			for (Map.Entry<Object, Group> e : r.entrySet())
+			{
+				Group g = l.get(e.getKey());
+				if (g == null)
+				{
+					l.put(e.getKey(), e.getValue());
+				}
+				else
+				{
+					g.merge(e.getValue(), aggs);
+				}
+			}
+			return l;
+		}
+	}
+
+	private static int comparison(String op)
+	{
+		switch (op)
+		{
+		case "=":
+		case "==":
+			return 0;
+		case "!=":
+		case "<>":
+			return 1;
+		case "<":
+			return 2;
+		case "<=":
+			return 3;
+		case ">":
+			return 4;
+		case ">=":
+			return 5;
+		default:
+			throw new IllegalArgumentException("'" + op + "' isn't a comparison. Use =, !=, <, <=, >, >=, like, not like, is null or is not null.");
+		}
+	}
+
+	private static boolean matches(int comparison, int c)
+	{
+		switch (comparison)
+		{
+		case 0:
+			return c == 0;
+		case 1:
+			return c != 0;
+		case 2:
+			return c < 0;
+		case 3:
+			return c <= 0;
+		case 4:
+			return c > 0;
+		default:
+			return c >= 0;
+		}
+	}
+
+	private static double parseNumber(String value)
+	{
+		try
+		{
+			return Double.parseDouble(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("'" + value + "' isn't a number.");
+		}
+	}
+
+	private static BigDecimal parseDecimal(String value)
+	{
+		try
+		{
+			return new BigDecimal(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("'" + value + "' isn't a number.");
+		}
+	}
+
+	private static String unquote(String value)
+	{
+		value = value.trim();
+		if (value.length() >= 2 && (value.charAt(0) == '\'' || value.charAt(0) == '"') && value.charAt(value.length() - 1) == value.charAt(0))
+		{
+			return value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+
+	/**
+	 * Turn a LIKE pattern into a regular expression: '%' is any text, '_' is any one character, and '\' makes either of them mean itself.
+	 */
+	private static Pattern likePattern(String like)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < like.length(); i++)
+		{
+			char c = like.charAt(i);
+			if (c == '\\' && i + 1 < like.length())
+			{
+				sb.append(Pattern.quote(String.valueOf(like.charAt(++i))));
+			}
+			else if (c == '%')
+			{
+				sb.append(".*");
+			}
+			else if (c == '_')
+			{
+				sb.append('.');
+			}
+			else
+			{
+				sb.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+		return Pattern.compile(sb.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+	}
+
+	/**
+	 * Get the position of a value in an ENUM's list, counting from 1 (0 for the empty value MySQL uses for one that isn't in the list).
+	 */
+	private static long enumIndex(List<String> members, String value)
+	{
+		for (int i = 0; i < members.size(); i++)
+		{
+			if (members.get(i).equalsIgnoreCase(value))
+			{
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Get the number MySQL keeps for a SET value: a bit for each of its values that's there, the first being the lowest.
+	 */
+	private static long setBits(List<String> members, String value)
+	{
+		long bits = 0;
+		if (value.isEmpty())
+		{
+			return bits;
+		}
+
+		for (String part : value.split(","))
+		{
+			long index = enumIndex(members, part);
+			if (index > 0 && index <= 64)
+			{
+				bits |= 1L << (index - 1);
+			}
+		}
+		return bits;
+	}
+
+	/**
+	 * Get the length of a TIME value (such as "-838:59:59" or "12:30:00.5"), in microseconds.
+	 * @throws IllegalArgumentException If it isn't a time.
+	 */
+	private static long timeMicros(String value)
+	{
+		String t = value.trim();
+		boolean negative = t.startsWith("-");
+		if (negative)
+		{
+			t = t.substring(1);
+		}
+
+		try
+		{
+			// hours, minutes and seconds; MySQL reads a shorter one like "12:30" as hours and minutes
+			String[] parts = t.split(":");
+			if (parts.length > 3)
+			{
+				throw new NumberFormatException();
+			}
+
+			long micros = 0;
+			for (int i = 0; i < 3; i++)
+			{
+				micros *= 60;
+				if (i < parts.length)
+				{
+					// only the seconds can have a fraction
+					micros += (i < 2) ? Long.parseLong(parts[i]) * 1000000 : Math.round(Double.parseDouble(parts[i]) * 1e6);
+				}
+			}
+			return negative ? -micros : micros;
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("'" + value + "' isn't a time.");
+		}
+	}
+
+}
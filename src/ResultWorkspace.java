@@ -0,0 +1,326 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the rows of the last result shown, so the 'Sort', 'Filter' and 'GroupBy' commands can work on them here, without running the query again.
+ * Sorts and filters build on each other, each working on the rows the last one left, until 'Filter clear' goes back to all of the rows.
+ * The rows themselves are never moved; only the list of row numbers is, so the same ColumnarResult can be in the result cache at the same time.
+ */
+public class ResultWorkspace
+{
+
+	// column, then a comparison, then the value (if the comparison needs one)
+	private static final Pattern CONDITION = Pattern.compile(
+			"^\\s*([^\\s<>=!]+)(?:\\s+(is\\s+not\\s+null|is\\s+null|not\\s+like|like)(?:\\s+|$)|\\s*(<>|!=|<=|>=|==|=|<|>)\\s*)(.*)$",
+			Pattern.CASE_INSENSITIVE);
+
+	private volatile long maxBytes;
+
+	private String source = null; // the query the rows came from
+	private ColumnarResult rows = null; // null if there hasn't been a result yet, or the last one wasn't kept
+	private List<ColumnData> columns = null; // the table's columns, if the rows came straight from one
+	private int[] view = null; // the rows left after filtering, in their sorted order
+	private List<String> steps = new ArrayList<String>(); // the sorts and filters applied, for describe
+
+	/**
+	 * The rows to show: a result, and which of its rows in which order.
+	 */
+	public static class Selection
+	{
+		private final ColumnarResult rows;
+		private final int[] order;
+
+		private Selection(ColumnarResult rows, int[] order)
+		{
+			this.rows = rows;
+			this.order = order;
+		}
+
+		/**
+		 * Get the result the rows are in.
+		 */
+		public ColumnarResult getRows() {
+			return rows;
+		}
+
+		/**
+		 * Get the numbers of the rows to show, in the order to show them.
+		 */
+		public int[] getOrder() {
+			return order;
+		}
+	}
+
+	/**
+	 * Create a workspace.
+	 * @param maxBytes The most bytes a result can take up to be kept. 0 to keep none.
+	 */
+	public ResultWorkspace(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Gets the most bytes a result can take up to be kept.
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Sets the most bytes a result can take up to be kept. The result already kept is let go if it's bigger than this.
+	 * @param maxBytes The number of bytes. 0 to keep none.
+	 */
+	public synchronized void setMaxBytes(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+
+		if (rows != null && rows.getSize() > maxBytes)
+		{
+			rows = null;
+			view = null;
+		}
+	}
+
+	/**
+	 * Replace the result being worked on. Any sorts and filters on the last one are forgotten.
+	 * @param source The query the rows came from, to show along with them.
+	 * @param rows The rows, or null if they couldn't all be gathered (such as being too big, or only being partly read).
+	 * @param columns The columns of the table the rows came from, if they're all of its columns in order, such as for 'Display'. Can be null.
+	 */
+	public synchronized void setResult(String source, ColumnarResult rows, List<ColumnData> columns)
+	{
+		this.source = source;
+		this.rows = (rows != null && rows.getSize() <= maxBytes) ? rows : null;
+		this.columns = columns;
+		this.steps.clear();
+		this.view = (this.rows != null) ? allRows(this.rows) : null;
+	}
+
+	/**
+	 * Gets if there's a result to work on.
+	 */
+	public synchronized boolean hasResult() {
+		return rows != null;
+	}
+
+	/**
+	 * Get the names of the result's columns.
+	 * @throws IllegalArgumentException If there's no result to work on.
+	 */
+	public synchronized String[] getLabels()
+	{
+		requireRows();
+		return rows.getLabels();
+	}
+
+	/**
+	 * Get the rows left by the sorts and filters, in order.
+	 * @throws IllegalArgumentException If there's no result to work on.
+	 */
+	public synchronized Selection getSelection()
+	{
+		requireRows();
+		return new Selection(rows, view);
+	}
+
+	/**
+	 * Get a line saying which rows are being worked on, such as "2 of 14 rows of 'SELECT * FROM emp', filtered on amt > 5, sorted by name".
+	 */
+	public synchronized String describe()
+	{
+		if (rows == null)
+		{
+			return "no rows";
+		}
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(view.length).append(" of ").append(rows.getRowCount()).append(" rows of '").append(source).append("'");
+		for (String step : steps)
+		{
+			sb.append(", ").append(step);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Sort the rows. Rows that are the same in every column given keep the order they were in, so sorting by one column and then by
+	 * another leaves them in order of the second and then the first.
+	 * @param spec The columns to sort by, most important first, split up with commas, each of which can be followed by "asc" or "desc",
+	 * such as "kind, amt desc".
+	 * @throws IllegalArgumentException If there's no result to work on, or the columns can't be understood.
+	 */
+	public synchronized void sort(String spec)
+	{
+		requireRows();
+
+		String[] parts = spec.trim().replaceFirst("(?i)^by\\s+", "").split(",");
+		ResultOperators.Key[] keys = new ResultOperators.Key[parts.length];
+		boolean[] descending = new boolean[parts.length];
+
+		for (int i = 0; i < parts.length; i++)
+		{
+			String[] words = parts[i].trim().split("\\s+");
+			if (words.length > 2 || (words.length == 2 && !words[1].matches("(?i)asc|desc")))
+			{
+				throw new IllegalArgumentException("'" + parts[i].trim() + "' should be a column, then optionally 'asc' or 'desc'.");
+			}
+
+			int col = column(words[0]);
+			keys[i] = new ResultOperators.Key(rows, col, columnData(col), view);
+			descending[i] = (words.length == 2 && words[1].equalsIgnoreCase("desc"));
+		}
+
+		view = ResultOperators.sort(view, keys, descending);
+		steps.add("sorted by " + spec.trim());
+	}
+
+	/**
+	 * Keep only the rows that match a condition.
+	 * @param spec The condition, as a column, a comparison and a value, such as "amt >= 10", "name like 'b%'" or "born is null".
+	 * The comparisons are =, !=, &lt;&gt;, &lt;, &lt;=, &gt;, &gt;=, like, not like, is null and is not null.
+	 * @throws IllegalArgumentException If there's no result to work on, or the condition can't be understood.
+	 */
+	public synchronized void filter(String spec)
+	{
+		requireRows();
+
+		Matcher m = CONDITION.matcher(spec);
+		if (!m.matches())
+		{
+			throw new IllegalArgumentException("'" + spec.trim() + "' should be a column, a comparison and a value, such as: amt >= 10");
+		}
+
+		String op = (m.group(2) != null) ? m.group(2) : m.group(3);
+		String value = m.group(4).trim();
+		boolean needsValue = !op.toLowerCase().startsWith("is");
+
+		if (needsValue == value.isEmpty())
+		{
+			throw new IllegalArgumentException(needsValue ? "'" + op + "' needs a value to compare with." : "'" + op + "' doesn't take a value.");
+		}
+
+		int col = column(m.group(1));
+		view = ResultOperators.filter(view, ResultOperators.condition(rows, col, columnData(col), op, value));
+		steps.add("filtered on " + spec.trim());
+	}
+
+	/**
+	 * Go back to all of the rows, in the order they came from the server.
+	 * @throws IllegalArgumentException If there's no result to work on.
+	 */
+	public synchronized void clear()
+	{
+		requireRows();
+		view = allRows(rows);
+		steps.clear();
+	}
+
+	/**
+	 * Put the rows into groups with the same value in a column, and work out some values for each group.
+	 * The sorts and filters aren't changed; the groups are made from the rows they left.
+	 * @param spec The column to group by, then any number of COUNT, SUM, AVG, MIN or MAX and a column, such as "kind sum amt max amt"
+	 * or "kind, SUM(amt), MAX(amt)". The number of rows in each group is always worked out.
+	 * @return A row for each group, in order of the column grouped by.
+	 * @throws IllegalArgumentException If there's no result to work on, or the columns can't be understood.
+	 */
+	public synchronized ResultOperators.Grouped groupBy(String spec)
+	{
+		requireRows();
+
+		String[] words = spec.trim().replaceFirst("(?i)^by\\s+", "").replaceAll("[(),]", " ").trim().split("\\s+");
+		if (words[0].isEmpty() || words.length % 2 == 0)
+		{
+			throw new IllegalArgumentException("'" + spec.trim() + "' should be a column, then any number of COUNT, SUM, AVG, MIN or MAX and a column, such as: kind sum amt");
+		}
+
+		int col = column(words[0]);
+		List<ResultOperators.Aggregate> aggs = new ArrayList<ResultOperators.Aggregate>();
+		for (int i = 1; i < words.length; i += 2)
+		{
+			if (words[i].equalsIgnoreCase("count") && words[i + 1].equals("*"))
+			{
+				continue; // there's always a COUNT(*)
+			}
+			aggs.add(new ResultOperators.Aggregate(words[i], rows, column(words[i + 1])));
+		}
+
+		ResultOperators.Key key = new ResultOperators.Key(rows, col, columnData(col), view);
+		return ResultOperators.groupBy(rows, view, key, aggs.toArray(new ResultOperators.Aggregate[aggs.size()]));
+	}
+
+	private void requireRows()
+	{
+		if (rows != null)
+		{
+			return;
+		}
+
+		if (source == null)
+		{
+			throw new IllegalArgumentException("There are no rows to work on yet. Show some with 'Display', or a SELECT in Direct SQL mode.");
+		}
+		if (maxBytes == 0)
+		{
+			throw new IllegalArgumentException("Rows aren't kept to work on while the LocalResultMB option is 0.");
+		}
+		throw new IllegalArgumentException("The rows of '" + source + "' weren't kept. Rows aren't kept if there are more than LocalResultMB megabytes of them, if they're only read partway, or if they're read in ranges with ScanThreads.");
+	}
+
+	/**
+	 * Find a column by its name, without caring about upper or lower case.
+	 */
+	private int column(String name)
+	{
+		String bare = name.replace("`", "");
+		String[] labels = rows.getLabels();
+
+		for (int i = 0; i < labels.length; i++)
+		{
+			if (labels[i].equalsIgnoreCase(bare))
+			{
+				return i;
+			}
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (String label : labels)
+		{
+			sb.append(sb.length() > 0 ? ", " : "").append(label);
+		}
+		throw new IllegalArgumentException("There's no column '" + bare + "'. The columns are: " + sb);
+	}
+
+	/**
+	 * Get the table's details of a column, or null if the rows didn't come straight from a table.
+	 */
+	private ColumnData columnData(int col)
+	{
+		if (columns == null)
+		{
+			return null;
+		}
+
+		for (ColumnData cd : columns)
+		{
+			if (cd.getName().equalsIgnoreCase(rows.getLabels()[col]))
+			{
+				return cd;
+			}
+		}
+		return null;
+	}
+
+	private static int[] allRows(ColumnarResult rows)
+	{
+		int[] all = new int[rows.getRowCount()];
+		for (int i = 0; i < all.length; i++)
+		{
+			all[i] = i;
+		}
+		return all;
+	}
+
+}
@@ -0,0 +1,135 @@
+import java.util.List;
+
+/**
+ * Checks every value in a row against the columns of a table in one call, for the commands that check a lot of rows ('BulkAdd' and 'Import').
+ * It's made once per table from the columns buildColumnData gives, with each column's ValueValidator (already worked out for its type)
+ * kept in an array, so checking a row is one loop over the values: no list lookups, no switch on the type, and nothing allocated.
+ * Every value is checked rather than stopping at the first bad one, so the loop has no early exits, and the columns that failed come back
+ * as the bits of a long.
+ */
+public class RowValidator
+{
+
+	// the top bit stands for itself and every column after it, as a long only has 64 bits
+	private static final int LAST_BIT = 63;
+
+	private final ValueValidator[] validators;
+	private final ColumnData[] columns;
+
+	/**
+	 * Make a validator for rows of a table.
+	 * @param cols The columns of the table, as returned by ColumnData.buildColumnData. Each row has a value for every one of them, in this order.
+	 */
+	public RowValidator(List<ColumnData> cols)
+	{
+		validators = new ValueValidator[cols.size()];
+		columns = cols.toArray(new ColumnData[cols.size()]);
+
+		for (int c = 0; c < validators.length; c++)
+		{
+			validators[c] = cols.get(c).getValidator();
+		}
+	}
+
+	/**
+	 * Gets the number of values each row has to have.
+	 */
+	public int getColumnCount() {
+		return validators.length;
+	}
+
+	/**
+	 * Check every value in a row.
+	 * @param row The values, one for each column in order. It must have exactly getColumnCount values.
+	 * @return 0 if every value is valid. Otherwise, bit c (1L &lt;&lt; c) is set for each column c whose value isn't.
+	 * Columns from the 64th on all share the top bit; use firstInvalid to find which one it was.
+	 * @throws IllegalArgumentException If the row has the wrong number of values.
+	 */
+	public long check(CharSequence[] row)
+	{
+		if (row.length != validators.length)
+		{
+			throw new IllegalArgumentException("The row has " + row.length + " values, but the table has " + validators.length + " columns.");
+		}
+
+		long bad = 0;
+		int n = Math.min(validators.length, LAST_BIT);
+
+		for (int c = 0; c < n; c++)
+		{
+			if (!validators[c].isValid(row[c]))
+			{
+				bad |= 1L << c;
+			}
+		}
+
+		for (int c = n; c < validators.length; c++)
+		{
+			if (!validators[c].isValid(row[c]))
+			{
+				bad |= 1L << LAST_BIT;
+			}
+		}
+
+		return bad;
+	}
+
+	/**
+	 * Check every value in a row and read each one into the object to bind for it (see ColumnData.read), in the same pass,
+	 * for rows that are going to be added. Unlike check, this makes objects for the values.
+	 * @param row The values, one for each column in order. It must have exactly getColumnCount values.
+	 * @param params Where to put the objects, one for each column. A value that isn't valid is given ColumnData.INVALID.
+	 * @return The same as check would.
+	 * @throws IllegalArgumentException If the row or params have the wrong number of values.
+	 */
+	public long read(String[] row, Object[] params)
+	{
+		if (row.length != columns.length || params.length != columns.length)
+		{
+			throw new IllegalArgumentException("The row has " + row.length + " values, but the table has " + columns.length + " columns.");
+		}
+
+		long bad = 0;
+		for (int c = 0; c < columns.length; c++)
+		{
+			params[c] = columns[c].read(row[c]);
+			if (params[c] == ColumnData.INVALID)
+			{
+				bad |= 1L << Math.min(c, LAST_BIT);
+			}
+		}
+
+		return bad;
+	}
+
+	/**
+	 * Find the first column whose value isn't valid.
+	 * @param bad What check returned for the row.
+	 * @param row The row that was checked.
+	 * @return The index of the column, or -1 if every value is valid.
+	 */
+	public int firstInvalid(long bad, CharSequence[] row)
+	{
+		if (bad == 0)
+		{
+			return -1;
+		}
+
+		int c = Long.numberOfTrailingZeros(bad);
+		if (c < LAST_BIT)
+		{
+			return c;
+		}
+
+		// the top bit is shared, so look through the columns it stands for
+		for (c = LAST_BIT; c < validators.length; c++)
+		{
+			if (!validators[c].isValid(row[c]))
+			{
+				return c;
+			}
+		}
+		return -1;
+	}
+
+}
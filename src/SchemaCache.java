@@ -0,0 +1,135 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the ColumnData list of each table for a while, so commands that need a table's columns
+ * don't have to run "DESCRIBE" and parse every type string again each time.
+ */
+public class SchemaCache
+{
+
+	/**
+	 * Gets the columns of every table in the current database, in the same layout buildSchemaData expects.
+	 */
+	public static final String PREFETCH_QUERY = "SELECT COLUMN_NAME, COLUMN_TYPE, IS_NULLABLE, COLUMN_KEY, TABLE_NAME FROM information_schema.COLUMNS "
+			+ "WHERE TABLE_SCHEMA = DATABASE() ORDER BY TABLE_NAME, ORDINAL_POSITION";
+
+	private final ConcurrentHashMap<String, CachedTable> tables = new ConcurrentHashMap<String, CachedTable>();
+
+	private volatile long ttl; // in milliseconds
+
+	private static class CachedTable
+	{
+		final List<ColumnData> cols;
+		final long loaded;
+
+		CachedTable(List<ColumnData> cols, long loaded)
+		{
+			this.cols = cols;
+			this.loaded = loaded;
+		}
+	}
+
+	/**
+	 * Create an empty cache.
+	 * @param ttl How long a table's columns are kept before they have to be looked up again, in milliseconds. 0 to not keep them at all.
+	 */
+	public SchemaCache(long ttl)
+	{
+		this.ttl = ttl;
+	}
+
+	/**
+	 * Get the columns of a table, if they are in the cache and haven't expired.
+	 * @param table The name of the table.
+	 * @return A list that can't be changed, with a ColumnData object for each column. null if the table needs to be looked up.
+	 */
+	public List<ColumnData> get(String table)
+	{
+		CachedTable ct = tables.get(table);
+
+		if (ct == null)
+		{
+			return null;
+		}
+
+		if (System.currentTimeMillis() - ct.loaded >= ttl)
+		{
+			tables.remove(table, ct);
+			return null;
+		}
+
+		return ct.cols;
+	}
+
+	/**
+	 * Put the columns of a table into the cache.
+	 * @param table The name of the table.
+	 * @param cols A ColumnData object for each column, in order.
+	 * @return The same columns, as a list that can't be changed.
+	 */
+	public List<ColumnData> put(String table, List<ColumnData> cols)
+	{
+		List<ColumnData> fixed = Collections.unmodifiableList(cols);
+
+		if (ttl > 0)
+		{
+			tables.put(table, new CachedTable(fixed, System.currentTimeMillis()));
+		}
+
+		return fixed;
+	}
+
+	/**
+	 * Put the columns of many tables into the cache at once, such as those returned by ColumnData.buildSchemaData.
+	 * @param schema A map from each table name to its columns.
+	 */
+	public void putAll(Map<String, ? extends List<ColumnData>> schema)
+	{
+		for (Map.Entry<String, ? extends List<ColumnData>> entry : schema.entrySet())
+		{
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Remove a table from the cache, so its columns are looked up again the next time they're needed.
+	 * @param table The name of the table.
+	 */
+	public void invalidate(String table)
+	{
+		tables.remove(table);
+	}
+
+	/**
+	 * Remove every table from the cache.
+	 */
+	public void invalidateAll()
+	{
+		tables.clear();
+	}
+
+	/**
+	 * Set how long a table's columns are kept before they have to be looked up again.
+	 * @param millis The time, in milliseconds. 0 to not keep them at all.
+	 */
+	public void setTtl(long millis)
+	{
+		ttl = millis;
+
+		if (millis == 0)
+		{
+			tables.clear();
+		}
+	}
+
+	/**
+	 * Get how long a table's columns are kept before they have to be looked up again, in milliseconds.
+	 */
+	public long getTtl() {
+		return ttl;
+	}
+
+}
@@ -0,0 +1,825 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a file of SQL statements, each ending with ';', without asking the user anything.
+ * Statements in a row that change rows (INSERT, UPDATE, DELETE and REPLACE) are sent to the server together as one JDBC batch,
+ * which the driver turns into a single round trip. Any other statement is sent on its own, and results are shown as a table.
+ * With more than one thread, the batches are sent over several connections at once; any other statement waits for the batches
+ * before it to finish, so a script can still create a table, fill it, and then read it back. Once the script changes anything that
+ * belongs to its own connection (USE, SET, a temporary table, a transaction or a lock), the batches after it are sent over that
+ * connection too, one at a time, as they'd see a different database or different settings on any other.
+ * The script stops at the first statement the server turns down.
+ * Only SQL is run, not the program's own commands, as most of those ask questions as they go; they can be sent to the program's input instead.
+ */
+public class ScriptRunner
+{
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ConnectionPool pool;
+	private final int batchSize;
+	private final int threads;
+	private final QueryMetrics metrics;
+	private final PrintStream out;
+	private SlowQueryLog slowLog = null;
+
+	private final AtomicLong statements = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong changed = new AtomicLong();
+	private final AtomicInteger errors = new AtomicInteger();
+
+	// the first thing to go wrong, which stops any more statements from being sent
+	private volatile SQLException failure = null;
+
+	private long started = 0;
+	private long finished = 0;
+
+	/**
+	 * One statement from the script.
+	 */
+	static class ScriptStatement
+	{
+		final String sql;
+		final String firstWord; // in upper case
+		final int line; // the line of the script it starts on, starting at 1
+
+		ScriptStatement(String sql, String firstWord, int line)
+		{
+			this.sql = sql;
+			this.firstWord = firstWord;
+			this.line = line;
+		}
+
+		/**
+		 * Gets if this statement changes rows, and can be put in a batch with others like it.
+		 */
+		boolean isBatchable()
+		{
+			return firstWord.equals("INSERT") || firstWord.equals("UPDATE") || firstWord.equals("DELETE") || firstWord.equals("REPLACE");
+		}
+
+		/**
+		 * Gets if this statement might start a transaction, or turn off autocommit.
+		 */
+		boolean startsTransaction()
+		{
+			return firstWord.equals("BEGIN") || firstWord.equals("START") || firstWord.equals("LOCK") || firstWord.equals("XA")
+					|| (firstWord.equals("SET") && sql.toLowerCase().contains("autocommit"));
+		}
+
+		/**
+		 * Gets if this statement might change something that only applies to the connection it's sent over: the database in use,
+		 * a setting or variable, a temporary table, a prepared statement, a transaction or a lock.
+		 */
+		boolean changesSession()
+		{
+			if (startsTransaction() || firstWord.equals("USE") || firstWord.equals("SET") || firstWord.equals("PREPARE") || firstWord.equals("DO")
+					|| firstWord.equals("HANDLER"))
+			{
+				return true;
+			}
+
+			String lower = sql.toLowerCase();
+			if ((firstWord.equals("CREATE") || firstWord.equals("DROP")) && lower.contains("temporary"))
+			{
+				return true;
+			}
+
+			// SELECT ... INTO @v, or SELECT @v := ...
+			return firstWord.equals("SELECT") && lower.contains("@");
+		}
+	}
+
+	/**
+	 * Create a runner.
+	 * @param pool The pool to borrow connections from.
+	 * @param metrics Where to record how long each batch and statement takes, and whether it failed.
+	 * @param batchSize The most statements to send to the server at once.
+	 * @param threads The number of connections to send batches over at the same time. 1 to send everything over one connection, in order.
+	 * More than 1 borrows one more connection than this for the other statements, so it can't be more than one less than the pool's maximum size.
+	 * @param out Where to show results and errors, such as System.out.
+	 */
+	public ScriptRunner(ConnectionPool pool, QueryMetrics metrics, int batchSize, int threads, PrintStream out)
+	{
+		this.pool = pool;
+		this.metrics = metrics;
+		this.batchSize = Math.max(1, batchSize);
+		this.threads = Math.max(1, Math.min(threads, pool.getMaxSize() - 1));
+		this.out = out;
+	}
+
+	/**
+	 * Log the statements that take too long. Only statements sent on their own are logged, not batches.
+	 * @param slowLog Where to log them, or null to not log them.
+	 */
+	public void setSlowQueryLog(SlowQueryLog slowLog)
+	{
+		this.slowLog = slowLog;
+	}
+
+	/**
+	 * Run every statement in a script.
+	 * @param script The file to run, in UTF-8.
+	 * @return True if every statement was run, false if the script stopped at an error (which has been shown).
+	 * @throws IOException If the script couldn't be read.
+	 */
+	public boolean run(File script) throws IOException
+	{
+		started = System.nanoTime();
+
+		ExecutorService senders = null;
+		if (threads > 1)
+		{
+			senders = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "ScriptRunner-" + count.incrementAndGet());
+					t.setDaemon(true); // don't keep the program open just for these
+					return t;
+				}
+			});
+		}
+
+		// no more than two batches per thread are read ahead of the server, so a large script isn't all held in memory
+		Semaphore slots = new Semaphore(threads * 2);
+		List<Future<?>> sent = new ArrayList<Future<?>>();
+
+		ScriptReader reader = new ScriptReader(new BufferedReader(new InputStreamReader(new FileInputStream(script), UTF8)));
+		Connection conn = null;
+		try
+		{
+			// everything except the batches sent by other threads goes over this one connection, so SET and USE carry on to the statements after them
+			conn = pool.borrow();
+
+			boolean wrap = true;
+			ExecutorService others = senders; // set to null once the batches have to stay on this connection
+			List<ScriptStatement> batch = new ArrayList<ScriptStatement>();
+			ScriptStatement st;
+			while (failure == null && (st = reader.next()) != null)
+			{
+				if (st.isBatchable())
+				{
+					batch.add(st);
+
+					if (batch.size() >= batchSize)
+					{
+						send(batch, wrap, conn, others, slots, sent);
+						batch = new ArrayList<ScriptStatement>();
+					}
+					continue;
+				}
+
+				if (!batch.isEmpty())
+				{
+					send(batch, wrap, conn, others, slots, sent);
+					batch = new ArrayList<ScriptStatement>();
+				}
+
+				waitFor(sent);
+
+				if (failure == null)
+				{
+					runSingle(conn, st);
+				}
+
+				// once the script starts its own transactions, batches are left alone so they don't commit them early
+				if (st.startsTransaction())
+				{
+					wrap = false;
+				}
+
+				// the batches after this need to see what it changed, which the other connections won't
+				if (st.changesSession())
+				{
+					others = null;
+				}
+			}
+
+			if (failure == null && !batch.isEmpty())
+			{
+				send(batch, wrap, conn, others, slots, sent);
+			}
+
+			waitFor(sent);
+		}
+		catch (SQLException e)
+		{
+			// the connection couldn't be borrowed
+			failed(e, null);
+		}
+		finally
+		{
+			if (senders != null)
+			{
+				senders.shutdown();
+			}
+
+			if (conn != null)
+			{
+				if (failure != null && isConnectionError(failure))
+				{
+					pool.invalidate(conn);
+				}
+				else
+				{
+					pool.release(conn);
+				}
+			}
+
+			reader.close();
+			finished = System.nanoTime();
+		}
+
+		return failure == null;
+	}
+
+	/**
+	 * Send a batch over the script's own connection, or hand it to one of the other threads.
+	 * @param senders The threads to hand it to, or null to send it over the script's own connection.
+	 */
+	private void send(final List<ScriptStatement> batch, final boolean wrap, Connection conn, ExecutorService senders, final Semaphore slots, List<Future<?>> sent)
+	{
+		if (senders == null)
+		{
+			executeBatch(conn, batch, wrap);
+			return;
+		}
+
+		slots.acquireUninterruptibly();
+		sent.add(senders.submit(new Runnable() {
+			@Override
+			public void run()
+			{
+				Connection bconn = null;
+				try
+				{
+					bconn = pool.borrow();
+					executeBatch(bconn, batch, wrap);
+				}
+				catch (SQLException e)
+				{
+					// the connection couldn't be borrowed
+					failed(e, batch.get(0));
+				}
+				finally
+				{
+					if (bconn != null)
+					{
+						pool.release(bconn);
+					}
+					slots.release();
+				}
+			}
+		}));
+	}
+
+	/**
+	 * Wait for every batch that's been handed to another thread to be done.
+	 */
+	private void waitFor(List<Future<?>> sent)
+	{
+		for (Future<?> f : sent)
+		{
+			try
+			{
+				f.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (ExecutionException e)
+			{
+				failed(new SQLException("A batch could not be sent: " + e.getCause()), null);
+			}
+		}
+
+		sent.clear();
+	}
+
+	/**
+	 * Send a batch of statements. If the script isn't handling transactions itself, the whole batch is committed at once,
+	 * as the server would otherwise commit (and wait for the disk) after every statement. If a statement fails, the ones before it
+	 * are sent again and kept, so the table ends up just as if the statements had been sent one at a time.
+	 * @param wrap Whether to send the batch in a transaction of its own.
+	 */
+	private void executeBatch(Connection conn, List<ScriptStatement> batch, boolean wrap)
+	{
+		Statement stmt = null;
+		try
+		{
+			if (wrap)
+			{
+				conn.setAutoCommit(false);
+			}
+
+			stmt = conn.createStatement();
+			for (ScriptStatement st : batch)
+			{
+				stmt.addBatch(st.sql);
+			}
+
+			long start = System.nanoTime();
+			int[] counts = stmt.executeBatch();
+			if (wrap)
+			{
+				conn.commit();
+			}
+			metrics.recordTime(QueryMetrics.Kind.BATCH, System.nanoTime() - start);
+
+			addCounts(counts);
+			statements.addAndGet(batch.size());
+			batches.incrementAndGet();
+		}
+		catch (BatchUpdateException e)
+		{
+			closeQuietly(stmt);
+			stmt = null;
+
+			if (wrap)
+			{
+				resend(conn, batch);
+			}
+			else
+			{
+				// the driver sends the batch as one multi-statement query, so it can't say which statement failed, only that they all stopped
+				addCounts(e.getUpdateCounts());
+				statements.addAndGet(batch.size());
+				synchronized (this)
+				{
+					out.println("Lines " + batch.get(0).line + " to " + batch.get(batch.size() - 1).line + ":");
+					failed(e, null);
+				}
+			}
+		}
+		catch (SQLException e)
+		{
+			if (wrap)
+			{
+				rollbackQuietly(conn);
+			}
+
+			statements.incrementAndGet();
+			failed(e, batch.get(0));
+		}
+		finally
+		{
+			closeQuietly(stmt);
+
+			if (wrap)
+			{
+				try
+				{
+					conn.setAutoCommit(true);
+				}
+				catch (SQLException e) { } // ignore, the connection is checked again before it's next borrowed
+			}
+		}
+	}
+
+	/**
+	 * Undo a batch that failed partway, then send its statements again one at a time to find the one that failed.
+	 * The statements before it are committed, and the rest aren't sent.
+	 */
+	private void resend(Connection conn, List<ScriptStatement> batch)
+	{
+		rollbackQuietly(conn);
+
+		Statement stmt = null;
+		ScriptStatement current = batch.get(0);
+		try
+		{
+			stmt = conn.createStatement();
+			for (ScriptStatement st : batch)
+			{
+				current = st;
+				statements.incrementAndGet();
+
+				QueryMetrics.Kind kind = QueryMetrics.Kind.of(st.sql);
+				long start = System.nanoTime();
+				int count = stmt.executeUpdate(st.sql);
+				long took = System.nanoTime() - start;
+				metrics.recordTime(kind, took);
+				logIfSlow(st, took, count);
+
+				if (count > 0)
+				{
+					changed.addAndGet(count);
+					metrics.recordRowsChanged(kind, count);
+				}
+			}
+
+			// they all worked the second time (such as after a deadlock), so the batch is done after all
+			conn.commit();
+			batches.incrementAndGet();
+		}
+		catch (SQLException e)
+		{
+			try
+			{
+				conn.commit();
+			}
+			catch (SQLException e2)
+			{
+				rollbackQuietly(conn);
+			}
+
+			failed(e, current);
+		}
+		finally
+		{
+			closeQuietly(stmt);
+		}
+	}
+
+	private void runSingle(Connection conn, ScriptStatement st)
+	{
+		Statement stmt = null;
+		try
+		{
+			statements.incrementAndGet();
+			stmt = conn.createStatement();
+
+			QueryMetrics.Kind kind = QueryMetrics.Kind.of(st.sql);
+			long start = System.nanoTime();
+			boolean hasRows = stmt.execute(st.sql);
+			long took = System.nanoTime() - start;
+			metrics.recordTime(kind, took);
+
+			if (hasRows)
+			{
+				ResultSet rs = stmt.getResultSet();
+				try
+				{
+					TableRenderer tr = new TableRenderer(out);
+					tr.start(rs.getMetaData());
+
+					while (rs.next())
+					{
+						tr.addRow(rs);
+					}
+
+					tr.finish();
+					out.println(tr.getRowCount() + " rows");
+					metrics.recordRowsReturned(kind, tr.getRowCount());
+					logIfSlow(st, took, tr.getRowCount());
+				}
+				finally
+				{
+					rs.close();
+				}
+			}
+			else if (stmt.getUpdateCount() > 0)
+			{
+				changed.addAndGet(stmt.getUpdateCount());
+				metrics.recordRowsChanged(kind, stmt.getUpdateCount());
+				logIfSlow(st, took, stmt.getUpdateCount());
+			}
+			else
+			{
+				logIfSlow(st, took, 0);
+			}
+		}
+		catch (SQLException e)
+		{
+			failed(e, st);
+		}
+		finally
+		{
+			closeQuietly(stmt);
+		}
+	}
+
+	private void logIfSlow(ScriptStatement st, long nanos, long rows)
+	{
+		if (slowLog != null)
+		{
+			slowLog.log(st.sql, null, nanos, rows);
+		}
+	}
+
+	private void addCounts(int[] counts)
+	{
+		if (counts == null)
+		{
+			return;
+		}
+
+		for (int c : counts)
+		{
+			if (c > 0)
+			{
+				changed.addAndGet(c);
+				metrics.recordRowsChanged(QueryMetrics.Kind.BATCH, c);
+			}
+		}
+	}
+
+	/**
+	 * Show an error, and stop any more statements from being sent.
+	 * @param st The statement that failed, or null if it wasn't down to one statement.
+	 */
+	private synchronized void failed(SQLException e, ScriptStatement st)
+	{
+		errors.incrementAndGet();
+
+		if (failure == null)
+		{
+			failure = e;
+		}
+
+		if (st != null)
+		{
+			out.println("Line " + st.line + ":");
+		}
+		metrics.recordError((st == null) ? QueryMetrics.Kind.BATCH : QueryMetrics.Kind.of(st.sql), e);
+		ServerComm.printError(e, (st == null) ? "" : st.sql);
+	}
+
+	private void rollbackQuietly(Connection conn)
+	{
+		try
+		{
+			conn.rollback();
+		}
+		catch (SQLException e) { } // ignore, nothing was kept anyway
+	}
+
+	private void closeQuietly(Statement stmt)
+	{
+		if (stmt != null)
+		{
+			try
+			{
+				stmt.close();
+			}
+			catch (SQLException e) { } // ignore, the connection is checked again before it's next borrowed
+		}
+	}
+
+	/**
+	 * Gets if this error means the connection to the server itself has failed (SQL State class 08).
+	 */
+	private static boolean isConnectionError(SQLException e)
+	{
+		return e.getSQLState() != null && e.getSQLState().startsWith("08");
+	}
+
+	/**
+	 * Get the number of statements run, including the one that failed.
+	 */
+	public long getStatementCount() {
+		return statements.get();
+	}
+
+	/**
+	 * Get the number of batches sent.
+	 */
+	public long getBatchCount() {
+		return batches.get();
+	}
+
+	/**
+	 * Get the number of rows the statements added, changed or removed.
+	 */
+	public long getRowsChanged() {
+		return changed.get();
+	}
+
+	/**
+	 * Get the number of statements that failed. Statements already sent over other connections when the first one failed can fail too.
+	 */
+	public int getErrorCount() {
+		return errors.get();
+	}
+
+	/**
+	 * Get the number of connections batches were sent over.
+	 */
+	public int getThreadCount() {
+		return threads;
+	}
+
+	/**
+	 * Get how long the script took to run, in seconds.
+	 */
+	public double getElapsedSeconds() {
+		return (finished - started) / 1e9;
+	}
+
+	/**
+	 * Get the number of statements run per second.
+	 */
+	public double getStatementsPerSecond() {
+		double secs = getElapsedSeconds();
+		return (secs > 0) ? statements.get() / secs : 0;
+	}
+
+	/**
+	 * Reads a script one statement at a time, splitting it at each ';' that isn't in quotes or a comment.
+	 * Comments starting with "--" or "#" are left out. Block comments are kept, as they can hold hints for the server.
+	 */
+	static class ScriptReader implements Closeable
+	{
+		private final Reader in;
+		private int line = 1;
+		private int ahead = -2; // a character read by peek, or -2 if there isn't one
+
+		ScriptReader(Reader in)
+		{
+			this.in = in;
+		}
+
+		/**
+		 * Read the next statement.
+		 * @return The statement, without its ';'. null at the end of the script.
+		 * @throws IOException If the script couldn't be read.
+		 */
+		ScriptStatement next() throws IOException
+		{
+			StringBuilder sb = new StringBuilder();
+			StringBuilder word = null;
+			String first = null;
+			int start = 0; // the line the statement starts on, or 0 if only spaces and comments have been read so far
+			char quote = 0;
+			boolean comment = false;
+
+			int c;
+			while ((c = read()) != -1)
+			{
+				if (quote != 0)
+				{
+					sb.append((char) c);
+
+					if (c == '\\' && quote != '`')
+					{
+						int d = read();
+						if (d != -1)
+						{
+							sb.append((char) d);
+						}
+					}
+					else if (c == quote)
+					{
+						quote = 0; // a doubled quote just opens it again straight away
+					}
+					continue;
+				}
+
+				if (comment)
+				{
+					sb.append((char) c);
+
+					if (c == '*' && peek() == '/')
+					{
+						sb.append((char) read());
+						comment = false;
+					}
+					continue;
+				}
+
+				if (c == '#' || (c == '-' && peek() == '-'))
+				{
+					if (c == '-')
+					{
+						read();
+
+						// "--" only starts a comment if a space comes after it
+						int d = peek();
+						if (d != -1 && !Character.isWhitespace(d))
+						{
+							sb.append("--");
+							continue;
+						}
+					}
+
+					while ((c = read()) != -1 && c != '\n') { }
+					sb.append('\n');
+					continue;
+				}
+
+				if (c == '/' && peek() == '*')
+				{
+					sb.append('/').append((char) read());
+					comment = true;
+					continue;
+				}
+
+				if (c == ';')
+				{
+					if (start != 0)
+					{
+						break;
+					}
+
+					sb.setLength(0); // nothing but comments, or an empty statement
+					continue;
+				}
+
+				if (word != null)
+				{
+					if (Character.isLetter(c))
+					{
+						word.append((char) c);
+					}
+					else
+					{
+						first = word.toString();
+						word = null;
+					}
+				}
+				else if (first == null && Character.isLetter(c))
+				{
+					word = new StringBuilder().append((char) c);
+				}
+
+				if (start == 0 && !Character.isWhitespace(c))
+				{
+					start = line;
+				}
+
+				if (c == '\'' || c == '"' || c == '`')
+				{
+					quote = (char) c;
+				}
+
+				sb.append((char) c);
+			}
+
+			if (start == 0)
+			{
+				return null;
+			}
+
+			if (first == null)
+			{
+				first = (word == null) ? "" : word.toString();
+			}
+
+			return new ScriptStatement(sb.toString().trim(), first.toUpperCase(), start);
+		}
+
+		private int read() throws IOException
+		{
+			int c;
+			if (ahead != -2)
+			{
+				c = ahead;
+				ahead = -2;
+			}
+			else
+			{
+				c = in.read();
+			}
+
+			if (c == '\n')
+			{
+				line++;
+			}
+			return c;
+		}
+
+		private int peek() throws IOException
+		{
+			if (ahead == -2)
+			{
+				ahead = in.read();
+			}
+			return ahead;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			in.close();
+		}
+	}
+
+}
@@ -1,508 +1,2064 @@
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.Scanner;
-
-/**
- * The program that facilitates interaction between the user and the MySQL server of their choice.
- * @author Jayke R. Huempfner
- */
-public class ServerComm {
-
-	// using information coming from http://dev.mysql.com/doc/connector-j/en/connector-j-usagenotes-basic.html
-	
-	private Connection conn = null;
-	
-	/**
-	 * Connect to a server at localhost:3306.
-	 * @param db The name of the database (schema) to connect to.
-	 * @param user The name of the user accessing the database.
-	 * @param password The password for the user accessing the database.
-	 */
-	public void connect(String db, String user, String password)
-	{
-        try {
-            // The newInstance() call is a work around for some
-            // broken Java implementations
-
-            Class.forName("com.mysql.jdbc.Driver").newInstance();
-        } catch (Exception ex) {
-        	ex.printStackTrace();
-            // handle the error
-        }
-		
-		try {
-			conn = DriverManager.getConnection("jdbc:mysql://localhost:3306/" + db + "?user=" + user + "&password=" + password);
-		} catch (SQLException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-	}
-	
-	/**
-	 * Connect to a server with a custom connection string.
-	 * @param connection The connection string used to locate and connect to the database. Strings must start with "jdbc:mysql://".
-	 */
-	public void connect(String connection)
-	{
-        try {
-            // The newInstance() call is a work around for some
-            // broken Java implementations
-
-            Class.forName("com.mysql.jdbc.Driver").newInstance();
-        } catch (Exception ex) {
-        	ex.printStackTrace();
-            // handle the error
-        }
-		
-		try {
-			conn = DriverManager.getConnection(connection);
-		} catch (SQLException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-	}
-	
-	// me and my glorious method-naming skills
-	
-	/**
-	 * The function that forms the command-line interface allowing the user to work with the MySQL server.
-	 */
-	public void interact()
-	{
-		// as long as this is false, the program will continue to run
-		boolean exit = false;
-		
-		// name of the table to work with
-		String table  = "";
-		
-		@SuppressWarnings("resource")
-		Scanner sc = new Scanner(System.in);
-		
-		System.out.println("Welcome to the MySQL Server Connection Sample! Your connection has been set up.");
-		System.out.println("Use the command 'Help' to see what commands are available.");
-		
-		while (exit == false)
-		{
-			System.out.print(">"); // Add '>' to give visual indication of "type here!"
-			String com = sc.nextLine();
-			
-			switch (com.toLowerCase())
-			{
-			case "help":
-				System.out.println("The following commands are available to you:");
-				System.out.println();
-				System.out.println("'Add': Add a new record to the table.");
-				System.out.println("'About': Learn more about this program.");
-				System.out.println("'Display': Show all records and data within a table.");
-				System.out.println("'Delete': Delete records in a table that match a single condition.");
-				System.out.println("'Describe': Describe the columns of the table.");
-				System.out.println("'Exit': Quit the program.");
-				System.out.println("'Help': Display this help screen.");
-				System.out.println("'SQL': Enter Direct SQL mode to send commands straight to the server.");
-				System.out.println("'Table': Select which table in the database to use.");
-				break;
-			case "exit":
-				exit = true;
-				break;
-			case "about":
-				System.out.println("MySQL Server Connection Sample");
-				System.out.println("Created by Jacob R. Huempfner, January 2015");
-				break;
-			case "table":
-				// Select the table to work with
-				System.out.println("Type the name of the table you wish to work with:");
-				
-				// get and display a list of tables
-				ResultSet rst = makeCall("SHOW TABLES");
-				try {
-					while (rst.next())
-					{
-						System.out.println(rst.getString(1));
-					}
-				} catch (SQLException e1) {
-					errorOccurred(e1, "SHOW TABLES");
-				}
-				
-				System.out.print("Table>"); // Add '>' to give visual indication of "type here!"
-				String tbl = sc.nextLine();
-				
-				table = tbl;
-				System.out.println("The table " + tbl + " has been selected.");
-				break;
-			case "display":
-				if (table.isEmpty())
-				{
-					System.out.println("Please select a table to use with the 'Table' command.");
-					break;
-				}
-				
-				String queryd = "SELECT * FROM " + table;
-				
-				ResultSet rs = makeCall(queryd);
-				ResultSetMetaData rsmd;
-				
-				if (rs == null)
-				{
-					// This means no data was returned.
-					// The error should've been shown to the user
-					// in the makeCall function.
-					break;
-				}
-				
-				try
-				{
-					rsmd = rs.getMetaData();
-					
-					int cols = rsmd.getColumnCount();
-					String[] colnames = new String[cols];
-					
-					System.out.println("Table columns:");
-					for (int i = 1; i <= cols; i++)
-					{
-						colnames[i - 1] = rsmd.getColumnName(i);
-						System.out.println("Column " + Integer.toString(i) + ": " + rsmd.getColumnName(i) + ", of type " + rsmd.getColumnTypeName(i));
-					}
-					
-					while (rs.next())
-					{
-						System.out.println();
-						
-						for (int i = 0; i < cols; i++)
-						{
-							System.out.println(colnames[i] + " = " + rs.getString(i + 1));
-						}
-					}
-				}
-				catch (SQLException e)
-				{
-					errorOccurred(e, queryd);
-				}
-				
-				break;
-			case "describe":
-				if (table.isEmpty())
-				{
-					System.out.println("Please select a table to use with the 'Table' command.");
-					break;
-				}
-				
-				try
-				{
-					ArrayList<ColumnData> cols = ColumnData.buildColumnData(makeCall("DESCRIBE " + table));
-					
-					for (ColumnData col : cols)
-					{
-						System.out.println("Column " + col.getIndex() + ": " + col.getName() + (col.getNullable()?" (not-nullable)":" (nullable)") + " of type " + col.getDataType() + ( col.isPrimaryKey() ?" is a primary key":""));
-					}
-				}
-				catch (SQLException e)
-				{
-					errorOccurred(e, "DESCRIBE " + table);
-				}
-				
-				break;
-			case "add":
-				if (table.isEmpty())
-				{
-					System.out.println("Please select a table to use with the 'Table' command.");
-					break;
-				}
-				
-				String qat = "DESCRIBE " + table; // string needed for displaying correct information in error data
-				
-				try {
-					ArrayList<ColumnData> cols = ColumnData.buildColumnData(makeCall("DESCRIBE " + table));
-					
-					System.out.println("Adding a new record to the table:");
-					
-					ArrayList<String> svals = new ArrayList<String>(); // list of columns and values
-					
-					for (ColumnData col : cols)
-					{
-						boolean fval = false; // is the entered value valid for this column's data type
-						String cval = ""; // the value to be entered for this column
-						while (fval == false)
-						{
-							System.out.println("Enter value for column " + col.getName() + " (" + col.getDataType() + ")");
-							System.out.print("Value>"); // Add '>' to give visual indication of "type here!"
-							String pval = sc.nextLine();
-							
-							boolean res = col.isValidValue(pval);
-							
-							if (res == false)
-							{
-								System.out.println("The value '" + pval + "' is in an invalid format for this column.");
-							}
-							else
-							{
-								cval = pval; // have a valid value
-							}
-							
-							fval = res;
-						}
-						
-						if (col.isNumberType() == false)
-						{
-							cval = "'" + cval + "'";
-						}
-						
-						// For binary strings for the data type BIT
-						// strings are formatted as "b'100101'"
-						if (col.getType() == ColumnDataType.Bit)
-						{
-							cval = "b" + cval;
-						}
-						
-						svals.add(col.getName() + "=" + cval); // add value with column name into the arraylist	
-					}
-					
-					// now to use the arraylist to enter the command into MySQL
-					
-					String vallist = "";
-					
-					for (String val : svals)
-					{
-						vallist = vallist + ", " + val;
-					}
-					
-					vallist = vallist.substring(2); // remove the leading comma
-					
-					qat = "INSERT INTO " + table + " SET " + vallist;
-					
-					// enter command into MySQL
-					int addres = makeUpdateCall("INSERT INTO " + table + " SET " + vallist);
-					
-					System.out.println(addres + " rows updated");
-					
-				} catch (SQLException e) {
-					errorOccurred(e, qat);
-					//e.printStackTrace();
-				}
-				
-				break;
-			case "delete":
-				if (table.isEmpty())
-				{
-					System.out.println("Please select a table to use with the 'Table' command.");
-					break;
-				}
-				
-				String qdt = "DESCRIBE " + table; // string needed for displaying correct information in error data
-				
-				try {
-					ArrayList<ColumnData> cols = ColumnData.buildColumnData(makeCall("DESCRIBE " + table));
-					
-					System.out.println("Deleting records from the table based upon a single condition:");
-					
-					ArrayList<String> colnames = new ArrayList<String>(); // list of columns
-					
-					for (ColumnData col : cols)
-					{
-						System.out.println("Column " + col.getIndex() + ": " + col.getName() + (col.getNullable()?" (not-nullable)":" (nullable)") + " of type " + col.getDataType());
-						colnames.add(col.getName());
-					}
-					
-					boolean validname = false;
-					String colname = ""; // name of the column to compare against
-					
-					while (validname == false)
-					{
-						System.out.print("Name of the column to compare against>");
-						
-						String name = sc.nextLine();
-						if (colnames.contains(name))
-						{
-							validname = true;
-							colname = name;
-						}
-						else
-						{
-							System.out.println("There is no column with this name.");
-						}
-					}
-				
-					// get the ColumnData for the specified column
-					int index = colnames.indexOf(colname);
-					ColumnData colm = cols.get(index);
-					
-					System.out.println("Type the value to compare.");
-					System.out.println("Table records that have this value in this column will be deleted.");
-					System.out.print("Value>");
-					
-					String wvalue = sc.nextLine();
-					
-					if (colm.isNumberType() == false)
-					{
-						wvalue = "'" + wvalue + "'";
-					}
-					
-					// formulate where condition
-					String where = colname + "=" + wvalue;
-					
-					qdt = "DELETE FROM " + table + " WHERE " + where;
-					
-					// enter command into MySQL
-					int delch = makeUpdateCall("DELETE FROM " + table + " WHERE " + where);
-					
-					System.out.println(delch + " rows updated");
-					
-				} catch (SQLException e) {
-					errorOccurred(e, qdt);
-					//e.printStackTrace();
-				}
-				
-				break;
-			case "sql":
-				System.out.println("Direct SQL mode activated");
-				System.out.println("Each command will be sent straight to the SQL server.");
-				System.out.println("Type 'exit' to leave Direct SQL mode.");
-				
-				boolean dsm = true;
-				
-				while (dsm)
-				{
-					System.out.print("Command>");
-					String command = sc.nextLine();
-					
-					if (command.toLowerCase().equals("exit"))
-					{
-						dsm = false;
-					}
-					else if (command.toUpperCase().startsWith("UPDATE") || command.toUpperCase().startsWith("INSERT") || command.toUpperCase().startsWith("DELETE") || command.toUpperCase().startsWith("ALTER"))
-					{
-						int dsmres = makeUpdateCall(command);
-						System.out.println(dsmres + " rows updated");
-					}
-					else
-					{
-						ResultSet dsmrs = makeCall(command);
-						
-						ResultSetMetaData dsmrsmd;
-						
-						if (dsmrs != null)
-						{
-							// This means no data was returned.
-							// The error should've been shown to the user
-							// in the makeCall function.
-							try
-							{
-								dsmrsmd = dsmrs.getMetaData();
-								
-								int cols = dsmrsmd.getColumnCount();
-								String[] colnames = new String[cols];
-								
-								System.out.println("Table columns:");
-								for (int i = 1; i <= cols; i++)
-								{
-									colnames[i - 1] = dsmrsmd.getColumnName(i);
-									System.out.println("Column " + Integer.toString(i) + ": " + dsmrsmd.getColumnName(i) + ", of type " + dsmrsmd.getColumnTypeName(i));
-								}
-								
-								while (dsmrs.next())
-								{
-									System.out.println();
-									
-									for (int i = 0; i < cols; i++)
-									{
-										System.out.println(colnames[i] + " = " + dsmrs.getString(i + 1));
-									}
-								}
-							}
-							catch (SQLException e)
-							{
-								errorOccurred(e, command);
-							}
-						}
-					}
-				}
-				
-				System.out.println("Leaving Direct SQL mode");
-				break;
-			default:
-				
-				System.out.println("Could not interpret command '" + com + "'.");
-				System.out.println("Use the 'Help' command to display a list of available commands.");
-				break;
-			}
-		}
-		
-	}
-	
-	/**
-	 * Send a SQL query statement to the MySQL server and return the results as a ResultSet object.
-	 * If an error is encountered, the program will automatically handle it.
-	 * @param command The query statement to be sent.
-	 * @return The ResultSet that represents the data returned from the query statement.
-	 */
-	private ResultSet makeCall(String command)
-	{
-		Statement stmt = null;
-		try
-		{
-			// Create SQL statement and return the resulting data from the query
-			stmt = conn.createStatement();
-			return stmt.executeQuery(command);
-		}
-		catch (SQLException e)
-		{
-			errorOccurred(e, command);
-			
-			// null out the statement object, to release memory
-		    if (stmt != null) {
-		        try { stmt.close(); } catch (SQLException sqlEx) { } // ignore
-	
-		        stmt = null;
-		    }
-		}
-		
-		return null;
-		
-	}
-	
-	/**
-	 * Send a SQL update statement to the MySQL server and return the results as a ResultSet object.
-	 * If an error is encountered, the program will automatically handle it.
-	 * @param command The query statement to be sent.
-	 * @return The row count as a result of this statement. 0 if row count is not relevant to the statement.
-	 */
-	private int makeUpdateCall(String command)
-	{
-		Statement stmt = null;
-		try
-		{
-			// Create SQL statement and return the resulting data from the query
-			stmt = conn.createStatement();
-			return stmt.executeUpdate(command);
-		}
-		catch (SQLException e)
-		{
-			errorOccurred(e, command);
-			
-			// null out the statement object, to release memory
-		    if (stmt != null) {
-		        try { stmt.close(); } catch (SQLException sqlEx) { } // ignore
-	
-		        stmt = null;
-		    }
-		}
-		
-		return 0;
-		
-	}
-	
-	private void errorOccurred(SQLException e, String query)
-	{
-		System.out.println("An error occurred while sending a query:");
-		System.out.println("Query: " + query);
-		System.out.println("SQL State: " + e.getSQLState());
-		System.out.println("Error message: " + e.getMessage());
-		System.out.println("Error code: " + e.getErrorCode());
-		System.out.println();
-	}
-	
-}
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * The program that facilitates interaction between the user and the MySQL server of their choice.
+ * @author Jayke R. Huempfner
+ */
+public class ServerComm {
+
+	// using information coming from http://dev.mysql.com/doc/connector-j/en/connector-j-usagenotes-basic.html
+	
+	// connections are borrowed from here for each call, rather than keeping one open for the whole session
+	private ConnectionPool pool = null;
+	
+	// the columns of each table, so they don't have to be looked up every time
+	private SchemaCache schemas = new SchemaCache(300 * 1000);
+	
+	// the rows of recent SELECTs, for when the same one is run again; off until the ResultCacheMB option is set
+	private ResultCache resultCache = new ResultCache(0, 60 * 1000);
+	
+	// the rows of the last result shown, for 'Sort', 'Filter' and 'GroupBy' to work on
+	private ResultWorkspace workspace = new ResultWorkspace(64L * 1024 * 1024);
+	
+	// settings that can be changed with the 'Option' command
+	private int fetchSize = 500; // rows the server sends at a time while 'Display' or 'Export' is reading through a table
+	private int displayLimit = 0; // most rows 'Display' will show, 0 for no limit
+	private int pageSize = 50; // rows 'Display' shows before asking to continue, 0 to show them all at once
+	private int batchSize = 1000; // rows 'BulkAdd' and 'Import' send to the server at a time, and values 'BulkDelete' deletes at a time
+	private boolean bulkTransaction = false; // whether 'BulkAdd' adds all of its rows in one transaction
+	private int importThreads = 4; // connections 'Import' sends rows over at the same time
+	private boolean importLoadData = false; // whether 'Import' sends its rows with LOAD DATA LOCAL INFILE rather than INSERTs
+	private int queryTimeout = 0; // seconds a command in Direct SQL mode can run before the server stops it, 0 for no limit
+	private int slowQueryMs = 1000; // statements taking at least this many milliseconds go in the slow query log, 0 for none
+	private int resultCacheMb = 0; // megabytes of rows the result cache can keep, 0 to turn it off
+	private int resultCacheTtl = 60; // seconds a result is kept, 0 for no limit
+	private int localResultMb = 64; // megabytes of rows kept from the last result for 'Sort', 'Filter' and 'GroupBy', 0 to keep none
+	private int scanThreads = 0; // connections 'Display' and 'Export' read a big table over at the same time, 0 or 1 to use just one
+	private boolean scanOrdered = true; // whether a table read over several connections is shown or saved in the order of its primary key
+	private int deleteSlice = 0; // rows 'Delete' removes at a time, 0 to remove them all with one statement
+	private int deletePauseMs = 0; // milliseconds 'Delete' and 'BulkDelete' wait between chunks
+	private int groupCommitStatements = 0; // changes a transaction commits after by itself, 0 to only commit on 'Commit'
+	private int groupCommitMs = 0; // milliseconds after its first uncommitted change a transaction commits by itself, 0 to only commit on 'Commit'
+	
+	// runs the commands typed in Direct SQL mode, created the first time it's entered
+	private QueryRunner runner = null;
+	
+	// the transaction started with 'Begin', which every statement goes through while it's open
+	private Transaction transaction = null;
+	private long groupCommitsBefore = 0; // group commits made before the open transaction started
+	
+	// how long statements take and how often they fail, shown by 'Stats' and added to statsFile when disconnecting
+	private QueryMetrics metrics = new QueryMetrics();
+	private File statsFile = new File("MySqlConnSample-stats.txt");
+	
+	// statements that took longer than slowQueryMs are written here, with what EXPLAIN says about them; created along with the pool
+	private SlowQueryLog slowLog = null;
+	private File slowLogFile = new File("MySqlConnSample-slow.log");
+	
+	// the queries whose ResultSets haven't been passed to closeCall yet, with the connection each one was sent over
+	private Map<ResultSet, OpenCall> openCalls = new IdentityHashMap<ResultSet, OpenCall>();
+	
+	private static class OpenCall
+	{
+		final Connection conn;
+		final boolean own; // whether conn is the transaction's
+		final String sql;
+		final Object[] params;
+		final long nanos;
+		final boolean slow; // logged once closeCall says how many of its rows were read
+		
+		OpenCall(Connection conn, boolean own, String sql, Object[] params, long nanos, boolean slow)
+		{
+			this.conn = conn;
+			this.own = own;
+			this.sql = sql;
+			this.params = params;
+			this.nanos = nanos;
+			this.slow = slow;
+		}
+	}
+	
+	/**
+	 * Connect to a server at localhost:3306.
+	 * @param db The name of the database (schema) to connect to.
+	 * @param user The name of the user accessing the database.
+	 * @param password The password for the user accessing the database.
+	 */
+	public void connect(String db, String user, String password)
+	{
+        try {
+            // The newInstance() call is a work around for some
+            // broken Java implementations
+
+            Class.forName("com.mysql.jdbc.Driver").newInstance();
+        } catch (Exception ex) {
+        	ex.printStackTrace();
+            // handle the error
+        }
+		
+		try {
+			// useServerPrepStmts has the server parse each prepared statement once, rather than the driver filling in the values itself
+			// useCursorFetch lets a statement with a fetch size read through its results a few rows at a time
+			// rewriteBatchedStatements sends a batch of INSERTs as one multi-row INSERT
+			// allowLoadLocalInfile lets 'Import' send rows with LOAD DATA LOCAL INFILE (the pool keeps it turned off the rest of the time)
+			pool = new ConnectionPool("jdbc:mysql://localhost:3306/" + db + "?user=" + user + "&password=" + password + "&useServerPrepStmts=true&useCursorFetch=true&rewriteBatchedStatements=true&allowLoadLocalInfile=true");
+			slowLog = new SlowQueryLog(pool, slowLogFile, slowQueryMs);
+			transaction = new Transaction(pool, metrics, resultCache, System.out);
+		} catch (SQLException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Connect to a server with a custom connection string.
+	 * @param connection The connection string used to locate and connect to the database. Strings must start with "jdbc:mysql://".
+	 */
+	public void connect(String connection)
+	{
+        try {
+            // The newInstance() call is a work around for some
+            // broken Java implementations
+
+            Class.forName("com.mysql.jdbc.Driver").newInstance();
+        } catch (Exception ex) {
+        	ex.printStackTrace();
+            // handle the error
+        }
+		
+		try {
+			pool = new ConnectionPool(connection);
+			slowLog = new SlowQueryLog(pool, slowLogFile, slowQueryMs);
+			transaction = new Transaction(pool, metrics, resultCache, System.out);
+		} catch (SQLException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Close all connections to the server.
+	 */
+	public void disconnect()
+	{
+		if (runner != null)
+		{
+			runner.shutdown();
+		}
+		
+		if (transaction != null)
+		{
+			// like the mysql client, leaving without 'Commit' undoes the changes
+			if (transaction.isOpen())
+			{
+				System.out.println("The transaction was still open, so its changes since the last commit have been rolled back.");
+			}
+			transaction.close();
+		}
+		
+		if (slowLog != null)
+		{
+			slowLog.close(); // before the pool, as EXPLAIN may still be running for the last few
+		}
+		
+		if (pool != null && !metrics.isEmpty())
+		{
+			try
+			{
+				metrics.appendTo(statsFile, pool);
+			}
+			catch (IOException e)
+			{
+				System.out.println("The statistics could not be saved: " + e.getMessage());
+			}
+		}
+		
+		if (pool != null)
+		{
+			pool.close();
+		}
+	}
+	
+	/**
+	 * Get the pool of connections to the server, so its usage can be looked at.
+	 * @return The connection pool, or null if a connection has not been set up.
+	 */
+	public ConnectionPool getPool()
+	{
+		return pool;
+	}
+	
+	/**
+	 * Get the slow query log, so anything else sending statements can add to it.
+	 * @return The log, or null if a connection has not been set up.
+	 */
+	public SlowQueryLog getSlowQueryLog()
+	{
+		return slowLog;
+	}
+	
+	/**
+	 * Get the numbers kept on the statements sent to the server, so anything else sending statements can add to them.
+	 * @return The metrics. They're added to a file when disconnect is called.
+	 */
+	public QueryMetrics getMetrics()
+	{
+		return metrics;
+	}
+	
+	// me and my glorious method-naming skills
+	
+	/**
+	 * The function that forms the command-line interface allowing the user to work with the MySQL server.
+	 */
+	public void interact()
+	{
+		// as long as this is false, the program will continue to run
+		boolean exit = false;
+		
+		// name of the table to work with
+		String table  = "";
+		
+		@SuppressWarnings("resource")
+		Scanner sc = new Scanner(System.in);
+		
+		System.out.println("Welcome to the MySQL Server Connection Sample! Your connection has been set up.");
+		System.out.println("Use the command 'Help' to see what commands are available.");
+		
+		while (exit == false)
+		{
+			System.out.print(">"); // Add '>' to give visual indication of "type here!"
+			String com = sc.nextLine();
+			
+			// 'Import', 'Export' and 'BulkDelete' can be given their file on the same line, and 'Sort', 'Filter' and 'GroupBy' their columns
+			String arg = "";
+			String[] words = com.trim().split("\\s+", 2);
+			if (words.length == 2 && words[0].toLowerCase().matches("import|export|bulkdelete|sort|filter|groupby"))
+			{
+				arg = words[1].trim();
+				com = words[0];
+			}
+			
+			switch (com.toLowerCase())
+			{
+			case "help":
+				System.out.println("The following commands are available to you:");
+				System.out.println();
+				System.out.println("'Add': Add a new record to the table.");
+				System.out.println("'About': Learn more about this program.");
+				System.out.println("'Begin': Start a transaction. Changes are only kept once they're committed with 'Commit' (or by group commit).");
+				System.out.println("'BulkAdd': Add many new records to the table, one per line.");
+				System.out.println("'BulkDelete': Delete the records with any of a list of values in a column, typed one per line or read from a file typed after the command.");
+				System.out.println("'Commit': Keep the changes made since 'Begin', and end the transaction.");
+				System.out.println("'Display': Show all records and data within a table.");
+				System.out.println("'Delete': Delete records in a table that match a single condition.");
+				System.out.println("'Describe': Describe the columns of the table.");
+				System.out.println("'Exit': Quit the program.");
+				System.out.println("'Export': Save the table, or the results of a query, to a CSV, JSON Lines, or binary file. The file can be typed after the command.");
+				System.out.println("'Filter': Keep only the rows of the last result that match a condition, such as 'Filter amt >= 10'. 'Filter clear' shows all of them again.");
+				System.out.println("'GroupBy': Count the rows of the last result with each value of a column, and add them up, such as 'GroupBy kind sum amt'.");
+				System.out.println("'Help': Display this help screen.");
+				System.out.println("'Import': Add every record in a comma or tab separated file to the table. The file can be typed after the command.");
+				System.out.println("'Option': Change how the program behaves, such as how many rows 'Display' shows.");
+				System.out.println("'Pool': Show how the connections to the server are being used.");
+				System.out.println("'Rollback': Undo the changes made since 'Begin' (or the last group commit), and end the transaction.");
+				System.out.println("'Sort': Sort the rows of the last result by some of its columns, such as 'Sort kind, amt desc'.");
+				System.out.println("'SQL': Enter Direct SQL mode to send commands straight to the server.");
+				System.out.println("'Stats': Show how long the statements sent to the server have taken, and how many failed.");
+				System.out.println("'Table': Select which table in the database to use.");
+				break;
+			case "exit":
+				exit = true;
+				break;
+			case "option":
+				printOptions();
+				
+				System.out.println("Type the name of the option to change, or press 'Enter' to leave them as they are:");
+				System.out.print("Option>");
+				String oname = sc.nextLine();
+				
+				if (oname.isEmpty())
+				{
+					break;
+				}
+				
+				System.out.print("Value>");
+				String oval = sc.nextLine();
+				
+				if (setOption(oname.toLowerCase(), oval))
+				{
+					System.out.println("The option " + oname + " has been set to " + oval + ".");
+				}
+				break;
+			case "pool":
+				System.out.println("Connections open: " + pool.getTotalCount() + " (" + pool.getActiveCount() + " in use, " + pool.getIdleCount() + " idle, max " + pool.getMaxSize() + ")");
+				System.out.println("Connections opened: " + pool.getCreatedCount() + ", closed: " + pool.getDestroyedCount());
+				System.out.println("Times borrowed: " + pool.getBorrowCount() + ", timed out: " + pool.getTimeoutCount());
+				System.out.println("Wait time: " + String.format("%.3f", pool.getAverageWaitMillis()) + " ms average, " + String.format("%.3f", pool.getMaxWaitMillis()) + " ms max");
+				System.out.println("Prepared statements reused: " + pool.getStatementHits() + ", prepared: " + pool.getStatementMisses() + ", evicted: " + pool.getStatementEvictions());
+				break;
+			case "stats":
+				metrics.print(System.out, pool);
+				System.out.println("These are also saved to " + statsFile.getAbsolutePath() + " when the program quits.");
+				if (resultCache.getMaxBytes() > 0)
+				{
+					System.out.println("Result cache: " + resultCache.getHits() + " hits, " + resultCache.getMisses() + " misses ("
+							+ String.format("%.1f", resultCache.getHitRate() * 100) + "% hit rate), " + resultCache.getCount() + " results in "
+							+ String.format("%.1f", resultCache.getBytes() / (1024.0 * 1024.0)) + " of " + resultCacheMb + " MB, "
+							+ resultCache.getEvictions() + " pushed out");
+				}
+				if (transaction.getCommitCount() > 0)
+				{
+					LatencyHistogram ct = transaction.getCommitTimes();
+					System.out.println("Transactions: " + transaction.getCommitCount() + " commits (" + transaction.getGroupCommitCount() + " by group commit), "
+							+ String.format("%.1f", transaction.getStatementsCommitted() / (double) transaction.getCommitCount()) + " changes per commit, commit p50 "
+							+ String.format("%.3f", ct.getPercentileMillis(50)) + " ms, p99 " + String.format("%.3f", ct.getPercentileMillis(99)) + " ms, max "
+							+ String.format("%.3f", ct.getMaxMillis()) + " ms");
+				}
+				if (slowLog.getLoggedCount() > 0 || slowLog.getDroppedCount() > 0)
+				{
+					System.out.println(slowLog.getLoggedCount() + " slow statements written to " + slowLogFile.getAbsolutePath()
+							+ (slowLog.getDroppedCount() > 0 ? " (" + slowLog.getDroppedCount() + " not written, as too many were waiting)" : ""));
+				}
+				break;
+			case "about":
+				System.out.println("MySQL Server Connection Sample");
+				System.out.println("Created by Jacob R. Huempfner, January 2015");
+				break;
+			case "table":
+				// Select the table to work with
+				System.out.println("Type the name of the table you wish to work with:");
+				
+				// get and display a list of tables
+				ResultSet rst = makeCall("SHOW TABLES");
+				try {
+					while (rst.next())
+					{
+						System.out.println(rst.getString(1));
+					}
+				} catch (SQLException e1) {
+					errorOccurred(e1, "SHOW TABLES");
+				} finally {
+					closeCall(rst);
+				}
+				
+				System.out.print("Table>"); // Add '>' to give visual indication of "type here!"
+				String tbl = sc.nextLine();
+				
+				table = tbl;
+				System.out.println("The table " + tbl + " has been selected.");
+				
+				// look up the columns of every table while we're at it, as the other commands will need them
+				if (schemas.getTtl() > 0 && schemas.get(tbl) == null)
+				{
+					prefetchSchema();
+				}
+				break;
+			case "display":
+				if (table.isEmpty())
+				{
+					System.out.println("Please select a table to use with the 'Table' command.");
+					break;
+				}
+				
+				String queryd = "SELECT * FROM " + table;
+				
+				if (displayLimit > 0)
+				{
+					queryd = queryd + " LIMIT " + displayLimit; // so the server doesn't even send the rows we won't show
+				}
+				
+				// rows read inside a transaction have to come over its connection, to see the changes that haven't been committed,
+				// so none of the ways of reading over other connections below are used (and the rows aren't cached)
+				boolean intx = transaction.isOpen();
+				
+				// with paging on, a table with a primary key is browsed a page at a time, each page found by its key
+				if (pageSize > 0 && displayLimit == 0 && !intx)
+				{
+					ColumnData pageKey = null;
+					try
+					{
+						pageKey = KeysetPager.getPageKey(describeTable(table));
+					}
+					catch (SQLException e) { } // read it the usual way below, which shows the error if there's still one
+					
+					if (pageKey != null)
+					{
+						browse(table, pageKey, sc);
+						break;
+					}
+				}
+				
+				// if the table hasn't changed since it was last shown, the rows may still be in the result cache
+				ColumnarResult cached = intx ? null : resultCache.get(queryd);
+				ColumnarResult.Collector keep = null;
+				ResultCache.Ticket ticket = null;
+				TableScanner scan = null;
+				ResultSet rs = null;
+				ResultSetMetaData rsmd;
+				
+				if (cached == null && displayLimit == 0 && !intx)
+				{
+					// a big table can be read over several connections at once, a range of its primary key on each
+					scan = startScan(table);
+				}
+				
+				if (cached == null && scan == null)
+				{
+					ticket = intx ? null : resultCache.startResult(queryd); // before the query is sent, so a change made while it's being read is noticed
+					
+					// the rows are gathered for the result cache, and for 'Sort', 'Filter' and 'GroupBy' to work on afterwards
+					long keepBytes = Math.max(ticket != null ? resultCache.getMaxResultBytes() : 0, workspace.getMaxBytes());
+					if (keepBytes > 0)
+					{
+						keep = new ColumnarResult.Collector(keepBytes);
+					}
+					
+					// read the table a few rows at a time, rather than loading all of it into memory before showing the first row
+					rs = makeStreamingCall(queryd, fetchSize);
+					
+					if (rs == null)
+					{
+						// This means no data was returned.
+						// The error should've been shown to the user
+						// in the makeCall function.
+						break;
+					}
+				}
+				
+				int shown = 0;
+				boolean stopped = false;
+				
+				try
+				{
+					// the column widths are worked out from the first page
+					TableRenderer tr = new TableRenderer(System.out, pageSize > 0 ? Math.min(pageSize, TableRenderer.DEFAULT_SAMPLE) : TableRenderer.DEFAULT_SAMPLE, TableRenderer.DEFAULT_MAX_WIDTH);
+					String[] vals = null;
+					
+					// rows from the cache or a scan are already in a ColumnarResult; a scan hands them over a range at a time
+					ColumnarResult part = (cached != null) ? cached : (scan != null) ? scan.next() : null;
+					boolean columnar = (part != null);
+					int inPart = 0;
+					
+					if (columnar)
+					{
+						tr.start(part.getLabels(), part.getTypes());
+						vals = new String[part.getColumnCount()];
+					}
+					else
+					{
+						rsmd = rs.getMetaData();
+						tr.start(rsmd);
+						
+						if (keep != null)
+						{
+							keep.start(rsmd);
+						}
+					}
+					
+					while (true)
+					{
+						if (columnar)
+						{
+							while (part != null && inPart == part.getRowCount())
+							{
+								part = (scan != null) ? scan.next() : null;
+								inPart = 0;
+							}
+							
+							if (part == null)
+							{
+								break;
+							}
+							
+							part.getRow(inPart++, vals);
+							tr.addRow(vals);
+						}
+						else
+						{
+							if (!rs.next())
+							{
+								break;
+							}
+							
+							tr.addRow(rs);
+							
+							if (keep != null)
+							{
+								keep.addRow(rs);
+							}
+						}
+						
+						shown++;
+						
+						if (pageSize > 0 && shown % pageSize == 0)
+						{
+							tr.flush();
+							System.out.println(shown + " rows shown. Press 'Enter' to show more, or type 'stop' to stop.");
+							System.out.print("More>");
+							
+							if (sc.nextLine().toLowerCase().equals("stop"))
+							{
+								stopped = true;
+								break;
+							}
+						}
+					}
+					
+					tr.finish();
+					
+					if (cached != null)
+					{
+						System.out.println(shown + " rows (from the result cache)");
+						workspace.setResult(queryd, cached, schemas.get(table));
+					}
+					else if (scan != null)
+					{
+						// the scan has recorded its own rows in the stats, range by range
+						System.out.println(shown + " rows (read in " + scan.getRangeCount() + " ranges over " + scan.getThreads() + " connections)");
+						workspace.setResult(queryd, null, null);
+					}
+					else
+					{
+						System.out.println(shown + " rows");
+						metrics.recordRowsReturned(QueryMetrics.Kind.SELECT, shown);
+						
+						// only the whole result is kept, not the part read before 'stop'
+						ColumnarResult kept = (keep != null && !stopped) ? keep.getRows() : null;
+						if (kept != null && ticket != null)
+						{
+							resultCache.put(ticket, kept);
+						}
+						workspace.setResult(queryd, kept, schemas.get(table));
+					}
+				}
+				catch (SQLException e)
+				{
+					errorOccurred(e, queryd);
+				}
+				finally
+				{
+					closeCall(rs, shown);
+					
+					if (scan != null)
+					{
+						scan.close();
+					}
+				}
+				
+				break;
+			case "describe":
+				if (table.isEmpty())
+				{
+					System.out.println("Please select a table to use with the 'Table' command.");
+					break;
+				}
+				
+				try
+				{
+					List<ColumnData> cols = describeTable(table);
+					
+					for (ColumnData col : cols)
+					{
+						System.out.println("Column " + col.getIndex() + ": " + col.getName() + (col.getNullable()?" (not-nullable)":" (nullable)") + " of type " + col.getDataType() + ( col.isPrimaryKey() ?" is a primary key":""));
+					}
+				}
+				catch (SQLException e)
+				{
+					errorOccurred(e, "DESCRIBE " + table);
+				}
+				
+				break;
+			case "add":
+				if (table.isEmpty())
+				{
+					System.out.println("Please select a table to use with the 'Table' command.");
+					break;
+				}
+				
+				String qat = "DESCRIBE " + table; // string needed for displaying correct information in error data
+				
+				try {
+					List<ColumnData> cols = describeTable(table);
+					
+					if (cols.isEmpty())
+					{
+						break;
+					}
+					
+					System.out.println("Adding a new record to the table:");
+					
+					ArrayList<String> svals = new ArrayList<String>(); // list of columns
+					ArrayList<Object> params = new ArrayList<Object>(); // list of values, in the same order
+					
+					for (ColumnData col : cols)
+					{
+						Object cparam = ColumnData.INVALID; // the value to be entered for this column, read into what's sent for it
+						while (cparam == ColumnData.INVALID)
+						{
+							System.out.println("Enter value for column " + col.getName() + " (" + col.getDataType() + ")");
+							System.out.print("Value>"); // Add '>' to give visual indication of "type here!"
+							String pval = sc.nextLine();
+							
+							// the value is checked as it's read, so it's only gone over once
+							cparam = col.read(pval);
+							
+							if (cparam == ColumnData.INVALID)
+							{
+								System.out.println("The value '" + pval + "' is in an invalid format for this column.");
+							}
+						}
+						
+						// the value is sent separately from the statement, so it doesn't need quotes around it
+						svals.add(col.getName() + "=?"); // add column name into the arraylist
+						params.add(cparam);
+					}
+					
+					// now to use the arraylist to enter the command into MySQL
+					
+					String vallist = "";
+					
+					for (String val : svals)
+					{
+						vallist = vallist + ", " + val;
+					}
+					
+					vallist = vallist.substring(2); // remove the leading comma
+					
+					qat = "INSERT INTO " + table + " SET " + vallist;
+					
+					// enter command into MySQL
+					int addres = makeUpdateCall("INSERT INTO " + table + " SET " + vallist, params.toArray());
+					
+					System.out.println(addres + " rows updated");
+					
+				} catch (SQLException e) {
+					errorOccurred(e, qat);
+					//e.printStackTrace();
+				}
+				
+				break;
+			case "bulkadd":
+				if (table.isEmpty())
+				{
+					System.out.println("Please select a table to use with the 'Table' command.");
+					break;
+				}
+				
+				String qbt = "DESCRIBE " + table; // string needed for displaying correct information in error data
+				Connection bconn = null;
+				boolean btx = false; // whether bconn is the transaction's
+				SQLException berr = null;
+				BulkInserter bulk = null;
+				
+				try {
+					List<ColumnData> cols = describeTable(table);
+					
+					if (cols.isEmpty())
+					{
+						break;
+					}
+					
+					System.out.println("Adding many new records to the table:");
+					System.out.println("Type the values for each record on one line, separated by '|', in this order:");
+					
+					for (ColumnData col : cols)
+					{
+						System.out.println("Column " + col.getIndex() + ": " + col.getName() + " (" + col.getDataType() + ")");
+					}
+					
+					System.out.println("Press 'Enter' on an empty line when you're done.");
+					
+					// inside a transaction, the rows go over its connection, and are kept or undone along with everything else in it
+					bconn = transaction.use();
+					btx = (bconn != null);
+					if (!btx)
+					{
+						bconn = pool.borrow();
+					}
+					bulk = new BulkInserter(bconn, table, cols, batchSize, bulkTransaction && !btx);
+					bulk.setMetrics(metrics);
+					qbt = bulk.getStatement();
+					
+					while (true)
+					{
+						System.out.print("Row>");
+						String line = sc.nextLine();
+						
+						if (line.isEmpty())
+						{
+							break;
+						}
+						
+						String[] vals = line.split("\\|", -1); // -1 keeps empty values at the end of the line
+						int bad = bulk.addRow(vals);
+						
+						if (bad == cols.size())
+						{
+							System.out.println("This record has " + vals.length + " values, but the table has " + cols.size() + " columns. It was not added.");
+						}
+						else if (bad >= 0)
+						{
+							System.out.println("The value '" + vals[bad] + "' is in an invalid format for column " + cols.get(bad).getName() + ". This record was not added.");
+						}
+					}
+					
+					bulk.finish();
+					
+					System.out.println(bulk.getRowsInserted() + " rows added in " + bulk.getBatchCount() + " batches, " + bulk.getRowsRejected() + " rejected");
+					System.out.println(String.format("%.3f", bulk.getElapsedSeconds()) + " seconds, " + String.format("%.0f", bulk.getRowsPerSecond()) + " rows/sec");
+					
+				} catch (SQLException e) {
+					berr = e;
+					errorOccurred(e, qbt);
+					
+					if (bulkTransaction && !btx)
+					{
+						System.out.println("No rows were added, as the transaction was rolled back.");
+					}
+				} finally {
+					if (bulk != null)
+					{
+						bulk.close();
+					}
+					
+					if (btx && berr != null)
+					{
+						transaction.failed(berr);
+					}
+					else if (btx)
+					{
+						transaction.done(qbt);
+					}
+					else
+					{
+						pool.release(bconn);
+					}
+					resultCache.invalidate(table);
+				}
+				
+				break;
+			case "import":
+				if (table.isEmpty())
+				{
+					System.out.println("Please select a table to use with the 'Table' command.");
+					break;
+				}
+				
+				if (arg.isEmpty())
+				{
+					System.out.println("Type the path of the file to import:");
+					System.out.print("File>");
+					arg = sc.nextLine().trim();
+				}
+				
+				if (transaction.isOpen())
+				{
+					System.out.println("'Import' sends rows over several connections at once, so it can't be part of a transaction. Use 'Commit' or 'Rollback' first.");
+					break;
+				}
+				
+				File ifile = new File(arg);
+				if (!ifile.isFile())
+				{
+					System.out.println("The file '" + arg + "' could not be found.");
+					break;
+				}
+				
+				try {
+					List<ColumnData> cols = describeTable(table);
+					
+					if (cols.isEmpty())
+					{
+						break;
+					}
+					
+					FileImporter imp = new FileImporter(pool, table, cols, batchSize, importThreads);
+					imp.setFormatFromName(ifile);
+					imp.setLoadData(importLoadData);
+					imp.setMetrics(metrics);
+					
+					System.out.println("Importing " + ifile.getName() + " into " + table + " over " + imp.getThreadCount() + " connections...");
+					
+					try {
+						imp.run(ifile);
+					} catch (IOException e) {
+						System.out.println("The import stopped early: " + e.getMessage());
+					} catch (SQLException e) {
+						errorOccurred(e, "INSERT INTO " + table);
+						System.out.println("The import stopped early. The rows already added have been kept.");
+					} finally {
+						resultCache.invalidate(table);
+					}
+					
+					for (String reason : imp.getRejectReasons())
+					{
+						System.out.println(reason);
+					}
+					
+					System.out.println(imp.getRowsInserted() + " of " + imp.getRowsRead() + " rows added in " + imp.getBatchCount() + " batches, " + imp.getRowsRejected() + " rejected");
+					System.out.println(String.format("%.3f", imp.getElapsedSeconds()) + " seconds, " + String.format("%.0f", imp.getRowsPerSecond()) + " rows/sec");
+					
+					if (imp.getRowsRejected() > 0)
+					{
+						System.out.println("The rejected rows were written to " + imp.getRejectedFile().getPath());
+					}
+					
+				} catch (SQLException e) {
+					errorOccurred(e, "DESCRIBE " + table);
+				}
+				
+				break;
+			case "export":
+				if (arg.isEmpty())
+				{
+					System.out.println("Type the path of the file to save to (ending in .csv, .jsonl, or .bin, plus .gz to compress it):");
+					System.out.print("File>");
+					arg = sc.nextLine().trim();
+					
+					if (arg.isEmpty())
+					{
+						break;
+					}
+				}
+				
+				System.out.println("Type the query whose results should be saved, or press 'Enter' to save the whole table" + (table.isEmpty() ? "" : " " + table) + ":");
+				System.out.print("Query>");
+				String querye = sc.nextLine().trim();
+				
+				if (querye.isEmpty())
+				{
+					if (table.isEmpty())
+					{
+						System.out.println("Please select a table to use with the 'Table' command.");
+						break;
+					}
+					
+					querye = "SELECT * FROM " + table;
+				}
+				
+				File efile = new File(arg);
+				ResultExporter exp = new ResultExporter(efile, ResultExporter.formatFromName(efile), ResultExporter.isGzipName(efile));
+				exp.setProgress(System.out, 2000);
+				
+				// a whole table can be read over several connections at once, a range of its primary key on each
+				TableScanner escan = (querye.equals("SELECT * FROM " + table) && !transaction.isOpen()) ? startScan(table) : null;
+				ResultSet ers = null;
+				
+				if (escan == null)
+				{
+					// the rows are read from the server as they're written, so only a few are held in memory at once
+					ers = makeStreamingCall(querye, fetchSize);
+					
+					if (ers == null)
+					{
+						// The error should've been shown to the user
+						// in the makeCall function.
+						break;
+					}
+				}
+				
+				try
+				{
+					System.out.println("Saving to " + efile.getPath() + " as " + ResultExporter.formatFromName(efile) + (ResultExporter.isGzipName(efile) ? " (compressed)" : "") + "...");
+					
+					if (escan != null)
+					{
+						System.out.println("Reading the table in about " + escan.getRangeCount() + " ranges over " + escan.getThreads() + " connections" + (scanOrdered ? "" : ", in whatever order they arrive") + ".");
+						exp.export(escan);
+					}
+					else
+					{
+						exp.export(ers);
+					}
+				}
+				catch (SQLException e)
+				{
+					errorOccurred(e, querye);
+					System.out.println("The file only has the rows read before the error.");
+				}
+				catch (IOException e)
+				{
+					System.out.println("The file could not be written: " + e.getMessage());
+				}
+				finally
+				{
+					closeCall(ers, exp.getRowCount());
+					
+					if (escan != null)
+					{
+						escan.close();
+					}
+				}
+				
+				if (escan == null)
+				{
+					metrics.recordRowsReturned(QueryMetrics.Kind.of(querye), exp.getRowCount());
+				}
+				System.out.println(exp.getRowCount() + " rows saved, " + String.format("%.1f", exp.getByteCount() / 1048576.0) + " MB before compression");
+				System.out.println(String.format("%.3f", exp.getElapsedSeconds()) + " seconds, " + String.format("%.0f", exp.getRowsPerSecond()) + " rows/sec");
+				break;
+			case "delete":
+				if (table.isEmpty())
+				{
+					System.out.println("Please select a table to use with the 'Table' command.");
+					break;
+				}
+				
+				String qdt = "DESCRIBE " + table; // string needed for displaying correct information in error data
+				
+				try {
+					List<ColumnData> cols = describeTable(table);
+					
+					if (cols.isEmpty())
+					{
+						break;
+					}
+					
+					System.out.println("Deleting records from the table based upon a single condition:");
+					
+					ArrayList<String> colnames = new ArrayList<String>(); // list of columns
+					
+					for (ColumnData col : cols)
+					{
+						System.out.println("Column " + col.getIndex() + ": " + col.getName() + (col.getNullable()?" (not-nullable)":" (nullable)") + " of type " + col.getDataType());
+						colnames.add(col.getName());
+					}
+					
+					boolean validname = false;
+					String colname = ""; // name of the column to compare against
+					
+					while (validname == false)
+					{
+						System.out.print("Name of the column to compare against>");
+						
+						String name = sc.nextLine();
+						if (colnames.contains(name))
+						{
+							validname = true;
+							colname = name;
+						}
+						else
+						{
+							System.out.println("There is no column with this name.");
+						}
+					}
+				
+					// get the ColumnData for the specified column
+					int index = colnames.indexOf(colname);
+					ColumnData colm = cols.get(index);
+					
+					System.out.println("Type the value to compare.");
+					System.out.println("Table records that have this value in this column will be deleted.");
+					System.out.print("Value>");
+					
+					String wvalue = sc.nextLine();
+					
+					// formulate where condition
+					// the value is sent separately from the statement, so it doesn't need quotes around it
+					String where = colname + "=?";
+					
+					qdt = "DELETE FROM " + table + " WHERE " + where;
+					
+					// a value that matches a lot of rows is deleted a slice at a time, so the table isn't locked until they're all gone
+					if (deleteSlice > 0)
+					{
+						deleteInChunks(table, colm, deleteSlice, wvalue, null, sc);
+						break;
+					}
+					
+					// a value that can't be in the column can't match anything (and the server would compare some, like 'abc' with a number, as 0)
+					Object wparam = colm.read(wvalue);
+					if (wparam == ColumnData.INVALID)
+					{
+						System.out.println("The value '" + wvalue + "' is in an invalid format for this column. Nothing was deleted.");
+						break;
+					}
+					
+					// enter command into MySQL
+					int delch = makeUpdateCall("DELETE FROM " + table + " WHERE " + where, wparam);
+					
+					System.out.println(delch + " rows updated");
+					
+				} catch (SQLException e) {
+					errorOccurred(e, qdt);
+					//e.printStackTrace();
+				}
+				
+				break;
+			case "bulkdelete":
+				if (table.isEmpty())
+				{
+					System.out.println("Please select a table to use with the 'Table' command.");
+					break;
+				}
+				
+				File dfile = null;
+				if (!arg.isEmpty())
+				{
+					dfile = new File(arg);
+					if (!dfile.isFile())
+					{
+						System.out.println("The file '" + arg + "' could not be found.");
+						break;
+					}
+				}
+				
+				try {
+					List<ColumnData> cols = describeTable(table);
+					
+					if (cols.isEmpty())
+					{
+						break;
+					}
+					
+					for (ColumnData col : cols)
+					{
+						System.out.println("Column " + col.getIndex() + ": " + col.getName() + " (" + col.getDataType() + ")" + (col.isPrimaryKey() ? ", the primary key" : ""));
+					}
+					
+					ColumnData dcol = null;
+					while (dcol == null)
+					{
+						System.out.print("Name of the column to compare against>");
+						String name = sc.nextLine();
+						
+						for (ColumnData col : cols)
+						{
+							if (col.getName().equals(name))
+							{
+								dcol = col;
+							}
+						}
+						
+						if (dcol == null)
+						{
+							System.out.println("There is no column with this name.");
+						}
+					}
+					
+					deleteInChunks(table, dcol, batchSize, null, dfile, sc);
+					
+				} catch (SQLException e) {
+					errorOccurred(e, "DESCRIBE " + table);
+				}
+				
+				break;
+			case "sort":
+			case "filter":
+			case "groupby":
+				localCommand(com.toLowerCase(), arg, sc);
+				break;
+			case "begin":
+			case "commit":
+			case "rollback":
+				transactionCommand(com.toLowerCase());
+				break;
+			case "sql":
+				System.out.println("Direct SQL mode activated");
+				System.out.println("Each command will be sent straight to the SQL server.");
+				System.out.println("End a command with '&' to keep typing while it runs. Type 'queries' to see what's running, and 'cancel' to stop it.");
+				System.out.println("'Sort', 'Filter' and 'GroupBy' work on the rows of the last SELECT here, without sending it again.");
+				System.out.println("Type 'exit' to leave Direct SQL mode.");
+				
+				boolean dsm = true;
+				
+				if (runner == null)
+				{
+					runner = new QueryRunner(pool, schemas, metrics, slowLog, resultCache, workspace, System.out);
+					runner.setTransaction(transaction);
+				}
+				
+				while (dsm)
+				{
+					System.out.print("Command>");
+					String command = sc.nextLine().trim();
+					
+					if (command.toLowerCase().equals("exit"))
+					{
+						dsm = false;
+					}
+					else if (command.toLowerCase().equals("queries"))
+					{
+						List<QueryRunner.Query> qs = runner.getRunning();
+						
+						if (qs.isEmpty())
+						{
+							System.out.println("No commands are running.");
+						}
+						
+						for (QueryRunner.Query q : qs)
+						{
+							System.out.println("[" + q.getId() + "] " + String.format("%.1f", q.getElapsedSeconds()) + " s, " + q.getRows() + " rows: " + q.getSql());
+						}
+					}
+					else if (command.toLowerCase().equals("cancel"))
+					{
+						System.out.println(runner.cancelAll() + " commands cancelled");
+					}
+					else if (command.toLowerCase().startsWith("cancel "))
+					{
+						try
+						{
+							int id = Integer.parseInt(command.substring(7).trim());
+							
+							if (!runner.cancel(id))
+							{
+								System.out.println("Command " + id + " isn't running.");
+							}
+						}
+						catch (NumberFormatException e)
+						{
+							System.out.println("Type 'cancel' followed by the number of the command to stop, or just 'cancel' to stop all of them.");
+						}
+					}
+					else if (command.toLowerCase().matches("(begin|start\\s+transaction|commit|rollback)(\\s+work)?\\s*;?"))
+					{
+						// the transaction has to be the program's own, or its statements would each go over whichever connection was free
+						transactionCommand(command.toLowerCase().startsWith("start") ? "begin" : command.toLowerCase().split("[\\s;]")[0]);
+					}
+					else if (command.toLowerCase().matches("(sort|filter|groupby)(\\s.*)?"))
+					{
+						String[] parts = command.split("\\s+", 2);
+						localCommand(parts[0].toLowerCase(), parts.length == 2 ? parts[1].trim() : "", sc);
+					}
+					else if (!command.isEmpty())
+					{
+						// a command ending in '&' is left to run while the next one is typed, much like in a shell
+						boolean background = command.endsWith("&");
+						if (background)
+						{
+							command = command.substring(0, command.length() - 1).trim();
+						}
+						
+						Future<Long> result = runner.submit(command, fetchSize, queryTimeout, background);
+						
+						if (!background)
+						{
+							try
+							{
+								result.get();
+							}
+							catch (InterruptedException e)
+							{
+								Thread.currentThread().interrupt();
+							}
+							catch (ExecutionException e)
+							{
+								System.out.println("An error occurred while running the command: " + e.getCause());
+							}
+						}
+					}
+				}
+				
+				if (!runner.getRunning().isEmpty())
+				{
+					System.out.println(runner.getRunning().size() + " commands are still running. Enter Direct SQL mode again and type 'cancel' to stop them.");
+				}
+				
+				System.out.println("Leaving Direct SQL mode");
+				break;
+			default:
+				
+				System.out.println("Could not interpret command '" + com + "'.");
+				System.out.println("Use the 'Help' command to display a list of available commands.");
+				break;
+			}
+		}
+		
+	}
+	
+	/**
+	 * Show a table a page at a time, in the order of its primary key, going forwards and backwards as the user asks.
+	 * Each page is the same amount of work for the server, however far into the table it is.
+	 * @param table The table.
+	 * @param key The table's primary key column.
+	 * @param sc Where to read what the user types between pages.
+	 */
+	private void browse(String table, ColumnData key, Scanner sc)
+	{
+		KeysetPager pager = new KeysetPager(pool, table, key.getName(), pageSize);
+		pager.setMetrics(metrics);
+		String query = "SELECT * FROM " + table + " ORDER BY " + key.getName();
+		
+		try
+		{
+			ColumnarResult page = pager.first();
+			
+			while (true)
+			{
+				TableRenderer tr = new TableRenderer(System.out);
+				tr.start(page.getLabels(), page.getTypes());
+				String[] vals = new String[page.getColumnCount()];
+				for (int i = 0; i < page.getRowCount(); i++)
+				{
+					page.getRow(i, vals);
+					tr.addRow(vals);
+				}
+				tr.finish();
+				
+				// 'Sort', 'Filter' and 'GroupBy' work on the page being shown
+				workspace.setResult(query + " (page " + (pager.getPageNumber() + 1) + ")", page, schemas.get(table));
+				
+				if (page.getRowCount() == 0)
+				{
+					System.out.println("0 rows");
+					return;
+				}
+				
+				long firstRow = (long) pager.getPageNumber() * pageSize + 1;
+				System.out.println("Page " + (pager.getPageNumber() + 1) + ", rows " + firstRow + " to " + (firstRow + page.getRowCount() - 1) + (pager.hasNext() ? "" : ", the last page") + ".");
+				
+				ColumnarResult to = null;
+				while (to == null)
+				{
+					System.out.println(pager.hasNext() ? "Press 'Enter' for the next page, or type 'prev', 'first' or 'stop'." : "Type 'prev' or 'first', or press 'Enter' to stop.");
+					System.out.print("Page>");
+					String answer = sc.nextLine().trim().toLowerCase();
+					
+					if (answer.equals("stop") || (answer.isEmpty() && !pager.hasNext()))
+					{
+						return;
+					}
+					else if ((answer.isEmpty() || answer.equals("next")) && pager.hasNext())
+					{
+						to = pager.next();
+					}
+					else if (answer.equals("prev") && pager.hasPrevious())
+					{
+						to = pager.previous();
+					}
+					else if (answer.equals("first"))
+					{
+						to = pager.first();
+					}
+					else if (answer.equals("next") || answer.equals("prev"))
+					{
+						System.out.println("There's no " + (answer.equals("next") ? "next" : "previous") + " page.");
+					}
+				}
+				page = to;
+			}
+		}
+		catch (SQLException e)
+		{
+			errorOccurred(e, query);
+		}
+	}
+	
+	/**
+	 * Start reading a whole table over several connections at once, if the ScanThreads option is set
+	 * and the table is big enough and has a whole-number primary key to split it up by.
+	 * @param table The table.
+	 * @return The scan, already started, or null if the table should be read with a single query instead.
+	 */
+	private TableScanner startScan(String table)
+	{
+		if (scanThreads < 2)
+		{
+			return null;
+		}
+		
+		try
+		{
+			ColumnData key = TableScanner.getScanKey(describeTable(table));
+			if (key == null)
+			{
+				return null;
+			}
+			
+			TableScanner scan = new TableScanner(pool, table, key.getName(), scanThreads, scanOrdered, fetchSize);
+			scan.setMetrics(metrics);
+			scan.start();
+			
+			if (scan.getRangeCount() == 0)
+			{
+				scan.close();
+				return null;
+			}
+			return scan;
+		}
+		catch (SQLException e)
+		{
+			return null; // the single query will show the error, if there's still one
+		}
+	}
+	
+	/**
+	 * Delete rows a chunk at a time with a BulkDeleter, over the open transaction's connection if there is one, and show how many
+	 * were deleted and how fast. If there's an error, it's shown to the user, and the chunks deleted before it are kept.
+	 * @param table The table.
+	 * @param col The column whose values say which rows to delete.
+	 * @param chunkSize The most values in each IN list, or rows deleted by each slice.
+	 * @param match The one value to delete every row with, a slice at a time, or null to delete by a list of values instead.
+	 * @param file The file to read the list of values from, one per line, or null to have the user type them.
+	 * @param sc Where to read the values the user types.
+	 */
+	private void deleteInChunks(String table, ColumnData col, int chunkSize, String match, File file, Scanner sc)
+	{
+		String query = "DELETE FROM " + table + " WHERE " + col.getName() + (match != null ? "=? LIMIT " + chunkSize : " IN (...)"); // for errors
+		Connection conn = null;
+		boolean own = false; // whether conn is the transaction's
+		SQLException err = null;
+		BulkDeleter del = null;
+		
+		try
+		{
+			// inside a transaction, the chunks go over its connection, and are kept or undone along with everything else in it
+			conn = transaction.use();
+			own = (conn != null);
+			if (!own)
+			{
+				conn = pool.borrow();
+			}
+			
+			del = new BulkDeleter(conn, table, col, chunkSize, deletePauseMs);
+			del.setMetrics(metrics);
+			del.setProgress(System.out, 2000);
+			
+			if (match != null)
+			{
+				if (!del.deleteMatching(match))
+				{
+					System.out.println("The value '" + match + "' is in an invalid format for this column. Nothing was deleted.");
+				}
+			}
+			else if (file != null)
+			{
+				System.out.println("Deleting the records whose " + col.getName() + " is in " + file.getName() + ", " + chunkSize + " values at a time...");
+				
+				try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8")))
+				{
+					String line;
+					int number = 0;
+					while ((line = in.readLine()) != null)
+					{
+						number++;
+						
+						// only the first few bad values are shown, in case the whole file is in the wrong format
+						if (!line.isEmpty() && !del.addValue(line) && del.getValuesRejected() <= 10)
+						{
+							System.out.println("Line " + number + ": the value '" + line + "' is in an invalid format for column " + col.getName() + ". It was skipped.");
+						}
+					}
+				}
+				del.finish();
+			}
+			else
+			{
+				System.out.println("Type the values of " + col.getName() + " to delete the records of, one per line.");
+				System.out.println("Press 'Enter' on an empty line when you're done. They're deleted " + chunkSize + " at a time as you go.");
+				
+				while (true)
+				{
+					System.out.print("Value>");
+					String line = sc.nextLine();
+					
+					if (line.isEmpty())
+					{
+						break;
+					}
+					
+					if (!del.addValue(line))
+					{
+						System.out.println("The value '" + line + "' is in an invalid format for this column. It was skipped.");
+					}
+				}
+				del.finish();
+			}
+		}
+		catch (SQLException e)
+		{
+			err = e;
+			errorOccurred(e, query);
+			System.out.println("The records deleted before the error " + (own ? "are still part of the transaction." : "stay deleted."));
+		}
+		catch (IOException e)
+		{
+			System.out.println("The file could not be read: " + e.getMessage());
+			System.out.println("The records deleted before the error " + (own ? "are still part of the transaction." : "stay deleted."));
+		}
+		finally
+		{
+			if (del != null)
+			{
+				del.close();
+			}
+			
+			if (own && err != null)
+			{
+				transaction.failed(err);
+			}
+			else if (own)
+			{
+				transaction.done(query);
+			}
+			else
+			{
+				pool.release(conn);
+			}
+			resultCache.invalidate(table);
+		}
+		
+		if (del != null)
+		{
+			System.out.println(del.getRowsDeleted() + " rows deleted in " + del.getChunkCount() + (match != null ? " slices" : " chunks")
+					+ (del.getValuesRejected() > 0 ? ", " + del.getValuesRejected() + " values skipped" : ""));
+			System.out.println(String.format("%.3f", del.getElapsedSeconds()) + " seconds, " + String.format("%.0f", del.getRowsPerSecond()) + " rows/sec");
+		}
+	}
+	
+	/**
+	 * Run 'Begin', 'Commit' or 'Rollback'. If it can't be run, the reason is shown to the user.
+	 * @param com The command, in lower case.
+	 */
+	private void transactionCommand(String com)
+	{
+		try
+		{
+			switch (com)
+			{
+			case "begin":
+				transaction.begin();
+				groupCommitsBefore = transaction.getGroupCommitCount();
+				
+				System.out.print("A transaction has been started. Changes will only be kept once you 'Commit' them");
+				if (groupCommitStatements > 0 || groupCommitMs > 0)
+				{
+					System.out.print(", and are committed by themselves every "
+							+ (groupCommitStatements > 0 ? groupCommitStatements + " changes" : "")
+							+ (groupCommitStatements > 0 && groupCommitMs > 0 ? " or " : "")
+							+ (groupCommitMs > 0 ? groupCommitMs + " ms" : "") + (groupCommitStatements > 0 && groupCommitMs > 0 ? ", whichever comes first" : ""));
+				}
+				System.out.println(".");
+				break;
+			case "commit":
+				int committed = transaction.commit();
+				System.out.println(committed + " changes committed in " + String.format("%.3f", transaction.getLastCommitMillis()) + " ms.");
+				break;
+			case "rollback":
+				int undone = transaction.rollback();
+				System.out.println(undone + " changes rolled back." + (transaction.getGroupCommitCount() > groupCommitsBefore ? " The ones before the last group commit have been kept." : ""));
+				break;
+			}
+		}
+		catch (IllegalStateException e)
+		{
+			System.out.println(e.getMessage());
+		}
+		catch (SQLException e)
+		{
+			// a commit or rollback that failed has already been recorded, and the transaction ended
+			printError(e, com.toUpperCase());
+			if (com.equals("commit"))
+			{
+				System.out.println("The changes couldn't be committed, so they have been rolled back.");
+			}
+		}
+	}
+	
+	/**
+	 * Run 'Sort', 'Filter' or 'GroupBy' on the rows of the last result, and show what's left. If they can't be run, the reason is shown to the user.
+	 * @param com The command, in lower case.
+	 * @param arg What was typed after the command. If it's empty, the user is asked for it.
+	 * @param sc Where to read what the user types.
+	 */
+	private void localCommand(String com, String arg, Scanner sc)
+	{
+		try
+		{
+			if (arg.isEmpty())
+			{
+				StringBuilder labels = new StringBuilder();
+				for (String label : workspace.getLabels())
+				{
+					labels.append(labels.length() > 0 ? ", " : "").append(label);
+				}
+				System.out.println("Working on " + workspace.describe() + ".");
+				System.out.println("The columns are: " + labels);
+				
+				switch (com)
+				{
+				case "sort":
+					System.out.println("Type the columns to sort by, split up with commas. Follow a column with 'desc' to sort it from largest to smallest.");
+					System.out.print("Sort>");
+					break;
+				case "filter":
+					System.out.println("Type a column, a comparison (=, !=, <, <=, >, >=, like, not like, is null or is not null) and a value, such as: amt >= 10");
+					System.out.println("Type 'clear' to go back to all of the rows.");
+					System.out.print("Filter>");
+					break;
+				default:
+					System.out.println("Type the column to group by, then any number of COUNT, SUM, AVG, MIN or MAX and a column, such as: kind sum amt");
+					System.out.print("GroupBy>");
+					break;
+				}
+				
+				arg = sc.nextLine().trim();
+				if (arg.isEmpty())
+				{
+					return;
+				}
+			}
+			
+			long start = System.nanoTime();
+			
+			switch (com)
+			{
+			case "sort":
+				workspace.sort(arg);
+				break;
+			case "filter":
+				if (arg.equalsIgnoreCase("clear"))
+				{
+					workspace.clear();
+				}
+				else
+				{
+					workspace.filter(arg);
+				}
+				break;
+			default:
+				ResultOperators.Grouped groups = workspace.groupBy(arg);
+				long took = System.nanoTime() - start;
+				
+				TableRenderer tr = new TableRenderer(System.out);
+				tr.start(groups.getLabels(), groups.getTypes());
+				for (String[] row : groups.getRows())
+				{
+					tr.addRow(row);
+				}
+				tr.finish();
+				
+				System.out.println(groups.getRows().size() + " groups of " + workspace.describe() + " (" + String.format("%.3f", took / 1e9) + " s)");
+				return;
+			}
+			
+			long took = System.nanoTime() - start;
+			ResultWorkspace.Selection sel = workspace.getSelection();
+			showLocal(sel, sc);
+			System.out.println(workspace.describe() + " (" + String.format("%.3f", took / 1e9) + " s)");
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.out.println(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Show rows kept by the workspace, a page at a time like 'Display'.
+	 * @param sel The rows, in the order to show them.
+	 * @param sc Where to read what the user types between pages.
+	 */
+	private void showLocal(ResultWorkspace.Selection sel, Scanner sc)
+	{
+		ColumnarResult rows = sel.getRows();
+		int[] order = sel.getOrder();
+		
+		TableRenderer tr = new TableRenderer(System.out, pageSize > 0 ? Math.min(pageSize, TableRenderer.DEFAULT_SAMPLE) : TableRenderer.DEFAULT_SAMPLE, TableRenderer.DEFAULT_MAX_WIDTH);
+		tr.start(rows.getLabels(), rows.getTypes());
+		String[] vals = new String[rows.getColumnCount()];
+		
+		for (int shown = 0; shown < order.length; )
+		{
+			rows.getRow(order[shown], vals);
+			tr.addRow(vals);
+			shown++;
+			
+			if (pageSize > 0 && shown % pageSize == 0 && shown < order.length)
+			{
+				tr.flush();
+				System.out.println(shown + " rows shown. Press 'Enter' to show more, or type 'stop' to stop.");
+				System.out.print("More>");
+				
+				if (sc.nextLine().toLowerCase().equals("stop"))
+				{
+					break;
+				}
+			}
+		}
+		
+		tr.finish();
+	}
+	
+	/**
+	 * Send a SQL query statement to the MySQL server and return the results as a ResultSet object.
+	 * If an error is encountered, the program will automatically handle it.
+	 * The connection used stays borrowed from the pool until the ResultSet is passed to closeCall.
+	 * @param command The query statement to be sent, with '?' in place of each parameter.
+	 * @param params The values for each '?' in the statement, in order.
+	 * @return The ResultSet that represents the data returned from the query statement.
+	 */
+	private ResultSet makeCall(String command, Object... params)
+	{
+		return makeStreamingCall(command, 0, params);
+	}
+	
+	/**
+	 * Send a SQL query statement to the MySQL server, and read through the results a few rows at a time.
+	 * The server only sends the next rows once the ones before them have been read, so the whole result is never held in memory at once.
+	 * If an error is encountered, the program will automatically handle it.
+	 * The connection used stays borrowed from the pool until the ResultSet is passed to closeCall.
+	 * @param command The query statement to be sent, with '?' in place of each parameter.
+	 * @param fetchSize The number of rows to get from the server at a time. 0 to get all of them at once.
+	 * @param params The values for each '?' in the statement, in order.
+	 * @return The ResultSet that represents the data returned from the query statement.
+	 */
+	private ResultSet makeStreamingCall(String command, int fetchSize, Object... params)
+	{
+		// if the server dropped the connection we were given, try once more with a fresh one
+		for (int attempt = 0; attempt < 2; attempt++)
+		{
+			Connection conn = null;
+			boolean own = false; // whether conn is the transaction's
+			try
+			{
+				// while a transaction is open, the query goes over its connection, so it sees the changes that haven't been committed yet
+				conn = transaction.use();
+				own = (conn != null);
+				if (!own)
+				{
+					conn = pool.borrow();
+				}
+				
+				// Get the prepared statement (the server only parses it the first time) and return the resulting data from the query
+				long start = System.nanoTime();
+				PreparedStatement stmt = pool.getStatementCache(conn).prepare(command);
+				setParameters(stmt, params);
+				stmt.setFetchSize(fetchSize); // the statement is reused, so this has to be set every time
+				ResultSet rs = stmt.executeQuery();
+				
+				long took = System.nanoTime() - start;
+				metrics.recordTime(QueryMetrics.Kind.of(command), took);
+				
+				// the connection is kept here, as the ResultSet can't say which one it was once the connection has been closed
+				openCalls.put(rs, new OpenCall(conn, own, command, params, took, slowLog.isSlow(took)));
+				return rs;
+			}
+			catch (SQLException e)
+			{
+				if (own)
+				{
+					errorOccurred(e, command);
+					transaction.failed(e);
+					return null;
+				}
+				
+			    if (conn != null && isConnectionError(e))
+			    {
+			    	pool.invalidate(conn);
+			    	
+			    	if (attempt == 0)
+			    	{
+			    		continue;
+			    	}
+			    }
+			    else
+			    {
+			    	pool.release(conn);
+			    }
+			    
+				errorOccurred(e, command);
+				return null;
+			}
+		}
+		
+		return null;
+		
+	}
+	
+	/**
+	 * Send a SQL update statement to the MySQL server and return the results as a ResultSet object.
+	 * If an error is encountered, the program will automatically handle it.
+	 * @param command The query statement to be sent, with '?' in place of each parameter.
+	 * @param params The values for each '?' in the statement, in order.
+	 * @return The row count as a result of this statement. 0 if row count is not relevant to the statement.
+	 */
+	private int makeUpdateCall(String command, Object... params)
+	{
+		Connection conn = null;
+		boolean own = false; // whether conn is the transaction's
+		try
+		{
+			// while a transaction is open, the change goes over its connection, and is only kept once it's committed
+			conn = transaction.use();
+			own = (conn != null);
+			if (!own)
+			{
+				conn = pool.borrow();
+			}
+			
+			// Get the prepared statement (the server only parses it the first time) and send it
+			long start = System.nanoTime();
+			PreparedStatement stmt = pool.getStatementCache(conn).prepare(command);
+			setParameters(stmt, params);
+			int res = stmt.executeUpdate();
+			
+			long took = System.nanoTime() - start;
+			QueryMetrics.Kind kind = QueryMetrics.Kind.of(command);
+			metrics.recordTime(kind, took);
+			metrics.recordRowsChanged(kind, res);
+			slowLog.log(command, params, took, res);
+			
+			if (own)
+			{
+				transaction.done(command);
+			}
+			else
+			{
+				pool.release(conn);
+			}
+			
+			return res;
+		}
+		catch (SQLException e)
+		{
+			errorOccurred(e, command);
+			
+		    // an update isn't sent again after the connection drops, as we can't know if it was applied
+			if (own)
+			{
+				transaction.failed(e);
+			}
+			else if (conn != null && isConnectionError(e))
+		    {
+		    	pool.invalidate(conn);
+		    }
+		    else
+		    {
+		    	pool.release(conn);
+		    }
+		}
+		finally
+		{
+			// even a statement that failed may have changed some rows first
+			resultCache.invalidateFor(command);
+		}
+		
+		return 0;
+		
+	}
+	
+	/**
+	 * Close the ResultSet returned by makeCall, and give its connection back to the pool.
+	 * The statement itself is left open in the connection's statement cache.
+	 * @param rs The ResultSet to close. Can be null.
+	 */
+	private void closeCall(ResultSet rs)
+	{
+		closeCall(rs, -1);
+	}
+	
+	/**
+	 * Close the ResultSet returned by makeCall, and give its connection back to the pool.
+	 * If the query was slow, it's logged now that the number of rows read is known.
+	 * @param rs The ResultSet to close. Can be null.
+	 * @param rows The number of rows that were read from it, or -1 if they weren't counted.
+	 */
+	private void closeCall(ResultSet rs, long rows)
+	{
+		if (rs == null)
+		{
+			return;
+		}
+		
+		OpenCall call = openCalls.remove(rs);
+		if (call == null)
+		{
+			return; // already closed
+		}
+		
+		if (call.slow)
+		{
+			slowLog.log(call.sql, call.params, call.nanos, rows);
+		}
+		
+		SQLException error = null;
+		try
+		{
+			rs.close();
+		}
+		catch (SQLException e)
+		{
+			error = e;
+		}
+		
+		if (call.own)
+		{
+			if (error != null)
+			{
+				transaction.failed(error); // ends the transaction if the connection was lost
+			}
+			else
+			{
+				transaction.done(null);
+			}
+		}
+		else if (error != null && isConnectionError(error))
+		{
+			pool.invalidate(call.conn);
+		}
+		else
+		{
+			pool.release(call.conn); // other errors are only about this ResultSet, and the connection is checked again before it's next borrowed
+		}
+	}
+	
+	/**
+	 * Print the current value of each option that can be changed with the 'Option' command.
+	 */
+	private void printOptions()
+	{
+		System.out.println("FetchSize = " + fetchSize + ": rows read from the server at a time by 'Display', 'Export' and Direct SQL mode.");
+		System.out.println("DisplayLimit = " + displayLimit + ": most rows 'Display' will show, 0 for no limit.");
+		System.out.println("PageSize = " + pageSize + ": rows 'Display' shows before asking to continue, 0 to show them all at once.");
+		System.out.println("SchemaTTL = " + (schemas.getTtl() / 1000) + ": seconds a table's columns are remembered before being looked up again, 0 to always look them up.");
+		System.out.println("BatchSize = " + batchSize + ": rows 'BulkAdd' and 'Import' send to the server at a time, and values 'BulkDelete' deletes at a time.");
+		System.out.println("BulkTransaction = " + (bulkTransaction ? 1 : 0) + ": 1 to have 'BulkAdd' add all of its rows in one transaction, 0 to commit each batch on its own.");
+		System.out.println("ImportThreads = " + importThreads + ": connections 'Import' sends rows over at the same time (at most " + pool.getMaxSize() + ").");
+		System.out.println("ImportLoadData = " + (importLoadData ? 1 : 0) + ": 1 to have 'Import' send rows with LOAD DATA LOCAL INFILE, which is much faster, 0 to send batches of INSERTs.");
+		System.out.println("QueryTimeout = " + queryTimeout + ": seconds a command in Direct SQL mode can run before it's stopped, 0 for no limit.");
+		System.out.println("ResultCacheMB = " + resultCacheMb + ": megabytes of rows kept from recent SELECTs, to show them again without asking the server, 0 to keep none.");
+		System.out.println("ResultCacheTTL = " + resultCacheTtl + ": seconds the rows of a SELECT are kept, 0 to keep them until their table changes.");
+		System.out.println("ScanThreads = " + scanThreads + ": connections 'Display' and 'Export' read a big table over at the same time, by ranges of its primary key (at most " + pool.getMaxSize() + "), 0 or 1 to use one.");
+		System.out.println("ScanOrdered = " + (scanOrdered ? 1 : 0) + ": 1 to keep the rows of a table read over several connections in the order of its primary key, 0 to take each range as it arrives.");
+		System.out.println("DeleteSlice = " + deleteSlice + ": rows 'Delete' removes at a time, each slice committed on its own, 0 to remove them all with one statement.");
+		System.out.println("DeletePauseMs = " + deletePauseMs + ": milliseconds 'Delete' and 'BulkDelete' wait between slices or chunks, to let other writers in.");
+		System.out.println("GroupCommitStatements = " + groupCommitStatements + ": changes a transaction started with 'Begin' commits by itself after, and carries on, 0 to only commit on 'Commit'.");
+		System.out.println("GroupCommitMs = " + groupCommitMs + ": milliseconds after its first uncommitted change a transaction commits by itself, 0 to only commit on 'Commit'.");
+		System.out.println("LocalResultMB = " + localResultMb + ": most megabytes of rows kept from the last result for 'Sort', 'Filter' and 'GroupBy', 0 to keep none.");
+		System.out.println("SlowQueryMs = " + slowQueryMs + ": milliseconds a statement can take before it's written to " + slowLogFile.getName() + ", 0 to not write any.");
+	}
+	
+	/**
+	 * Change one of the options shown by printOptions. If the option can't be changed, the reason is shown to the user.
+	 * @param name The name of the option, in lower case.
+	 * @param value The new value, as the user typed it.
+	 * @return True if the option was changed.
+	 */
+	private boolean setOption(String name, String value)
+	{
+		int num;
+		try
+		{
+			num = Integer.parseInt(value);
+		}
+		catch (NumberFormatException e)
+		{
+			System.out.println("The value '" + value + "' is not a whole number.");
+			return false;
+		}
+		
+		if (num < 0)
+		{
+			System.out.println("The value can't be negative.");
+			return false;
+		}
+		
+		switch (name)
+		{
+		case "fetchsize":
+			fetchSize = num;
+			return true;
+		case "displaylimit":
+			displayLimit = num;
+			return true;
+		case "pagesize":
+			pageSize = num;
+			return true;
+		case "schemattl":
+			schemas.setTtl(num * 1000L);
+			return true;
+		case "batchsize":
+			if (num == 0)
+			{
+				System.out.println("The batch size must be at least 1.");
+				return false;
+			}
+			batchSize = num;
+			return true;
+		case "bulktransaction":
+			bulkTransaction = (num != 0);
+			return true;
+		case "importthreads":
+			if (num == 0 || num > pool.getMaxSize())
+			{
+				System.out.println("The number of connections must be between 1 and " + pool.getMaxSize() + ".");
+				return false;
+			}
+			importThreads = num;
+			return true;
+		case "importloaddata":
+			importLoadData = (num != 0);
+			return true;
+		case "querytimeout":
+			queryTimeout = num;
+			return true;
+		case "resultcachemb":
+			resultCacheMb = num;
+			resultCache.setMaxBytes(num * 1024L * 1024L);
+			return true;
+		case "resultcachettl":
+			resultCacheTtl = num;
+			resultCache.setTtl(num * 1000L);
+			return true;
+		case "scanthreads":
+			if (num > pool.getMaxSize())
+			{
+				System.out.println("The number of connections can't be more than " + pool.getMaxSize() + ".");
+				return false;
+			}
+			scanThreads = num;
+			return true;
+		case "scanordered":
+			scanOrdered = (num != 0);
+			return true;
+		case "deleteslice":
+			deleteSlice = num;
+			return true;
+		case "deletepausems":
+			deletePauseMs = num;
+			return true;
+		case "groupcommitstatements":
+			groupCommitStatements = num;
+			transaction.setGroupCommit(groupCommitStatements, groupCommitMs);
+			return true;
+		case "groupcommitms":
+			groupCommitMs = num;
+			transaction.setGroupCommit(groupCommitStatements, groupCommitMs);
+			return true;
+		case "localresultmb":
+			localResultMb = num;
+			workspace.setMaxBytes(num * 1024L * 1024L);
+			return true;
+		case "slowqueryms":
+			slowQueryMs = num;
+			slowLog.setThreshold(num);
+			return true;
+		default:
+			System.out.println("There is no option with this name.");
+			return false;
+		}
+	}
+	
+	private void setParameters(PreparedStatement stmt, Object[] params) throws SQLException
+	{
+		for (int i = 0; i < params.length; i++)
+		{
+			stmt.setObject(i + 1, params[i]);
+		}
+	}
+	
+	/**
+	 * Get the columns of a table from the schema cache, or by running "DESCRIBE" on it if it isn't there.
+	 * @param table The name of the table.
+	 * @return A list that can't be changed, with a ColumnData object for each column.
+	 * @throws SQLException If there is an issue reading the data returned from the server.
+	 */
+	private List<ColumnData> describeTable(String table) throws SQLException
+	{
+		List<ColumnData> cached = schemas.get(table);
+		
+		if (cached != null)
+		{
+			return cached;
+		}
+		
+		ResultSet rs = makeCall("DESCRIBE " + table);
+		
+		if (rs == null)
+		{
+			// The error should've been shown to the user
+			// in the makeCall function.
+			return new ArrayList<ColumnData>();
+		}
+		
+		try
+		{
+			return schemas.put(table, ColumnData.buildColumnData(rs));
+		}
+		finally
+		{
+			closeCall(rs);
+		}
+	}
+	
+	/**
+	 * Put the columns of every table in the database into the schema cache, using one query.
+	 */
+	private void prefetchSchema()
+	{
+		ResultSet rs = makeCall(SchemaCache.PREFETCH_QUERY);
+		
+		if (rs == null)
+		{
+			// The error should've been shown to the user
+			// in the makeCall function.
+			return;
+		}
+		
+		try
+		{
+			schemas.putAll(ColumnData.buildSchemaData(rs));
+		}
+		catch (SQLException e)
+		{
+			errorOccurred(e, SchemaCache.PREFETCH_QUERY);
+		}
+		finally
+		{
+			closeCall(rs);
+		}
+	}
+	
+	/**
+	 * Gets if this error means the connection to the server itself has failed (SQL State class 08).
+	 */
+	private boolean isConnectionError(SQLException e)
+	{
+		return e.getSQLState() != null && e.getSQLState().startsWith("08");
+	}
+	
+	/**
+	 * Count an error in the metrics, and show it to the user.
+	 * @param e The error.
+	 * @param query The statement that was being sent.
+	 */
+	private void errorOccurred(SQLException e, String query)
+	{
+		metrics.recordError(QueryMetrics.Kind.of(query), e);
+		printError(e, query);
+	}
+	
+	/**
+	 * Show the user an error the server sent back.
+	 * @param e The error.
+	 * @param query The statement that was being sent.
+	 */
+	static void printError(SQLException e, String query)
+	{
+		System.out.println("An error occurred while sending a query:");
+		System.out.println("Query: " + query);
+		System.out.println("SQL State: " + e.getSQLState());
+		System.out.println("Error message: " + e.getMessage());
+		System.out.println("Error code: " + e.getErrorCode());
+		System.out.println();
+	}
+	
+}
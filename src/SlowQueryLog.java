@@ -0,0 +1,373 @@
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes statements that took longer than a set time to a log file, along with how long they took, how many rows they read or changed,
+ * and what "EXPLAIN" says the server did to run them (such as reading the whole table because no index could be used).
+ * The statements are only put on a queue by the thread that ran them; a thread of its own runs "EXPLAIN" on a separate connection
+ * and writes the file, so nothing waits on the log. If the queue is full, the statement isn't logged.
+ * Once the file gets too big, it's renamed to end in ".1" (and any older ones moved along to ".2" and ".3") and a new one is started.
+ */
+public class SlowQueryLog
+{
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// how many statements can be waiting to be logged before any more are dropped
+	private static final int QUEUE_SIZE = 256;
+
+	// how big the file can get before it's rolled over, and how many old files are kept
+	private static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
+	private static final int OLD_FILES = 3;
+
+	// the longest close() waits for the statements still on the queue to be logged
+	private static final long CLOSE_WAIT = 5000;
+
+	private final ConnectionPool pool;
+	private final File file;
+	private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<Entry>(QUEUE_SIZE);
+
+	private volatile long threshold; // in milliseconds, 0 for none
+	private Thread writer = null; // started the first time something is logged
+
+	private final AtomicLong logged = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	private Writer out = null;
+	private long fileSize = 0;
+
+	/**
+	 * A statement waiting to be logged.
+	 */
+	private static class Entry
+	{
+		final String sql;
+		final Object[] params;
+		final long nanos;
+		final long rows;
+		final long when = System.currentTimeMillis();
+
+		Entry(String sql, Object[] params, long nanos, long rows)
+		{
+			this.sql = sql;
+			this.params = params;
+			this.nanos = nanos;
+			this.rows = rows;
+		}
+	}
+
+	// put on the queue to tell the writer to stop
+	private static final Entry STOP = new Entry("", new Object[0], 0, 0);
+
+	/**
+	 * Create a log.
+	 * @param pool The pool to borrow a connection from to run "EXPLAIN". It's never the connection the slow statement ran on.
+	 * @param file The file to write to. It's added to if it's already there.
+	 * @param threshold Statements that take at least this many milliseconds are logged. 0 to not log any.
+	 */
+	public SlowQueryLog(ConnectionPool pool, File file, long threshold)
+	{
+		this.pool = pool;
+		this.file = file;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Set how long a statement can take before it's logged.
+	 * @param millis The time in milliseconds. 0 to not log any.
+	 */
+	public void setThreshold(long millis)
+	{
+		threshold = millis;
+	}
+
+	/**
+	 * Get how long a statement can take before it's logged, in milliseconds. 0 if none are logged.
+	 */
+	public long getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Get the file statements are logged to.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Get the number of statements written to the file.
+	 */
+	public long getLoggedCount() {
+		return logged.get();
+	}
+
+	/**
+	 * Get the number of slow statements that weren't logged because too many were already waiting.
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Gets if a statement that took this long would be logged.
+	 * @param nanos How long the statement took, in nanoseconds.
+	 */
+	public boolean isSlow(long nanos)
+	{
+		long limit = threshold;
+		return limit > 0 && nanos >= limit * 1000000;
+	}
+
+	/**
+	 * Log a statement if it was slow. This never waits for anything.
+	 * @param sql The statement, with '?' in place of each parameter.
+	 * @param params The values for each '?', in order, so "EXPLAIN" can be run with the same ones. Can be null if there are none.
+	 * @param nanos How long the statement took, in nanoseconds.
+	 * @param rows The rows it read or changed. -1 if that isn't known.
+	 */
+	public void log(String sql, Object[] params, long nanos, long rows)
+	{
+		if (!isSlow(nanos))
+		{
+			return;
+		}
+
+		startWriter();
+
+		if (!queue.offer(new Entry(sql, params == null ? new Object[0] : params.clone(), nanos, rows)))
+		{
+			dropped.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Log the statements still waiting (giving up after a few seconds), then stop the thread and close the file.
+	 */
+	public void close()
+	{
+		Thread t;
+		synchronized (this)
+		{
+			t = writer;
+			writer = null;
+		}
+
+		if (t == null)
+		{
+			return;
+		}
+
+		try
+		{
+			if (queue.offer(STOP, CLOSE_WAIT, TimeUnit.MILLISECONDS))
+			{
+				t.join(CLOSE_WAIT);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		t.interrupt(); // if it's still going, it's given up on
+	}
+
+	private synchronized void startWriter()
+	{
+		if (writer != null)
+		{
+			return;
+		}
+
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run()
+			{
+				writeEntries();
+			}
+		}, "SlowQueryLog-writer");
+		writer.setDaemon(true); // don't keep the program open just for this
+		writer.start();
+	}
+
+	private void writeEntries()
+	{
+		try
+		{
+			while (true)
+			{
+				Entry e = queue.take();
+
+				if (e == STOP)
+				{
+					break;
+				}
+
+				write(e);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// stopping
+		}
+		finally
+		{
+			closeFile();
+		}
+	}
+
+	private void write(Entry e)
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("# Time: ").append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(e.when)));
+		sb.append("  Duration: ").append(String.format("%.3f", e.nanos / 1e6)).append(" ms");
+		sb.append("  Rows: ").append(e.rows < 0 ? "unknown" : Long.toString(e.rows)).append('\n');
+		sb.append(e.sql.trim()).append(";\n");
+
+		if (e.params.length > 0)
+		{
+			sb.append("# Parameters: ").append(Arrays.toString(e.params)).append('\n');
+		}
+
+		sb.append(explain(e));
+		sb.append('\n');
+
+		try
+		{
+			if (out == null || fileSize >= MAX_FILE_SIZE)
+			{
+				rollOver();
+			}
+
+			String text = sb.toString();
+			out.write(text);
+			out.flush(); // so the entry can be read straight away
+			fileSize += text.getBytes(UTF8).length;
+			logged.incrementAndGet();
+		}
+		catch (IOException ex)
+		{
+			// there's nowhere to report this without getting in the user's way, so the entry is counted as dropped
+			dropped.incrementAndGet();
+			closeFile();
+		}
+	}
+
+	/**
+	 * Run "EXPLAIN" on a statement, and lay out what it returns as a table.
+	 */
+	private String explain(Entry e)
+	{
+		// only these can be explained; for an INSERT, only if it takes its rows from a SELECT
+		QueryMetrics.Kind kind = QueryMetrics.Kind.of(e.sql);
+		boolean canExplain = kind == QueryMetrics.Kind.SELECT || kind == QueryMetrics.Kind.UPDATE
+				|| (kind == QueryMetrics.Kind.DELETE && !e.sql.trim().toUpperCase().startsWith("TRUNCATE"))
+				|| (kind == QueryMetrics.Kind.INSERT && e.sql.toUpperCase().contains("SELECT"));
+
+		if (!canExplain)
+		{
+			return "# EXPLAIN isn't available for this kind of statement.\n";
+		}
+
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		try
+		{
+			conn = pool.borrow();
+			stmt = conn.prepareStatement("EXPLAIN " + e.sql); // not through the statement cache, as it won't be used again
+
+			for (int i = 0; i < e.params.length; i++)
+			{
+				stmt.setObject(i + 1, e.params[i]);
+			}
+
+			ResultSet rs = stmt.executeQuery();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			PrintStream ps = new PrintStream(bytes, false, "UTF-8");
+
+			// wide enough that the "Extra" column (such as "Using where; Using filesort") isn't cut short
+			TableRenderer tr = new TableRenderer(ps, TableRenderer.DEFAULT_SAMPLE, 200);
+			tr.start(rs.getMetaData());
+			while (rs.next())
+			{
+				tr.addRow(rs);
+			}
+			tr.finish();
+			rs.close();
+
+			ps.flush();
+			return bytes.toString("UTF-8");
+		}
+		catch (SQLException ex)
+		{
+			return "# EXPLAIN failed: " + ex.getMessage() + "\n";
+		}
+		catch (UnsupportedEncodingException ex)
+		{
+			return "# EXPLAIN failed: " + ex.getMessage() + "\n"; // can't happen, UTF-8 is always there
+		}
+		finally
+		{
+			if (stmt != null)
+			{
+				try { stmt.close(); } catch (SQLException ex) { } // ignore
+			}
+			pool.release(conn);
+		}
+	}
+
+	/**
+	 * Move the current file (and the older ones) along, and start a new one. The first time, the file is just opened to be added to.
+	 */
+	private void rollOver() throws IOException
+	{
+		if (out != null)
+		{
+			closeFile();
+
+			new File(file.getPath() + "." + OLD_FILES).delete();
+			for (int i = OLD_FILES - 1; i >= 1; i--)
+			{
+				new File(file.getPath() + "." + i).renameTo(new File(file.getPath() + "." + (i + 1)));
+			}
+			file.renameTo(new File(file.getPath() + ".1"));
+		}
+
+		fileSize = file.length(); // 0 if it isn't there
+		out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), UTF8));
+	}
+
+	private void closeFile()
+	{
+		if (out != null)
+		{
+			try
+			{
+				out.close();
+			}
+			catch (IOException e) { } // ignore, there's nothing else to write
+			out = null;
+		}
+	}
+
+}
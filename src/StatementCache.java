@@ -0,0 +1,120 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recently used PreparedStatements for one connection, keyed by their SQL text,
+ * so the same statement doesn't need to be prepared (and parsed by the server) again each time it is sent.
+ * Like the connection it belongs to, a StatementCache must only be used by one thread at a time.
+ */
+public class StatementCache
+{
+
+	private final Connection conn;
+	private final int capacity;
+	private final LinkedHashMap<String, PreparedStatement> statements;
+
+	// only written by the thread that has the connection borrowed, but can be read by anyone
+	private volatile long hits = 0;
+	private volatile long misses = 0;
+	private volatile long evictions = 0;
+
+	/**
+	 * Create an empty cache.
+	 * @param conn The connection the statements are prepared on.
+	 * @param capacity The most statements to keep. When another is added, the least recently used one is closed.
+	 */
+	public StatementCache(Connection conn, int capacity)
+	{
+		this.conn = conn;
+		this.capacity = capacity;
+
+		// an access-ordered LinkedHashMap keeps the least recently used statement at the front
+		this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest)
+			{
+				if (size() > StatementCache.this.capacity)
+				{
+					evictions++;
+					closeQuietly(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Get a PreparedStatement for this SQL text, preparing it only if it isn't in the cache already.
+	 * The statement belongs to the cache, so don't close it. Its parameters will still hold the values from the last time it was used.
+	 * @param sql The SQL text of the statement, with '?' in place of each value.
+	 * @return The prepared statement.
+	 * @throws SQLException If the statement could not be prepared.
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException
+	{
+		PreparedStatement stmt = statements.get(sql);
+
+		if (stmt != null && !stmt.isClosed())
+		{
+			hits++;
+			return stmt;
+		}
+
+		misses++;
+		stmt = conn.prepareStatement(sql);
+		statements.put(sql, stmt);
+		return stmt;
+	}
+
+	/**
+	 * Close every statement in the cache.
+	 */
+	public void close()
+	{
+		for (PreparedStatement stmt : statements.values())
+		{
+			closeQuietly(stmt);
+		}
+		statements.clear();
+	}
+
+	/**
+	 * Get the number of statements currently in the cache.
+	 */
+	public int size() {
+		return statements.size();
+	}
+
+	/**
+	 * Get the number of times a statement was found in the cache.
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of times a statement had to be prepared because it wasn't in the cache.
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Get the number of statements closed to make room for newer ones.
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	private static void closeQuietly(PreparedStatement stmt)
+	{
+		try { stmt.close(); } catch (SQLException e) { } // ignore
+	}
+
+}
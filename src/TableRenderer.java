@@ -0,0 +1,373 @@
+import java.io.PrintStream;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+
+/**
+ * Shows the rows of a ResultSet as a table, with a column for each column of the result:
+ * <pre>
+ * +----+-------+
+ * | id | name  |
+ * +----+-------+
+ * |  1 | Bob   |
+ * +----+-------+
+ * </pre>
+ * The width of each column is worked out from the first few rows, which are held back until there are enough of them (or flush is called).
+ * After that, each row is added to a buffer as it's read, and the buffer is only written out once it's big enough,
+ * rather than sending every value to the console on its own.
+ * Text that doesn't fit in its column is cut short and ends with "...". Numbers, dates and times are never cut, so one that's wider
+ * than the rows before it pushes the rest of its row over instead.
+ */
+public class TableRenderer
+{
+
+	/**
+	 * The number of rows looked at to work out the column widths, if no other number is given.
+	 */
+	public static final int DEFAULT_SAMPLE = 100;
+
+	/**
+	 * The widest a column can be, if no other width is given.
+	 */
+	public static final int DEFAULT_MAX_WIDTH = 50;
+
+	// characters gathered before the buffer is written out
+	private static final int BLOCK_SIZE = 32 * 1024;
+
+	private static final String NULL = "NULL";
+
+	private final PrintStream out;
+	private final int sampleRows;
+	private final int maxWidth;
+	private final StringBuilder sb = new StringBuilder(BLOCK_SIZE + 1024);
+
+	private int cols = 0;
+	private String[] names;
+	private boolean[] right; // numbers are lined up on the right, like the mysql client does
+	private boolean[] bits; // BIT values are shown in binary, the same way they're entered
+	private boolean[] cuttable; // whether values too wide for the column can be cut short
+	private int[] widths = null; // null until the sample has been taken
+	private ArrayList<String[]> sample = new ArrayList<String[]>();
+	private String border;
+
+	private long rows = 0;
+
+	/**
+	 * Create a renderer that looks at the first 100 rows and keeps columns to 50 characters.
+	 * @param out Where to show the table, such as System.out.
+	 */
+	public TableRenderer(PrintStream out)
+	{
+		this(out, DEFAULT_SAMPLE, DEFAULT_MAX_WIDTH);
+	}
+
+	/**
+	 * Create a renderer.
+	 * @param out Where to show the table, such as System.out.
+	 * @param sampleRows The number of rows to look at to work out the column widths. Nothing is shown until this many rows have been added, or flush is called.
+	 * @param maxWidth The widest a column can be.
+	 */
+	public TableRenderer(PrintStream out, int sampleRows, int maxWidth)
+	{
+		this.out = out;
+		this.sampleRows = Math.max(1, sampleRows);
+		this.maxWidth = Math.max(4, maxWidth); // room for at least one character and "..."
+	}
+
+	/**
+	 * Get ready to show a new result. This must be called before its rows are added.
+	 * @param md The columns of the result.
+	 * @throws SQLException If the column names couldn't be read.
+	 */
+	public void start(ResultSetMetaData md) throws SQLException
+	{
+		String[] labels = new String[md.getColumnCount()];
+		int[] types = new int[labels.length];
+
+		for (int i = 0; i < labels.length; i++)
+		{
+			labels[i] = md.getColumnLabel(i + 1);
+			types[i] = md.getColumnType(i + 1);
+		}
+
+		start(labels, types);
+	}
+
+	/**
+	 * Get ready to show a new result whose rows don't come from a ResultSet, such as one kept in a ResultCache.
+	 * @param labels The name of each column.
+	 * @param sqlTypes The type of each column, from java.sql.Types.
+	 */
+	public void start(String[] labels, int[] sqlTypes)
+	{
+		cols = labels.length;
+		names = labels.clone();
+		right = new boolean[cols];
+		bits = new boolean[cols];
+		cuttable = new boolean[cols];
+
+		for (int i = 0; i < cols; i++)
+		{
+			int type = sqlTypes[i];
+			right[i] = isNumber(type);
+			bits[i] = (type == Types.BIT);
+			cuttable[i] = !(right[i] || bits[i] || type == Types.DATE || type == Types.TIME || type == Types.TIMESTAMP);
+		}
+
+		widths = null;
+		sample.clear();
+		rows = 0;
+	}
+
+	/**
+	 * Add the row the ResultSet is on to the table.
+	 * @param rs The result, already moved onto the row with next().
+	 * @throws SQLException If the values couldn't be read.
+	 */
+	public void addRow(ResultSet rs) throws SQLException
+	{
+		rows++;
+
+		if (widths == null)
+		{
+			String[] vals = new String[cols];
+			for (int i = 0; i < cols; i++)
+			{
+				vals[i] = getValue(rs, i);
+			}
+			addSample(vals);
+			return;
+		}
+
+		sb.append('|');
+		for (int i = 0; i < cols; i++)
+		{
+			appendCell(getValue(rs, i), widths[i], right[i], cuttable[i]);
+		}
+		sb.append('\n');
+
+		if (sb.length() >= BLOCK_SIZE)
+		{
+			writeOut();
+		}
+	}
+
+	/**
+	 * Add a row to the table.
+	 * @param vals The values of the row as they're to be shown, with BIT values already in binary. null for a NULL value. The array can be reused for the next row.
+	 */
+	public void addRow(String[] vals)
+	{
+		rows++;
+
+		if (widths == null)
+		{
+			addSample(vals.clone());
+			return;
+		}
+
+		sb.append('|');
+		for (int i = 0; i < cols; i++)
+		{
+			appendCell(vals[i], widths[i], right[i], cuttable[i]);
+		}
+		sb.append('\n');
+
+		if (sb.length() >= BLOCK_SIZE)
+		{
+			writeOut();
+		}
+	}
+
+	/**
+	 * Show every row added so far. If the column widths haven't been worked out yet, they're worked out from the rows there are.
+	 */
+	public void flush()
+	{
+		if (widths == null)
+		{
+			layOut();
+		}
+
+		writeOut();
+	}
+
+	/**
+	 * Show the rest of the table, with a line under it. If no rows were added, only the column names are shown.
+	 */
+	public void finish()
+	{
+		if (widths == null)
+		{
+			layOut();
+		}
+
+		sb.append(border).append('\n');
+		writeOut();
+	}
+
+	/**
+	 * Get the number of rows added since start was called.
+	 */
+	public long getRowCount() {
+		return rows;
+	}
+
+	private void addSample(String[] vals)
+	{
+		sample.add(vals);
+
+		if (sample.size() >= sampleRows)
+		{
+			layOut();
+		}
+	}
+
+	/**
+	 * Work out the column widths from the sample, and put the column names and the sample rows into the buffer.
+	 */
+	private void layOut()
+	{
+		widths = new int[cols];
+		for (int i = 0; i < cols; i++)
+		{
+			widths[i] = Math.min(names[i].length(), maxWidth);
+		}
+
+		for (String[] vals : sample)
+		{
+			for (int i = 0; i < cols; i++)
+			{
+				int len = (vals[i] == null) ? NULL.length() : vals[i].length();
+				if (len > widths[i])
+				{
+					widths[i] = Math.min(len, maxWidth);
+				}
+			}
+		}
+
+		StringBuilder line = new StringBuilder();
+		line.append('+');
+		for (int i = 0; i < cols; i++)
+		{
+			for (int j = 0; j < widths[i] + 2; j++)
+			{
+				line.append('-');
+			}
+			line.append('+');
+		}
+		border = line.toString();
+
+		sb.append(border).append('\n');
+		sb.append('|');
+		for (int i = 0; i < cols; i++)
+		{
+			appendCell(names[i], widths[i], false, true);
+		}
+		sb.append('\n');
+		sb.append(border).append('\n');
+
+		for (String[] vals : sample)
+		{
+			sb.append('|');
+			for (int i = 0; i < cols; i++)
+			{
+				appendCell(vals[i], widths[i], right[i], cuttable[i]);
+			}
+			sb.append('\n');
+		}
+
+		sample.clear();
+	}
+
+	/**
+	 * Put one value into the buffer, padded (or cut) to the width of its column, followed by the line to its right.
+	 */
+	private void appendCell(String val, int width, boolean alignRight, boolean canCut)
+	{
+		if (val == null)
+		{
+			val = NULL;
+		}
+
+		int len = val.length();
+		boolean cut = canCut && len > width;
+		int shown = cut ? width - 3 : len;
+
+		sb.append(' ');
+
+		if (alignRight)
+		{
+			pad(width - len);
+		}
+
+		// line breaks and tabs would break up the table, so they're shown as spaces
+		for (int i = 0; i < shown; i++)
+		{
+			char c = val.charAt(i);
+			sb.append(c < ' ' ? ' ' : c);
+		}
+
+		if (cut)
+		{
+			sb.append("...");
+		}
+		else if (!alignRight)
+		{
+			pad(width - len);
+		}
+
+		sb.append(" |");
+	}
+
+	private String getValue(ResultSet rs, int col) throws SQLException
+	{
+		if (bits[col])
+		{
+			long val = rs.getLong(col + 1);
+			return rs.wasNull() ? null : Long.toBinaryString(val);
+		}
+
+		return rs.getString(col + 1);
+	}
+
+	private void pad(int n)
+	{
+		for (int i = 0; i < n; i++)
+		{
+			sb.append(' ');
+		}
+	}
+
+	private void writeOut()
+	{
+		if (sb.length() > 0)
+		{
+			out.print(sb);
+			out.flush();
+			sb.setLength(0);
+		}
+	}
+
+	private static boolean isNumber(int sqlType)
+	{
+		switch (sqlType)
+		{
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+		case Types.DECIMAL:
+		case Types.NUMERIC:
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,457 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads a whole table over several connections at once, for 'Display' and 'Export' on big tables.
+ * The table's primary key (which has to be a single whole-number column) is split into ranges, and each range is read with its own
+ * "SELECT ... WHERE key BETWEEN ? AND ?" on a connection from the pool, into a ColumnarResult. The ranges are handed back by next,
+ * either in the order of the key or in whatever order they finish in.
+ * Each range ends at the key a set number of rows after the one it starts at, which the server finds by walking the key's index
+ * ("... WHERE key &gt;= ? ORDER BY key LIMIT n, 1") without sending the rows. So every range has the same number of rows (give or take
+ * any added while the table is read), however the keys are spread out: a few far-off keys, or big gaps, don't leave one range with most of
+ * the table, so the connections share the work evenly and no range holds more rows in memory than that. The ends are only found a few
+ * ranges ahead of the ones being read, rather than all of them up front.
+ * Only a few ranges are read ahead of the one being handed back, so the table is only read as fast as it's being shown or written.
+ */
+public class TableScanner
+{
+
+	// the most rows in each range, so each query is big enough to be worth sending but its rows still fit easily in memory
+	private static final long ROWS_PER_RANGE = 50000;
+
+	// ranges read ahead of the one being handed back, for each connection
+	private static final int READ_AHEAD = 2;
+
+	private final ConnectionPool pool;
+	private final String table;
+	private final String key;
+	private final int threads;
+	private final boolean ordered;
+	private final int fetchSize;
+
+	private QueryMetrics metrics = null;
+
+	private ExecutorService readers = null;
+	private CompletionService<ColumnarResult> done = null;
+	private final ArrayDeque<Future<ColumnarResult>> waiting = new ArrayDeque<Future<ColumnarResult>>();
+
+	private BigInteger min, max;
+	private long rowsPerRange;
+	private BigInteger nextStart = null; // the first key of the next range to find the end of, null once the last one has been found
+	private final ArrayDeque<BigInteger[]> found = new ArrayDeque<BigInteger[]>(); // ranges whose ends are known, waiting to be read
+	private long ranges = 0;
+	private long submitted = 0;
+	private long handedBack = 0;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Set up a scan. Nothing is read until start is called.
+	 * @param pool The pool the readers borrow their connections from.
+	 * @param table The name of the table.
+	 * @param key The name of the table's primary key column. Use getScanKey to find it.
+	 * @param threads The number of ranges read at the same time, each on its own connection. It can't be more than the pool's maximum size.
+	 * @param ordered True to hand back the ranges in the order of the key, false to hand each one back as soon as it's read.
+	 * @param fetchSize The number of rows each reader gets from the server at a time. 0 to get a whole range at once.
+	 */
+	public TableScanner(ConnectionPool pool, String table, String key, int threads, boolean ordered, int fetchSize)
+	{
+		this.pool = pool;
+		this.table = table;
+		this.key = key;
+		this.threads = Math.max(1, Math.min(threads, pool.getMaxSize()));
+		this.ordered = ordered;
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Record how long each range takes to read, and how many rows it has.
+	 * @param metrics Where to record them, or null to not record them.
+	 */
+	public void setMetrics(QueryMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Find the column a table can be scanned by: its primary key, if it's a single whole-number column.
+	 * @param cols The columns of the table.
+	 * @return The column, or null if the table can't be split up this way.
+	 */
+	public static ColumnData getScanKey(List<ColumnData> cols)
+	{
+		ColumnData found = null;
+
+		for (ColumnData col : cols)
+		{
+			if (!col.isPrimaryKey())
+			{
+				continue;
+			}
+
+			if (found != null)
+			{
+				return null; // a key made of more than one column
+			}
+			found = col;
+		}
+
+		if (found == null)
+		{
+			return null;
+		}
+
+		switch (found.getType())
+		{
+		case Byte:
+		case Short:
+		case Integer:
+		case Long:
+			return found;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Find the smallest and largest keys, split them into ranges, and start reading the first few.
+	 * If the table has fewer rows than fit in one range (as far as the server can guess), nothing is started, and getRangeCount is 0.
+	 * @throws SQLException If a connection couldn't be borrowed, or the keys couldn't be read.
+	 */
+	public void start() throws SQLException
+	{
+		long estimate = 0;
+		Connection conn = pool.borrow();
+		boolean broken = false;
+
+		try
+		{
+			PreparedStatement ps = pool.getStatementCache(conn).prepare("SELECT MIN(`" + key + "`), MAX(`" + key + "`) FROM " + table);
+			try (ResultSet rs = ps.executeQuery())
+			{
+				rs.next();
+				if (rs.getString(1) != null)
+				{
+					// read as text, so a BIGINT UNSIGNED key bigger than a long still works
+					min = new BigInteger(rs.getString(1));
+					max = new BigInteger(rs.getString(2));
+				}
+			}
+
+			// the server's guess at the number of rows, which (unlike COUNT(*)) doesn't need to read the table
+			ps = pool.getStatementCache(conn).prepare("SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?");
+			ps.setString(1, table);
+			try (ResultSet rs = ps.executeQuery())
+			{
+				if (rs.next())
+				{
+					estimate = rs.getLong(1);
+				}
+			}
+		}
+		catch (SQLException e)
+		{
+			broken = e.getSQLState() != null && e.getSQLState().startsWith("08");
+			throw e;
+		}
+		finally
+		{
+			if (broken)
+			{
+				pool.invalidate(conn);
+			}
+			else
+			{
+				pool.release(conn);
+			}
+		}
+
+		if (min == null || estimate < ROWS_PER_RANGE)
+		{
+			return; // the table is empty, or too small to be worth splitting up
+		}
+
+		// at least one range for each connection
+		rowsPerRange = Math.min(ROWS_PER_RANGE, (estimate + threads - 1) / threads);
+		ranges = (estimate + rowsPerRange - 1) / rowsPerRange; // a guess until the last range is found
+		nextStart = min;
+
+		readers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger n = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "scan-reader-" + n.incrementAndGet());
+				t.setDaemon(true); // don't keep the program open just for these
+				return t;
+			}
+		});
+		done = new ExecutorCompletionService<ColumnarResult>(readers);
+
+		while (hasMore() && submitted < (long) threads * READ_AHEAD)
+		{
+			submitNext();
+		}
+	}
+
+	/**
+	 * Get the rows of the next range, waiting for them to be read if they haven't been yet.
+	 * @return The rows, or null once every range has been handed back (or the scan has been closed). A range can have no rows.
+	 * @throws SQLException If a range couldn't be read. The scan is closed.
+	 */
+	public ColumnarResult next() throws SQLException
+	{
+		if (closed || readers == null || (handedBack == submitted && !hasMore()))
+		{
+			return null;
+		}
+
+		try
+		{
+			Future<ColumnarResult> f = ordered ? waiting.poll() : done.take();
+			ColumnarResult rows = f.get();
+			handedBack++;
+
+			if (hasMore())
+			{
+				submitNext(); // keep the readers busy
+			}
+			return rows;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			close();
+			throw new SQLException("Interrupted while reading the table", "70100", e);
+		}
+		catch (ExecutionException e)
+		{
+			close();
+			if (e.getCause() instanceof SQLException)
+			{
+				throw (SQLException) e.getCause();
+			}
+			throw new SQLException("Couldn't read part of the table: " + e.getCause(), e.getCause());
+		}
+		catch (SQLException e)
+		{
+			close(); // the ends of the next ranges couldn't be found
+			throw e;
+		}
+	}
+
+	/**
+	 * Stop reading. Ranges being read are stopped after the row they're on, and no more are started.
+	 */
+	public void close()
+	{
+		closed = true;
+
+		if (readers != null)
+		{
+			readers.shutdownNow();
+		}
+	}
+
+	/**
+	 * Gets the number of ranges the key is split into. 0 until start is called, or if the table is too small to split up.
+	 * Until the end of the last range has been found, this is worked out from the server's guess at the number of rows.
+	 */
+	public long getRangeCount() {
+		return ranges;
+	}
+
+	/**
+	 * Gets the number of ranges read at the same time.
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Gets if there are ranges left to read that haven't been submitted yet.
+	 */
+	private boolean hasMore()
+	{
+		return !found.isEmpty() || nextStart != null;
+	}
+
+	private void submitNext() throws SQLException
+	{
+		if (found.isEmpty())
+		{
+			findRanges(threads * READ_AHEAD);
+		}
+
+		BigInteger[] range = found.poll();
+		submitted++;
+
+		Future<ColumnarResult> f = done.submit(new Range(range[0], range[1]));
+		if (ordered)
+		{
+			waiting.add(f);
+		}
+	}
+
+	/**
+	 * Find where the next few ranges end, each rowsPerRange rows after the one before it, and add them to found.
+	 * Each end is found by the server walking the key's index from the start of its range, so the rows themselves aren't sent.
+	 * @param count The most ranges to find.
+	 * @throws SQLException If a connection couldn't be borrowed, or the keys couldn't be read.
+	 */
+	private void findRanges(int count) throws SQLException
+	{
+		Connection conn = pool.borrow();
+		boolean broken = false;
+
+		try
+		{
+			PreparedStatement ps = pool.getStatementCache(conn).prepare("SELECT `" + key + "` FROM " + table + " WHERE `" + key + "` >= ? ORDER BY `"
+					+ key + "` LIMIT " + (rowsPerRange - 1) + ", 1");
+
+			for (int i = 0; i < count && nextStart != null; i++)
+			{
+				BigInteger end = null;
+				setKey(ps, 1, nextStart);
+				try (ResultSet rs = ps.executeQuery())
+				{
+					if (rs.next())
+					{
+						end = new BigInteger(rs.getString(1));
+					}
+				}
+
+				if (end == null || end.compareTo(max) >= 0)
+				{
+					// fewer rows than that are left (or the last one is the largest key), so this range goes to the end of the table
+					found.add(new BigInteger[] { nextStart, max });
+					nextStart = null;
+					ranges = submitted + found.size(); // the real number, now that every range has been found
+				}
+				else
+				{
+					found.add(new BigInteger[] { nextStart, end });
+					nextStart = end.add(BigInteger.ONE);
+					ranges = Math.max(ranges, submitted + found.size() + 1);
+				}
+			}
+		}
+		catch (SQLException e)
+		{
+			broken = e.getSQLState() != null && e.getSQLState().startsWith("08");
+			throw e;
+		}
+		finally
+		{
+			if (broken)
+			{
+				pool.invalidate(conn);
+			}
+			else
+			{
+				pool.release(conn);
+			}
+		}
+	}
+
+	/**
+	 * Reads the rows of one range of keys.
+	 */
+	private class Range implements Callable<ColumnarResult>
+	{
+		private final BigInteger lo, hi;
+
+		Range(BigInteger lo, BigInteger hi)
+		{
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		public ColumnarResult call() throws SQLException
+		{
+			Connection conn = pool.borrow();
+			boolean broken = false;
+
+			try
+			{
+				// ordered by the key, so the rows come out the way a single SELECT using the key's index would give them
+				String sql = "SELECT * FROM " + table + " WHERE `" + key + "` BETWEEN ? AND ? ORDER BY `" + key + "`";
+				PreparedStatement ps = pool.getStatementCache(conn).prepare(sql);
+				setKey(ps, 1, lo);
+				setKey(ps, 2, hi);
+				ps.setFetchSize(fetchSize); // the statement is reused, so this has to be set every time
+
+				long start = System.nanoTime();
+				try (ResultSet rs = ps.executeQuery())
+				{
+					if (metrics != null)
+					{
+						metrics.recordTime(QueryMetrics.Kind.SELECT, System.nanoTime() - start);
+					}
+
+					ColumnarResult rows = new ColumnarResult(rs.getMetaData());
+					while (!closed && rs.next())
+					{
+						rows.addRow(rs);
+					}
+
+					if (metrics != null)
+					{
+						metrics.recordRowsReturned(QueryMetrics.Kind.SELECT, rows.getRowCount());
+					}
+					return rows;
+				}
+			}
+			catch (SQLException e)
+			{
+				broken = e.getSQLState() != null && e.getSQLState().startsWith("08");
+				if (metrics != null)
+				{
+					metrics.recordError(QueryMetrics.Kind.SELECT, e);
+				}
+				throw e;
+			}
+			finally
+			{
+				if (broken)
+				{
+					pool.invalidate(conn);
+				}
+				else
+				{
+					pool.release(conn);
+				}
+			}
+		}
+	}
+
+	private static void setKey(PreparedStatement ps, int index, BigInteger value) throws SQLException
+	{
+		if (value.bitLength() < 64)
+		{
+			ps.setLong(index, value.longValue());
+		}
+		else
+		{
+			ps.setBigDecimal(index, new BigDecimal(value)); // only a BIGINT UNSIGNED key gets this big
+		}
+	}
+
+}
@@ -0,0 +1,517 @@
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A transaction started with 'Begin', kept open on one connection from the pool until 'Commit' or 'Rollback'.
+ * While it's open, every statement the program sends goes over that connection, so the changes are only kept (and seen by anyone else)
+ * once they're committed. The server only waits for its disk at each commit, rather than after every statement that changes a row.
+ * With group commit, the changes are committed every so many statements or milliseconds, whichever comes first, and the transaction
+ * carries on, so a long run of changes is still mostly sent without waiting but doesn't hold its locks (or risk losing its work) for too long.
+ * Only one statement uses the connection at a time; use and done go around each one.
+ */
+public class Transaction
+{
+
+	// MySQL's error for a deadlock, after which the server has already rolled the whole transaction back
+	private static final int ER_LOCK_DEADLOCK = 1213;
+
+	private final ConnectionPool pool;
+	private final QueryMetrics metrics;
+	private final ResultCache cache;
+	private final PrintStream out;
+
+	// held by whichever statement is using the connection, or by a commit
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private volatile Connection conn = null; // null while no transaction is open
+
+	private volatile int groupStatements = 0;
+	private volatile int groupMillis = 0;
+	private ScheduledExecutorService timer = null;
+	private ScheduledFuture<?> due = null; // the group commit waiting for groupMillis to pass, if there is one
+	private volatile boolean overdue = false; // the time ran out while a statement was using the connection
+
+	private int pending = 0; // statements that changed something since the last commit
+	private final Set<String> written = new LinkedHashSet<String>(); // those statements, to clear their tables from the result cache once they're committed
+
+	private long commits = 0;
+	private long groupCommits = 0;
+	private long statementsCommitted = 0;
+	private volatile long lastCommitNanos = 0;
+	private final LatencyHistogram commitTimes = new LatencyHistogram();
+
+	/**
+	 * Set up a transaction. Nothing is borrowed until begin is called.
+	 * @param pool The pool to borrow the transaction's connection from.
+	 * @param metrics Where to record how long each commit takes.
+	 * @param cache The result cache, which is told about the tables changed once the changes are committed. Can be null.
+	 * @param out Where to show a commit or rollback that happened without being asked for, such as a group commit that failed.
+	 */
+	public Transaction(ConnectionPool pool, QueryMetrics metrics, ResultCache cache, PrintStream out)
+	{
+		this.pool = pool;
+		this.metrics = metrics;
+		this.cache = cache;
+		this.out = out;
+	}
+
+	/**
+	 * Commit the changes every so many statements or milliseconds, whichever comes first, while the transaction carries on.
+	 * Only statements that change something count; reading a table doesn't need to be committed.
+	 * @param statements The number of statements. 0 to not commit after any number of them.
+	 * @param millis The number of milliseconds after the first change that hasn't been committed. 0 to not commit after any length of time.
+	 */
+	public synchronized void setGroupCommit(int statements, int millis)
+	{
+		this.groupStatements = statements;
+		this.groupMillis = millis;
+
+		if (millis > 0 && timer == null)
+		{
+			timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "group-commit");
+					t.setDaemon(true); // don't keep the program open just for this
+					return t;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Start a transaction, borrowing a connection for it and turning off autocommit.
+	 * @throws IllegalStateException If a transaction is already open.
+	 * @throws SQLException If a connection couldn't be borrowed.
+	 */
+	public void begin() throws SQLException
+	{
+		lock.lock();
+		try
+		{
+			if (conn != null)
+			{
+				throw new IllegalStateException("A transaction is already open. Use 'Commit' or 'Rollback' to end it first.");
+			}
+
+			Connection c = pool.borrow();
+			try
+			{
+				c.setAutoCommit(false);
+			}
+			catch (SQLException e)
+			{
+				pool.invalidate(c);
+				throw e;
+			}
+
+			conn = c;
+			pending = 0;
+			written.clear();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets if a transaction is open.
+	 */
+	public boolean isOpen() {
+		return conn != null;
+	}
+
+	/**
+	 * Gets if this is the transaction's connection.
+	 */
+	public boolean isConnection(Connection c) {
+		return c != null && c == conn;
+	}
+
+	/**
+	 * Get the transaction's connection to send a statement over, waiting for any other statement using it to be done first.
+	 * If this returns a connection, done or failed must be called once the statement (and any rows read from it) is finished with,
+	 * on the same thread.
+	 * @return The connection, or null if no transaction is open, in which case the statement should borrow a connection as usual.
+	 */
+	public Connection use()
+	{
+		if (conn == null)
+		{
+			return null;
+		}
+
+		lock.lock();
+		if (conn == null)
+		{
+			lock.unlock(); // it ended while we were waiting
+			return null;
+		}
+		return conn;
+	}
+
+	/**
+	 * Say that a statement sent over the transaction's connection is done. If it changed something and group commit is on,
+	 * the changes may be committed now. If that fails, the error is shown and the transaction is rolled back.
+	 * @param sql The statement, if it might have changed something. null if it only read rows.
+	 */
+	public void done(String sql)
+	{
+		try
+		{
+			if (sql != null)
+			{
+				pending++;
+				written.add(sql);
+
+				if (pending == 1 && groupMillis > 0 && timer != null)
+				{
+					due = timer.schedule(new Runnable() {
+						@Override
+						public void run()
+						{
+							commitWhenFree();
+						}
+					}, groupMillis, TimeUnit.MILLISECONDS);
+				}
+			}
+
+			if (pending > 0 && (overdue || (groupStatements > 0 && pending >= groupStatements)))
+			{
+				groupCommit();
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Say that a statement sent over the transaction's connection failed. Most errors only undo the one statement, and the transaction carries on,
+	 * but if the connection was lost, or the server rolled the transaction back to get out of a deadlock, the transaction is over.
+	 * @param e The error the statement failed with.
+	 * @return True if the transaction is still open.
+	 */
+	public boolean failed(SQLException e)
+	{
+		try
+		{
+			if (e.getSQLState() != null && e.getSQLState().startsWith("08"))
+			{
+				out.println("The connection to the server was lost, so the transaction has ended and its changes since the last commit are gone.");
+				end(true);
+				return false;
+			}
+
+			if (e.getErrorCode() == ER_LOCK_DEADLOCK)
+			{
+				out.println("The server rolled back the transaction to get out of a deadlock, so its changes since the last commit are gone.");
+				rollbackQuietly();
+				end(false);
+				return false;
+			}
+
+			return true;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Commit the changes and end the transaction, giving its connection back to the pool.
+	 * @return The number of statements that changed something that were committed.
+	 * @throws IllegalStateException If no transaction is open.
+	 * @throws SQLException If the commit failed. The transaction is rolled back and ended anyway.
+	 */
+	public int commit() throws SQLException
+	{
+		lock.lock();
+		try
+		{
+			requireOpen();
+			int count = pending;
+
+			try
+			{
+				commitNow();
+			}
+			catch (SQLException e)
+			{
+				boolean lost = e.getSQLState() != null && e.getSQLState().startsWith("08");
+				if (!lost)
+				{
+					rollbackQuietly();
+				}
+				end(lost);
+				throw e;
+			}
+
+			end(false);
+			return count;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Undo the changes since the last commit and end the transaction, giving its connection back to the pool.
+	 * @return The number of statements that changed something that were undone.
+	 * @throws IllegalStateException If no transaction is open.
+	 * @throws SQLException If the rollback failed. The transaction is ended anyway, and the connection closed, so the server undoes the changes itself.
+	 */
+	public int rollback() throws SQLException
+	{
+		lock.lock();
+		try
+		{
+			requireOpen();
+			int count = pending;
+
+			try
+			{
+				conn.rollback();
+			}
+			catch (SQLException e)
+			{
+				end(true);
+				throw e;
+			}
+
+			end(false);
+			return count;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Roll back any open transaction and stop the group commit timer, such as when the program is closing.
+	 * @return The number of statements that changed something that were undone.
+	 */
+	public int close()
+	{
+		int count = 0;
+
+		if (conn != null)
+		{
+			try
+			{
+				count = rollback();
+			}
+			catch (SQLException e) { } // ignore, the connection has been closed, which undoes them anyway
+			catch (IllegalStateException e) { } // it ended while we were waiting
+		}
+
+		synchronized (this)
+		{
+			if (timer != null)
+			{
+				timer.shutdownNow();
+				timer = null;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Gets the number of statements that changed something since the last commit.
+	 */
+	public int getPendingCount() {
+		return pending;
+	}
+
+	/**
+	 * Gets the number of times changes have been committed, by 'Commit' or by group commit.
+	 */
+	public long getCommitCount() {
+		return commits;
+	}
+
+	/**
+	 * Gets the number of those commits made by group commit.
+	 */
+	public long getGroupCommitCount() {
+		return groupCommits;
+	}
+
+	/**
+	 * Gets the number of statements that changed something that have been committed.
+	 */
+	public long getStatementsCommitted() {
+		return statementsCommitted;
+	}
+
+	/**
+	 * Gets how long the last commit took, in milliseconds.
+	 */
+	public double getLastCommitMillis() {
+		return lastCommitNanos / 1e6;
+	}
+
+	/**
+	 * Gets how long each commit took.
+	 */
+	public LatencyHistogram getCommitTimes() {
+		return commitTimes;
+	}
+
+	/**
+	 * Called by the timer once groupMillis have passed since the first change that hasn't been committed.
+	 * If a statement is using the connection, the commit is left for it to do when it's done.
+	 */
+	private void commitWhenFree()
+	{
+		if (!lock.tryLock())
+		{
+			overdue = true;
+			return;
+		}
+
+		try
+		{
+			if (conn != null && pending > 0)
+			{
+				groupCommit();
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void groupCommit()
+	{
+		try
+		{
+			commitNow();
+			groupCommits++;
+		}
+		catch (SQLException e)
+		{
+			ServerComm.printError(e, "COMMIT");
+			boolean lost = e.getSQLState() != null && e.getSQLState().startsWith("08");
+			out.println("The changes couldn't be committed, so the transaction has ended and they're gone.");
+			if (!lost)
+			{
+				rollbackQuietly();
+			}
+			end(lost);
+		}
+	}
+
+	/**
+	 * Commit on the connection, timing how long the server takes, and start counting again.
+	 */
+	private void commitNow() throws SQLException
+	{
+		if (due != null)
+		{
+			due.cancel(false);
+			due = null;
+		}
+		overdue = false;
+
+		long start = System.nanoTime();
+		try
+		{
+			conn.commit();
+		}
+		catch (SQLException e)
+		{
+			metrics.recordError(QueryMetrics.Kind.COMMIT, e);
+			throw e;
+		}
+
+		long took = System.nanoTime() - start;
+		lastCommitNanos = took;
+		commitTimes.record(took);
+		metrics.recordTime(QueryMetrics.Kind.COMMIT, took);
+		commits++;
+		statementsCommitted += pending;
+
+		// anything cached from these tables by other connections while the changes weren't committed is out of date now
+		if (cache != null)
+		{
+			for (String sql : written)
+			{
+				cache.invalidateFor(sql);
+			}
+		}
+
+		pending = 0;
+		written.clear();
+	}
+
+	/**
+	 * Give the connection back, and forget the transaction.
+	 * @param broken True if the connection should be closed rather than given back.
+	 */
+	private void end(boolean broken)
+	{
+		if (due != null)
+		{
+			due.cancel(false);
+			due = null;
+		}
+		overdue = false;
+		pending = 0;
+		written.clear();
+
+		Connection c = conn;
+		conn = null;
+
+		if (broken)
+		{
+			pool.invalidate(c);
+			return;
+		}
+
+		try
+		{
+			c.setAutoCommit(true);
+			pool.release(c);
+		}
+		catch (SQLException e)
+		{
+			pool.invalidate(c);
+		}
+	}
+
+	private void rollbackQuietly()
+	{
+		try
+		{
+			conn.rollback();
+		}
+		catch (SQLException e) { } // ignore, the connection is checked again before it's next borrowed
+	}
+
+	private void requireOpen()
+	{
+		if (conn == null)
+		{
+			throw new IllegalStateException("No transaction is open. Start one with 'Begin'.");
+		}
+	}
+
+}
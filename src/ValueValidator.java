@@ -0,0 +1,1021 @@
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.ParseException;
+
+/**
+ * Checks whether a string representation of a value is valid for one column.
+ * A validator is made once per column by forColumn, with everything that depends on the column's type worked out up front.
+ * Checking a value then only scans its characters: nothing is allocated and no exceptions are thrown, whether the value is valid or not.
+ * The rules are the same ones ColumnData.isValidValue has always used, including its quirks.
+ */
+public abstract class ValueValidator
+{
+
+	private final int maxLength;
+	private final boolean rejectEmpty;
+
+	ValueValidator(ColumnData col)
+	{
+		this.maxLength = col.getValLength();
+
+		// getNullable() is true when the column is NOT NULL (see buildColumnData), and empty values
+		// have always been turned away when it's false, so that's kept the same here
+		this.rejectEmpty = !col.getNullable();
+	}
+
+	/**
+	 * Checks to see if this string representation of a value is valid for the column.
+	 * @param value The value to check.
+	 * @return True if this is a valid value. False if it cannot be used.
+	 */
+	public final boolean isValid(CharSequence value)
+	{
+		int len = value.length();
+		return allowsLength(len) && check(value, len);
+	}
+
+	/**
+	 * Gets if a value of this length can go in the column, before its characters are looked at.
+	 */
+	final boolean allowsLength(int len)
+	{
+		// (maxLength == 0 means there is no length)
+		if (maxLength > 0 && len > maxLength)
+		{
+			return false; // the input string is longer than what the column allows
+		}
+
+		if (len == 0 && rejectEmpty)
+		{
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Gets if a whole number that Long.parseLong read from a value is in the range of the column, for the validators of whole numbers.
+	 * (Long.parseLong accepts exactly the strings they do, so a value it reads only has its range left to check.)
+	 */
+	boolean allows(long n)
+	{
+		return false;
+	}
+
+	/**
+	 * Check the value against the rules for the column's data type. The length and empty checks have already been done.
+	 */
+	abstract boolean check(CharSequence value, int len);
+
+	/**
+	 * Make the validator for a column.
+	 * @param col The column.
+	 * @return A validator for the column's data type.
+	 */
+	public static ValueValidator forColumn(ColumnData col)
+	{
+		switch (col.getType())
+		{
+		case Binary:
+		case Blob:
+		case Text:
+		case VarChar:
+			// a string is a string
+			return new AnyValue(col);
+		case Bit:
+			return new BitValue(col);
+		case Byte:
+			return col.isUnsigned() ? new WholeNumber(col, 0, Short.MAX_VALUE) : new WholeNumber(col, Byte.MIN_VALUE, Byte.MAX_VALUE);
+		case Short:
+			return col.isUnsigned() ? new WholeNumber(col, 0, Integer.MAX_VALUE) : new WholeNumber(col, Short.MIN_VALUE, Short.MAX_VALUE);
+		case Integer:
+			return col.isUnsigned() ? new WholeNumber(col, 0, Long.MAX_VALUE) : new WholeNumber(col, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		case Long:
+			// an unsigned BIGINT was checked as a BigInteger, which has no upper limit
+			return col.isUnsigned() ? new UnsignedBigNumber(col) : new WholeNumber(col, Long.MIN_VALUE, Long.MAX_VALUE);
+		case Float:
+		case Double:
+			// Float.parseFloat and Double.parseDouble accept exactly the same strings
+			return new FloatingNumber(col);
+		case Decimal:
+			return new DecimalNumber(col);
+		case Date:
+			return new DateValue(col);
+		case DateTime:
+			return new DateTimeValue(col);
+		case Time:
+			return new TimeValue(col);
+		case Enum:
+			return new EnumValue(col);
+		case Set:
+			return new SetValue(col);
+		default:
+			return new NoValue(col);
+		}
+	}
+
+	// -------------------------------------------------------------------------------------------------------------
+	// Scanning helpers, matching what the Integer.parseInt and substring calls in the old checks did
+
+	/**
+	 * Returned by parseInt when Integer.parseInt would have thrown an exception.
+	 */
+	static final long NOT_AN_INT = Long.MIN_VALUE;
+
+	/**
+	 * Read the characters from start to end as Integer.parseInt would (optional sign, then any decimal digits, within the range of an int).
+	 * @return The number, or NOT_AN_INT if Integer.parseInt would have thrown an exception.
+	 */
+	static long parseInt(CharSequence value, int start, int end)
+	{
+		if (start >= end)
+		{
+			return NOT_AN_INT;
+		}
+
+		int i = start;
+		boolean negative = false;
+		long limit = -Integer.MAX_VALUE;
+
+		char first = value.charAt(i);
+		if (first < '0')
+		{
+			if (first == '-')
+			{
+				negative = true;
+				limit = Integer.MIN_VALUE;
+			}
+			else if (first != '+')
+			{
+				return NOT_AN_INT;
+			}
+
+			i++;
+			if (i == end)
+			{
+				return NOT_AN_INT; // just a sign
+			}
+		}
+
+		// accumulate negatively, so Integer.MIN_VALUE fits
+		long result = 0;
+		while (i < end)
+		{
+			int digit = Character.digit(value.charAt(i++), 10);
+			if (digit < 0)
+			{
+				return NOT_AN_INT;
+			}
+
+			result = result * 10 - digit;
+			if (result < limit)
+			{
+				return NOT_AN_INT;
+			}
+		}
+
+		return negative ? result : -result;
+	}
+
+	/**
+	 * Gets if start to end is a valid range of the value, which substring would have thrown an exception for otherwise.
+	 */
+	static boolean inRange(int len, int start, int end)
+	{
+		return start >= 0 && start <= end && end <= len;
+	}
+
+	/**
+	 * Gets if the characters of value starting at offset are the same as those in str.
+	 */
+	static boolean regionMatches(CharSequence value, int offset, String str)
+	{
+		int n = str.length();
+
+		if (offset + n > value.length())
+		{
+			return false;
+		}
+
+		for (int i = 0; i < n; i++)
+		{
+			if (value.charAt(offset + i) != str.charAt(i))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * The old checkDate, with start and end marking out the part of the value that used to be passed to it.
+	 */
+	static boolean checkDate(CharSequence value, int start, int end, int y1, int y2, int m1, int m2, int d)
+	{
+		if (!(inRange(end, start + y1, start + y2) && inRange(end, start + m1, start + m2) && inRange(end, start + d, end)))
+		{
+			return false;
+		}
+
+		if (parseInt(value, start + y1, start + y2) == NOT_AN_INT)
+		{
+			return false; // the year isn't checked beyond being a number
+		}
+
+		long month = parseInt(value, start + m1, start + m2);
+		long day = parseInt(value, start + d, end);
+
+		if (month == NOT_AN_INT || day == NOT_AN_INT)
+		{
+			return false;
+		}
+
+		if (month > 12)
+		{
+			return false; // only 12 months
+		}
+
+		if (month == 1 || month == 3 || month == 5 || month == 7 || month == 8 || month == 10 || month == 12)
+		{
+			return day <= 31; // these 7 months have 31 days
+		}
+		else if (month == 2)
+		{
+			return day <= 29; // leap years aren't checked
+		}
+		else
+		{
+			return day <= 30; // the remaining months have 30 days
+		}
+	}
+
+	/**
+	 * The old checkTime, with start and end marking out the part of the value that used to be passed to it.
+	 */
+	static boolean checkTime(CharSequence value, int start, int end, boolean punctuation, boolean twovalues, boolean allowlargerthan24hrs)
+	{
+		long hour = 0;
+		long min;
+		long sec = 0;
+
+		if (punctuation)
+		{
+			if (twovalues == false)
+			{
+				// HH:MM:SS (the separators themselves are not checked)
+				if (!(inRange(end, start, start + 2) && inRange(end, start + 3, start + 5) && inRange(end, start + 6, end))) { return false; }
+				hour = parseInt(value, start, start + 2);
+				min = parseInt(value, start + 3, start + 5);
+				sec = parseInt(value, start + 6, end);
+			}
+			else
+			{
+				// HH:MM
+				if (!(inRange(end, start, start + 2) && inRange(end, start + 3, end))) { return false; }
+				hour = parseInt(value, start, start + 2);
+				min = parseInt(value, start + 3, end);
+			}
+		}
+		else
+		{
+			if (twovalues == false)
+			{
+				// HHMMSS
+				if (!(inRange(end, start, start + 2) && inRange(end, start + 2, start + 4) && inRange(end, start + 4, end))) { return false; }
+				hour = parseInt(value, start, start + 2);
+				min = parseInt(value, start + 2, start + 4);
+				sec = parseInt(value, start + 4, end);
+			}
+			else
+			{
+				// MMSS
+				if (!(inRange(end, start, start + 2) && inRange(end, start + 2, end))) { return false; }
+				min = parseInt(value, start, start + 2);
+				sec = parseInt(value, start + 2, end);
+			}
+		}
+
+		if (hour == NOT_AN_INT || min == NOT_AN_INT || sec == NOT_AN_INT)
+		{
+			return false;
+		}
+
+		if (allowlargerthan24hrs)
+		{
+			if (hour > 99 || hour < -9) { return false; }
+		}
+		else
+		{
+			if (hour > 24 || hour < 0) { return false; }
+		}
+
+		if (min > 59 || min < 0)
+		{
+			return false;
+		}
+
+		// a negative seconds value has always been let through here
+		return sec <= 59;
+	}
+
+	// -------------------------------------------------------------------------------------------------------------
+	// One validator for each kind of column
+
+	static final class AnyValue extends ValueValidator
+	{
+		AnyValue(ColumnData col) { super(col); }
+
+		@Override
+		boolean check(CharSequence value, int len)
+		{
+			return true;
+		}
+	}
+
+	static final class NoValue extends ValueValidator
+	{
+		NoValue(ColumnData col) { super(col); }
+
+		@Override
+		boolean check(CharSequence value, int len)
+		{
+			return false;
+		}
+	}
+
+	static final class BitValue extends ValueValidator
+	{
+		BitValue(ColumnData col) { super(col); }
+
+		@Override
+		boolean check(CharSequence value, int len)
+		{
+			// a bit is a binary string of 0s and 1s
+			for (int i = 0; i < len; i++)
+			{
+				char ch = value.charAt(i);
+				if (!(ch == '0' || ch == '1'))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A whole number within a range, accepting the same strings as Long.parseLong.
+	 * This covers what Byte.parseByte, Short.parseShort, and Integer.parseInt (and their unsigned checks) accepted as well,
+	 * as those only differ in their range.
+	 */
+	static final class WholeNumber extends ValueValidator
+	{
+		private final long min;
+		private final long max;
+
+		WholeNumber(ColumnData col, long min, long max)
+		{
+			super(col);
+			this.min = min;
+			this.max = max;
+		}
+
+		@Override
+		boolean check(CharSequence value, int len)
+		{
+			if (len == 0)
+			{
+				return false;
+			}
+
+			int i = 0;
+			boolean negative = false;
+			long limit = -Long.MAX_VALUE;
+
+			char first = value.charAt(0);
+			if (first < '0')
+			{
+				if (first == '-')
+				{
+					negative = true;
+					limit = Long.MIN_VALUE;
+				}
+				else if (first != '+')
+				{
+					return false;
+				}
+
+				i++;
+				if (i == len)
+				{
+					return false; // just a sign
+				}
+			}
+
+			// accumulate negatively, as Long.parseLong does, so Long.MIN_VALUE fits
+			long multmin = limit / 10;
+			long result = 0;
+			while (i < len)
+			{
+				int digit = Character.digit(value.charAt(i++), 10);
+				if (digit < 0 || result < multmin)
+				{
+					return false;
+				}
+
+				result *= 10;
+				if (result < limit + digit)
+				{
+					return false;
+				}
+				result -= digit;
+			}
+
+			return allows(negative ? result : -result);
+		}
+
+		@Override
+		boolean allows(long n)
+		{
+			return n >= min && n <= max;
+		}
+	}
+
+	/**
+	 * An unsigned BIGINT, which was checked as a BigInteger that isn't negative. There's no upper limit.
+	 */
+	static final class UnsignedBigNumber extends ValueValidator
+	{
+		UnsignedBigNumber(ColumnData col) { super(col); }
+
+		@Override
+		boolean check(CharSequence value, int len)
+		{
+			int i = 0;
+			boolean negative = false;
+
+			if (len > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+'))
+			{
+				negative = value.charAt(0) == '-';
+				i = 1;
+			}
+
+			if (i == len)
+			{
+				return false; // nothing, or just a sign
+			}
+
+			boolean nonzero = false;
+			for (; i < len; i++)
+			{
+				int digit = Character.digit(value.charAt(i), 10);
+				if (digit < 0)
+				{
+					return false; // includes a second sign anywhere in the string
+				}
+				nonzero |= (digit != 0);
+			}
+
+			// "-0" is zero, not negative
+			return !(negative && nonzero);
+		}
+
+		@Override
+		boolean allows(long n)
+		{
+			return n >= 0;
+		}
+	}
+
+	/**
+	 * A FLOAT or DOUBLE, accepting the same strings as Double.parseDouble: surrounding whitespace, a sign, "NaN", "Infinity",
+	 * decimal digits with an optional exponent, hexadecimal floating-point, and a trailing type letter.
+	 */
+	static final class FloatingNumber extends ValueValidator
+	{
+		FloatingNumber(ColumnData col) { super(col); }
+
+		@Override
+		boolean check(CharSequence value, int len)
+		{
+			// trim, the same way String.trim does
+			int start = 0;
+			int end = len;
+			while (start < end && value.charAt(start) <= ' ') { start++; }
+			while (end > start && value.charAt(end - 1) <= ' ') { end--; }
+
+			if (start == end)
+			{
+				return false;
+			}
+
+			int i = start;
+			char c = value.charAt(i);
+			if (c == '-' || c == '+')
+			{
+				i++;
+				if (i == end)
+				{
+					return false; // just a sign
+				}
+				c = value.charAt(i);
+			}
+
+			if (c == 'N')
+			{
+				return end - i == 3 && regionMatches(value, i, "NaN");
+			}
+			else if (c == 'I')
+			{
+				return end - i == 8 && regionMatches(value, i, "Infinity");
+			}
+			else if (c == '0' && i + 1 < end && (value.charAt(i + 1) == 'x' || value.charAt(i + 1) == 'X'))
+			{
+				return checkHex(value, i + 2, end);
+			}
+
+			// digits, with no more than one decimal point
+			boolean decimal = false;
+			boolean digits = false;
+			for (; i < end; i++)
+			{
+				c = value.charAt(i);
+				if (c >= '0' && c <= '9')
+				{
+					digits = true;
+				}
+				else if (c == '.')
+				{
+					if (decimal)
+					{
+						return false; // multiple points
+					}
+					decimal = true;
+				}
+				else
+				{
+					break;
+				}
+			}
+
+			if (!digits)
+			{
+				return false;
+			}
+
+			// exponent
+			if (i < end && (value.charAt(i) == 'e' || value.charAt(i) == 'E'))
+			{
+				i++;
+				if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+'))
+				{
+					i++;
+				}
+
+				int expstart = i;
+				while (i < end && value.charAt(i) >= '0' && value.charAt(i) <= '9')
+				{
+					i++;
+				}
+
+				if (i == expstart)
+				{
+					return false; // an exponent needs at least one digit
+				}
+			}
+
+			return i == end || (i == end - 1 && isTypeLetter(value.charAt(i)));
+		}
+
+		/**
+		 * Check the part of a hexadecimal floating-point number after "0x": hex digits with an optional point,
+		 * then a binary exponent ("p"), which is required, then an optional type letter.
+		 */
+		private static boolean checkHex(CharSequence value, int i, int end)
+		{
+			boolean before = false; // hex digits before the point
+			boolean after = false; // hex digits after the point
+			boolean point = false;
+
+			for (; i < end; i++)
+			{
+				char c = value.charAt(i);
+				if (Character.digit(c, 16) >= 0 && c < 128)
+				{
+					if (point) { after = true; } else { before = true; }
+				}
+				else if (c == '.' && !point)
+				{
+					point = true;
+				}
+				else
+				{
+					break;
+				}
+			}
+
+			if (!(before || after) || (point && !after && !before))
+			{
+				return false;
+			}
+
+			if (i == end || (value.charAt(i) != 'p' && value.charAt(i) != 'P'))
+			{
+				return false;
+			}
+
+			i++;
+			if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+'))
+			{
+				i++;
+			}
+
+			int expstart = i;
+			while (i < end && value.charAt(i) >= '0' && value.charAt(i) <= '9')
+			{
+				i++;
+			}
+
+			if (i == expstart)
+			{
+				return false;
+			}
+
+			return i == end || (i == end - 1 && isTypeLetter(value.charAt(i)));
+		}
+
+		private static boolean isTypeLetter(char c)
+		{
+			return c == 'f' || c == 'F' || c == 'd' || c == 'D';
+		}
+	}
+
+	/**
+	 * A DECIMAL, which was checked with DecimalFormat.parse in the default locale. That only needs the start of the string
+	 * to be a number: "NaN", or a prefix (nothing, or the minus sign) followed by the infinity sign or at least one digit
+	 * (with grouping separators and one decimal separator allowed along the way).
+	 */
+	static final class DecimalNumber extends ValueValidator
+	{
+		// read from the default locale when the validator is made, the same as a new DecimalFormat would for each value
+		private final String nan;
+		private final String infinity;
+		private final String positivePrefix;
+		private final String negativePrefix;
+		private final char zero;
+		private final char decimalSeparator;
+		private final char groupingSeparator;
+		private final boolean groupingUsed;
+
+		// locales where the rules above aren't enough are rare, but for them DecimalFormat is used after all
+		private final boolean simple;
+
+		DecimalNumber(ColumnData col)
+		{
+			super(col);
+
+			DecimalFormat df = new DecimalFormat();
+			DecimalFormatSymbols symbols = df.getDecimalFormatSymbols();
+
+			nan = symbols.getNaN();
+			infinity = symbols.getInfinity();
+			positivePrefix = df.getPositivePrefix();
+			negativePrefix = df.getNegativePrefix();
+			zero = symbols.getZeroDigit();
+			decimalSeparator = symbols.getDecimalSeparator();
+			groupingSeparator = symbols.getGroupingSeparator();
+			groupingUsed = df.isGroupingUsed();
+
+			simple = df.getPositiveSuffix().isEmpty() && df.getNegativeSuffix().isEmpty()
+					&& positivePrefix.length() != negativePrefix.length() && !nan.isEmpty() && !infinity.isEmpty();
+		}
+
+		@Override
+		boolean check(CharSequence value, int len)
+		{
+			if (!simple)
+			{
+				return checkWithFormat(value);
+			}
+
+			if (regionMatches(value, 0, nan))
+			{
+				return true;
+			}
+
+			// take the longer of the prefixes, if both match
+			boolean positive = regionMatches(value, 0, positivePrefix);
+			boolean negative = regionMatches(value, 0, negativePrefix);
+			if (positive && negative)
+			{
+				if (positivePrefix.length() > negativePrefix.length()) { negative = false; } else { positive = false; }
+			}
+
+			int i;
+			if (positive) { i = positivePrefix.length(); }
+			else if (negative) { i = negativePrefix.length(); }
+			else { return false; }
+
+			if (regionMatches(value, i, infinity))
+			{
+				return true;
+			}
+
+			boolean decimal = false;
+			for (; i < len; i++)
+			{
+				char ch = value.charAt(i);
+				int digit = ch - zero;
+				if (digit < 0 || digit > 9)
+				{
+					digit = Character.digit(ch, 10);
+				}
+
+				if (digit >= 0 && digit <= 9)
+				{
+					return true; // anything after the first digit doesn't matter
+				}
+				else if (ch == decimalSeparator)
+				{
+					if (decimal) { return false; }
+					decimal = true;
+				}
+				else if (ch == groupingSeparator && groupingUsed)
+				{
+					if (decimal) { return false; }
+				}
+				else
+				{
+					return false;
+				}
+			}
+
+			return false;
+		}
+
+		private static boolean checkWithFormat(CharSequence value)
+		{
+			DecimalFormat df = new DecimalFormat();
+			df.setParseBigDecimal(true);
+
+			try { df.parse(value.toString()); }
+			catch (ParseException e) { return false; } // cannot be parsed as this value
+
+			return true;
+		}
+	}
+
+	static final class DateValue extends ValueValidator
+	{
+		DateValue(ColumnData col) { super(col); }
+
+		@Override
+		boolean check(CharSequence value, int len)
+		{
+			// dates can be written in four different ways
+			// YYYY-MM-DD, YY-MM-DD, YYYYMMDD, and YYMMDD.
+			if (!(len == 10 || len == 8 || len == 6))
+			{
+				return false;
+			}
+
+			// it has punctuation if the whole thing can't be read as a number
+			if (parseInt(value, 0, len) != NOT_AN_INT)
+			{
+				if (len == 6)
+				{
+					return checkDate(value, 0, len, 0, 2, 2, 4, 4); // YYMMDD
+				}
+				else
+				{
+					return checkDate(value, 0, len, 0, 4, 4, 6, 6); // YYYYMMDD
+				}
+			}
+			else
+			{
+				if (len == 8)
+				{
+					return checkDate(value, 0, len, 0, 2, 3, 5, 6); // YY-MM-DD
+				}
+				else
+				{
+					return checkDate(value, 0, len, 0, 4, 5, 7, 8); // YYYY-MM-DD
+				}
+			}
+		}
+	}
+
+	static final class DateTimeValue extends ValueValidator
+	{
+		DateTimeValue(ColumnData col) { super(col); }
+
+		@Override
+		boolean check(CharSequence value, int len)
+		{
+			switch (len)
+			{
+			case 19:
+				// YYYY-MM-DD HH:MM:SS
+				// (the date has always been read with the YY-MM-DD positions here)
+				return checkDate(value, 0, 10, 0, 2, 3, 5, 6)
+						&& (value.charAt(10) == ' ' || value.charAt(10) == 'T')
+						&& checkTime(value, 11, 19, true, false, false);
+			case 17:
+				// YY-MM-DD HH:MM:SS
+				return checkDate(value, 0, 8, 0, 2, 3, 5, 6)
+						&& (value.charAt(8) == ' ' || value.charAt(8) == 'T')
+						&& checkTime(value, 9, 17, true, false, false);
+			case 14:
+				// YYYYMMDDHHMMSS
+				return checkDate(value, 0, 8, 0, 4, 4, 6, 6)
+						&& checkTime(value, 8, 14, false, false, false);
+			case 12:
+				// YYMMDDHHMMSS
+				return checkDate(value, 0, 6, 0, 2, 2, 4, 4)
+						&& checkTime(value, 6, 12, false, false, false);
+			default:
+				// does not match any of the possible lengths
+				return false;
+			}
+		}
+	}
+
+	static final class TimeValue extends ValueValidator
+	{
+		TimeValue(ColumnData col) { super(col); }
+
+		@Override
+		boolean check(CharSequence value, int len)
+		{
+			// First, let's check to see if it's HHMMSS format, by seeing if the entire string is a number
+			long time = parseInt(value, 0, len);
+			if (time != NOT_AN_INT)
+			{
+				if (len == 2)
+				{ // SS
+					if (time > 60) { return false; }
+				}
+				else if (len == 6)
+				{ // HHMMSS
+					return checkTime(value, 0, len, false, false, true);
+				}
+			}
+
+			// the D value is there if there's a space in index 1 or 2
+			// (a string too short to have those used to throw an exception here)
+			if (len < 2)
+			{
+				return false;
+			}
+
+			boolean hasday = value.charAt(1) == ' ';
+			if (!hasday)
+			{
+				if (len < 3) { return false; }
+				hasday = value.charAt(2) == ' ';
+			}
+
+			int tstart = 0;
+			if (hasday)
+			{
+				int space = 0;
+				while (value.charAt(space) != ' ') { space++; }
+
+				long day = parseInt(value, 0, space);
+
+				// D HH
+				long hour = parseInt(value, space + 1, len);
+				if (day != NOT_AN_INT && hour != NOT_AN_INT)
+				{
+					return !(day > 34 || day < 0) && !(hour > 24 || hour < 0);
+				}
+
+				if (day == NOT_AN_INT || day > 34 || day < 0)
+				{
+					return false;
+				}
+
+				tstart = space + 1;
+			}
+
+			if (len - tstart == 8) { // HH:MM:SS
+				return checkTime(value, tstart, len, true, false, true); }
+			else if (len - tstart == 5) { // HH:MM
+				return checkTime(value, tstart, len, true, true, true); }
+			else { return false; } // not a valid time format
+		}
+	}
+
+	static final class EnumValue extends ValueValidator
+	{
+		private final EnumLookup members;
+
+		EnumValue(ColumnData col)
+		{
+			super(col);
+			this.members = col.getEnumLookup();
+		}
+
+		@Override
+		boolean check(CharSequence value, int len)
+		{
+			return members.ordinal(value, 0, len) >= 0;
+		}
+	}
+
+	/**
+	 * A SET, whose elements are separated by commas. This matches what value.split(",") did, including that
+	 * empty elements at the end were dropped (so "a," is the same as "a", and "," is an empty set).
+	 * Each element is looked up in place, so nothing is split out.
+	 */
+	static final class SetValue extends ValueValidator
+	{
+		private final EnumLookup members;
+
+		SetValue(ColumnData col)
+		{
+			super(col);
+			this.members = col.getEnumLookup();
+		}
+
+		@Override
+		boolean check(CharSequence value, int len)
+		{
+			int end = elementsEnd(value, len);
+			int start = 0;
+			for (int i = 0; i <= end; i++)
+			{
+				if (i == end || value.charAt(i) == ',')
+				{
+					if (members.ordinal(value, start, i) < 0)
+					{
+						return false; // one of these items was not actually in the SET's values
+					}
+					start = i + 1;
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * Get the number MySQL stores a SET value as: bit i is set for the i'th member.
+		 * @return The bits, or -1 if one of the elements isn't a member. (-1 is also every one of 64 members, so a negative
+		 * number is only sure to be a bad value if the value hasn't been checked.)
+		 */
+		long mask(CharSequence value, int len)
+		{
+			long bits = 0;
+			int end = elementsEnd(value, len);
+			int start = 0;
+			for (int i = 0; i <= end; i++)
+			{
+				if (i == end || value.charAt(i) == ',')
+				{
+					int m = members.ordinal(value, start, i);
+					if (m < 0)
+					{
+						return -1;
+					}
+					if (m < 64) // a SET can't have more than 64 members
+					{
+						bits |= 1L << m;
+					}
+					start = i + 1;
+				}
+			}
+
+			return bits;
+		}
+
+		/**
+		 * Gets the index after the last element, ignoring the empty elements at the end (unless there are no commas at all).
+		 * -1 if there are no elements, as the value is nothing but commas.
+		 */
+		private static int elementsEnd(CharSequence value, int len)
+		{
+			boolean comma = false;
+			for (int i = 0; i < len; i++)
+			{
+				if (value.charAt(i) == ',') { comma = true; break; }
+			}
+
+			int end = len;
+			if (comma)
+			{
+				while (end > 0 && value.charAt(end - 1) == ',')
+				{
+					end--;
+				}
+
+				if (end == 0)
+				{
+					return -1;
+				}
+			}
+			return end;
+		}
+	}
+
+}
@@ -0,0 +1,560 @@
+import java.math.BigInteger;
+import java.text.DecimalFormat;
+import java.text.ParseException;
+
+/**
+ * ColumnData.isValidValue as it was before ValueValidator took its place, kept so ValueValidatorTest can check that the two agree.
+ * The code is copied as it was, except that it reads the column's settings through ColumnData's getters, and is static.
+ */
+public final class BaselineValidator
+{
+
+	private BaselineValidator() { }
+
+	/**
+	 * Checks to see if this string representation of a value is valid for this column's data type, the old way.
+	 * A TIME too short for the old checks threw a StringIndexOutOfBoundsException, which ValueValidator says is invalid instead,
+	 * so that's counted as invalid here too.
+	 * @param col The column.
+	 * @param value The value to check.
+	 * @return True if this is a valid value. False if it cannot be used.
+	 */
+	public static boolean isValidValue(ColumnData col, String value)
+	{
+		try
+		{
+			return check(col, value);
+		}
+		catch (StringIndexOutOfBoundsException e)
+		{
+			return false;
+		}
+	}
+	
+	private static boolean check(ColumnData col, String value)
+	{
+		// check the length first
+		// (vallength == 0 means there is no length)
+		if (col.getValLength() > 0)
+		{
+			if (value.length() > col.getValLength())
+			{
+				return false; // the input string is longer than what the column allows
+			}
+		}
+		
+		// check if null
+		if (value.isEmpty())
+		{
+			if (col.getNullable() == false)
+			{
+				return false; // the input string is null, and the column is set as NOT NULL
+			}
+		}
+		
+		switch (col.getType())
+		{
+		case Binary:
+			// a binary string
+			// any string will do, will just need to be converted to a byte array
+			return true;
+		case Bit:
+			// a bit is a binary string of 0s and 1s. 
+			// if the string contains more than ones and zeros, it is not valid
+			for (char ch : value.toCharArray())
+			{
+				if (!(ch == '0' || ch == '1'))
+				{
+					return false;
+				}
+			}
+			return true;
+		case Blob:
+			// a large string
+			// any string will do
+			return true;
+		case Byte:
+			if (col.isUnsigned())
+			{
+				return checkNumeric(value, NumericType.SHORT, true);
+			}
+			else
+			{
+				return checkNumeric(value, NumericType.BYTE, false);
+			}
+		case Date:
+			// dates can be written in four different ways
+			// YYYY-MM-DD, YY-MM-DD, YYYYMMDD, and YYMMDD.
+			// The string lengths are 10, 8, 8, and 6 respectively.
+			if (!(value.length() == 10 || value.length() == 8 || value.length() == 6))
+			{
+				return false;
+				// very quickly determined to be an invalid date string  because there's
+				// no format that this string could fit into based on the string's length alone 
+			}
+			
+			// For this first step, let's assume it is a valid date string.
+			// It will either have the punctuation or not.
+			boolean haspunc = false;
+			
+			try { Integer.parseInt(value); }
+			catch (NumberFormatException e) { haspunc = true; } // cannot be parsed as an integer
+			
+			// moved these to separate functions because I'll need them in another place too
+			if (haspunc == false)
+			{ // If it has no punctuation
+				
+				if (value.length() == 6)
+				{
+					// YYMMDD
+					return checkDate(value, 0, 2, 2, 4, 4);
+					
+				}
+				else
+				{
+					// YYYYMMDD
+					return checkDate(value, 0, 4, 4, 6, 6);
+				}
+			} else {
+				// punctuation or other non-numeral characters are in here
+				// first, let's see if the string could be YY-MM-DD, or YYYY-MM-DD
+				// afterwards, we'll check to see if it is a valid date
+				
+				if (value.length() == 8)
+				{
+					// YY-MM-DD
+					return checkDate(value, 0, 2, 3, 5, 6);
+				}
+				else
+				{
+					// YYYY-MM-DD
+					return checkDate(value, 0, 4, 5, 7, 8);
+				}
+			}
+			
+			// I realized after the fact that formats such as YYYY-M-D are acceptable if the Month and Day are under 10
+			// this code does not check for that. Month and Day must both always be 2 digits
+			// I'm going to keep it this way for the time being though
+			
+		case DateTime:
+			// this can be written in two distinct ways, with the 1st having 3 variations, and the 2nd having 1:
+			// With punctuation (punctuated) - YYYY-MM-DD HH:MM:SS
+			// Without punctuation (numeral) - YYYYMMDDHHMMSS
+			
+			// For the punctuated format, the letter "T" can be used in place of a space
+			// For both formats, the year value can be 2 digits (YY).
+			
+			// The punctuated format can have a length of 19 or 17.
+			// The numeral format can have a length of 14 or 12.
+			
+			if (value.length() == 19) {
+				// YYYY-MM-DD HH:MM:SS
+				
+				// First, check the date portion
+				if (!(checkDate(value.substring(0, 10), 0, 2, 3, 5, 6)))
+				{ return false; }
+				
+				// Secondly, check the character between the date and the time
+				// This character must be a space or the letter T
+				if (!(value.charAt(10) == ' ' || value.charAt(10) == 'T'))
+				{ return false; }
+				
+				// Finally, check the time portion
+				if (!(checkTime(value.substring(11), true, false, false)))
+				{ return false; }
+				
+			} else if (value.length() == 17) {
+				// YY-MM-DD HH:MM:SS
+				
+				// First, check the date portion
+				if (!(checkDate(value.substring(0, 8), 0, 2, 3, 5, 6)))
+				{ return false; }
+				
+				// Secondly, check the character between the date and the time
+				// This character must be a space or the letter T
+				if (!(value.charAt(8) == ' ' || value.charAt(8) == 'T'))
+				{ return false; }
+				
+				// Finally, check the time portion
+				if (!(checkTime(value.substring(9), true, false, false)))
+				{ return false; }
+				
+			} else if (value.length() == 14) {
+				// YYYYMMDDHHMMSS
+				
+				// First, check the date portion
+				if (!(checkDate(value.substring(0, 8), 0, 4, 4, 6, 6)))
+				{ return false; }
+				
+				// Finally, check the time portion
+				if (!(checkTime(value.substring(8), false, false, false)))
+				{ return false; }
+				
+			} else if (value.length() == 12) {
+				// YYMMDDHHMMSS
+				
+				// First, check the date portion
+				if (!(checkDate(value.substring(0, 6), 0, 2, 2, 4, 4)))
+				{ return false; }
+				
+				// Finally, check the time portion
+				if (!(checkTime(value.substring(6), false, false, false)))
+				{ return false; }
+				
+			} else {
+				// does not match any of the possible lengths
+				// this is a quick sign that the string isn't valid
+				return false;
+			}
+			
+			return true; // if it gets to this point, I think it checks out
+		case Decimal:
+			
+			DecimalFormat df = new DecimalFormat();
+			df.setParseBigDecimal(true);
+			
+			try { df.parse(value); }
+			catch (ParseException e) { return false; } // cannot be parsed as this value
+			
+			return true; // if it reached this point, that means it's valid
+		case Double:
+			return checkNumeric(value, NumericType.DOUBLE, false);
+		case Enum:
+			// check to see if this is a valid enum value
+			return col.getEnumValues().contains(value);
+		case Float:
+			return checkNumeric(value, NumericType.FLOAT, false);
+		case Integer:
+			if (col.isUnsigned())
+			{
+				return checkNumeric(value, NumericType.LONG, true);
+			}
+			else
+			{
+				return checkNumeric(value, NumericType.INT, false);
+			}
+		case Long:
+			if (col.isUnsigned())
+			{ // An unsigned long can be a BigInteger, so I will compare the value against that here
+				BigInteger bi = new BigInteger("0");
+				try { bi = new BigInteger(value); }
+				catch (NumberFormatException e) { return false; }
+				
+				if (bi.compareTo(BigInteger.ZERO) == -1) { return false; } // it is less than zero
+				else { return true; }
+			}
+			else { return checkNumeric(value, NumericType.LONG, false); }
+		case Set:
+			// similar to an ENUM type, except a SET value can have multiple elements set per item
+			String[] setvals = value.split(","); // each SET element is separated by a comma
+			
+			// now to check if each element is in the SET's values
+			for (String str : setvals)
+			{
+				if (col.getEnumValues().contains(str) == false)
+				{
+					return false; // one of these items was not actually in the SET's values
+				}
+			}
+			
+			return true; // if it got to this point, I think the string checks out
+		case Short:
+			if (col.isUnsigned())
+			{
+				return checkNumeric(value, NumericType.INT, true);
+			}
+			else
+			{
+				return checkNumeric(value, NumericType.SHORT, false);
+			}
+		case Text:
+			// a string is a string
+			return true;
+		case Time:
+			// TIME can be written in a variety of ways:
+			// D HH:MM:SS format (with variations HH:MM:SS, D HH:MM, HH:MM, D HH)
+			// HHMMSS format (with variations MMSS, SS)
+			// More variations exist (D HH:MM:SS.LLLLLL, HH:MM:SS.LLLLLL, and HHMMSS.LLLLLL),
+			// but those allow microsecond precision, and that is discarded when stored in TIME columns. Thus, we will not check that here.
+			
+			// First, let's check to see if it's HHMMSS format, by seeing if the entire string is a number
+			
+			try {
+				int time = Integer.parseInt(value);
+				
+				// if the code did not cause an exception, it will end up here
+				// thus, we can assume there's no punctuation and it's in the HHMMSS format
+				// let's parse it
+				if (value.length() == 2)
+				{ // SS
+					if (time > 60) { return false; }
+				}
+				else if (value.length() == 6)
+				{ // HHMMSS
+					return checkTime(value, false, false, true);
+				}
+				
+				// MMSS only applies if the data being entered is not being entered as a string
+				// it is assumed that the data being entered will be formatted as a string
+//				else if (value.length() == 4)
+//				{ // MMSS
+//					return checkTime(value, false, true);
+//				}
+
+			} catch (NumberFormatException e) { } // has punctuation or something, we'll check this in the next block 
+
+			String tims;
+			boolean hasday = false;
+			// first, check to see if the D value is assigned
+			// by checking to see if there's a space in index 1 or 2
+			if (value.charAt(1) == ' ' || value.charAt(2) == ' ') {
+				// assume there's the D value
+				
+				// before anything else, let's see if it's the D HH format
+				try
+				{ // D HH
+					int day = Integer.parseInt(value.substring(0, value.indexOf(' ')));
+					int hour = Integer.parseInt(value.substring(value.indexOf(' ') + 1));
+					
+					if (day > 34 || day < 0) { return false; }
+					else if (hour > 24 || hour < 0) { return false; }
+					else { return true; } // seems to be D HH and seems to check out
+				}
+				catch (NumberFormatException e)
+				{ // okay, not D HH format, let's move on
+					tims = value.substring(value.indexOf(' ') + 1);
+					hasday = true;
+				}
+			} else { // assume there's no D value
+				tims = value;
+				hasday = false;
+			}
+			
+			if (hasday == true) { // check day value
+				try {
+					int day = Integer.parseInt(value.substring(0, value.indexOf(' ')));
+					
+					if (day > 34 || day < 0) { return false; }
+				} catch (NumberFormatException e)
+				{
+					return false;
+					// the day value isn't valid (has a not-numeric character)
+					// that alone is enough to make this invalid
+				}
+			}
+			
+			if (tims.length() == 8) { // HH:MM:SS
+				return checkTime(tims, true, false, true); }
+			else if (tims.length() == 5) { // HH:MM
+				return checkTime(tims, true, true, true); }
+			else { return false; } // something about this string just isn't right, it's not a valid time format
+			
+		case VarChar:
+			// a string is a string
+			return true;
+		default:
+			return false; // I don't think this line will ever be reached
+			
+		}
+	}
+	
+	private static boolean checkDate(String value, int y1, int y2, int m1, int m2, int d)
+	{
+		try
+		{
+			/*int year = */ Integer.parseInt(value.substring(y1, y2));
+			int month = Integer.parseInt(value.substring(m1, m2));
+			int day = Integer.parseInt(value.substring(d));
+			
+			if (month > 12)
+			{
+				return false; // only 12 months
+			}
+			
+			if (month == 1 || month == 3 || month == 5 || month == 7 || month == 8 || month == 10 || month == 12)
+			{
+				if (day > 31)
+				{
+					return false; // these 7 months have 31 days
+				}
+			}
+			else if (month == 2)
+			{
+				if (day > 29)
+				{
+					return false; // February only has 28
+					// to save time, we do not check to see if February is a leap year on the specified year
+				}
+			}
+			else
+			{
+				if (day > 30)
+				{
+					return false; // the remaining months have 30 days
+				}
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			// if we're here
+			// that means one of the numbers above really isn't a number
+			// so... it's not a valid date string
+			return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Check a string representation of a time value to see if it is valid.
+	 * @param value The value to check.
+	 * @param punctuation Check if there is punctuation or not. For example, if checking for "HH:MM:SS", input "true".
+	 * If checking for "HHMMSS", input false.
+	 * @param twovalues Check for two values or three. For example, if checking for "HH:MM", input "true".
+	 * If checking for "HH:MM:SS", input "false".
+	 * @param allowlargerthan24hrs Allow the max hour value to be 99 or 24. If "true", the max value will be 99.
+	 * @return "true" if the string is valid. "false" if the string is invalid in some way.
+	 */
+	private static boolean checkTime(String value, boolean punctuation, boolean twovalues, boolean allowlargerthan24hrs)
+	{	
+		int hour = 0;
+		int min = 0;
+		int sec = 0;
+		
+		if (punctuation == true)
+		{
+			// HH:MM:SS or HH:MM
+			try
+			{
+				
+				if (twovalues == false)
+				{
+					// HH:MM:SS
+					hour = Integer.parseInt(value.substring(0, 2));
+					min = Integer.parseInt(value.substring(3, 5));
+					sec = Integer.parseInt(value.substring(6));
+				}
+				else
+				{
+					// HH:MM
+					hour = Integer.parseInt(value.substring(0, 2));
+					min = Integer.parseInt(value.substring(3));
+				}
+				
+			}
+			catch (NumberFormatException e)
+			{
+				// if we're here, that means one of the numbers above really isn't a number
+				// so... it's not a valid time string
+				return false;
+			}
+		}
+		else
+		{
+			// HHMMSS or MMSS
+			try
+			{		
+				if (twovalues == false)
+				{
+					// HHMMSS
+					hour = Integer.parseInt(value.substring(0, 2));
+					min = Integer.parseInt(value.substring(2, 4));
+					sec = Integer.parseInt(value.substring(4));
+				}
+				else
+				{
+					// MMSS
+					min = Integer.parseInt(value.substring(0, 2));
+					sec = Integer.parseInt(value.substring(2));
+				}
+			}
+			catch (NumberFormatException e)
+			{
+				// if we're here, that means one of the numbers above really isn't a number
+				// so... it's not a valid time string
+				return false;
+			}
+		}
+		
+		// parse time values
+		if (allowlargerthan24hrs)
+		{
+			if (hour > 99 || hour < -9)
+			{
+				return false;
+			}
+		}
+		else
+		{
+			if (hour > 24 || hour < 0)
+			{
+				return false;
+			}
+		}
+
+		if (min > 59 || min < 0)
+		{
+			return false;
+		}
+		
+		if (sec > 59 || min < 0)
+		{
+			return false;
+		}
+		
+		return true; // seems fine to me
+		
+	}
+	
+	private enum NumericType { BYTE, SHORT, INT, LONG, FLOAT, DOUBLE }
+	
+	private static boolean checkNumeric(String value, NumericType type, boolean checknegatives)
+	{
+		Number n;
+		
+		try
+		{
+			switch (type)
+			{
+			case BYTE:
+				n = Byte.parseByte(value);
+				break;
+			case DOUBLE:
+				n = Double.parseDouble(value);
+				break;
+			case FLOAT:
+				n = Float.parseFloat(value);
+				break;
+			case INT:
+				n = Integer.parseInt(value);
+				break;
+			case LONG:
+				n = Long.parseLong(value);
+				break;
+			case SHORT:
+				n = Short.parseShort(value);
+				break;
+			default:
+				n = 0;
+				return false;
+			}
+			
+		}
+		catch (NumberFormatException e)
+		{
+			return false; // cannot be parsed as this value
+		}
+		
+		// check if unsigned
+		if (checknegatives)
+		{
+			if (n.longValue() < 0)
+			{
+				return false;
+			}
+		}
+		
+		return true;  // if it reached this point, that means it's valid
+	}
+	
+}
@@ -0,0 +1,87 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Checks that BulkLoader writes each value as what a batch of INSERTs would bind for it, rather than as it was typed.
+ */
+public class BulkLoaderTest
+{
+
+	private static String write(String type, String value) throws Exception
+	{
+		return write(Columns.one("c", type), value);
+	}
+
+	private static String write(ColumnData col, String value) throws Exception
+	{
+		StringBuilder text = new StringBuilder();
+		BulkLoader.writeValue(text, col, value, col.toParameter(value));
+		return text.toString();
+	}
+
+	private static void assertTurnedDown(String type, String value) throws Exception
+	{
+		try
+		{
+			String written = write(type, value);
+			fail("'" + value + "' was written as '" + written + "'");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void floatingNumbersAreWrittenAsJavaReadThem() throws Exception
+	{
+		// the loader would read these as 0 and 1, with only a warning
+		assertEquals("8.0", write("double", "0x1p3"));
+		assertEquals("1.5", write("double", "1.5f"));
+		assertEquals("2.0", write("float", " 2 "));
+		assertEquals("1.0E10", write("double", "1e10"));
+		assertEquals("0.0", write("double", "-0"));
+	}
+
+	@Test
+	public void numbersTheServerDoesNotStoreAreTurnedDown() throws Exception
+	{
+		assertTurnedDown("double", "NaN");
+		assertTurnedDown("double", "-Infinity");
+		assertTurnedDown("decimal(10,2)", "12abc");
+		assertTurnedDown("decimal(10,2)", "1,000");
+	}
+
+	@Test
+	public void decimalsAndWholeNumbersAreWrittenPlainly() throws Exception
+	{
+		assertEquals("1000", write("decimal(10,2)", "1e3"));
+		assertEquals("-12.50", write("decimal(10,2)", "-12.50"));
+		assertEquals("42", write("int(11)", "+42"));
+		assertEquals("18446744073709551615", write("bigint(20) unsigned", "18446744073709551615"));
+		assertEquals("5", write("bit(8)", "101"));
+	}
+
+	@Test
+	public void datesAndTimesAreWrittenInFull() throws Exception
+	{
+		assertEquals("2015-06-30", write("date", "20150630"));
+		assertEquals("2015-06-30 12:30:45", write("datetime", "20150630123045"));
+		assertEquals("12:30:45", write("time", "123045"));
+
+		// one Java can't read is sent as it was typed, the same as INSERTs send it
+		assertEquals("0000-00-00", write("date", "0000-00-00"));
+	}
+
+	@Test
+	public void emptyValuesAndEscapes() throws Exception
+	{
+		// only a NOT NULL column takes an empty value (see ValueValidator), which is NULL for a BIT and an empty string for text
+		assertEquals("\\N", write(Columns.of(new String[] { "c", "bit(8)", "NO" }).get(0), ""));
+		assertEquals("", write(Columns.of(new String[] { "c", "varchar(20)", "NO" }).get(0), ""));
+		assertEquals("a\\tb\\nc\\\\d", write("varchar(20)", "a\tb\nc\\d"));
+	}
+
+}
@@ -0,0 +1,65 @@
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+/**
+ * Builds ColumnData from made-up "DESCRIBE" results, so the tests don't need a server to set up their columns.
+ */
+public final class Columns
+{
+
+	private static final String[] COLUMNS = { "Field", "Type", "Null", "Key", "Default", "Extra" };
+
+	private Columns() { }
+
+	/**
+	 * Build the columns of a table.
+	 * @param rows The name, type (as DESCRIBE writes it, such as "int(11) unsigned") and "YES"/"NO" for NULL of each column.
+	 * @return The columns, as ColumnData.buildColumnData returns them.
+	 * @throws SQLException If the ResultSet couldn't be created.
+	 */
+	public static List<ColumnData> of(String[]... rows) throws SQLException
+	{
+		RowSetMetaDataImpl meta = new RowSetMetaDataImpl();
+		meta.setColumnCount(COLUMNS.length);
+		for (int i = 0; i < COLUMNS.length; i++)
+		{
+			meta.setColumnName(i + 1, COLUMNS[i]);
+			meta.setColumnLabel(i + 1, COLUMNS[i]);
+			meta.setColumnType(i + 1, Types.VARCHAR);
+		}
+
+		CachedRowSet rs = RowSetProvider.newFactory().createCachedRowSet();
+		rs.setMetaData(meta);
+
+		// the row set puts each inserted row before the ones already in it, so go through them backwards to keep them in order
+		for (int r = rows.length - 1; r >= 0; r--)
+		{
+			rs.moveToInsertRow();
+			rs.updateString(1, rows[r][0]);
+			rs.updateString(2, rows[r][1]);
+			rs.updateString(3, rows[r][2]);
+			rs.updateString(4, "");
+			rs.updateNull(5);
+			rs.updateString(6, "");
+			rs.insertRow();
+			rs.moveToCurrentRow();
+		}
+
+		rs.beforeFirst();
+		return ColumnData.buildColumnData(rs);
+	}
+
+	/**
+	 * Build a single column that can hold NULL.
+	 */
+	public static ColumnData one(String name, String type) throws SQLException
+	{
+		return of(new String[] { name, type, "YES" }).get(0);
+	}
+
+}
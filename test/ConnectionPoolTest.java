@@ -0,0 +1,256 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks how ConnectionPool hands out, takes back and throws away connections, over an H2 database in memory (in its MySQL mode),
+ * so no server is needed.
+ */
+public class ConnectionPoolTest
+{
+
+	private static int databases = 0;
+
+	private String url;
+	private ConnectionPool pool;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		// a database of its own for each test, kept even while the pool has no connections open to it
+		url = "jdbc:h2:mem:pool" + (++databases) + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+	}
+
+	@After
+	public void tearDown()
+	{
+		if (pool != null)
+		{
+			pool.close();
+		}
+	}
+
+	@Test
+	public void releasedConnectionIsBorrowedAgain() throws Exception
+	{
+		pool = new ConnectionPool(url, 1, 4);
+		assertEquals(1, pool.getTotalCount());
+		assertEquals(1, pool.getIdleCount());
+
+		Connection conn = pool.borrow();
+		assertEquals(1, pool.getActiveCount());
+		assertEquals(0, pool.getIdleCount());
+		pool.release(conn);
+
+		assertSame(conn, pool.borrow());
+		assertEquals(1, pool.getCreatedCount());
+		assertEquals(2, pool.getBorrowCount());
+	}
+
+	@Test
+	public void newConnectionsAreOpenedUpToTheMaximum() throws Exception
+	{
+		pool = new ConnectionPool(url, 0, 3);
+		assertEquals(0, pool.getTotalCount());
+
+		Connection a = pool.borrow();
+		Connection b = pool.borrow();
+		Connection c = pool.borrow();
+		assertNotSame(a, b);
+		assertNotSame(b, c);
+		assertEquals(3, pool.getTotalCount());
+		assertEquals(3, pool.getActiveCount());
+
+		pool.release(a);
+		pool.release(b);
+		pool.release(c);
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(3, pool.getIdleCount());
+	}
+
+	@Test
+	public void releaseRollsBackAnUnfinishedTransaction() throws Exception
+	{
+		pool = new ConnectionPool(url, 1, 1);
+		execute("CREATE TABLE t (id INT PRIMARY KEY)");
+
+		Connection conn = pool.borrow();
+		conn.setAutoCommit(false);
+		Statement stmt = conn.createStatement();
+		stmt.execute("INSERT INTO t VALUES (1)");
+		stmt.close();
+		pool.release(conn);
+
+		conn = pool.borrow();
+		assertTrue(conn.getAutoCommit());
+		pool.release(conn);
+		assertEquals(0, count("t"));
+	}
+
+	@Test
+	public void borrowTimesOutWhenEveryConnectionIsInUse() throws Exception
+	{
+		pool = new ConnectionPool(url, 1, 1);
+		pool.setAcquireTimeout(100);
+
+		Connection conn = pool.borrow();
+		long start = System.nanoTime();
+		try
+		{
+			pool.borrow();
+			fail("A second connection was borrowed from a pool of one.");
+		}
+		catch (SQLException e)
+		{
+			assertEquals("08001", e.getSQLState());
+		}
+		assertTrue((System.nanoTime() - start) / 1000000 >= 100);
+		assertEquals(1, pool.getTimeoutCount());
+
+		// the permit of the borrow that timed out isn't lost, so giving the connection back lets the next one through
+		pool.release(conn);
+		pool.release(pool.borrow());
+		assertEquals(0, pool.getActiveCount());
+	}
+
+	@Test
+	public void idleConnectionsAreEvictedDownToTheMinimum() throws Exception
+	{
+		pool = new ConnectionPool(url, 1, 3);
+		pool.setIdleTimeout(0);
+
+		Connection a = pool.borrow();
+		Connection b = pool.borrow();
+		Connection c = pool.borrow();
+		pool.release(a);
+		pool.release(b);
+		pool.release(c);
+		assertEquals(3, pool.getIdleCount());
+
+		pool.evictIdle();
+		assertEquals(1, pool.getTotalCount());
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(2, pool.getDestroyedCount());
+
+		// the oldest are closed first, so the one used last is kept
+		assertSame(c, pool.borrow());
+		assertTrue(a.isClosed());
+	}
+
+	@Test
+	public void evictionTopsThePoolBackUp() throws Exception
+	{
+		pool = new ConnectionPool(url, 2, 4);
+
+		pool.invalidate(pool.borrow());
+		pool.invalidate(pool.borrow());
+		assertEquals(0, pool.getTotalCount());
+
+		pool.evictIdle();
+		assertEquals(2, pool.getTotalCount());
+		assertEquals(2, pool.getIdleCount());
+	}
+
+	@Test
+	public void connectionLostIsInvalidatedAndReplaced() throws Exception
+	{
+		pool = new ConnectionPool(url, 1, 1);
+		pool.setAcquireTimeout(100);
+		execute("CREATE TABLE t (id INT PRIMARY KEY)");
+
+		Connection conn = pool.borrow();
+		Statement stmt = conn.createStatement();
+		ResultSet rs = stmt.executeQuery("SELECT SESSION_ID()");
+		rs.next();
+		int session = rs.getInt(1);
+
+		// drop the session from the database's side, as a server does when it restarts or times a connection out
+		Connection other = DriverManager.getConnection(url);
+		other.createStatement().execute("CALL ABORT_SESSION(" + session + ")");
+		other.close();
+
+		try
+		{
+			stmt.executeQuery("SELECT * FROM t");
+			fail("A dropped connection ran a query.");
+		}
+		catch (SQLException e)
+		{
+			// ServerComm and the others throw the connection away on an error of class 08, which MySQL's driver gives for this ("08S01");
+			// H2 has its own code for it, so this is where they would call invalidate
+			pool.invalidate(conn);
+		}
+		assertEquals(0, pool.getTotalCount());
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(1, pool.getDestroyedCount());
+
+		// its permit is back, and the next borrow opens a working connection in its place
+		Connection fresh = pool.borrow();
+		assertNotSame(conn, fresh);
+		pool.release(fresh);
+		assertEquals(0, count("t"));
+		assertEquals(2, pool.getCreatedCount());
+	}
+
+	@Test
+	public void idleConnectionClosedFromUnderThePoolIsReplaced() throws Exception
+	{
+		pool = new ConnectionPool(url, 1, 1);
+
+		Connection conn = pool.borrow();
+		pool.release(conn);
+		conn.close(); // dropped while it sat in the pool
+
+		Connection fresh = pool.borrow();
+		assertNotSame(conn, fresh);
+		assertTrue(fresh.isValid(1));
+		pool.release(fresh);
+		assertEquals(1, pool.getDestroyedCount());
+	}
+
+	private void execute(String sql) throws SQLException
+	{
+		Connection conn = pool.borrow();
+		try
+		{
+			Statement stmt = conn.createStatement();
+			stmt.execute(sql);
+			stmt.close();
+		}
+		finally
+		{
+			pool.release(conn);
+		}
+	}
+
+	private int count(String table) throws SQLException
+	{
+		Connection conn = pool.borrow();
+		try
+		{
+			Statement stmt = conn.createStatement();
+			ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table);
+			rs.next();
+			int n = rs.getInt(1);
+			stmt.close();
+			return n;
+		}
+		finally
+		{
+			pool.release(conn);
+		}
+	}
+
+}
@@ -0,0 +1,230 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Imports the same file with batches of INSERTs and with LOAD DATA LOCAL INFILE, and checks that both store the same values and turn down
+ * the same rows. The file is mostly values the validator lets through but that the server reads differently from Java (hex and suffixed
+ * floating-point numbers, grouping separators, 2 digit years, leap days, the ends of unsigned ranges, ENUM and SET values in another case).
+ *
+ * This needs a real server, so it only runs when one is given, such as:
+ *
+ *     mvn test -Dmysql.url="jdbc:mysql://localhost:3306/test?user=me&password=secret&useSSL=false"
+ *
+ * The server should be in strict mode (as MySQL and MariaDB are by default), so INSERTs are turned down rather than changed to fit.
+ * The tables it makes are dropped at the end.
+ */
+public class ImportPathsTest
+{
+
+	// the options ServerComm connects with, so the rows are sent the way the program sends them
+	private static final String OPTIONS = "useServerPrepStmts=true&useCursorFetch=true&rewriteBatchedStatements=true&allowLoadLocalInfile=true";
+
+	private static final String COLUMNS = "(id INT NOT NULL PRIMARY KEY, i INT NULL, u BIGINT UNSIGNED NULL, d DOUBLE NULL, f FLOAT NULL,"
+			+ " n DECIMAL(10,2) NULL, dt DATE NULL, dtm DATETIME NULL, tm TIME NULL, b BIT(8) NULL, e ENUM('a','B','c d') NULL,"
+			+ " s SET('a','b','c') NULL, v VARCHAR(10) NULL)";
+
+	// one row per value to try, with every other column left at a plain value
+	private static final String[] PLAIN = { "1", "1", "1", "1", "1", "20200101", "20200101000000", "00:00:00", "1", "a", "a", "x" };
+	private static final String[][] VALUES = {
+		{ "+42", "-2147483648", "2147483647", " 7 " }, // i
+		{ "0", "18446744073709551615", "4294967296" }, // u
+		{ "0x1p3", "1.5f", "2d", "1e300", "-0", "NaN", "Infinity" }, // d
+		{ "0.1", "3.4e38", "1e-10" }, // f
+		{ "1,000", "12abc", "1e3", "-0.005", "12345678.99" }, // n
+		{ "15-06-30", "99-12-31", "2016-02-29", "2015-02-29", "20000229", "0000-00-00" }, // dt
+		{ "20160229235959", "160229235959", "20151231235959" }, // dtm
+		{ "12:30:45", "123045", "12:30", "838:59:59" }, // tm
+		{ "101", "11111111", "0" }, // b
+		{ "B", "b", "c d" }, // e
+		{ "a,b", "b,a", "A", "c,c" }, // s
+		{ "tab\there", "x\\y", "toolongvalue" } // v
+	};
+
+	private ConnectionPool pool;
+	private File file;
+	private int rows;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		String url = System.getProperty("mysql.url");
+		Assume.assumeTrue("No server was given with -Dmysql.url", url != null && !url.isEmpty());
+
+		pool = new ConnectionPool(url + (url.contains("?") ? "&" : "?") + OPTIONS);
+		execute("DROP TABLE IF EXISTS import_paths_insert, import_paths_load");
+		execute("CREATE TABLE import_paths_insert " + COLUMNS);
+		execute("CREATE TABLE import_paths_load " + COLUMNS);
+
+		file = File.createTempFile("import-paths", ".csv");
+		writeRows(file);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		if (pool == null)
+		{
+			return;
+		}
+
+		try
+		{
+			execute("DROP TABLE IF EXISTS import_paths_insert, import_paths_load");
+		}
+		finally
+		{
+			pool.close();
+			new File(file.getPath() + ".rejected").delete();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void bothPathsStoreTheSameValues() throws Exception
+	{
+		String insertRejected = importInto("import_paths_insert", false);
+		String loadRejected = importInto("import_paths_load", true);
+
+		assertEquals("The rows turned down", insertRejected, loadRejected);
+
+		List<String> inserted = select("import_paths_insert");
+		List<String> loaded = select("import_paths_load");
+		assertTrue("Hardly any rows were added", inserted.size() > rows / 2);
+		assertEquals("The rows stored", inserted, loaded);
+	}
+
+	/**
+	 * Import the file into a table, one row per batch so a row the server turns down doesn't take others with it.
+	 * @return The rows that were turned down, as they are in the rejected file.
+	 */
+	private String importInto(String table, boolean loadData) throws Exception
+	{
+		List<ColumnData> cols;
+		Connection conn = pool.borrow();
+		try
+		{
+			Statement stmt = conn.createStatement();
+			cols = ColumnData.buildColumnData(stmt.executeQuery("DESCRIBE " + table));
+			stmt.close();
+		}
+		finally
+		{
+			pool.release(conn);
+		}
+
+		FileImporter imp = new FileImporter(pool, table, cols, 1, 1);
+		imp.setFormatFromName(file);
+		imp.setLoadData(loadData);
+		imp.run(file);
+
+		File rejected = imp.getRejectedFile();
+		if (!rejected.exists())
+		{
+			return "";
+		}
+		String text = new String(Files.readAllBytes(rejected.toPath()), Charset.forName("UTF-8"));
+		rejected.delete();
+		return text;
+	}
+
+	/**
+	 * Read every row of a table as text, in the order of its ids.
+	 */
+	private List<String> select(String table) throws SQLException
+	{
+		List<String> result = new ArrayList<String>();
+		Connection conn = pool.borrow();
+		try
+		{
+			Statement stmt = conn.createStatement();
+			// BIT columns are read as their number, as getString would give the raw byte, and dates as text, as the driver can't read a zero date
+			ResultSet rs = stmt.executeQuery("SELECT id, i, u, d, f, n, CAST(dt AS CHAR), CAST(dtm AS CHAR), CAST(tm AS CHAR), b + 0, e, s, v FROM "
+					+ table + " ORDER BY id");
+			ResultSetMetaData meta = rs.getMetaData();
+			while (rs.next())
+			{
+				StringBuilder row = new StringBuilder();
+				for (int c = 1; c <= meta.getColumnCount(); c++)
+				{
+					row.append(c > 1 ? "|" : "").append(rs.getString(c));
+				}
+				result.add(row.toString());
+			}
+			stmt.close();
+		}
+		finally
+		{
+			pool.release(conn);
+		}
+		return result;
+	}
+
+	private void writeRows(File file) throws IOException
+	{
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+		try
+		{
+			out.write("id,i,u,d,f,n,dt,dtm,tm,b,e,s,v\n");
+			int id = 0;
+			for (int c = 0; c < VALUES.length; c++)
+			{
+				for (String value : VALUES[c])
+				{
+					out.write(Integer.toString(++id));
+					for (int p = 0; p < PLAIN.length; p++)
+					{
+						out.write(',');
+						out.write(quote(p == c ? value : PLAIN[p]));
+					}
+					out.write('\n');
+				}
+			}
+			rows = id;
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	private static String quote(String value)
+	{
+		return (value.indexOf(',') >= 0) ? "\"" + value + "\"" : value;
+	}
+
+	private void execute(String sql) throws SQLException
+	{
+		Connection conn = pool.borrow();
+		try
+		{
+			Statement stmt = conn.createStatement();
+			stmt.execute(sql);
+			stmt.close();
+		}
+		finally
+		{
+			pool.release(conn);
+		}
+	}
+
+}
@@ -0,0 +1,46 @@
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks which statements QueryRunner turns away for changing the connection they're sent over.
+ */
+public class QueryRunnerTest
+{
+
+	@Test
+	public void sessionChangesAreFound() throws Exception
+	{
+		assertTrue(QueryRunner.changesSession("SET sql_mode=''"));
+		assertTrue(QueryRunner.changesSession("  use test"));
+		assertTrue(QueryRunner.changesSession("CREATE TEMPORARY TABLE t (a INT)"));
+		assertTrue(QueryRunner.changesSession("SELECT 1 INTO @a"));
+		assertTrue(QueryRunner.changesSession("select @a := 1"));
+	}
+
+	@Test
+	public void leadingCommentsAreSkipped() throws Exception
+	{
+		assertTrue(QueryRunner.changesSession("/* x */ SET sql_mode=''"));
+		assertTrue(QueryRunner.changesSession("-- c\nSET @a=1"));
+		assertTrue(QueryRunner.changesSession("# c\r\n\tLOCK TABLES t WRITE"));
+		assertTrue(QueryRunner.changesSession("/* a */ -- b\n/* c\n d */ create temporary table t (a int)"));
+
+		// the server runs what's in an executable comment
+		assertTrue(QueryRunner.changesSession("/*!40101 SET NAMES utf8 */"));
+		assertTrue(QueryRunner.changesSession("/*M!100101 SET @a=1 */"));
+	}
+
+	@Test
+	public void otherStatementsAreLetThrough() throws Exception
+	{
+		assertFalse(QueryRunner.changesSession("SELECT @@sql_mode"));
+		assertFalse(QueryRunner.changesSession("/* SET */ SELECT 1"));
+		assertFalse(QueryRunner.changesSession("-- SET @a=1\nSELECT 1"));
+		assertFalse(QueryRunner.changesSession("--1\nSELECT 1")); // "--" with no space after it isn't a comment
+		assertFalse(QueryRunner.changesSession("/* never closed SET"));
+		assertFalse(QueryRunner.changesSession("CREATE TABLE t (a INT)"));
+	}
+
+}
@@ -0,0 +1,224 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Checks that ValueValidator accepts and turns down exactly the values ColumnData.isValidValue used to (see BaselineValidator),
+ * and that ColumnData.read (which checks a value as it reads it) does too, over a made-up corpus of values for every kind of column, NULL or NOT NULL, in a few locales (DECIMAL values are read the way
+ * the default locale writes numbers). The corpus is made from a fixed seed, so a failure can be run again.
+ */
+public class ValueValidatorTest
+{
+
+	private static final long SEED = 20151031L;
+	private static final int RANDOM_VALUES = 2000;
+
+	// the types as DESCRIBE writes them, with and without a length where that changes what's checked
+	private static final String[] TYPES = {
+		"tinyint(4)", "tinyint(3) unsigned", "smallint(6)", "smallint(5) unsigned", "mediumint(9)", "int(11)", "int", "int(10) unsigned",
+		"bigint(20)", "bigint", "bigint(20) unsigned", "bigint unsigned", "float", "double", "double unsigned", "decimal(10,2)", "decimal",
+		"date", "year(4)", "datetime", "timestamp", "time", "bit(1)", "bit(8)", "bit", "enum('a','B','c d','')", "set('a','b','c','A')",
+		"varchar(5)", "char(1)", "text", "blob", "binary(4)"
+	};
+
+	private static final String[] LOCALES = { "en-US", "de-DE", "fr-FR", "hi-IN", "ar-EG" };
+
+	private final Locale before = Locale.getDefault();
+
+	@After
+	public void tearDown()
+	{
+		Locale.setDefault(before);
+	}
+
+	@Test
+	public void validatorAgreesWithTheOldChecks() throws Exception
+	{
+		List<String> corpus = corpus();
+		List<String> mismatches = new ArrayList<String>();
+
+		for (String tag : LOCALES)
+		{
+			Locale.setDefault(Locale.forLanguageTag(tag));
+
+			for (String type : TYPES)
+			{
+				for (String nullable : new String[] { "YES", "NO" })
+				{
+					// a validator reads the locale's symbols when it's made, so the column is made after the locale is set
+					ColumnData col = Columns.of(new String[] { "c", type, nullable }).get(0);
+
+					for (String value : corpus)
+					{
+						boolean expected = BaselineValidator.isValidValue(col, value);
+						boolean actual = col.isValidValue(value);
+						if (expected != actual && mismatches.size() < 50)
+						{
+							mismatches.add(tag + " " + type + " " + nullable + " '" + value + "': was " + expected + ", now " + actual);
+						}
+
+						// reading a value into its parameter checks it along the way, and has to agree as well
+						boolean read = col.read(value) != ColumnData.INVALID;
+						if (read != actual && mismatches.size() < 50)
+						{
+							mismatches.add(tag + " " + type + " " + nullable + " '" + value + "': valid is " + actual + ", read is " + read);
+						}
+					}
+				}
+			}
+		}
+
+		assertEquals("Values the two disagree on", Collections.<String>emptyList(), mismatches);
+	}
+
+	/**
+	 * Make the values to check: ones picked by hand for the rules most likely to go wrong, then ones built to look like numbers,
+	 * dates and times with something off about them, then random strings of the characters those are made from.
+	 */
+	private static List<String> corpus()
+	{
+		List<String> values = new ArrayList<String>();
+		Random random = new Random(SEED);
+
+		String[] picked = {
+			"", " ", "0", "-0", "+0", "1", "-1", "+1", "00", "007", "1 ", " 1", "1\t", "٣", "१२", "１",
+			// floating-point numbers: hex, type letters, NaN and infinity, exponents
+			"0x1p3", "0X1.8P1", "-0x.8p-1", "0x1", "0x1p", "1.5f", "1.5F", "2d", "2D", "1e10", "1E-5", "1e", "e1", ".5", "5.", ".", "-.5e+2",
+			"NaN", "-NaN", "Infinity", "-Infinity", "+Infinity", "infinity", "Inf", " NaN ", "1.5fd", "1_000",
+			// grouping separators and the like, which DecimalFormat reads as far as it can
+			"1,000", "1,000.5", "1.000,5", "1 000", "1 000", "1 000", "12abc", "abc12", "1,2,3", ",5", "5,", "-1,000", "1..2", "∞", "-∞",
+			"1E3", "1e3", "%5", "5%", "‰", "(5)", "$5",
+			// the ends of each range
+			"127", "128", "-128", "-129", "255", "256", "32767", "32768", "-32768", "-32769", "65535", "2147483647", "2147483648",
+			"-2147483648", "-2147483649", "4294967295", "4294967296", "9223372036854775807", "9223372036854775808", "-9223372036854775808",
+			"-9223372036854775809", "18446744073709551615", "18446744073709551616", "99999999999999999999999", "-18446744073709551615",
+			"3.4028235E38", "3.5E38", "1.7976931348623157E308", "1.8E308", "4.9E-324", "1E-400",
+			// dates with 2 and 4 digit years, leap days and days past the end of the month
+			"2016-02-29", "2015-02-29", "1900-02-29", "2000-02-29", "16-02-29", "15-02-30", "2015-04-31", "2015-13-01", "2015-00-00",
+			"0000-00-00", "20160229", "160229", "150230", "2015/06/30", "2015.06.30", "15/06/30", "2015-6-30", "2015-06-3", "99-12-31",
+			"1999-12-31", "70-01-01", "69-12-31", "2015", "15", "2015-06-30x", "-015-06-30", "+015-06-30", "2015--6-30", "2015-06--3",
+			// datetimes
+			"2015-06-30 12:30:45", "2015-06-30T12:30:45", "15-06-30 12:30:45", "15-06-30T12:30:45", "20150630123045", "150630123045",
+			"2016-02-29 24:00:00", "2016-02-29 23:59:60", "20160229246000", "15-06-30 1:30:45", "15-06-30X12:30:45", "2015-06-30 12:30",
+			// times
+			"12:30:45", "838:59:59", "99:59:59", "100:00:00", "-1:00:00", "12:30", "12:60", "1 12:30:45", "34 12:30:45", "35 12:30:45",
+			"1 12:30", "1 12", "34 24", "35 1", "12 24", "123045", "995959", "126045", "45", "61", "60", "1", "1 ", "12", "12 ", "1:2",
+			"-12:30:45", "12:30:45.5", "1 -1:00:00",
+			// ENUM and SET values, in other cases and with commas
+			"a", "A", "b", "B", "c d", "C D", "c", "a,b", "a,B", "b,a", "a,a", "a,", "a,,", ",a", "a,,b", ",", ",,", "a,b,c", "a,b,c,A",
+			"a, b", "d", "a b",
+			// bits and strings
+			"101", "102", "0101", "11111111", "111111111", "1111111111111111111111111111111111111111111111111111111111111111",
+			"abcde", "abcdef", "é", "a\u0000b"
+		};
+		Collections.addAll(values, picked);
+
+		for (int i = 0; i < RANDOM_VALUES; i++)
+		{
+			values.add(number(random));
+			values.add(date(random));
+			values.add(time(random));
+			values.add(date(random) + pick(random, " ", "T", "", "x") + time(random));
+			values.add(member(random));
+			values.add(noise(random));
+		}
+
+		return values;
+	}
+
+	private static String number(Random random)
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(pick(random, "", "", "-", "+", " "));
+		if (random.nextInt(10) == 0)
+		{
+			sb.append(pick(random, "0x", "0X"));
+		}
+		sb.append(digits(random, random.nextInt(22)));
+		if (random.nextInt(3) == 0)
+		{
+			sb.append(pick(random, ".", ",", ".", " ")).append(digits(random, random.nextInt(6)));
+		}
+		if (random.nextInt(5) == 0)
+		{
+			sb.append(pick(random, "e", "E", "p", "P")).append(pick(random, "", "-", "+")).append(digits(random, random.nextInt(4)));
+		}
+		if (random.nextInt(8) == 0)
+		{
+			sb.append(pick(random, "f", "F", "d", "D", "x", " ", "%"));
+		}
+		return sb.toString();
+	}
+
+	private static String date(Random random)
+	{
+		String sep = pick(random, "-", "-", "-", "", "/", ".");
+		String year = (random.nextBoolean()) ? twoDigits(random, 100) : twoDigits(random, 30) + twoDigits(random, 100);
+		return year + sep + twoDigits(random, 14) + sep + twoDigits(random, 33);
+	}
+
+	private static String time(Random random)
+	{
+		switch (random.nextInt(6))
+		{
+		case 0: return twoDigits(random, 100) + ":" + twoDigits(random, 62) + ":" + twoDigits(random, 62);
+		case 1: return twoDigits(random, 100) + ":" + twoDigits(random, 62);
+		case 2: return random.nextInt(40) + " " + twoDigits(random, 26) + ":" + twoDigits(random, 62) + ":" + twoDigits(random, 62);
+		case 3: return random.nextInt(40) + " " + random.nextInt(27);
+		case 4: return twoDigits(random, 100) + twoDigits(random, 62) + twoDigits(random, 62);
+		default: return Integer.toString(random.nextInt(100));
+		}
+	}
+
+	private static String member(Random random)
+	{
+		StringBuilder sb = new StringBuilder();
+		int n = random.nextInt(4);
+		for (int i = 0; i < n; i++)
+		{
+			sb.append(pick(random, "a", "A", "b", "B", "c", "c d", "", "x")).append(i < n - 1 || random.nextInt(4) == 0 ? "," : "");
+		}
+		return sb.toString();
+	}
+
+	private static String noise(Random random)
+	{
+		String chars = "0123456789+-.,eExXpPfFdDaANIinTt : ٠०";
+		StringBuilder sb = new StringBuilder();
+		int n = random.nextInt(20);
+		for (int i = 0; i < n; i++)
+		{
+			sb.append(chars.charAt(random.nextInt(chars.length())));
+		}
+		return sb.toString();
+	}
+
+	private static String digits(Random random, int n)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < n; i++)
+		{
+			sb.append((char) ('0' + random.nextInt(10)));
+		}
+		return sb.toString();
+	}
+
+	private static String twoDigits(Random random, int below)
+	{
+		int n = random.nextInt(below);
+		return (n < 10 ? "0" : "") + n;
+	}
+
+	private static String pick(Random random, String... options)
+	{
+		return options[random.nextInt(options.length)];
+	}
+
+}